@@ -0,0 +1,461 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Dashboard metrics (training load, recovery, muscle balance) computed over
+ * the logs in WorkoutStore. The logs are decoded once into TrainingColumns and
+ * kept until the store reports a change, so a dashboard refresh is a few array
+ * scans instead of re-filtering the whole JSON diary per metric.
+ *
+ * The consistency calendar and the muscle fatigue heatmap read a DailyIndex
+ * instead, rebuilt on the same condition.
+ *
+ * Results have the shapes of the AdvancedMetricsEngine (and HeatmapService)
+ * methods they replace.
+ */
+@CapacitorPlugin(name = "Analytics")
+public class AnalyticsPlugin extends Plugin {
+
+    private static final String TAG = "AnalyticsPlugin";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroAnalytics");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private WorkoutStoreDatabase database;
+
+    // Executor-confined
+    private final TrainingAnalytics analytics = new TrainingAnalytics();
+    private TrainingColumns columns;
+    private long columnsVersion = -1;
+    private long lastBuildMs = 0;
+    // EXERCISE_DB as configured, for the detailed muscles of the fatigue heatmap
+    private Map<String, List<String>> exerciseDb = new LinkedHashMap<>();
+    private DailyIndex dailyIndex;
+    private long dailyIndexVersion = -1;
+    // Logs folded into dailyIndex: the page checks it against its own before using a result
+    private int dailyIndexLogs;
+
+    private interface AnalyticsTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    public void load() {
+        database = WorkoutStoreDatabase.get(getContext());
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, AnalyticsTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * { exerciseDb }: the EXERCISE_DB table of js/exercise-db.js, so the muscle
+     * lookup has a single source of truth. Call once before the metrics.
+     */
+    @PluginMethod
+    public void configure(PluginCall call) {
+        JSObject exerciseDb = call.getObject("exerciseDb");
+        if (exerciseDb == null) {
+            call.reject("exerciseDb is required");
+            return;
+        }
+        submit(call, c -> {
+            Map<String, List<String>> table = new LinkedHashMap<>();
+            Iterator<String> keys = exerciseDb.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONArray muscles = exerciseDb.optJSONArray(key);
+                List<String> list = new ArrayList<>();
+                for (int i = 0; muscles != null && i < muscles.length(); i++) {
+                    list.add(muscles.optString(i, ""));
+                }
+                table.put(key, list);
+            }
+            analytics.setExerciseDb(table);
+            this.exerciseDb = table;
+            dailyIndex = null;
+            c.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void getTrainingLoad(PluginCall call) {
+        submit(call, c -> {
+            int days = c.getInt("days", 7);
+            c.resolve(trainingLoadJson(analytics.trainingLoad(columns(), days, System.currentTimeMillis())));
+        });
+    }
+
+    @PluginMethod
+    public void getRecoveryScore(PluginCall call) {
+        submit(call, c -> c.resolve(recoveryJson(analytics.recovery(columns(), System.currentTimeMillis()))));
+    }
+
+    @PluginMethod
+    public void getMuscleBalance(PluginCall call) {
+        submit(call, c -> {
+            int days = c.getInt("days", 30);
+            c.resolve(muscleBalanceJson(analytics.muscleBalance(columns(), days, System.currentTimeMillis())));
+        });
+    }
+
+    /**
+     * All three metrics in one round trip: { trainingLoad, recovery,
+     * muscleBalance, logs, computeMs, buildMs }. buildMs is the cost of the last
+     * column rebuild, paid only after the logs changed.
+     */
+    @PluginMethod
+    public void getDashboard(PluginCall call) {
+        submit(call, c -> {
+            int loadDays = c.getInt("loadDays", 7);
+            int balanceDays = c.getInt("balanceDays", 30);
+            long now = System.currentTimeMillis();
+            TrainingColumns data = columns();
+
+            long start = System.nanoTime();
+            TrainingAnalytics.TrainingLoad load = analytics.trainingLoad(data, loadDays, now);
+            TrainingAnalytics.Recovery recovery = analytics.recovery(data, now);
+            TrainingAnalytics.MuscleBalance balance = analytics.muscleBalance(data, balanceDays, now);
+            double computeMs = (System.nanoTime() - start) / 1e6;
+
+            JSObject ret = new JSObject();
+            ret.put("trainingLoad", trainingLoadJson(load));
+            ret.put("recovery", recoveryJson(recovery));
+            ret.put("muscleBalance", muscleBalanceJson(balance));
+            ret.put("logs", data.logCount);
+            ret.put("computeMs", computeMs);
+            ret.put("buildMs", lastBuildMs);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * generateConsistencyCalendar(weeks): { calendar: [{ date, dayOfWeek, week,
+     * volume, intensity }], currentStreak, maxStreak, activeDays, totalDays,
+     * consistencyRate, logs }. Cells are looked up in the daily index, so any
+     * number of weeks costs the same; logs is how many logs it was built from.
+     */
+    @PluginMethod
+    public void getConsistencyCalendar(PluginCall call) {
+        submit(call, c -> {
+            int days = Math.max(1, c.getInt("weeks", 12)) * 7;
+            // Cells as the JS builds them: local midnights, keyed by their toISOString() date
+            Calendar midnight = Calendar.getInstance();
+            midnight.set(Calendar.HOUR_OF_DAY, 0);
+            midnight.set(Calendar.MINUTE, 0);
+            midnight.set(Calendar.SECOND, 0);
+            midnight.set(Calendar.MILLISECOND, 0);
+            midnight.add(Calendar.DAY_OF_MONTH, -(days - 1));
+            long[] cellDays = new long[days];
+            int[] dayOfWeek = new int[days];
+            for (int i = 0; i < days; i++) {
+                cellDays[i] = Math.floorDiv(midnight.getTimeInMillis(), TrainingAnalytics.DAY_MS);
+                dayOfWeek[i] = midnight.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+                midnight.add(Calendar.DAY_OF_MONTH, 1);
+            }
+
+            DailyIndex.Consistency consistency = dailyIndex().calendar(cellDays);
+            JSArray calendar = new JSArray();
+            for (int i = 0; i < days; i++) {
+                JSObject cell = new JSObject();
+                cell.put("date", isoDate(cellDays[i]));
+                cell.put("dayOfWeek", dayOfWeek[i]);
+                cell.put("week", (days - 1 - i) / 7);
+                cell.put("volume", (Object) consistency.volume[i]);
+                cell.put("intensity", consistency.intensity[i]);
+                calendar.put(cell);
+            }
+            JSObject ret = new JSObject();
+            ret.put("calendar", calendar);
+            ret.put("currentStreak", consistency.currentStreak);
+            ret.put("maxStreak", consistency.maxStreak);
+            ret.put("activeDays", consistency.activeDays);
+            ret.put("totalDays", days);
+            ret.put("consistencyRate", Math.round(consistency.activeDays * 100.0 / days));
+            ret.put("logs", dailyIndexLogs);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * HeatmapService.calculateFatigue(logs, days): { fatigue: { muscle: 0-100 }, logs }
+     * for every muscle trained in the window's index range.
+     */
+    @PluginMethod
+    public void getMuscleFatigue(PluginCall call) {
+        submit(call, c -> {
+            int days = c.getInt("days", 7);
+            DailyIndex index = dailyIndex();
+            double[] fatigue = index.fatigue(localDay(System.currentTimeMillis()), days);
+            JSObject values = new JSObject();
+            for (int m = 0; m < index.muscles.length; m++) {
+                values.put(index.muscles[m], (Object) fatigue[m]);
+            }
+            JSObject ret = new JSObject();
+            ret.put("fatigue", values);
+            ret.put("logs", dailyIndexLogs);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * Current snapshot, rebuilt when WorkoutStore has committed changes since
+     * the last build.
+     */
+    private TrainingColumns columns() {
+        long version = database.logsVersion();
+        if (columns != null && version == columnsVersion) {
+            return columns;
+        }
+        long start = System.nanoTime();
+        TrainingColumns.Builder builder = new TrainingColumns.Builder();
+        database.forEachLog((dateMs, log) -> addLog(builder, dateMs, log));
+        columns = builder.build();
+        // Read before the scan: a write racing with it triggers one more rebuild
+        columnsVersion = version;
+        lastBuildMs = (System.nanoTime() - start) / 1_000_000;
+        Log.d(TAG, "Built columns for " + columns.logCount + " logs in " + lastBuildMs + " ms");
+        return columns;
+    }
+
+    /**
+     * Day index over the stored logs, rebuilt like the columns.
+     */
+    private DailyIndex dailyIndex() {
+        long version = database.logsVersion();
+        if (dailyIndex != null && version == dailyIndexVersion) {
+            return dailyIndex;
+        }
+        long start = System.nanoTime();
+        DailyIndex.Builder builder = new DailyIndex.Builder();
+        Map<String, List<String>> musclesByName = new HashMap<>();
+        int[] logs = new int[1];
+        database.forEachLog((dateMs, log) -> {
+            logs[0]++;
+            addDays(builder, musclesByName, dateMs, log);
+        });
+        dailyIndex = builder.build();
+        dailyIndexVersion = version;
+        dailyIndexLogs = logs[0];
+        Log.d(TAG, "Built daily index in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return dailyIndex;
+    }
+
+    private void addDays(DailyIndex.Builder builder, Map<String, List<String>> musclesByName, long dateMs,
+            JSONObject log) {
+        // log.date.split('T')[0]: the calendar groups by the date as written
+        Object date = log.opt("date");
+        long calendarDay = date instanceof String ? parseIsoDay((String) date) : Long.MIN_VALUE;
+        if (calendarDay != Long.MIN_VALUE) {
+            double volume = WorkoutStoreDatabase.jsNumber(log.opt("totalVolume"));
+            builder.addCalendarLog(calendarDay, volume != 0 ? volume : 1000);
+        }
+        if (dateMs == 0) {
+            return;
+        }
+        long day = localDay(dateMs);
+        JSONArray exercises = log.optJSONArray("exercises");
+        for (int i = 0; exercises != null && i < exercises.length(); i++) {
+            JSONObject exercise = exercises.optJSONObject(i);
+            JSONArray sets = exercise != null ? exercise.optJSONArray("sets") : null;
+            if (sets == null || sets.length() == 0) {
+                continue;
+            }
+            String name = exercise.optString("name", "").toLowerCase(Locale.ROOT);
+            List<String> muscles = musclesByName.get(name);
+            if (muscles == null) {
+                muscles = musclesOf(name);
+                musclesByName.put(name, muscles);
+            }
+            for (String muscle : muscles) {
+                builder.addSets(day, muscle, sets.length());
+            }
+        }
+    }
+
+    /**
+     * Muscles of the first EXERCISE_DB key the name contains, as the heatmap
+     * looks them up (no keyword fallback there).
+     */
+    private List<String> musclesOf(String name) {
+        for (Map.Entry<String, List<String>> entry : exerciseDb.entrySet()) {
+            if (name.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static long localDay(long ms) {
+        return Math.floorDiv(ms + TimeZone.getDefault().getOffset(ms), TrainingAnalytics.DAY_MS);
+    }
+
+    // Epoch day of a leading yyyy-MM-dd, Long.MIN_VALUE when there is none
+    private static long parseIsoDay(String date) {
+        if (date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return HealthSeries.daysFromCivil(Integer.parseInt(date.substring(0, 4)),
+                Integer.parseInt(date.substring(5, 7)), Integer.parseInt(date.substring(8, 10)));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String isoDate(long epochDay) {
+        int[] civil = HealthSeries.civilFromDays(epochDay);
+        return String.format(Locale.ROOT, "%04d-%02d-%02d", civil[0], civil[1], civil[2]);
+    }
+
+    private static void addLog(TrainingColumns.Builder builder, long dateMs, JSONObject log) {
+        JSONArray exercises = log.optJSONArray("exercises");
+        float rpe = (float) WorkoutStoreDatabase.jsNumber(log.opt("avgRpe"));
+        if (!(rpe > 0)) {
+            rpe = (float) setRpeMean(exercises);
+        }
+        JSONObject wellness = log.optJSONObject("wellness");
+        builder.addLog(dateMs, (float) WorkoutStoreDatabase.jsNumber(log.opt("totalVolume")), rpe,
+            wellness(wellness, "sleepQuality"), wellness(wellness, "stressLevel"),
+            wellness(wellness, "sorenessLevel"));
+
+        for (int i = 0; exercises != null && i < exercises.length(); i++) {
+            JSONObject exercise = exercises.optJSONObject(i);
+            if (exercise == null) {
+                continue;
+            }
+            double volume = 0;
+            JSONArray sets = exercise.optJSONArray("sets");
+            for (int s = 0; sets != null && s < sets.length(); s++) {
+                JSONObject set = sets.optJSONObject(s);
+                if (set != null) {
+                    volume += WorkoutStoreDatabase.jsNumber(set.opt("weight"))
+                        * WorkoutStoreDatabase.jsNumber(set.opt("reps"));
+                }
+            }
+            builder.addExercise(exercise.optString("name", ""), (float) volume);
+        }
+    }
+
+    private static double setRpeMean(JSONArray exercises) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; exercises != null && i < exercises.length(); i++) {
+            JSONObject exercise = exercises.optJSONObject(i);
+            JSONArray sets = exercise != null ? exercise.optJSONArray("sets") : null;
+            for (int s = 0; sets != null && s < sets.length(); s++) {
+                JSONObject set = sets.optJSONObject(s);
+                double rpe = set != null ? WorkoutStoreDatabase.jsNumber(set.opt("rpe")) : 0;
+                if (rpe > 0) {
+                    sum += rpe;
+                    count++;
+                }
+            }
+        }
+        return count > 0 ? sum / count : 0;
+    }
+
+    // Only real numbers count, like the JS typeof check
+    private static float wellness(JSONObject wellness, String key) {
+        Object value = wellness != null ? wellness.opt(key) : null;
+        return value instanceof Number ? ((Number) value).floatValue() : Float.NaN;
+    }
+
+    private static JSObject trainingLoadJson(TrainingAnalytics.TrainingLoad load) throws JSONException {
+        JSObject ret = new JSObject();
+        ret.put("score", load.score);
+        JSObject breakdown = new JSObject();
+        if (load.breakdown != null) {
+            breakdown.put("volume", load.breakdown[0]);
+            breakdown.put("frequency", load.breakdown[1]);
+            breakdown.put("intensity", load.breakdown[2]);
+        }
+        ret.put("breakdown", breakdown);
+        if (load.breakdown != null) {
+            ret.put("totalVolume", load.totalVolume);
+            ret.put("sessions", load.sessions);
+            // toFixed(1) in the JS: a string
+            ret.put("avgRpe", String.format(Locale.ROOT, "%.1f", load.avgRpe));
+        }
+        ret.put("trend", load.trend);
+        return ret;
+    }
+
+    private static JSObject recoveryJson(TrainingAnalytics.Recovery recovery) {
+        JSObject ret = new JSObject();
+        ret.put("score", recovery.score);
+        JSObject factors = new JSObject();
+        if (recovery.factors != null) {
+            factors.put("sleep", recovery.factors[0]);
+            factors.put("stress", recovery.factors[1]);
+            factors.put("soreness", recovery.factors[2]);
+            factors.put("rest", recovery.factors[3]);
+        }
+        ret.put("factors", factors);
+        if (recovery.factors != null) {
+            ret.put("daysSinceWorkout", recovery.daysSinceWorkout);
+            ret.put("recommendation", recovery.recommendation);
+        }
+        return ret;
+    }
+
+    private static JSObject muscleBalanceJson(TrainingAnalytics.MuscleBalance balance) throws JSONException {
+        JSObject distribution = new JSObject();
+        JSObject rawVolume = new JSObject();
+        for (int c = 0; c < TrainingAnalytics.CATEGORIES.length; c++) {
+            distribution.put(TrainingAnalytics.CATEGORIES[c], balance.distribution[c]);
+            rawVolume.put(TrainingAnalytics.CATEGORIES[c], balance.rawVolume[c]);
+        }
+        JSArray imbalances = new JSArray();
+        for (TrainingAnalytics.Imbalance imbalance : balance.imbalances) {
+            JSObject item = new JSObject();
+            item.put("muscle", imbalance.muscle);
+            item.put("type", imbalance.type);
+            item.put("value", imbalance.value);
+            imbalances.put(item);
+        }
+        JSObject ret = new JSObject();
+        ret.put("distribution", distribution);
+        ret.put("rawVolume", rawVolume);
+        ret.put("totalVolume", balance.totalVolume);
+        ret.put("imbalances", imbalances);
+        ret.put("balanceScore", balance.balanceScore);
+        return ret;
+    }
+}
@@ -0,0 +1,239 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Outbox for FirestoreService.syncToCloud. The web side hands over its
+ * current workouts, logs, body stats, photos and AI plans (track); only the
+ * entities that changed since the server last confirmed them come back, in
+ * batches sized for one Firestore writeBatch (nextBatch), and each batch is
+ * confirmed (ack) or handed back for a later retry (fail).
+ *
+ * The outbox is a SyncOutbox file, so changes made offline are still queued
+ * after a restart. Every call runs on one background thread.
+ */
+@CapacitorPlugin(name = "CloudSync")
+public class CloudSyncPlugin extends Plugin {
+
+    private static final String TAG = "CloudSyncPlugin";
+    private static final String OUTBOX_FILE = "cloud_sync.bin";
+
+    // A Firestore batch takes 500 writes and 10 MB; stay well inside both
+    private static final int DEFAULT_MAX_OPS = 400;
+    private static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroCloudSync");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Executor-confined
+    private SyncOutbox outbox;
+
+    private interface SyncTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, SyncTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private SyncOutbox outbox() throws IOException {
+        if (outbox == null) {
+            File file = new File(getContext().getNoBackupFilesDir(), OUTBOX_FILE);
+            try {
+                outbox = SyncOutbox.open(file);
+            } catch (IOException e) {
+                // Losing the outbox only costs one full upload
+                Log.w(TAG, "Discarding unreadable sync outbox", e);
+                file.delete();
+                outbox = SyncOutbox.open(file);
+            }
+        }
+        return outbox;
+    }
+
+    /**
+     * { uid, collections: { name: [{ id, json }] }, complete = true }: diffs
+     * each collection against what the server has and queues the changes;
+     * with complete, entities missing from a collection are queued as
+     * deletes. Starts a new sync for the byte counters. Resolves
+     * { queued, pending }.
+     */
+    @PluginMethod
+    public void track(PluginCall call) {
+        String uid = call.getString("uid");
+        JSObject collections = call.getObject("collections");
+        if (uid == null || collections == null) {
+            call.reject("uid and collections are required");
+            return;
+        }
+        boolean complete = call.getBoolean("complete", true);
+        submit(call, c -> {
+            SyncOutbox outbox = outbox();
+            outbox.owner(uid);
+            outbox.beginSync();
+            int queued = 0;
+            Iterator<String> names = collections.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                queued += outbox.track(name, items(collections.optJSONArray(name)), complete);
+            }
+            JSObject result = new JSObject();
+            result.put("queued", queued);
+            result.put("pending", outbox.stats().pending);
+            c.resolve(result);
+        });
+    }
+
+    /**
+     * { uid, collection, items: [{ id, json }] }: items just loaded from the
+     * server, so the next track does not upload them again.
+     */
+    @PluginMethod
+    public void markSynced(PluginCall call) {
+        String uid = call.getString("uid");
+        String collection = call.getString("collection");
+        JSArray items = call.getArray("items");
+        if (uid == null || collection == null || items == null) {
+            call.reject("uid, collection and items are required");
+            return;
+        }
+        submit(call, c -> {
+            SyncOutbox outbox = outbox();
+            outbox.owner(uid);
+            outbox.markSynced(collection, items(items));
+            c.resolve();
+        });
+    }
+
+    /**
+     * { maxOps, maxBytes }: the next batch to write, { batchId, bytes,
+     * ops: [{ collection, id, op: 'upsert' | 'delete', json }] }, or
+     * { batchId: null } when nothing is due.
+     */
+    @PluginMethod
+    public void nextBatch(PluginCall call) {
+        int maxOps = Math.max(1, call.getInt("maxOps", DEFAULT_MAX_OPS));
+        long maxBytes = Math.max(1, call.getLong("maxBytes", DEFAULT_MAX_BYTES));
+        submit(call, c -> {
+            SyncOutbox.Batch batch = outbox().nextBatch(maxOps, maxBytes, System.currentTimeMillis());
+            JSObject result = new JSObject();
+            if (batch == null) {
+                result.put("batchId", JSONObject.NULL);
+                c.resolve(result);
+                return;
+            }
+            JSONArray ops = new JSONArray();
+            for (SyncOutbox.Op op : batch.ops) {
+                JSONObject item = new JSONObject();
+                item.put("collection", op.collection);
+                item.put("id", op.id);
+                item.put("op", op.type == SyncOutbox.DELETE ? "delete" : "upsert");
+                item.put("json", op.json != null ? op.json : JSONObject.NULL);
+                ops.put(item);
+            }
+            result.put("batchId", batch.id);
+            result.put("bytes", batch.bytes);
+            result.put("ops", ops);
+            c.resolve(result);
+        });
+    }
+
+    /**
+     * { batchId }: the batch was committed. Resolves { bytes } it counted,
+     * -1 for a batch the outbox no longer knows.
+     */
+    @PluginMethod
+    public void ack(PluginCall call) {
+        Integer batchId = call.getInt("batchId");
+        if (batchId == null) {
+            call.reject("batchId is required");
+            return;
+        }
+        submit(call, c -> {
+            JSObject result = new JSObject();
+            result.put("bytes", outbox().ack(batchId));
+            c.resolve(result);
+        });
+    }
+
+    /**
+     * { batchId }: the batch failed; its entities are retried after a
+     * backoff.
+     */
+    @PluginMethod
+    public void fail(PluginCall call) {
+        Integer batchId = call.getInt("batchId");
+        if (batchId == null) {
+            call.reject("batchId is required");
+            return;
+        }
+        submit(call, c -> {
+            outbox().fail(batchId, System.currentTimeMillis());
+            c.resolve();
+        });
+    }
+
+    /**
+     * { pending, inFlight, lastSyncBytes, lastSyncOps, totalBytes, totalOps }:
+     * bytes are the JSON payload of the acknowledged writes.
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        submit(call, c -> {
+            SyncOutbox.Stats stats = outbox().stats();
+            JSObject result = new JSObject();
+            result.put("pending", stats.pending);
+            result.put("inFlight", stats.inFlight);
+            result.put("lastSyncBytes", stats.lastSyncBytes);
+            result.put("lastSyncOps", stats.lastSyncOps);
+            result.put("totalBytes", stats.totalBytes);
+            result.put("totalOps", stats.totalOps);
+            c.resolve(result);
+        });
+    }
+
+    private static List<SyncOutbox.Item> items(JSONArray array) throws JSONException {
+        List<SyncOutbox.Item> items = new ArrayList<>();
+        for (int i = 0; array != null && i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            String id = item.optString("id", "");
+            if (id.isEmpty() || id.indexOf('/') >= 0) {
+                // The id is the Firestore document name
+                continue;
+            }
+            items.add(new SyncOutbox.Item(id, item.optString("json", "null")));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,226 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Day-indexed view of the workout logs for the consistency calendar
+ * (AdvancedMetricsEngine.generateConsistencyCalendar) and the muscle fatigue
+ * heatmap (HeatmapService.calculateFatigue). The JS walks every log for each
+ * query; here the logs are folded once into dense arrays indexed by epoch
+ * day, so a calendar cell or a fatigue day is one array read and a 52-week
+ * calendar costs the same as a 12-week one.
+ *
+ * Two day axes, as in the JS: calendar days are the yyyy-MM-dd the log date
+ * was written with (log.date.split('T')[0]), fatigue days are local days of
+ * the log time.
+ *
+ * Immutable once built; plain Java, no Android types, tested on the JVM.
+ */
+final class DailyIndex {
+
+    // Fatigue added per set on the day of the workout (setVolume * 20 in the JS)
+    static final double FATIGUE_PER_SET = 20;
+
+    static final class Consistency {
+        // One cell per requested day, oldest first
+        final double[] volume;
+        final int[] intensity;
+        int currentStreak;
+        int maxStreak;
+        int activeDays;
+
+        Consistency(int days) {
+            volume = new double[days];
+            intensity = new int[days];
+        }
+    }
+
+    private final long firstCalendarDay;
+    // Sum of (totalVolume || 1000) per calendar day
+    private final double[] calendarVolume;
+    // Bit d set when calendar day firstCalendarDay + d has volume
+    private final long[] trained;
+
+    private final long firstFatigueDay;
+    private final int fatigueDays;
+    final String[] muscles;
+    // sets[muscle][day - firstFatigueDay]: sets of exercises that hit the muscle
+    private final float[][] sets;
+
+    private DailyIndex(Builder b) {
+        long minDay = Long.MAX_VALUE;
+        long maxDay = Long.MIN_VALUE;
+        for (int i = 0; i < b.calendarCount; i++) {
+            minDay = Math.min(minDay, b.calendarDay[i]);
+            maxDay = Math.max(maxDay, b.calendarDay[i]);
+        }
+        firstCalendarDay = b.calendarCount > 0 ? minDay : 0;
+        int days = b.calendarCount > 0 ? (int) (maxDay - minDay + 1) : 0;
+        calendarVolume = new double[days];
+        for (int i = 0; i < b.calendarCount; i++) {
+            calendarVolume[(int) (b.calendarDay[i] - firstCalendarDay)] += b.calendarValue[i];
+        }
+        trained = new long[(days + 63) >>> 6];
+        for (int d = 0; d < days; d++) {
+            if (calendarVolume[d] > 0) {
+                trained[d >>> 6] |= 1L << d;
+            }
+        }
+
+        minDay = Long.MAX_VALUE;
+        maxDay = Long.MIN_VALUE;
+        for (int i = 0; i < b.setCount; i++) {
+            minDay = Math.min(minDay, b.setDay[i]);
+            maxDay = Math.max(maxDay, b.setDay[i]);
+        }
+        firstFatigueDay = b.setCount > 0 ? minDay : 0;
+        fatigueDays = b.setCount > 0 ? (int) (maxDay - minDay + 1) : 0;
+        muscles = b.muscles.toArray(new String[0]);
+        sets = new float[muscles.length][fatigueDays];
+        for (int i = 0; i < b.setCount; i++) {
+            sets[b.setMuscle[i]][(int) (b.setDay[i] - firstFatigueDay)] += b.setValue[i];
+        }
+    }
+
+    /**
+     * Volume logged on a calendar day, 0 outside the indexed range.
+     */
+    double volume(long day) {
+        long d = day - firstCalendarDay;
+        return d >= 0 && d < calendarVolume.length ? calendarVolume[(int) d] : 0;
+    }
+
+    boolean trained(long day) {
+        long d = day - firstCalendarDay;
+        return d >= 0 && d < calendarVolume.length && (trained[(int) (d >>> 6)] & (1L << d)) != 0;
+    }
+
+    /**
+     * generateConsistencyCalendar over the given calendar days, oldest first
+     * (consecutive in practice, but each is looked up on its own). Streaks
+     * follow the JS loop exactly, quirks included.
+     */
+    Consistency calendar(long[] cellDays) {
+        int n = cellDays.length;
+        Consistency result = new Consistency(n);
+        for (int i = 0; i < n; i++) {
+            result.volume[i] = volume(cellDays[i]);
+            result.intensity[i] = intensity(result.volume[i]);
+        }
+        int streak = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            if (trained(cellDays[i])) {
+                streak++;
+                result.activeDays++;
+                if (i == n - 1 || trained(cellDays[i + 1])) {
+                    result.currentStreak = streak;
+                }
+            } else {
+                result.maxStreak = Math.max(result.maxStreak, streak);
+                streak = 0;
+            }
+        }
+        result.maxStreak = Math.max(result.maxStreak, streak);
+        return result;
+    }
+
+    /**
+     * calculateFatigue with ages counted in local days: for each muscle, the
+     * sets of today (age 0) and the {@code days} days before, times 20 times
+     * max(0.2, 1 - age / 10), capped at 100. Indexed like {@link #muscles}.
+     */
+    double[] fatigue(long today, int days) {
+        double[] result = new double[muscles.length];
+        for (int age = 0; age <= days; age++) {
+            long d = today - age - firstFatigueDay;
+            if (d < 0 || d >= fatigueDays) {
+                continue;
+            }
+            double recency = Math.max(0.2, 1 - age * 0.1);
+            for (int m = 0; m < muscles.length; m++) {
+                result[m] += sets[m][(int) d] * FATIGUE_PER_SET * recency;
+            }
+        }
+        for (int m = 0; m < muscles.length; m++) {
+            result[m] = Math.min(100, result[m]);
+        }
+        return result;
+    }
+
+    // AdvancedMetricsEngine.getIntensityLevel
+    static int intensity(double volume) {
+        if (volume == 0) {
+            return 0;
+        }
+        if (volume < 5000) {
+            return 1;
+        }
+        if (volume < 15000) {
+            return 2;
+        }
+        if (volume < 30000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Accepts entries in any order; days may repeat.
+     */
+    static final class Builder {
+        private int calendarCount;
+        private long[] calendarDay = new long[64];
+        private double[] calendarValue = new double[64];
+
+        private int setCount;
+        private long[] setDay = new long[256];
+        private int[] setMuscle = new int[256];
+        private float[] setValue = new float[256];
+
+        private final HashMap<String, Integer> muscleIds = new HashMap<>();
+        private final List<String> muscles = new ArrayList<>();
+
+        /**
+         * One log on its calendar day: volume is totalVolume || 1000.
+         */
+        Builder addCalendarLog(long day, double volume) {
+            if (calendarCount == calendarDay.length) {
+                calendarDay = Arrays.copyOf(calendarDay, calendarCount * 2);
+                calendarValue = Arrays.copyOf(calendarValue, calendarCount * 2);
+            }
+            calendarDay[calendarCount] = day;
+            calendarValue[calendarCount] = volume;
+            calendarCount++;
+            return this;
+        }
+
+        /**
+         * {@code count} sets that hit {@code muscle} on a local day.
+         */
+        Builder addSets(long day, String muscle, float count) {
+            Integer id = muscleIds.get(muscle);
+            if (id == null) {
+                id = muscles.size();
+                muscleIds.put(muscle, id);
+                muscles.add(muscle);
+            }
+            if (setCount == setDay.length) {
+                setDay = Arrays.copyOf(setDay, setCount * 2);
+                setMuscle = Arrays.copyOf(setMuscle, setCount * 2);
+                setValue = Arrays.copyOf(setValue, setCount * 2);
+            }
+            setDay[setCount] = day;
+            setMuscle[setCount] = id;
+            setValue[setCount] = count;
+            setCount++;
+            return this;
+        }
+
+        DailyIndex build() {
+            return new DailyIndex(this);
+        }
+    }
+}
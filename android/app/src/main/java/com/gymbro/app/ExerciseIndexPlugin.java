@@ -0,0 +1,137 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+
+/**
+ * Exercise-name matching for ExerciseNormalizer: the catalog lives in an
+ * ExerciseNameIndex, so resolving a name is a few posting-list scans instead
+ * of comparing it with every known exercise on the UI thread, and a whole
+ * imported history is normalised in one bridge call.
+ */
+@CapacitorPlugin(name = "ExerciseIndex")
+public class ExerciseIndexPlugin extends Plugin {
+
+    private static final String TAG = "ExerciseIndexPlugin";
+
+    private static final int DEFAULT_SEARCH_LIMIT = 5;
+    private static final int MAX_SEARCH_LIMIT = 50;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroExerciseIndex");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Executor-confined
+    private final ExerciseNameIndex index = new ExerciseNameIndex();
+
+    private interface IndexTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, IndexTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * { names, replace = true }: the catalog (EXERCISE_DB keys and the user's
+     * exercises). With replace false the names are added to the current one.
+     * Resolves { size }.
+     */
+    @PluginMethod
+    public void setCatalog(PluginCall call) {
+        JSArray names = call.getArray("names");
+        if (names == null) {
+            call.reject("names is required");
+            return;
+        }
+        submit(call, c -> {
+            if (c.getBoolean("replace", true)) {
+                index.clear();
+            }
+            int added = 0;
+            for (int i = 0; i < names.length(); i++) {
+                if (index.add(names.optString(i, ""))) {
+                    added++;
+                }
+            }
+            Log.d(TAG, "Indexed " + added + " exercise names, " + index.size() + " total");
+            JSObject ret = new JSObject();
+            ret.put("size", index.size());
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { names }: each name mapped to its catalog name, or kept if nothing
+     * matches, in input order. Resolves { names, cacheHits, cacheMisses }.
+     */
+    @PluginMethod
+    public void normalize(PluginCall call) {
+        JSArray names = call.getArray("names");
+        if (names == null) {
+            call.reject("names is required");
+            return;
+        }
+        submit(call, c -> {
+            JSONArray out = new JSONArray();
+            for (int i = 0; i < names.length(); i++) {
+                Object value = names.opt(i);
+                out.put(value instanceof String ? index.resolve((String) value) : value);
+            }
+            JSObject ret = new JSObject();
+            ret.put("names", out);
+            ret.put("cacheHits", index.cacheHits());
+            ret.put("cacheMisses", index.cacheMisses());
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { query, limit = 5, minScore = 0 }: the most similar catalog names,
+     * best first. Resolves { matches: [{ name, score }] }.
+     */
+    @PluginMethod
+    public void search(PluginCall call) {
+        String query = call.getString("query");
+        if (query == null) {
+            call.reject("query is required");
+            return;
+        }
+        submit(call, c -> {
+            int limit = Math.max(1, Math.min(c.getInt("limit", DEFAULT_SEARCH_LIMIT), MAX_SEARCH_LIMIT));
+            double minScore = c.getDouble("minScore", 0.0);
+            JSArray matches = new JSArray();
+            for (ExerciseNameIndex.Match match : index.search(query, limit, minScore)) {
+                JSObject item = new JSObject();
+                item.put("name", match.name);
+                item.put("score", (Object) match.score);
+                matches.put(item);
+            }
+            JSObject ret = new JSObject();
+            ret.put("matches", matches);
+            c.resolve(ret);
+        });
+    }
+}
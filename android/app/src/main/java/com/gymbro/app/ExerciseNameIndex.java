@@ -0,0 +1,251 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fuzzy exercise-name lookup over the catalog (EXERCISE_DB plus the user's
+ * exercises), with the scoring of ExerciseNormalizer: Dice coefficient over
+ * the distinct bigrams of ExerciseNames.matchKey, a match above 0.85.
+ *
+ * An inverted index maps every bigram to the entries containing it, so a
+ * lookup only touches names sharing at least one bigram with the query (every
+ * other name scores 0) instead of normalising and comparing the whole catalog.
+ * Bigrams rather than trigrams because they are what the score counts: the
+ * candidate set is then exact and the scores equal the JS ones.
+ *
+ * Plain Java, not thread-safe: ExerciseIndexPlugin confines it to its executor.
+ */
+final class ExerciseNameIndex {
+
+    static final double MATCH_THRESHOLD = 0.85;
+    static final int DEFAULT_CACHE_SIZE = 512;
+
+    static final class Match {
+        final String name;
+        final double score;
+
+        Match(String name, double score) {
+            this.name = name;
+            this.score = score;
+        }
+    }
+
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Entry id -> display name and its sorted distinct bigrams
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<int[]> grams = new ArrayList<>();
+    private final HashMap<String, Integer> byName = new HashMap<>();
+    // Match key -> entry that wins an exact match (the first name in sort order, like the JS loop)
+    private final HashMap<String, Integer> byKey = new HashMap<>();
+    private final HashMap<Integer, Postings> postings = new HashMap<>();
+
+    // Per-lookup scratch: shared-bigram counts and the entries they were bumped for
+    private int[] counts = new int[16];
+    private int[] touched = new int[16];
+
+    private final LinkedHashMap<String, String> resolved;
+    private long cacheHits;
+    private long cacheMisses;
+
+    ExerciseNameIndex() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    ExerciseNameIndex(int cacheSize) {
+        resolved = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    long cacheHits() {
+        return cacheHits;
+    }
+
+    long cacheMisses() {
+        return cacheMisses;
+    }
+
+    void clear() {
+        names.clear();
+        grams.clear();
+        byName.clear();
+        byKey.clear();
+        postings.clear();
+        resolved.clear();
+    }
+
+    /**
+     * Adds a catalog name (trimmed, duplicates ignored). Returns false if it
+     * was already there or blank.
+     */
+    boolean add(String name) {
+        String display = name != null ? name.trim() : "";
+        if (display.isEmpty() || byName.containsKey(display)) {
+            return false;
+        }
+        int id = names.size();
+        String key = ExerciseNames.matchKey(display);
+        int[] entryGrams = bigrams(key);
+        names.add(display);
+        grams.add(entryGrams);
+        byName.put(display, id);
+
+        Integer exact = byKey.get(key);
+        if (exact == null || display.compareTo(names.get(exact)) < 0) {
+            byKey.put(key, id);
+        }
+        for (int gram : entryGrams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(gram, list);
+            }
+            list.add(id);
+        }
+        if (counts.length < names.size()) {
+            counts = Arrays.copyOf(counts, names.size() * 2);
+            touched = Arrays.copyOf(touched, names.size() * 2);
+        }
+        // A new name can change what earlier lookups resolve to
+        resolved.clear();
+        return true;
+    }
+
+    /**
+     * The catalog name {@code name} stands for: the exact match on the match
+     * key, else the most similar name above the threshold, else {@code name}
+     * itself. Where the JS loop takes the first name in sort order above the
+     * threshold, this takes the best scoring one (ties still go to sort order).
+     */
+    String resolve(String name) {
+        if (name == null || name.isEmpty()) {
+            return name;
+        }
+        String cached = resolved.get(name);
+        if (cached != null) {
+            cacheHits++;
+            return cached;
+        }
+        cacheMisses++;
+        String result = name;
+        String key = ExerciseNames.matchKey(name);
+        Integer exact = byKey.get(key);
+        if (exact != null) {
+            result = names.get(exact);
+        } else {
+            List<Match> best = search(key, 1, MATCH_THRESHOLD, true);
+            if (!best.isEmpty()) {
+                result = best.get(0).name;
+            }
+        }
+        resolved.put(name, result);
+        return result;
+    }
+
+    /**
+     * Up to {@code limit} catalog names scoring at least {@code minScore}
+     * against {@code query}, best first, ties in sort order.
+     */
+    List<Match> search(String query, int limit, double minScore) {
+        return search(ExerciseNames.matchKey(query), limit, minScore, false);
+    }
+
+    private List<Match> search(String key, int limit, double minScore, boolean strict) {
+        List<Match> top = new ArrayList<>(Math.max(0, Math.min(limit, 16)));
+        if (limit <= 0) {
+            return top;
+        }
+        int[] queryGrams = bigrams(key);
+        int touchedCount = 0;
+        for (int gram : queryGrams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                if (counts[id]++ == 0) {
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            // Identical keys score 1 here too: 2n / (n + n)
+            double score = 2.0 * counts[id] / (queryGrams.length + grams.get(id).length);
+            counts[id] = 0;
+            if (strict ? score > minScore : score >= minScore) {
+                insert(top, limit, new Match(names.get(id), score));
+            }
+        }
+        // One-letter keys have no bigrams; the JS str1 === str2 check still matches them
+        Integer exact = queryGrams.length == 0 ? byKey.get(key) : null;
+        if (exact != null && (strict ? 1 > minScore : 1 >= minScore)) {
+            insert(top, limit, new Match(names.get(exact), 1));
+        }
+        return top;
+    }
+
+    private static void insert(List<Match> top, int limit, Match match) {
+        int at = top.size();
+        while (at > 0 && ranksBefore(match, top.get(at - 1))) {
+            at--;
+        }
+        if (at >= limit) {
+            return;
+        }
+        if (top.size() == limit) {
+            top.remove(limit - 1);
+        }
+        top.add(at, match);
+    }
+
+    private static boolean ranksBefore(Match a, Match b) {
+        return a.score > b.score || (a.score == b.score && a.name.compareTo(b.name) < 0);
+    }
+
+    /**
+     * Distinct bigrams of {@code key}, each packed as (first char << 16) | second.
+     */
+    static int[] bigrams(String key) {
+        if (key.length() < 2) {
+            return new int[0];
+        }
+        int[] out = new int[key.length() - 1];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (key.charAt(i) << 16) | key.charAt(i + 1);
+        }
+        Arrays.sort(out);
+        int distinct = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (i == 0 || out[i] != out[i - 1]) {
+                out[distinct++] = out[i];
+            }
+        }
+        return distinct == out.length ? out : Arrays.copyOf(out, distinct);
+    }
+}
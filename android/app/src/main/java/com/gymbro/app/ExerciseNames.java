@@ -0,0 +1,75 @@
+package com.gymbro.app;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The one exercise-name normalisation of the native side. PRTracker,
+ * FirestoreService and the metrics engine each had their own variant; this
+ * one is their union, so "Panca Piana (80kg)", "panca  piana 80 kg" and
+ * "Pànca piana" all map to the same canonical id.
+ */
+final class ExerciseNames {
+    // Load annotations typed into the name: "80kg", "100 lbs", or bare numbers
+    private static final Pattern LOADS = Pattern.compile("\\d+\\s*(kg|lbs|lb)?");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern BRACKETS = Pattern.compile("[()\\[\\]{}]");
+
+    private ExerciseNames() {
+    }
+
+    /**
+     * Lowercase, accents folded, brackets and load annotations removed,
+     * punctuation turned into spaces, whitespace collapsed. Bracketed words stay
+     * ("curl (manubri)" is "curl manubri"): they name a variant, which is a
+     * separate record like in PRTracker.
+     */
+    static String canonicalId(String name) {
+        if (name == null || name.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            switch (ch) {
+                case '(': case ')': case '[': case ']': case '{': case '}':
+                    break;
+                case '.': case ',': case ':': case ';': case '-': case '–': case '_': case '/':
+                    out.append(' ');
+                    break;
+                default:
+                    out.append(ch);
+                    break;
+            }
+        }
+        String stripped = LOADS.matcher(out).replaceAll(" ");
+        return SPACES.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    /**
+     * ExerciseNormalizer._normalizeString, step for step: the looser key the
+     * name matching of the normalizer compares. Loads and punctuation stay, so
+     * "Panca 80kg" and "Panca 100kg" are still different catalog entries.
+     */
+    static String matchKey(String name) {
+        if (name == null || name.isEmpty()) {
+            return "";
+        }
+        String collapsed = SPACES.matcher(name.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+        String decomposed = Normalizer.normalize(BRACKETS.matcher(collapsed).replaceAll(""), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            // Only the combining diacritics block, as the JS regex
+            if (ch < '\u0300' || ch > '\u036f') {
+                out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+}
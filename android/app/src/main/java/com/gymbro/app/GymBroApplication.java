@@ -0,0 +1,45 @@
+package com.gymbro.app;
+
+import android.app.Application;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebSettings;
+
+/**
+ * Process-level startup. Records the first StartupTrace markers and, while
+ * MainActivity is still being created, loads the WebView provider on a
+ * background thread: the Chromium library load is the largest single cost of
+ * the first WebView, and the activity's bridge then finds it done (or waits
+ * for the rest of it) instead of paying it all on the main thread.
+ */
+public class GymBroApplication extends Application {
+
+    private static final String TAG = "GymBroApplication";
+
+    static final StartupTrace TRACE = new StartupTrace();
+
+    // API 23 has no process start time: the class load is the closest stand-in
+    private static final long CLASS_LOADED_AT = SystemClock.elapsedRealtime();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        TRACE.mark(StartupTrace.PROCESS_START, Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime() : CLASS_LOADED_AT);
+        TRACE.mark(StartupTrace.APPLICATION_CREATE, SystemClock.elapsedRealtime());
+
+        Thread warmup = new Thread(() -> {
+            try {
+                WebSettings.getDefaultUserAgent(this);
+                TRACE.mark(StartupTrace.WEBVIEW_WARM, SystemClock.elapsedRealtime());
+            } catch (RuntimeException e) {
+                // No WebView provider (being updated): the bridge reports it itself
+                Log.w(TAG, "WebView warm-up failed", e);
+            }
+        }, "GymBroWarmup");
+        warmup.setPriority(Thread.NORM_PRIORITY - 1);
+        warmup.start();
+    }
+}
@@ -0,0 +1,620 @@
+package com.gymbro.app;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * One health metric (steps, weight, heart rate...) as a time series: points
+ * sorted by timestamp, stored as varint timestamp deltas plus float values,
+ * with day, week and month rollups (count, sum, min, max, last) kept up to
+ * date on every append. HealthConnectService used to bucket the raw Google
+ * Fit points into JS objects on every sync; here a sync only adds the points
+ * the series does not have yet and the averages are read off the rollups.
+ *
+ * On disk the file is a small header followed by (delta, value) entries, so
+ * appending newer points appends bytes; a sync that back-fills older points
+ * rewrites it (tmp file and rename). The rollups are rebuilt on load.
+ *
+ * Android-free so it runs in JVM tests; HealthStorePlugin confines each
+ * series to its executor.
+ */
+final class HealthSeries {
+
+    static final int DAY = 0;
+    static final int WEEK = 1;
+    static final int MONTH = 2;
+
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Points outside 2000..2100 are corrupt timestamps: they would stretch the dense rollups
+    private static final long MIN_TS = 946_684_800_000L;
+    private static final long MAX_TS = 4_102_444_800_000L;
+
+    private static final int MAGIC = 0x47424831; // "GBH1"
+    // magic + coveredFrom + coveredTo
+    private static final int HEADER_SIZE = 20;
+    // A decode can start at every CHECKPOINT-th point
+    private static final int CHECKPOINT = 128;
+
+    static final class Point {
+        final long ts;
+        final float value;
+
+        Point(long ts, float value) {
+            this.ts = ts;
+            this.value = value;
+        }
+    }
+
+    static final class Bucket {
+        // yyyy-MM-dd of the day or of the week's Monday, yyyy-MM of the month
+        final String key;
+        // Epoch day of the bucket's first day
+        final long firstDay;
+        final int count;
+        final double sum;
+        final float min;
+        final float max;
+        final float last;
+        final long lastTs;
+
+        Bucket(String key, long firstDay, int count, double sum, float min, float max, float last, long lastTs) {
+            this.key = key;
+            this.firstDay = firstDay;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.last = last;
+            this.lastTs = lastTs;
+        }
+
+        double mean() {
+            return count > 0 ? sum / count : 0;
+        }
+    }
+
+    /**
+     * Dense per-bucket aggregates for keys firstKey .. firstKey + size - 1.
+     */
+    private static final class Rollup {
+        long firstKey;
+        int size;
+        int[] counts = new int[0];
+        double[] sums = new double[0];
+        float[] mins = new float[0];
+        float[] maxs = new float[0];
+        float[] lasts = new float[0];
+        long[] lastTs = new long[0];
+
+        void add(long key, long ts, float value) {
+            int i = slot(key);
+            if (counts[i] == 0 || value < mins[i]) mins[i] = value;
+            if (counts[i] == 0 || value > maxs[i]) maxs[i] = value;
+            if (counts[i] == 0 || ts >= lastTs[i]) {
+                lasts[i] = value;
+                lastTs[i] = ts;
+            }
+            counts[i]++;
+            sums[i] += value;
+        }
+
+        private int slot(long key) {
+            if (size == 0) {
+                firstKey = key;
+                size = 1;
+                resize(16, 0);
+                return 0;
+            }
+            if (key < firstKey) {
+                int shift = (int) (firstKey - key);
+                resize(Math.max(counts.length, size + shift) + 16, shift);
+                firstKey = key;
+                size += shift;
+                return 0;
+            }
+            int i = (int) (key - firstKey);
+            if (i >= counts.length) {
+                resize(Math.max(i + 1, counts.length * 2), 0);
+            }
+            size = Math.max(size, i + 1);
+            return i;
+        }
+
+        private void resize(int capacity, int shift) {
+            counts = grow(counts, capacity, shift);
+            sums = grow(sums, capacity, shift);
+            mins = grow(mins, capacity, shift);
+            maxs = grow(maxs, capacity, shift);
+            lasts = grow(lasts, capacity, shift);
+            lastTs = grow(lastTs, capacity, shift);
+        }
+    }
+
+    private final String type;
+    private final TimeZone zone;
+    private final File file;
+
+    private byte[] deltas = new byte[256];
+    private int deltaBytes;
+    private float[] values = new float[64];
+    private int count;
+    private long lastTs;
+    // Byte offset and timestamp of points 0, CHECKPOINT, 2 * CHECKPOINT...
+    private int[] checkpointOffsets = new int[4];
+    private long[] checkpointTs = new long[4];
+
+    private final Rollup[] rollups = {new Rollup(), new Rollup(), new Rollup()};
+
+    // Time range the syncs have fetched, so the next one can start where it ended
+    private long coveredFrom = Long.MAX_VALUE;
+    private long coveredTo = Long.MIN_VALUE;
+
+    HealthSeries(String type, TimeZone zone, File file) {
+        this.type = type;
+        this.zone = zone;
+        this.file = file;
+    }
+
+    String type() {
+        return type;
+    }
+
+    int size() {
+        return count;
+    }
+
+    long firstTs() {
+        return count > 0 ? checkpointTs[0] : 0;
+    }
+
+    long lastTs() {
+        return lastTs;
+    }
+
+    long coveredFrom() {
+        return coveredFrom;
+    }
+
+    long coveredTo() {
+        return coveredTo;
+    }
+
+    /**
+     * Bytes per stored point, header excluded: the timestamp delta plus the float.
+     */
+    double bytesPerPoint() {
+        return count > 0 ? (deltaBytes + 4.0 * count) / count : 0;
+    }
+
+    /**
+     * Loads the series from its file (missing file: empty series). A torn last
+     * entry is dropped.
+     */
+    static HealthSeries load(String type, TimeZone zone, File file) throws IOException {
+        HealthSeries series = new HealthSeries(type, zone, file);
+        if (!file.exists()) {
+            return series;
+        }
+        byte[] data;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            data = new byte[(int) raf.length()];
+            raf.readFully(data);
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a health series file: " + file);
+        }
+        series.coveredFrom = in.getLong();
+        series.coveredTo = in.getLong();
+        long ts = 0;
+        int valid = HEADER_SIZE;
+        while (in.hasRemaining()) {
+            long delta = readVarint(in);
+            if (delta < 0 || in.remaining() < 4) {
+                break;
+            }
+            ts += delta;
+            series.addLast(ts, in.getFloat());
+            valid = in.position();
+        }
+        if (valid < data.length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Adds the points the series does not have yet and persists them. Within
+     * the batch, points sharing a timestamp keep the highest value (the same
+     * interval reported twice, as the JS grouping handles it); a timestamp
+     * already stored keeps its stored value. Returns the number added.
+     */
+    int append(long[] ts, float[] vals, int n) throws IOException {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ts[a], ts[b]));
+
+        List<Point> older = new ArrayList<>();
+        List<Point> newer = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            float value = vals[i];
+            if (ts[i] < MIN_TS || ts[i] >= MAX_TS || Float.isNaN(value)) {
+                continue;
+            }
+            while (k + 1 < n && ts[order[k + 1]] == ts[i]) {
+                value = Math.max(value, vals[order[++k]]);
+            }
+            (count == 0 || ts[i] > lastTs ? newer : older).add(new Point(ts[i], value));
+        }
+
+        int merged = older.isEmpty() ? 0 : mergeOlder(older);
+        if (newer.isEmpty() && merged == 0) {
+            return 0;
+        }
+        if (merged > 0) {
+            for (Point point : newer) {
+                addLast(point.ts, point.value);
+            }
+            rewrite();
+        } else {
+            appendToFile(newer);
+        }
+        return merged + newer.size();
+    }
+
+    /**
+     * Back-fills points older than the last one: decodes the timestamps once,
+     * keeps the points not already present, re-encodes the merged series.
+     */
+    private int mergeOlder(List<Point> older) {
+        long[] stored = timestamps();
+        List<Point> missing = new ArrayList<>();
+        for (Point point : older) {
+            if (Arrays.binarySearch(stored, 0, count, point.ts) < 0) {
+                missing.add(point);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        float[] storedValues = Arrays.copyOf(values, count);
+        int total = count + missing.size();
+        long[] mergedTs = new long[total];
+        float[] mergedValues = new float[total];
+        int a = 0;
+        int b = 0;
+        for (int out = 0; out < total; out++) {
+            if (b >= missing.size() || (a < count && stored[a] < missing.get(b).ts)) {
+                mergedTs[out] = stored[a];
+                mergedValues[out] = storedValues[a++];
+            } else {
+                mergedTs[out] = missing.get(b).ts;
+                mergedValues[out] = missing.get(b++).value;
+            }
+        }
+        // Re-encode; the rollups only need the new points (their aggregates ignore order)
+        deltaBytes = 0;
+        count = 0;
+        lastTs = 0;
+        for (int i = 0; i < total; i++) {
+            encodePoint(mergedTs[i], mergedValues[i]);
+        }
+        for (Point point : missing) {
+            addToRollups(point.ts, point.value);
+        }
+        return missing.size();
+    }
+
+    /**
+     * Records that a sync fetched [from, to]. Overlapping or adjacent windows
+     * merge; a disjoint newer one replaces the range (the gap was never
+     * fetched).
+     */
+    void markCovered(long from, long to) throws IOException {
+        if (from > to) {
+            return;
+        }
+        if (coveredFrom <= coveredTo && from <= coveredTo && to >= coveredFrom) {
+            coveredFrom = Math.min(coveredFrom, from);
+            coveredTo = Math.max(coveredTo, to);
+        } else if (coveredFrom > coveredTo || from > coveredTo) {
+            coveredFrom = from;
+            coveredTo = to;
+        } else {
+            return;
+        }
+        if (!file.exists()) {
+            rewrite();
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeLong(coveredFrom);
+            raf.writeLong(coveredTo);
+        }
+    }
+
+    /**
+     * Non-empty buckets of {@code granularity} from the one holding
+     * {@code fromMs} to the one holding {@code toMs}, oldest first.
+     */
+    List<Bucket> rollup(int granularity, long fromMs, long toMs) {
+        Rollup rollup = rollups[granularity];
+        List<Bucket> out = new ArrayList<>();
+        if (rollup.size == 0) {
+            return out;
+        }
+        long first = Math.max(bucketKey(granularity, fromMs), rollup.firstKey);
+        long last = Math.min(bucketKey(granularity, toMs), rollup.firstKey + rollup.size - 1);
+        for (long key = first; key <= last; key++) {
+            int i = (int) (key - rollup.firstKey);
+            if (rollup.counts[i] > 0) {
+                out.add(new Bucket(bucketLabel(granularity, key), firstDay(granularity, key), rollup.counts[i],
+                    rollup.sums[i], rollup.mins[i], rollup.maxs[i], rollup.lasts[i], rollup.lastTs[i]));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Raw points in [fromMs, toMs], oldest first, at most {@code limit}.
+     */
+    List<Point> points(long fromMs, long toMs, int limit) {
+        List<Point> out = new ArrayList<>();
+        if (count == 0 || fromMs > lastTs) {
+            return out;
+        }
+        int checkpoints = (count + CHECKPOINT - 1) / CHECKPOINT;
+        int c = Arrays.binarySearch(checkpointTs, 0, checkpoints, fromMs);
+        c = c >= 0 ? c : Math.max(0, -c - 2);
+        ByteBuffer in = ByteBuffer.wrap(deltas, checkpointOffsets[c], deltaBytes - checkpointOffsets[c]);
+        // The checkpoint offset is that of the delta leading to the checkpoint timestamp
+        long ts = checkpointTs[c] - peekVarint(in);
+        int index = c * CHECKPOINT;
+        while (index < count && out.size() < limit) {
+            ts += readVarint(in);
+            if (ts > toMs) {
+                break;
+            }
+            if (ts >= fromMs) {
+                out.add(new Point(ts, values[index]));
+            }
+            index++;
+        }
+        return out;
+    }
+
+    /**
+     * Bucket key of {@code ts} in the series time zone: epoch day, ISO week
+     * (Monday first) or year * 12 + month.
+     */
+    long bucketKey(int granularity, long ts) {
+        long day = Math.floorDiv(ts + zone.getOffset(ts), DAY_MS);
+        switch (granularity) {
+            case WEEK:
+                // 1970-01-01 was a Thursday
+                return Math.floorDiv(day + 3, 7);
+            case MONTH:
+                int[] civil = civilFromDays(day);
+                return civil[0] * 12L + civil[1] - 1;
+            default:
+                return day;
+        }
+    }
+
+    private static String bucketLabel(int granularity, long key) {
+        if (granularity == MONTH) {
+            return String.format(Locale.ROOT, "%04d-%02d", Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1);
+        }
+        int[] civil = civilFromDays(firstDay(granularity, key));
+        return String.format(Locale.ROOT, "%04d-%02d-%02d", civil[0], civil[1], civil[2]);
+    }
+
+    private static long firstDay(int granularity, long key) {
+        switch (granularity) {
+            case WEEK:
+                return key * 7 - 3;
+            case MONTH:
+                return daysFromCivil(Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1, 1);
+            default:
+                return key;
+        }
+    }
+
+    /**
+     * Proleptic Gregorian year, month, day of an epoch day (no java.time below
+     * API 26).
+     */
+    static int[] civilFromDays(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[]{(int) year, month, day};
+    }
+
+    /**
+     * Epoch day of a proleptic Gregorian date, the inverse of civilFromDays.
+     */
+    static long daysFromCivil(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private void addLast(long ts, float value) {
+        encodePoint(ts, value);
+        addToRollups(ts, value);
+    }
+
+    private void encodePoint(long ts, float value) {
+        if (count % CHECKPOINT == 0) {
+            int c = count / CHECKPOINT;
+            if (c == checkpointTs.length) {
+                checkpointTs = Arrays.copyOf(checkpointTs, c * 2);
+                checkpointOffsets = Arrays.copyOf(checkpointOffsets, c * 2);
+            }
+            checkpointTs[c] = ts;
+            checkpointOffsets[c] = deltaBytes;
+        }
+        if (deltaBytes + 10 > deltas.length) {
+            deltas = Arrays.copyOf(deltas, deltas.length * 2);
+        }
+        deltaBytes = writeVarint(deltas, deltaBytes, ts - (count > 0 ? lastTs : 0));
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = value;
+        lastTs = ts;
+    }
+
+    private void addToRollups(long ts, float value) {
+        for (int g = DAY; g <= MONTH; g++) {
+            rollups[g].add(bucketKey(g, ts), ts, value);
+        }
+    }
+
+    private long[] timestamps() {
+        long[] out = new long[count];
+        ByteBuffer in = ByteBuffer.wrap(deltas, 0, deltaBytes);
+        long ts = 0;
+        for (int i = 0; i < count; i++) {
+            ts += readVarint(in);
+            out[i] = ts;
+        }
+        return out;
+    }
+
+    private void appendToFile(List<Point> points) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(points.size() * 8);
+        long previous = count > 0 ? lastTs : 0;
+        byte[] varint = new byte[10];
+        for (Point point : points) {
+            addLast(point.ts, point.value);
+            bytes.write(varint, 0, writeVarint(varint, 0, point.ts - previous));
+            writeFloat(bytes, point.value);
+            previous = point.ts;
+        }
+        if (!file.exists()) {
+            rewrite();
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            bytes.writeTo(out);
+            out.getFD().sync();
+        }
+    }
+
+    private void rewrite() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeLong(coveredFrom);
+            out.writeLong(coveredTo);
+            ByteBuffer in = ByteBuffer.wrap(deltas, 0, deltaBytes);
+            for (int i = 0; i < count; i++) {
+                int start = in.position();
+                readVarint(in);
+                out.write(deltas, start, in.position() - start);
+                out.writeFloat(values[i]);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static void writeFloat(ByteArrayOutputStream out, float value) {
+        int bits = Float.floatToIntBits(value);
+        out.write(bits >>> 24);
+        out.write(bits >>> 16);
+        out.write(bits >>> 8);
+        out.write(bits);
+    }
+
+    private static int writeVarint(byte[] out, int at, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[at++] = (byte) value;
+        return at;
+    }
+
+    /**
+     * Unsigned LEB128; -1 when the buffer ends inside the number.
+     */
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private static long peekVarint(ByteBuffer in) {
+        int position = in.position();
+        long value = readVarint(in);
+        in.position(position);
+        return value;
+    }
+
+    private static int[] grow(int[] a, int capacity, int shift) {
+        int[] out = new int[capacity];
+        System.arraycopy(a, 0, out, shift, Math.min(a.length, capacity - shift));
+        return out;
+    }
+
+    private static long[] grow(long[] a, int capacity, int shift) {
+        long[] out = new long[capacity];
+        System.arraycopy(a, 0, out, shift, Math.min(a.length, capacity - shift));
+        return out;
+    }
+
+    private static float[] grow(float[] a, int capacity, int shift) {
+        float[] out = new float[capacity];
+        System.arraycopy(a, 0, out, shift, Math.min(a.length, capacity - shift));
+        return out;
+    }
+
+    private static double[] grow(double[] a, int capacity, int shift) {
+        double[] out = new double[capacity];
+        System.arraycopy(a, 0, out, shift, Math.min(a.length, capacity - shift));
+        return out;
+    }
+}
@@ -0,0 +1,538 @@
+package com.gymbro.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Health metrics synced from Google Fit, one HealthSeries per data type
+ * (steps, calories, weight...). A sync appends the fetched points and the
+ * series keeps only the new ones; HealthConnectService and the trend code
+ * then read day, week and month rollups instead of regrouping raw points.
+ *
+ * Buckets follow the device time zone, the same one the sync windows start
+ * from (local midnight), so a 7-day window is exactly 7 day buckets.
+ */
+@CapacitorPlugin(name = "HealthStore")
+public class HealthStorePlugin extends Plugin {
+
+    private static final String TAG = "HealthStorePlugin";
+    private static final String SERIES_DIR = "health_series";
+
+    // The type names the file names: steps, heartRate, bloodPressure...
+    private static final Pattern TYPE = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
+    // Rollup sums and means of float points are rounded to this many decimals
+    private static final int DEFAULT_ROLLUP_DECIMALS = 2;
+
+    private static final int DEFAULT_POINTS_LIMIT = 1000;
+    private static final int MAX_POINTS_LIMIT = 20000;
+
+    // HealthConnectService.startPeriodicSync's default: every 4 hours
+    private static final long DEFAULT_SYNC_MINUTES = 240;
+
+    // Process-wide: HealthSyncWorker writes its batches on it too, even with no plugin around
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroHealthStore");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Executor-confined, loaded on first use
+    private static final Map<String, HealthSeries> SERIES = new HashMap<>();
+
+    // The loaded instance, told about background syncs that added points
+    private static volatile HealthStorePlugin active;
+    // Executor-confined: its output buffer is reused by every encode
+    private final HealthToon toon = new HealthToon();
+
+    private interface StoreTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    public void load() {
+        active = this;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        // The executor outlives the plugin: it is shared with the sync worker
+        if (active == this) {
+            active = null;
+        }
+    }
+
+    private void submit(PluginCall call, StoreTask task) {
+        EXECUTOR.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private HealthSeries series(String type) throws IOException {
+        return series(getContext(), type);
+    }
+
+    /**
+     * The series of a type, loaded on first use. On EXECUTOR only.
+     */
+    static HealthSeries series(Context context, String type) throws IOException {
+        HealthSeries loaded = SERIES.get(type);
+        if (loaded == null) {
+            File dir = new File(context.getFilesDir(), SERIES_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            long start = System.nanoTime();
+            loaded = HealthSeries.load(type, TimeZone.getDefault(), new File(dir, type + ".bin"));
+            Log.d(TAG, "Loaded " + type + ": " + loaded.size() + " points in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+            SERIES.put(type, loaded);
+        }
+        return loaded;
+    }
+
+    private static int granularity(String name) {
+        switch (name) {
+            case "day":
+                return HealthSeries.DAY;
+            case "week":
+                return HealthSeries.WEEK;
+            case "month":
+                return HealthSeries.MONTH;
+            default:
+                return -1;
+        }
+    }
+
+    private static String type(PluginCall call) {
+        String type = call.getString("type");
+        if (type == null || !TYPE.matcher(type).matches()) {
+            call.reject("type is required (letters, digits, underscore)");
+            return null;
+        }
+        return type;
+    }
+
+    /**
+     * { type, timestamps, values, from?, to? }: points of one sync, timestamps
+     * in ms, in any order. from/to is the window the sync fetched, recorded so
+     * the next one can start where it ended. Resolves { added, count }.
+     */
+    @PluginMethod
+    public void appendPoints(PluginCall call) {
+        String type = type(call);
+        if (type == null) {
+            return;
+        }
+        JSArray timestamps = call.getArray("timestamps");
+        JSArray values = call.getArray("values");
+        if (timestamps == null || values == null || timestamps.length() != values.length()) {
+            call.reject("timestamps and values are required and must have the same length");
+            return;
+        }
+        Long from = call.getLong("from");
+        Long to = call.getLong("to");
+        submit(call, c -> {
+            int n = timestamps.length();
+            long[] ts = new long[n];
+            float[] vals = new float[n];
+            for (int i = 0; i < n; i++) {
+                ts[i] = timestamps.optLong(i);
+                vals[i] = (float) values.optDouble(i);
+            }
+            HealthSeries target = series(type);
+            int added = target.append(ts, vals, n);
+            if (from != null && to != null) {
+                target.markCovered(from, to);
+            }
+            JSObject ret = new JSObject();
+            ret.put("added", added);
+            ret.put("count", target.size());
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { type, granularity = 'day' | 'week' | 'month', from = 0, to = now }:
+     * the non-empty buckets, oldest first. Resolves { buckets: [{ key, count,
+     * sum, mean, min, max, last, lastTs }] }; key is yyyy-MM-dd (for weeks,
+     * the Monday) or yyyy-MM.
+     */
+    @PluginMethod
+    public void queryRollups(PluginCall call) {
+        String type = type(call);
+        if (type == null) {
+            return;
+        }
+        int granularity = granularity(call.getString("granularity", "day"));
+        if (granularity < 0) {
+            call.reject("granularity must be day, week or month");
+            return;
+        }
+        long from = call.getLong("from", 0L);
+        long to = call.getLong("to", System.currentTimeMillis());
+        submit(call, c -> {
+            JSONArray buckets = new JSONArray();
+            for (HealthSeries.Bucket bucket : series(type).rollup(granularity, from, to)) {
+                JSObject item = new JSObject();
+                item.put("key", bucket.key);
+                item.put("count", bucket.count);
+                item.put("sum", (Object) bucket.sum);
+                item.put("mean", (Object) bucket.mean());
+                item.put("min", (Object) bucket.min);
+                item.put("max", (Object) bucket.max);
+                item.put("last", (Object) bucket.last);
+                item.put("lastTs", bucket.lastTs);
+                buckets.put(item);
+            }
+            JSObject ret = new JSObject();
+            ret.put("buckets", buckets);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { type, from = 0, to = now, limit = 1000 }: raw points, oldest first.
+     * Resolves { timestamps, values }.
+     */
+    @PluginMethod
+    public void queryPoints(PluginCall call) {
+        String type = type(call);
+        if (type == null) {
+            return;
+        }
+        long from = call.getLong("from", 0L);
+        long to = call.getLong("to", System.currentTimeMillis());
+        int limit = Math.max(1, Math.min(call.getInt("limit", DEFAULT_POINTS_LIMIT), MAX_POINTS_LIMIT));
+        submit(call, c -> {
+            List<HealthSeries.Point> points = series(type).points(from, to, limit);
+            JSONArray timestamps = new JSONArray();
+            JSONArray values = new JSONArray();
+            for (HealthSeries.Point point : points) {
+                timestamps.put(point.ts);
+                values.put((double) point.value);
+            }
+            JSObject ret = new JSObject();
+            ret.put("timestamps", timestamps);
+            ret.put("values", values);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { type }: resolves { count, firstTs, lastTs, coveredFrom, coveredTo,
+     * bytesPerPoint }; the covered fields are null before the first sync.
+     */
+    @PluginMethod
+    public void getSeriesInfo(PluginCall call) {
+        String type = type(call);
+        if (type == null) {
+            return;
+        }
+        submit(call, c -> {
+            HealthSeries target = series(type);
+            boolean covered = target.coveredFrom() <= target.coveredTo();
+            JSObject ret = new JSObject();
+            ret.put("count", target.size());
+            ret.put("firstTs", target.firstTs());
+            ret.put("lastTs", target.lastTs());
+            ret.put("coveredFrom", covered ? (Object) target.coveredFrom() : JSONObject.NULL);
+            ret.put("coveredTo", covered ? (Object) target.coveredTo() : JSONObject.NULL);
+            ret.put("bytesPerPoint", (Object) target.bytesPerPoint());
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * TOON text of a series, byte-compatible with HealthTOONEncoder.encode.
+     * Either { typeCode, unit, timestamps, values } with timestamps in ms (the
+     * day is taken in UTC, as the JS does), or { typeCode, unit, type,
+     * granularity = 'day', aggregate = 'sum', from, to, decimals = 2 } to
+     * encode a stored series' rollups without sending its points over the
+     * bridge; aggregate is sum, mean, min, max or last. compact = true writes
+     * the series as one line with day deltas. Resolves { text, records }.
+     */
+    @PluginMethod
+    public void encodeSeries(PluginCall call) {
+        String typeCode = call.getString("typeCode");
+        String unit = call.getString("unit", "");
+        if (typeCode == null || typeCode.isEmpty()) {
+            call.reject("typeCode is required");
+            return;
+        }
+        boolean compact = call.getBoolean("compact", false);
+        JSArray timestamps = call.getArray("timestamps");
+        JSArray values = call.getArray("values");
+        if (timestamps != null || values != null) {
+            if (timestamps == null || values == null || timestamps.length() != values.length()) {
+                call.reject("timestamps and values must have the same length");
+                return;
+            }
+            int decimals = call.getInt("decimals", -1);
+            submit(call, c -> {
+                int n = timestamps.length();
+                long[] days = new long[n];
+                double[] vals = new double[n];
+                for (int i = 0; i < n; i++) {
+                    days[i] = Math.floorDiv(timestamps.optLong(i), HealthSeries.DAY_MS);
+                    vals[i] = round(values.optDouble(i), decimals);
+                }
+                resolveToon(c, compact ? encodeCompactSorted(typeCode, unit, days, vals)
+                    : toon.encode(typeCode, unit, days, vals, n), n);
+            });
+            return;
+        }
+
+        String type = type(call);
+        if (type == null) {
+            return;
+        }
+        int granularity = granularity(call.getString("granularity", "day"));
+        String aggregate = call.getString("aggregate", "sum");
+        if (granularity < 0 || !aggregate.matches("sum|mean|min|max|last")) {
+            call.reject("granularity must be day, week or month; aggregate sum, mean, min, max or last");
+            return;
+        }
+        long from = call.getLong("from", 0L);
+        long to = call.getLong("to", System.currentTimeMillis());
+        int decimals = call.getInt("decimals", DEFAULT_ROLLUP_DECIMALS);
+        submit(call, c -> {
+            List<HealthSeries.Bucket> buckets = series(type).rollup(granularity, from, to);
+            int n = buckets.size();
+            long[] days = new long[n];
+            double[] vals = new double[n];
+            for (int i = 0; i < n; i++) {
+                HealthSeries.Bucket bucket = buckets.get(i);
+                days[i] = bucket.firstDay;
+                vals[i] = round(aggregate(bucket, aggregate), decimals);
+            }
+            resolveToon(c, compact ? toon.encodeCompact(typeCode, unit, days, vals, n)
+                : toon.encode(typeCode, unit, days, vals, n), n);
+        });
+    }
+
+    /**
+     * { text }: every record of a TOON payload, plain lines and compact
+     * series alike. Resolves columns { typeCodes, values, timestamps, units,
+     * records }; a value that does not parse is null, timestamps are the
+     * TOON strings (yyyyMMdd, or a period such as 7d).
+     */
+    @PluginMethod
+    public void decodeSeries(PluginCall call) {
+        String text = call.getString("text");
+        if (text == null) {
+            call.reject("text is required");
+            return;
+        }
+        submit(call, c -> {
+            JSONArray typeCodes = new JSONArray();
+            JSONArray values = new JSONArray();
+            JSONArray stamps = new JSONArray();
+            JSONArray units = new JSONArray();
+            HealthToon.decode(text, (typeCode, value, timestamp, unit) -> {
+                typeCodes.put(typeCode);
+                values.put(Double.isNaN(value) || Double.isInfinite(value) ? JSONObject.NULL : (Object) value);
+                stamps.put(timestamp);
+                units.put(unit);
+            });
+            JSObject ret = new JSObject();
+            ret.put("typeCodes", typeCodes);
+            ret.put("values", values);
+            ret.put("timestamps", stamps);
+            ret.put("units", units);
+            ret.put("records", typeCodes.length());
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * { intervalMinutes = 240, accessToken, tokenExpiry, types: [{ type,
+     * dataSourceId, field: 'intVal' | 'fpVal' }], windowDays = 7, apiBase? }:
+     * schedules HealthSyncWorker (at least every 15 minutes, as WorkManager
+     * allows) over these series. apiBase defaults to Google Fit; a local
+     * server can stand in for it. Scheduling again updates the settings.
+     */
+    @PluginMethod
+    public void schedulePeriodicSync(PluginCall call) {
+        JSArray types = call.getArray("types");
+        if (types == null || types.length() == 0) {
+            call.reject("types is required");
+            return;
+        }
+        for (int i = 0; i < types.length(); i++) {
+            JSONObject item = types.optJSONObject(i);
+            if (item == null || !TYPE.matcher(item.optString("type")).matches()
+                    || item.optString("dataSourceId").isEmpty()) {
+                call.reject("each type needs a type name and a dataSourceId");
+                return;
+            }
+        }
+        long intervalMinutes = call.getLong("intervalMinutes", DEFAULT_SYNC_MINUTES);
+        String apiBase = call.getString("apiBase", HealthSyncWorker.DEFAULT_API_BASE);
+        int windowDays = call.getInt("windowDays", HealthSyncWorker.DEFAULT_WINDOW_DAYS);
+        submit(call, c -> {
+            SharedPreferences.Editor editor = syncPrefs().edit()
+                .putString(HealthSyncWorker.KEY_TYPES, types.toString())
+                .putString(HealthSyncWorker.KEY_API_BASE, apiBase)
+                .putInt(HealthSyncWorker.KEY_WINDOW_DAYS, windowDays);
+            putToken(editor, c).commit();
+            HealthSyncWorker.schedule(getContext(), intervalMinutes);
+            c.resolve();
+        });
+    }
+
+    /**
+     * { accessToken, tokenExpiry }: the token the next background sync uses.
+     */
+    @PluginMethod
+    public void updateSyncToken(PluginCall call) {
+        if (call.getString("accessToken") == null) {
+            call.reject("accessToken is required");
+            return;
+        }
+        submit(call, c -> {
+            putToken(syncPrefs().edit(), c).commit();
+            c.resolve();
+        });
+    }
+
+    /**
+     * Stops the background sync and forgets its token; the stored series stay.
+     */
+    @PluginMethod
+    public void cancelPeriodicSync(PluginCall call) {
+        submit(call, c -> {
+            HealthSyncWorker.cancel(getContext());
+            syncPrefs().edit().clear().commit();
+            c.resolve();
+        });
+    }
+
+    /**
+     * Resolves { lastRunAt, lastSyncAt, lastAdded, lastError }: what the last
+     * background sync did while the app was away. lastError is needsToken,
+     * network, partial, store or null.
+     */
+    @PluginMethod
+    public void getSyncStatus(PluginCall call) {
+        submit(call, c -> {
+            SharedPreferences prefs = syncPrefs();
+            long lastRun = prefs.getLong(HealthSyncWorker.KEY_LAST_RUN, 0);
+            long lastSync = prefs.getLong(HealthSyncWorker.KEY_LAST_SYNC, 0);
+            String lastError = prefs.getString(HealthSyncWorker.KEY_LAST_ERROR, null);
+            JSObject ret = new JSObject();
+            ret.put("lastRunAt", lastRun > 0 ? (Object) lastRun : JSONObject.NULL);
+            ret.put("lastSyncAt", lastSync > 0 ? (Object) lastSync : JSONObject.NULL);
+            ret.put("lastAdded", prefs.getInt(HealthSyncWorker.KEY_LAST_ADDED, 0));
+            ret.put("lastError", lastError != null ? lastError : JSONObject.NULL);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * From HealthSyncWorker after a sync that stored new points: fires
+     * healthDataSynced { added, types: { type: added }, syncedAt } if the
+     * WebView is up. Otherwise getSyncStatus tells it on the next start.
+     */
+    static void notifySynced(HealthSync.Report report, long syncedAt) {
+        HealthStorePlugin plugin = active;
+        if (plugin == null) {
+            return;
+        }
+        JSObject types = new JSObject();
+        for (HealthSync.Batch batch : report.batches) {
+            if (batch.added > 0) {
+                types.put(batch.type, batch.added);
+            }
+        }
+        JSObject data = new JSObject();
+        data.put("added", report.added());
+        data.put("types", types);
+        data.put("syncedAt", syncedAt);
+        plugin.notifyListeners("healthDataSynced", data);
+    }
+
+    private SharedPreferences syncPrefs() {
+        return getContext().getSharedPreferences(HealthSyncWorker.PREFS, Context.MODE_PRIVATE);
+    }
+
+    private static SharedPreferences.Editor putToken(SharedPreferences.Editor editor, PluginCall call) {
+        String token = call.getString("accessToken");
+        if (token != null) {
+            editor.putString(HealthSyncWorker.KEY_TOKEN, token)
+                .putLong(HealthSyncWorker.KEY_TOKEN_EXPIRY, call.getLong("tokenExpiry", 0L));
+        }
+        return editor;
+    }
+
+    private String encodeCompactSorted(String typeCode, String unit, long[] days, double[] values) {
+        int n = days.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(days[a], days[b]));
+        long[] sortedDays = new long[n];
+        double[] sortedValues = new double[n];
+        for (int i = 0; i < n; i++) {
+            sortedDays[i] = days[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        return toon.encodeCompact(typeCode, unit, sortedDays, sortedValues, n);
+    }
+
+    private static void resolveToon(PluginCall call, String text, int records) {
+        JSObject ret = new JSObject();
+        ret.put("text", text);
+        ret.put("records", records);
+        call.resolve(ret);
+    }
+
+    private static double aggregate(HealthSeries.Bucket bucket, String aggregate) {
+        switch (aggregate) {
+            case "mean":
+                return bucket.mean();
+            case "min":
+                return bucket.min;
+            case "max":
+                return bucket.max;
+            case "last":
+                return bucket.last;
+            default:
+                return bucket.sum;
+        }
+    }
+
+    // Math.round(value * 10^decimals) / 10^decimals, as the JS rounds
+    private static double round(double value, int decimals) {
+        if (decimals < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+        double scale = Math.pow(10, decimals);
+        return Math.floor(value * scale + 0.5) / scale;
+    }
+}
@@ -0,0 +1,257 @@
+package com.gymbro.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One background health sync, as HealthSyncWorker runs it. syncAllData in
+ * HealthConnectService fires its fourteen fetches at once from a JS timer
+ * that only ticks while the WebView lives; here the series kept in the
+ * HealthStore are fetched one type at a time, each only from where its last
+ * sync ended (minus an overlap for intervals still open), and every new point
+ * is written to the store in one batch at the end.
+ *
+ * The remote side is a Source, so tests (or a local stand-in server behind
+ * GoogleFit's base URL) can drive it. No Android types beyond org.json:
+ * tested on the JVM.
+ */
+final class HealthSync {
+
+    /**
+     * A synced series: the store type and how to read it from Google Fit.
+     */
+    static final class Type {
+        final String name;
+        final String dataSourceId;
+        // intVal or fpVal of the point's first value, as the JS readValue callbacks
+        final String field;
+
+        Type(String name, String dataSourceId, String field) {
+            this.name = name;
+            this.dataSourceId = dataSourceId;
+            this.field = field;
+        }
+    }
+
+    /**
+     * The points one fetch returned for a type, and the window it covered.
+     */
+    static final class Batch {
+        final String type;
+        final long from;
+        final long to;
+        long[] ts = new long[64];
+        float[] values = new float[64];
+        int size;
+        // Set by Store.write: points the series did not have yet
+        int added;
+
+        Batch(String type, long from, long to) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+        }
+
+        void add(long timestamp, float value) {
+            if (size == ts.length) {
+                ts = Arrays.copyOf(ts, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ts[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    interface Source {
+        /**
+         * Points of {@code type} in [fromMs, toMs]. Throws AuthException when
+         * the credentials are rejected, IOException for anything else.
+         */
+        Batch fetch(Type type, long fromMs, long toMs) throws IOException;
+    }
+
+    interface Store {
+        /**
+         * Per type, {coveredFrom, coveredTo} of its series, or null before
+         * its first sync.
+         */
+        long[][] covered(String[] types) throws IOException;
+
+        /**
+         * Appends every batch and records its window as covered, all in one
+         * go; sets each batch's added.
+         */
+        void write(List<Batch> batches) throws IOException;
+    }
+
+    static final class AuthException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AuthException(String message) {
+            super(message);
+        }
+    }
+
+    static final class Report {
+        final List<Batch> batches = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+        boolean authFailed;
+
+        int added() {
+            int added = 0;
+            for (Batch batch : batches) {
+                added += batch.added;
+            }
+            return added;
+        }
+    }
+
+    private HealthSync() {
+    }
+
+    /**
+     * Fetches every type since its last sync (windowStart at the earliest)
+     * and writes what came back. A type that fails is reported and skipped;
+     * rejected credentials stop the sync, as every later fetch would fail too.
+     */
+    static Report run(Source source, Store store, Type[] types, long windowStart, long now, long overlapMs)
+            throws IOException {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].name;
+        }
+        long[][] covered = store.covered(names);
+
+        Report report = new Report();
+        for (int i = 0; i < types.length; i++) {
+            // As HealthConnectService.fetchDailySums: resume only if the stored range reaches the window
+            long from = windowStart;
+            long[] range = covered[i];
+            if (range != null && range[0] <= windowStart && range[1] >= windowStart) {
+                from = Math.max(windowStart, Math.min(now, range[1] - overlapMs));
+            }
+            try {
+                report.batches.add(source.fetch(types[i], from, now));
+            } catch (AuthException e) {
+                report.authFailed = true;
+                report.failed.add(types[i].name);
+                break;
+            } catch (IOException e) {
+                report.failed.add(types[i].name);
+            }
+        }
+        if (!report.batches.isEmpty()) {
+            store.write(report.batches);
+        }
+        return report;
+    }
+
+    /**
+     * The Google Fit datasets endpoint fetchGoogleFitData calls, against a
+     * configurable base URL.
+     */
+    static final class GoogleFit implements Source {
+        private static final int TIMEOUT_MS = 30_000;
+
+        private final String apiBase;
+        private final String accessToken;
+
+        GoogleFit(String apiBase, String accessToken) {
+            this.apiBase = apiBase;
+            this.accessToken = accessToken;
+        }
+
+        @Override
+        public Batch fetch(Type type, long fromMs, long toMs) throws IOException {
+            URL url = new URL(apiBase + "/dataSources/" + type.dataSourceId + "/datasets/"
+                + fromMs * 1_000_000L + "-" + toMs * 1_000_000L);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setConnectTimeout(TIMEOUT_MS);
+                connection.setReadTimeout(TIMEOUT_MS);
+                connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+                int status = connection.getResponseCode();
+                if (status == 401) {
+                    throw new AuthException("Google Fit rejected the token");
+                }
+                if (status != 200) {
+                    // 403 is also a data type the account never authorized: only that type fails
+                    throw new IOException("Google Fit API error (" + status + ") for " + type.name);
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    return parseDataset(type, fromMs, toMs, readAll(in));
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Points of a datasets response: { point: [{ startTimeNanos,
+     * endTimeNanos, value: [{ intVal | fpVal }] }] }. Timestamped at the end
+     * of the interval; a point with no time is skipped, a missing value
+     * reads 0, as in the JS.
+     */
+    static Batch parseDataset(Type type, long fromMs, long toMs, String json) throws IOException {
+        Batch batch = new Batch(type.name, fromMs, toMs);
+        JSONArray points;
+        try {
+            points = new JSONObject(json).optJSONArray("point");
+        } catch (JSONException e) {
+            throw new IOException("Unexpected dataset response", e);
+        }
+        if (points == null) {
+            return batch;
+        }
+        for (int i = 0; i < points.length(); i++) {
+            JSONObject point = points.optJSONObject(i);
+            if (point == null) {
+                continue;
+            }
+            long nanos = nanos(point, "endTimeNanos");
+            if (nanos <= 0) {
+                nanos = nanos(point, "startTimeNanos");
+            }
+            if (nanos <= 0) {
+                continue;
+            }
+            JSONArray values = point.optJSONArray("value");
+            JSONObject first = values != null ? values.optJSONObject(0) : null;
+            double value = first != null ? first.optDouble(type.field, 0) : 0;
+            batch.add(nanos / 1_000_000L, (float) value);
+        }
+        return batch;
+    }
+
+    // Nanosecond times come as strings; parsed as long, a double would round them
+    private static long nanos(JSONObject point, String key) {
+        try {
+            return Long.parseLong(point.optString(key, "0"));
+        } catch (NumberFormatException e) {
+            // Skipped like a missing time
+            return 0;
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), Charset.forName("UTF-8"));
+    }
+}
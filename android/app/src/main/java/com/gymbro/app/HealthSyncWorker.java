@@ -0,0 +1,205 @@
+package com.gymbro.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Periodic health sync, scheduled by HealthStorePlugin.schedulePeriodicSync
+ * in place of HealthConnectService's setInterval: WorkManager runs it with
+ * the network up and the battery not low, whether or not the WebView is
+ * alive. Each run is one HealthSync over the configured series types.
+ *
+ * The access token comes from the web side (it refreshes it through the
+ * Firebase function); without a valid one the run is skipped and recorded as
+ * needsToken until the app pushes a new one.
+ */
+public class HealthSyncWorker extends Worker {
+
+    private static final String TAG = "HealthSyncWorker";
+    private static final String WORK_NAME = "health-sync";
+
+    static final String PREFS = "health_sync";
+    static final String KEY_TOKEN = "accessToken";
+    static final String KEY_TOKEN_EXPIRY = "tokenExpiry";
+    static final String KEY_API_BASE = "apiBase";
+    static final String KEY_TYPES = "types";
+    static final String KEY_WINDOW_DAYS = "windowDays";
+    static final String KEY_LAST_RUN = "lastRunAt";
+    static final String KEY_LAST_SYNC = "lastSyncAt";
+    static final String KEY_LAST_ADDED = "lastAdded";
+    static final String KEY_LAST_ERROR = "lastError";
+
+    static final String DEFAULT_API_BASE = "https://www.googleapis.com/fitness/v1/users/me";
+    // As syncAllData: the weekly metrics start 7 local days back
+    static final int DEFAULT_WINDOW_DAYS = 7;
+    // Re-fetch the last hour, where intervals may still be open
+    private static final long OVERLAP_MS = 60 * 60 * 1000L;
+    // Left on a token, a run would not finish its fetches
+    private static final long TOKEN_MARGIN_MS = 2 * 60 * 1000L;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public HealthSyncWorker(Context context, WorkerParameters params) {
+        super(context, params);
+    }
+
+    static void schedule(Context context, long intervalMinutes) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .setRequiresBatteryNotLow(true)
+            .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(HealthSyncWorker.class,
+                Math.max(intervalMinutes, TimeUnit.MILLISECONDS.toMinutes(PeriodicWorkRequest.MIN_PERIODIC_INTERVAL_MILLIS)),
+                TimeUnit.MINUTES)
+            .setConstraints(constraints)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.MINUTES)
+            .build();
+        // UPDATE keeps the schedule's phase when only the interval or constraints change
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.UPDATE, request);
+    }
+
+    static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+    }
+
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        prefs.edit().putLong(KEY_LAST_RUN, now).apply();
+
+        String token = prefs.getString(KEY_TOKEN, null);
+        if (token == null || prefs.getLong(KEY_TOKEN_EXPIRY, 0) - TOKEN_MARGIN_MS < now) {
+            prefs.edit().putString(KEY_LAST_ERROR, "needsToken").apply();
+            return Result.success();
+        }
+        HealthSync.Type[] types;
+        try {
+            types = types(prefs.getString(KEY_TYPES, "[]"));
+        } catch (JSONException e) {
+            Log.e(TAG, "Bad sync types", e);
+            return Result.failure();
+        }
+        if (types.length == 0) {
+            return Result.success();
+        }
+
+        Calendar windowStart = Calendar.getInstance();
+        windowStart.setTimeInMillis(now);
+        windowStart.add(Calendar.DAY_OF_MONTH, -prefs.getInt(KEY_WINDOW_DAYS, DEFAULT_WINDOW_DAYS));
+        windowStart.set(Calendar.HOUR_OF_DAY, 0);
+        windowStart.set(Calendar.MINUTE, 0);
+        windowStart.set(Calendar.SECOND, 0);
+        windowStart.set(Calendar.MILLISECOND, 0);
+
+        HealthSync.Source source = new HealthSync.GoogleFit(prefs.getString(KEY_API_BASE, DEFAULT_API_BASE), token);
+        HealthSync.Report report;
+        try {
+            report = HealthSync.run(source, new SeriesStore(context), types, windowStart.getTimeInMillis(), now, OVERLAP_MS);
+        } catch (IOException e) {
+            Log.e(TAG, "Health sync failed", e);
+            prefs.edit().putString(KEY_LAST_ERROR, "store").apply();
+            return getRunAttemptCount() < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+        }
+
+        int added = report.added();
+        Log.d(TAG, "Health sync: " + added + " new points, " + report.failed.size() + " types failed");
+        if (report.authFailed) {
+            // The token is dead: nothing to retry until the app sends a fresh one
+            prefs.edit().remove(KEY_TOKEN).putString(KEY_LAST_ERROR, "needsToken").apply();
+        } else if (report.batches.isEmpty()) {
+            prefs.edit().putString(KEY_LAST_ERROR, "network").apply();
+            return getRunAttemptCount() < MAX_ATTEMPTS ? Result.retry() : Result.success();
+        } else {
+            prefs.edit()
+                .putLong(KEY_LAST_SYNC, now)
+                .putInt(KEY_LAST_ADDED, added)
+                .putString(KEY_LAST_ERROR, report.failed.isEmpty() ? null : "partial")
+                .apply();
+        }
+        if (added > 0) {
+            HealthStorePlugin.notifySynced(report, now);
+        }
+        return Result.success();
+    }
+
+    // [{ type, dataSourceId, field }] as HealthConnectService sends them
+    private static HealthSync.Type[] types(String json) throws JSONException {
+        JSONArray array = new JSONArray(json);
+        HealthSync.Type[] types = new HealthSync.Type[array.length()];
+        for (int i = 0; i < types.length; i++) {
+            JSONObject item = array.getJSONObject(i);
+            types[i] = new HealthSync.Type(item.getString("type"), item.getString("dataSourceId"),
+                item.optString("field", "intVal"));
+        }
+        return types;
+    }
+
+    /**
+     * The HealthStore series, touched only on the store executor, the same
+     * thread the plugin calls run on.
+     */
+    private static final class SeriesStore implements HealthSync.Store {
+        private final Context context;
+
+        SeriesStore(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public long[][] covered(String[] types) throws IOException {
+            return await(() -> {
+                long[][] covered = new long[types.length][];
+                for (int i = 0; i < types.length; i++) {
+                    HealthSeries series = HealthStorePlugin.series(context, types[i]);
+                    if (series.coveredFrom() <= series.coveredTo()) {
+                        covered[i] = new long[]{series.coveredFrom(), series.coveredTo()};
+                    }
+                }
+                return covered;
+            });
+        }
+
+        @Override
+        public void write(List<HealthSync.Batch> batches) throws IOException {
+            await(() -> {
+                for (HealthSync.Batch batch : batches) {
+                    HealthSeries series = HealthStorePlugin.series(context, batch.type);
+                    batch.added = series.append(batch.ts, batch.values, batch.size);
+                    series.markCovered(batch.from, batch.to);
+                }
+                return null;
+            });
+        }
+
+        private static <T> T await(Callable<T> task) throws IOException {
+            try {
+                return HealthStorePlugin.EXECUTOR.submit(task).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+    }
+}
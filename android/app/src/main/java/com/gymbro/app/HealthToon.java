@@ -0,0 +1,320 @@
+package com.gymbro.app;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * TOON codec for health series, byte-compatible with HealthTOONEncoder:
+ * a record is {@code typeCode|value|yyyyMMdd|unit}, with the value printed
+ * the way JS prints a number. encode() writes one record per line;
+ * encodeCompact() writes a whole series as one line,
+ *
+ * <pre>@typeCode|unit|yyyyMMdd|v0;d1:v1;d2:v2...</pre>
+ *
+ * where each dN is the number of days since the previous record. decode()
+ * reads both forms, so a payload can mix them.
+ *
+ * Records are written into one StringBuilder that is reused across calls:
+ * an instance is not thread-safe (HealthStorePlugin confines it to its
+ * executor). Android-free so it runs in JVM tests.
+ */
+final class HealthToon {
+
+    static final char COMPACT = '@';
+
+    interface Visitor {
+        /**
+         * timestamp is the TOON timestamp as written: yyyyMMdd, or a period
+         * such as 7d in aggregate records.
+         */
+        void record(String typeCode, double value, String timestamp, String unit);
+    }
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /**
+     * One record per point, newline-separated, in the given order; each line
+     * is what HealthTOONEncoder.encode returns for the same point.
+     */
+    String encode(String typeCode, String unit, long[] epochDays, double[] values, int n) {
+        out.setLength(0);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            out.append(typeCode).append('|');
+            appendNumber(out, values[i]);
+            out.append('|');
+            appendDay(out, epochDays[i]);
+            out.append('|').append(unit);
+        }
+        return out.toString();
+    }
+
+    /**
+     * The series as one compact line; epochDays must be ascending.
+     */
+    String encodeCompact(String typeCode, String unit, long[] epochDays, double[] values, int n) {
+        out.setLength(0);
+        if (n == 0) {
+            return "";
+        }
+        out.append(COMPACT).append(typeCode).append('|').append(unit).append('|');
+        appendDay(out, epochDays[0]);
+        out.append('|');
+        appendNumber(out, values[0]);
+        for (int i = 1; i < n; i++) {
+            if (epochDays[i] < epochDays[i - 1]) {
+                throw new IllegalArgumentException("Compact series must be sorted by day");
+            }
+            out.append(';').append(epochDays[i] - epochDays[i - 1]).append(':');
+            appendNumber(out, values[i]);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Streams every record of {@code text} to the visitor: plain records and
+     * compact series, one per line. Blank lines and lines that are neither
+     * are skipped. Values that do not parse decode as NaN.
+     */
+    static void decode(String text, Visitor visitor) {
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd > start) {
+                if (text.charAt(start) == COMPACT) {
+                    decodeCompact(text, start + 1, lineEnd, visitor);
+                } else {
+                    decodeRecord(text, start, lineEnd, visitor);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    private static void decodeRecord(String text, int start, int end, Visitor visitor) {
+        int p1 = text.indexOf('|', start);
+        int p2 = p1 < 0 ? -1 : text.indexOf('|', p1 + 1);
+        int p3 = p2 < 0 ? -1 : text.indexOf('|', p2 + 1);
+        if (p3 < 0 || p3 >= end) {
+            return;
+        }
+        // As split('|') with destructuring: a fifth field is dropped
+        int p4 = text.indexOf('|', p3 + 1);
+        int unitEnd = p4 < 0 || p4 > end ? end : p4;
+        visitor.record(text.substring(start, p1), parseNumber(text, p1 + 1, p2),
+            text.substring(p2 + 1, p3), text.substring(p3 + 1, unitEnd));
+    }
+
+    private static void decodeCompact(String text, int start, int end, Visitor visitor) {
+        int p1 = text.indexOf('|', start);
+        int p2 = p1 < 0 ? -1 : text.indexOf('|', p1 + 1);
+        int p3 = p2 < 0 ? -1 : text.indexOf('|', p2 + 1);
+        if (p3 < 0 || p3 >= end || p3 - p2 != 9) {
+            return;
+        }
+        String typeCode = text.substring(start, p1);
+        String unit = text.substring(p1 + 1, p2);
+        long day = parseDay(text, p2 + 1);
+        if (day == Long.MIN_VALUE) {
+            return;
+        }
+        StringBuilder stamp = new StringBuilder(8);
+        int at = p3 + 1;
+        boolean first = true;
+        while (at <= end) {
+            int next = text.indexOf(';', at);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            int valueStart = at;
+            if (!first) {
+                int colon = text.indexOf(':', at);
+                if (colon < 0 || colon > next) {
+                    return;
+                }
+                long delta = (long) parseNumber(text, at, colon);
+                day += delta;
+                valueStart = colon + 1;
+            }
+            stamp.setLength(0);
+            appendDay(stamp, day);
+            visitor.record(typeCode, parseNumber(text, valueStart, next), stamp.toString(), unit);
+            first = false;
+            at = next + 1;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a yyyyMMdd timestamp at {@code at}, or
+     * Long.MIN_VALUE when it is not one.
+     */
+    static long parseDay(String text, int at) {
+        if (at + 8 > text.length()) {
+            return Long.MIN_VALUE;
+        }
+        int value = 0;
+        for (int i = at; i < at + 8; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return HealthSeries.daysFromCivil(value / 10000, value / 100 % 100, value % 100);
+    }
+
+    static void appendDay(StringBuilder out, long epochDay) {
+        int[] civil = HealthSeries.civilFromDays(epochDay);
+        appendPadded(out, civil[0], 4);
+        appendPadded(out, civil[1], 2);
+        appendPadded(out, civil[2], 2);
+    }
+
+    private static void appendPadded(StringBuilder out, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        out.append(value);
+    }
+
+    /**
+     * Appends {@code value} as JS's Number.prototype.toString would: integers
+     * without a fraction, plain decimals between 1e-6 and 1e21, exponent
+     * notation (1e-7, 1.5e+21) outside.
+     */
+    static void appendNumber(StringBuilder out, double value) {
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+            return;
+        }
+        if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        if (value == 0) {
+            // -0 prints as 0
+            out.append('0');
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs < 1e21 && abs >= 1e-6 && value == Math.rint(value) && abs < 9.007199254740992e15) {
+            out.append((long) value);
+            return;
+        }
+        String s = Double.toString(value);
+        int e = s.indexOf('E');
+        int mantissaEnd = e < 0 ? s.length() : e;
+        int exponent = e < 0 ? 0 : Integer.parseInt(s.substring(e + 1));
+        // Mantissa digits without sign, point and trailing zeros
+        int signLength = value < 0 ? 1 : 0;
+        int point = s.indexOf('.');
+        StringBuilder digits = new StringBuilder(20);
+        digits.append(s, signLength, point).append(s, point + 1, mantissaEnd);
+        int intDigits = point - signLength + exponent;
+        while (digits.length() > 1 && digits.charAt(digits.length() - 1) == '0') {
+            digits.setLength(digits.length() - 1);
+        }
+        // Leading zeros of values below 1 ("0.05" gives digits "005")
+        while (digits.length() > 1 && digits.charAt(0) == '0') {
+            digits.deleteCharAt(0);
+            intDigits--;
+        }
+        if (digits.length() >= 16) {
+            // Double.toString is not always the shortest round-trip form below
+            // API 33 / JDK 19; JS is, so look for fewer digits
+            BigDecimal exact = new BigDecimal(abs);
+            for (int precision = 1; precision < digits.length(); precision++) {
+                BigDecimal rounded = exact.round(new MathContext(precision, RoundingMode.HALF_EVEN));
+                if (rounded.doubleValue() == abs) {
+                    intDigits = rounded.precision() - rounded.scale();
+                    digits.setLength(0);
+                    digits.append(rounded.unscaledValue());
+                    while (digits.length() > 1 && digits.charAt(digits.length() - 1) == '0') {
+                        digits.setLength(digits.length() - 1);
+                    }
+                    break;
+                }
+            }
+        }
+        if (value < 0) {
+            out.append('-');
+        }
+        if (abs >= 1e21 || abs < 1e-6) {
+            out.append(digits.charAt(0));
+            if (digits.length() > 1) {
+                out.append('.').append(digits, 1, digits.length());
+            }
+            int exp = intDigits - 1;
+            out.append('e').append(exp >= 0 ? "+" : "").append(exp);
+        } else if (intDigits <= 0) {
+            out.append("0.");
+            for (int i = intDigits; i < 0; i++) {
+                out.append('0');
+            }
+            out.append(digits);
+        } else if (intDigits >= digits.length()) {
+            out.append(digits);
+            for (int i = digits.length(); i < intDigits; i++) {
+                out.append('0');
+            }
+        } else {
+            out.append(digits, 0, intDigits).append('.').append(digits, intDigits, digits.length());
+        }
+    }
+
+    /**
+     * parseFloat over text[start, end): the longest numeric prefix, NaN when
+     * there is none.
+     */
+    static double parseNumber(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        int at = start;
+        if (at < end && (text.charAt(at) == '-' || text.charAt(at) == '+')) {
+            at++;
+        }
+        if (text.startsWith("Infinity", at) && at + 8 <= end) {
+            return text.charAt(start) == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        int digits = 0;
+        while (at < end && Character.isDigit(text.charAt(at))) {
+            at++;
+            digits++;
+        }
+        if (at < end && text.charAt(at) == '.') {
+            at++;
+            while (at < end && Character.isDigit(text.charAt(at))) {
+                at++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (at < end && (text.charAt(at) == 'e' || text.charAt(at) == 'E')) {
+            int exp = at + 1;
+            if (exp < end && (text.charAt(exp) == '-' || text.charAt(exp) == '+')) {
+                exp++;
+            }
+            int expDigits = exp;
+            while (exp < end && Character.isDigit(text.charAt(exp))) {
+                exp++;
+            }
+            if (exp > expDigits) {
+                at = exp;
+            }
+        }
+        return Double.parseDouble(text.substring(start, at));
+    }
+}
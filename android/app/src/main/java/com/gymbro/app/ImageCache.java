@@ -0,0 +1,119 @@
+package com.gymbro.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Size-bounded directory of encoded images for ImagePipelinePlugin: the
+ * downsampled upload copies and the thumbnails of the body-progress gallery.
+ * Entries are named after a hash of what they were made from, so the same
+ * photo at the same size is encoded once; a hit refreshes the file's
+ * modification time and the oldest files go first once the directory is over
+ * its budget.
+ *
+ * Writers fill tmpFile() and hand it to commit(), so a reader never sees a
+ * half-written image. Plain Java, no Android types: tested on the JVM. Not
+ * thread-safe; the plugin confines it to its executor.
+ */
+final class ImageCache {
+
+    private final File dir;
+    private final long maxBytes;
+    private int tmpCounter;
+
+    ImageCache(File dir, long maxBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        // Left behind by a crash mid-encode
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].getName().endsWith(".tmp")) {
+                files[i].delete();
+            }
+        }
+    }
+
+    /**
+     * Cache key of a source (URI, URL) and the parameters it was encoded
+     * with.
+     */
+    static String key(String source, String params) {
+        return Long.toHexString(SyncOutbox.hash(source + "|" + params));
+    }
+
+    /**
+     * The cached image for {@code key}, or null.
+     */
+    File get(String key) {
+        File file = new File(dir, key + ".jpg");
+        if (!file.isFile()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    File tmpFile() {
+        return new File(dir, "img" + (tmpCounter++) + "-" + System.nanoTime() + ".tmp");
+    }
+
+    /**
+     * Moves a finished tmpFile() into the cache under {@code key}, then
+     * evicts the least recently used entries past the budget (never the new
+     * one).
+     */
+    File commit(File tmp, String key) throws IOException {
+        File file = new File(dir, key + ".jpg");
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot store " + file);
+        }
+        file.setLastModified(System.currentTimeMillis());
+        trim(file);
+        return file;
+    }
+
+    long sizeBytes() {
+        long total = 0;
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            total += files[i].length();
+        }
+        return total;
+    }
+
+    void clear() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private void trim(File keep) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".jpg"));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            if (files[i].equals(keep)) {
+                continue;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+}
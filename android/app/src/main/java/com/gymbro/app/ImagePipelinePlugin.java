@@ -0,0 +1,369 @@
+package com.gymbro.app;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import androidx.exifinterface.media.ExifInterface;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Off-thread photo downsampling for FirestoreService.processPhotoForUpload and
+ * thumbnails for the body-progress gallery. resizeImage decodes the whole
+ * photo in the WebView from a base64 data URL (a 12 MP shot is ~50 MB of
+ * heap) and encodes it back to base64; here the picture is streamed from its
+ * content URI, decoded subsampled to about the target size, scaled and
+ * rotated to it, and written as a JPEG file the web side reads back as a
+ * Blob through the WebView's file URL.
+ *
+ * The web side only gets File objects from its file input, so the URIs the
+ * WebView's file chooser returns are recorded (MainActivity) and a file is
+ * matched to one by name and size.
+ *
+ * Results land in two ImageCache directories under cacheDir, keyed by source
+ * and size, so re-encoding the same photo or thumbnail is a file lookup.
+ * Every call runs on one background thread.
+ */
+@CapacitorPlugin(name = "ImagePipeline")
+public class ImagePipelinePlugin extends Plugin {
+
+    private static final String TAG = "ImagePipelinePlugin";
+
+    private static final long UPLOADS_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long THUMBNAILS_MAX_BYTES = 32L * 1024 * 1024;
+    // As resizeImage's defaults
+    private static final int DEFAULT_MAX_WIDTH = 600;
+    private static final double DEFAULT_QUALITY = 0.6;
+    // Gallery cards are 200 px tall, about half the screen wide
+    private static final int DEFAULT_THUMBNAIL_WIDTH = 480;
+    private static final int TIMEOUT_MS = 30_000;
+    private static final int MAX_PICKED = 20;
+
+    // URIs the WebView file chooser handed out, newest last
+    private static final List<Uri> PICKED = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroImages");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Executor-confined
+    private ImageCache uploads;
+    private ImageCache thumbnails;
+
+    private interface ImageTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Called with what the WebView file chooser returned.
+     */
+    static void recordPicked(Uri[] uris) {
+        if (uris == null) {
+            return;
+        }
+        synchronized (PICKED) {
+            for (Uri uri : uris) {
+                PICKED.remove(uri);
+                PICKED.add(uri);
+            }
+            while (PICKED.size() > MAX_PICKED) {
+                PICKED.remove(0);
+            }
+        }
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, ImageTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private ImageCache uploads() throws IOException {
+        if (uploads == null) {
+            uploads = new ImageCache(new File(getContext().getCacheDir(), "image_uploads"), UPLOADS_MAX_BYTES);
+        }
+        return uploads;
+    }
+
+    private ImageCache thumbnails() throws IOException {
+        if (thumbnails == null) {
+            thumbnails = new ImageCache(new File(getContext().getCacheDir(), "image_thumbnails"), THUMBNAILS_MAX_BYTES);
+        }
+        return thumbnails;
+    }
+
+    /**
+     * { uri } or { name, size } of a file picked in the WebView, { maxWidth,
+     * maxHeight, quality }: the photo scaled down to fit, as a JPEG file.
+     * Resolves { path, width, height, bytes, cached }; rejects when no picked
+     * file matches, and the web side falls back to its canvas.
+     */
+    @PluginMethod
+    public void downsample(PluginCall call) {
+        String uriString = call.getString("uri");
+        String name = call.getString("name");
+        Long size = call.getLong("size");
+        if (uriString == null && (name == null || size == null)) {
+            call.reject("uri or name and size are required");
+            return;
+        }
+        int maxWidth = call.getInt("maxWidth", DEFAULT_MAX_WIDTH);
+        int maxHeight = call.getInt("maxHeight", 0);
+        int quality = quality(call);
+        submit(call, c -> {
+            Uri uri = uriString != null ? Uri.parse(uriString) : findPicked(name, size);
+            if (uri == null) {
+                c.reject("No picked image matches " + name);
+                return;
+            }
+            ContentResolver resolver = getContext().getContentResolver();
+            String key = ImageCache.key(uri + "#" + size, maxWidth + "x" + maxHeight + "q" + quality);
+            c.resolve(encodeCached(uploads(), key, () -> resolver.openInputStream(uri), maxWidth, maxHeight, quality));
+        });
+    }
+
+    /**
+     * { url, maxWidth, maxHeight, quality }: a cached thumbnail of a gallery
+     * photo (http, https, content or file URL). Resolves { path, width,
+     * height, bytes, cached }.
+     */
+    @PluginMethod
+    public void thumbnail(PluginCall call) {
+        String url = call.getString("url");
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://")
+                || url.startsWith("content://") || url.startsWith("file://"))) {
+            call.reject("An http, https, content or file url is required");
+            return;
+        }
+        int maxWidth = call.getInt("maxWidth", DEFAULT_THUMBNAIL_WIDTH);
+        int maxHeight = call.getInt("maxHeight", 0);
+        int quality = quality(call);
+        submit(call, c -> {
+            ImageCache cache = thumbnails();
+            String key = ImageCache.key(url, maxWidth + "x" + maxHeight + "q" + quality);
+            if (!url.startsWith("http")) {
+                Uri uri = Uri.parse(url);
+                c.resolve(encodeCached(cache, key, () -> getContext().getContentResolver().openInputStream(uri),
+                    maxWidth, maxHeight, quality));
+                return;
+            }
+            File hit = cache.get(key);
+            if (hit != null) {
+                c.resolve(result(hit, 0, 0, true));
+                return;
+            }
+            // Downloaded once to disk: decoding needs the stream three times
+            File download = cache.tmpFile();
+            try {
+                download(url, download);
+                c.resolve(encodeCached(cache, key, () -> new FileInputStream(download), maxWidth, maxHeight, quality));
+            } finally {
+                download.delete();
+            }
+        });
+    }
+
+    /**
+     * Drops both caches. Resolves { bytes } freed.
+     */
+    @PluginMethod
+    public void clearCache(PluginCall call) {
+        submit(call, c -> {
+            long bytes = uploads().sizeBytes() + thumbnails().sizeBytes();
+            uploads().clear();
+            thumbnails().clear();
+            JSObject result = new JSObject();
+            result.put("bytes", bytes);
+            c.resolve(result);
+        });
+    }
+
+    private static int quality(PluginCall call) {
+        double quality = call.getDouble("quality", DEFAULT_QUALITY);
+        return (int) Math.round(Math.max(0.05, Math.min(1, quality)) * 100);
+    }
+
+    private JSObject encodeCached(ImageCache cache, String key, Source source, int maxWidth, int maxHeight,
+            int quality) throws IOException {
+        File hit = cache.get(key);
+        if (hit != null) {
+            return result(hit, 0, 0, true);
+        }
+        File tmp = cache.tmpFile();
+        int[] size;
+        try {
+            size = encode(source, maxWidth, maxHeight, quality, tmp);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        return result(cache.commit(tmp, key), size[0], size[1], false);
+    }
+
+    /**
+     * Decodes the source at the smallest subsample that still covers the
+     * target, then scales, flips and rotates it to the exact size in one
+     * pass and writes it as JPEG. Returns {width, height} written.
+     */
+    private static int[] encode(Source source, int maxWidth, int maxHeight, int quality, File out)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image");
+        }
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            orientation = new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w(TAG, "No EXIF orientation", e);
+        }
+        int rotation = ImageSizing.rotation(orientation);
+        boolean turned = rotation == 90 || rotation == 270;
+        int width = options.outWidth;
+        int height = options.outHeight;
+        int[] shown = ImageSizing.fit(turned ? height : width, turned ? width : height, maxWidth, maxHeight);
+        int targetWidth = turned ? shown[1] : shown[0];
+        int targetHeight = turned ? shown[0] : shown[1];
+
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = ImageSizing.sampleSize(width, height, targetWidth, targetHeight);
+        Bitmap bitmap;
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            bitmap = BitmapFactory.decodeStream(in, null, decode);
+        }
+        if (bitmap == null) {
+            throw new IOException("Not a decodable image");
+        }
+        Matrix matrix = new Matrix();
+        matrix.postScale(ImageSizing.mirrored(orientation) ? -1f : 1f, 1f);
+        matrix.postScale((float) targetWidth / bitmap.getWidth(), (float) targetHeight / bitmap.getHeight());
+        matrix.postRotate(rotation);
+        Bitmap scaled = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(out), 64 * 1024)) {
+            if (!scaled.compress(Bitmap.CompressFormat.JPEG, quality, stream)) {
+                throw new IOException("JPEG encoding failed");
+            }
+        } finally {
+            scaled.recycle();
+        }
+        return shown;
+    }
+
+    private static JSObject result(File file, int width, int height, boolean cached) {
+        if (width == 0) {
+            // A cache hit: read the size back from the header
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), options);
+            width = options.outWidth;
+            height = options.outHeight;
+        }
+        JSObject result = new JSObject();
+        result.put("path", file.getAbsolutePath());
+        result.put("width", width);
+        result.put("height", height);
+        result.put("bytes", file.length());
+        result.put("cached", cached);
+        return result;
+    }
+
+    /**
+     * The most recent picked URI with this display name and byte size.
+     */
+    private Uri findPicked(String name, long size) {
+        List<Uri> picked;
+        synchronized (PICKED) {
+            picked = new ArrayList<>(PICKED);
+        }
+        ContentResolver resolver = getContext().getContentResolver();
+        for (int i = picked.size() - 1; i >= 0; i--) {
+            Uri uri = picked.get(i);
+            if ("file".equals(uri.getScheme())) {
+                File file = new File(uri.getPath());
+                if (file.getName().equals(name) && file.length() == size) {
+                    return uri;
+                }
+                continue;
+            }
+            try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE},
+                    null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()
+                        && name.equals(cursor.getString(0)) && !cursor.isNull(1) && cursor.getLong(1) == size) {
+                    return uri;
+                }
+            } catch (RuntimeException e) {
+                // Permission to the URI lapsed: not a candidate
+                Log.w(TAG, "Cannot query " + uri, e);
+            }
+        }
+        return null;
+    }
+
+    private static void download(String url, File out) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                throw new IOException("Image download failed (" + status + ")");
+            }
+            try (InputStream in = connection.getInputStream();
+                 OutputStream stream = new FileOutputStream(out)) {
+                byte[] buffer = new byte[16 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    stream.write(buffer, 0, n);
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
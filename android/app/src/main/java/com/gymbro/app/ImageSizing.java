@@ -0,0 +1,76 @@
+package com.gymbro.app;
+
+/**
+ * Target sizes for ImagePipelinePlugin, the math of
+ * FirestoreService.resizeImage without the full-size decode: the picture is
+ * scaled down to maxWidth (never up) with its aspect ratio, after the EXIF
+ * rotation the browser would also apply.
+ *
+ * The decoder gets the largest power-of-two subsample that still leaves at
+ * least the target size, so a 12 MP photo bound for 600 px is decoded at a
+ * quarter of each side and only that is held in memory.
+ *
+ * Plain Java, no Android types: tested on the JVM.
+ */
+final class ImageSizing {
+
+    private ImageSizing() {
+    }
+
+    /**
+     * {width, height} of a {@code width} x {@code height} picture (as
+     * displayed, rotation applied) scaled to at most {@code maxWidth} wide
+     * and {@code maxHeight} high; 0 for no limit. At least 1 x 1.
+     */
+    static int[] fit(int width, int height, int maxWidth, int maxHeight) {
+        double scale = 1;
+        if (maxWidth > 0 && width > maxWidth) {
+            scale = (double) maxWidth / width;
+        }
+        if (maxHeight > 0 && height * scale > maxHeight) {
+            scale = (double) maxHeight / height;
+        }
+        return new int[]{
+            Math.max(1, (int) Math.round(width * scale)),
+            Math.max(1, (int) Math.round(height * scale))
+        };
+    }
+
+    /**
+     * BitmapFactory inSampleSize for decoding a {@code width} x
+     * {@code height} source down to at least {@code targetWidth} x
+     * {@code targetHeight}.
+     */
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sample = 1;
+        while (width / (sample * 2) >= targetWidth && height / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Clockwise degrees for an EXIF orientation tag (1-8), applied after the
+     * horizontal flip of the mirrored() ones.
+     */
+    static int rotation(int orientation) {
+        switch (orientation) {
+            case 3:
+            case 4:
+                return 180;
+            case 6:
+            case 7:
+                return 90;
+            case 5:
+            case 8:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    // 2 flips, 4, 5 and 7 flip and rotate
+    static boolean mirrored(int orientation) {
+        return orientation == 2 || orientation == 4 || orientation == 5 || orientation == 7;
+    }
+}
@@ -1,19 +1,44 @@
 package com.gymbro.app;
 
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.View;
+import android.webkit.ValueCallback;
+import android.webkit.WebView;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.core.graphics.Insets;
+import androidx.core.splashscreen.SplashScreen;
 import com.getcapacitor.BridgeActivity;
+import com.getcapacitor.BridgeWebChromeClient;
 
 public class MainActivity extends BridgeActivity {
+    // The splash waits for the page's first frame, but never longer than the old fixed duration
+    private static final long SPLASH_TIMEOUT_MS = 3000;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        // Register the TimerPlugin before calling super
+        long createdAt = SystemClock.elapsedRealtime();
+        GymBroApplication.TRACE.mark(StartupTrace.ACTIVITY_CREATE, createdAt);
+        SplashScreen splash = SplashScreen.installSplashScreen(this);
+        splash.setKeepOnScreenCondition(() -> !StartupPlugin.isFirstFrameReady()
+            && SystemClock.elapsedRealtime() - createdAt < SPLASH_TIMEOUT_MS);
+
+        // Register the app plugins before calling super
+        registerPlugin(StartupPlugin.class);
         registerPlugin(TimerPlugin.class);
+        registerPlugin(WorkoutStorePlugin.class);
+        registerPlugin(AnalyticsPlugin.class);
+        registerPlugin(ExerciseIndexPlugin.class);
+        registerPlugin(SessionJournalPlugin.class);
+        registerPlugin(HealthStorePlugin.class);
+        registerPlugin(ReportExportPlugin.class);
+        registerPlugin(CloudSyncPlugin.class);
+        registerPlugin(ImagePipelinePlugin.class);
         
         super.onCreate(savedInstanceState);
+        GymBroApplication.TRACE.mark(StartupTrace.BRIDGE_READY, SystemClock.elapsedRealtime());
         
         // Apply window insets to prevent content from going under status bar
         View rootView = findViewById(android.R.id.content);
@@ -22,5 +47,17 @@ public class MainActivity extends BridgeActivity {
             view.setPadding(insets.left, insets.top, insets.right, insets.bottom);
             return WindowInsetsCompat.CONSUMED;
         });
+
+        // Remember the URIs behind <input type="file"> picks so ImagePipeline can stream them
+        bridge.getWebView().setWebChromeClient(new BridgeWebChromeClient(bridge) {
+            @Override
+            public boolean onShowFileChooser(WebView webView, ValueCallback<Uri[]> filePathCallback,
+                    FileChooserParams fileChooserParams) {
+                return super.onShowFileChooser(webView, uris -> {
+                    ImagePipelinePlugin.recordPicked(uris);
+                    filePathCallback.onReceiveValue(uris);
+                }, fileChooserParams);
+            }
+        });
     }
 }
@@ -0,0 +1,234 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Personal records per canonical exercise id (ExerciseNames): what
+ * PRTracker.detectPRsFromLog keeps, plus the max-weight reps and set averages
+ * FirestoreService.gatherDataForAI recomputes from all logs on every call.
+ *
+ * Appending a log costs O(its sets), a lookup is one hash probe. The reps
+ * record depends on the order sets arrive in (it needs 70% of the max weight
+ * seen so far), so a rebuild folds each exercise in date order; different
+ * exercises are independent and fold in parallel.
+ *
+ * Plain Java, not thread-safe: WorkoutStorePlugin confines it to its executor.
+ */
+final class PersonalRecordIndex {
+
+    static final String TYPE_WEIGHT = "weight";
+    static final String TYPE_1RM = "1rm";
+    static final String TYPE_REPS = "reps";
+    static final String TYPE_VOLUME = "volume";
+
+    static final class Record {
+        final String id;
+        String displayName;
+        double maxWeight;
+        // Reps of the set that set maxWeight
+        int maxWeightReps;
+        double max1RM;
+        int maxReps;
+        double maxVolume;
+        int totalSets;
+        double weightSum;
+        // Date of the log that last improved a record
+        long updatedAtMs;
+
+        Record(String id, String displayName) {
+            this.id = id;
+            this.displayName = displayName;
+        }
+
+        long avgWeight() {
+            return totalSets > 0 ? Math.round(weightSum / totalSets) : 0;
+        }
+
+        /**
+         * Folds one logged exercise in, reporting what improved to {@code out}
+         * (may be null). Same rules as detectPRsFromLog.
+         */
+        boolean add(String name, long dateMs, double[] weights, int[] reps, int count, List<Improvement> out) {
+            boolean improved = false;
+            double volume = 0;
+            for (int i = 0; i < count; i++) {
+                double weight = weights[i];
+                int r = reps[i];
+                volume += weight * r;
+                if (weight <= 0 || r <= 0) {
+                    continue;
+                }
+                totalSets++;
+                weightSum += weight;
+
+                if (weight > maxWeight) {
+                    report(out, TYPE_WEIGHT, maxWeight, weight, 0);
+                    maxWeight = weight;
+                    maxWeightReps = r;
+                    improved = true;
+                }
+                double estimated = estimate1RM(weight, r);
+                if (estimated > max1RM) {
+                    report(out, TYPE_1RM, max1RM, estimated, 0);
+                    max1RM = estimated;
+                    improved = true;
+                }
+                // Only sets close to the max count, so light high-rep work is no record
+                if (maxWeight > 0 && weight >= maxWeight * 0.7 && r > maxReps) {
+                    report(out, TYPE_REPS, maxReps, r, weight);
+                    maxReps = r;
+                    improved = true;
+                }
+            }
+            if (volume > maxVolume) {
+                double rounded = Math.round(volume);
+                report(out, TYPE_VOLUME, maxVolume, rounded, 0);
+                maxVolume = rounded;
+                improved = true;
+            }
+            if (improved) {
+                displayName = name;
+                updatedAtMs = dateMs;
+            }
+            return improved;
+        }
+    }
+
+    static final class Improvement {
+        final String type;
+        final double oldValue;
+        final double newValue;
+        // Weight the reps record was set at, 0 for the other types
+        final double atWeight;
+
+        Improvement(String type, double oldValue, double newValue, double atWeight) {
+            this.type = type;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.atWeight = atWeight;
+        }
+    }
+
+    /**
+     * Folds every logged occurrence of one exercise, oldest first, into a
+     * fresh Record. Called concurrently for different groups.
+     */
+    interface GroupFolder<G> {
+        Record fold(G group) throws Exception;
+    }
+
+    private final HashMap<String, Record> records;
+
+    PersonalRecordIndex() {
+        records = new HashMap<>();
+    }
+
+    PersonalRecordIndex(Collection<Record> loaded) {
+        records = new HashMap<>(Math.max(16, loaded.size() * 2));
+        for (Record record : loaded) {
+            records.put(record.id, record);
+        }
+    }
+
+    Record get(String id) {
+        return records.get(id);
+    }
+
+    Collection<Record> records() {
+        return Collections.unmodifiableCollection(records.values());
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    /**
+     * Applies one logged exercise and returns its record, which always needs
+     * saving (set totals change even without a new record); null for a nameless
+     * exercise.
+     */
+    Record apply(String name, long dateMs, double[] weights, int[] reps, int count, List<Improvement> out) {
+        String id = ExerciseNames.canonicalId(name);
+        if (id.isEmpty()) {
+            return null;
+        }
+        Record record = records.get(id);
+        if (record == null) {
+            record = new Record(id, name.trim());
+            records.put(id, record);
+        }
+        record.add(name.trim(), dateMs, weights, reps, count, out);
+        return record;
+    }
+
+    /**
+     * Brzycki, as PRTracker.calculate1RM: the weight itself for singles and
+     * above 12 reps (the formula is unreliable there), rounded otherwise.
+     */
+    static double estimate1RM(double weight, int reps) {
+        if (reps <= 0 || weight <= 0) return 0;
+        if (reps == 1 || reps > 12) return weight;
+        return Math.round(weight * (36.0 / (37 - reps)));
+    }
+
+    /**
+     * Builds a new index from scratch, folding {@code groups} (one per
+     * exercise) on {@code threads} workers.
+     */
+    static <G> PersonalRecordIndex rebuild(List<G> groups, GroupFolder<G> folder, int threads) throws Exception {
+        int workers = Math.max(1, Math.min(threads, groups.size()));
+        if (workers == 1) {
+            List<Record> all = new ArrayList<>(groups.size());
+            for (G group : groups) {
+                addFolded(all, folder.fold(group));
+            }
+            return new PersonalRecordIndex(all);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<List<Record>>> parts = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                int first = w;
+                // Striped, so a few huge groups do not all land on one worker
+                parts.add(pool.submit(() -> {
+                    List<Record> part = new ArrayList<>(groups.size() / workers + 1);
+                    for (int i = first; i < groups.size(); i += workers) {
+                        addFolded(part, folder.fold(groups.get(i)));
+                    }
+                    return part;
+                }));
+            }
+            List<Record> all = new ArrayList<>(groups.size());
+            for (Future<List<Record>> part : parts) {
+                all.addAll(part.get());
+            }
+            return new PersonalRecordIndex(all);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void addFolded(List<Record> out, Record record) {
+        if (record != null && !record.id.isEmpty()) {
+            out.add(record);
+        }
+    }
+
+    private static void report(List<Improvement> out, String type, double oldValue, double newValue, double atWeight) {
+        if (out != null) {
+            out.add(new Improvement(type, oldValue, newValue, atWeight));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.gymbro.app;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+import androidx.core.content.FileProvider;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Word export of the AI reports. ExportService used to build the whole
+ * document in the WebView (an RTF string or a docx.js tree, then a Blob, then
+ * base64 for the share sheet); here the web side sends the compact block
+ * model of the report and a ReportWriter streams it to a file in the cache,
+ * off the main thread. The file goes out through the FileProvider.
+ */
+@CapacitorPlugin(name = "ReportExport")
+public class ReportExportPlugin extends Plugin {
+
+    private static final String TAG = "ReportExportPlugin";
+    private static final String EXPORT_DIR = "exports";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroExport");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private interface ExportTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, ExportTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * { format: 'docx' | 'rtf', filename, header, subtitle, footer, blocks,
+     * share }: writes the report and resolves { uri, path, bytes, mimeType }.
+     * With share the system share sheet opens on the file.
+     *
+     * blocks: { type: 'h1'..'h4', text } | { type: 'p', runs: [[text, style]] }
+     * | { type: 'list', items } | { type: 'quote', text }
+     * | { type: 'table', rows: [{ header, cells }] } | { type: 'text', text }
+     * | { type: 'br' }. Styles are ReportWriter.BOLD | ITALIC | CODE.
+     */
+    @PluginMethod
+    public void exportReport(PluginCall call) {
+        String format = call.getString("format", "docx");
+        JSArray blocks = call.getArray("blocks");
+        if (!"docx".equals(format) && !"rtf".equals(format)) {
+            call.reject("format must be docx or rtf");
+            return;
+        }
+        if (blocks == null) {
+            call.reject("blocks is required");
+            return;
+        }
+        String filename = safeName(call.getString("filename", "report"), format);
+        String header = call.getString("header", "GYMBRO");
+        String subtitle = call.getString("subtitle", "");
+        String footer = call.getString("footer", "");
+        boolean share = call.getBoolean("share", false);
+
+        submit(call, c -> {
+            File dir = new File(getContext().getCacheDir(), EXPORT_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            // Written next to the target and renamed, so a shared file is never half-written
+            File file = new File(dir, filename);
+            File partial = new File(dir, filename + ".tmp");
+            try (ReportWriter writer = ReportWriter.create(format,
+                    new BufferedOutputStream(new FileOutputStream(partial), 16 * 1024))) {
+                writer.header(header, subtitle);
+                for (int i = 0; i < blocks.length(); i++) {
+                    JSONObject block = blocks.optJSONObject(i);
+                    if (block != null) {
+                        writeBlock(writer, block);
+                    }
+                }
+                writer.footer(footer);
+            } catch (IOException | RuntimeException e) {
+                partial.delete();
+                throw e;
+            }
+            if (file.exists() && !file.delete() || !partial.renameTo(file)) {
+                partial.delete();
+                throw new IOException("Cannot write " + file);
+            }
+
+            String mimeType = "docx".equals(format)
+                ? "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
+                : "application/rtf";
+            Uri uri = FileProvider.getUriForFile(getContext(), getContext().getPackageName() + ".fileprovider", file);
+            if (share) {
+                Intent send = new Intent(Intent.ACTION_SEND)
+                    .setType(mimeType)
+                    .putExtra(Intent.EXTRA_STREAM, uri)
+                    .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                getActivity().runOnUiThread(() -> getActivity().startActivity(Intent.createChooser(send, filename)));
+            }
+
+            JSObject result = new JSObject();
+            result.put("uri", uri.toString());
+            result.put("path", file.getAbsolutePath());
+            result.put("bytes", file.length());
+            result.put("mimeType", mimeType);
+            c.resolve(result);
+        });
+    }
+
+    private static void writeBlock(ReportWriter writer, JSONObject block) throws IOException {
+        String type = block.optString("type");
+        switch (type) {
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+                writer.heading(type.charAt(1) - '0', block.optString("text"));
+                break;
+            case "p": {
+                JSONArray runs = block.optJSONArray("runs");
+                int count = runs != null ? runs.length() : 0;
+                String[] texts = new String[count];
+                int[] styles = new int[count];
+                for (int i = 0; i < count; i++) {
+                    JSONArray run = runs.optJSONArray(i);
+                    texts[i] = run != null ? run.optString(0) : runs.optString(i);
+                    styles[i] = run != null ? run.optInt(1) : 0;
+                }
+                writer.paragraph(texts, styles, count);
+                break;
+            }
+            case "list": {
+                JSONArray items = block.optJSONArray("items");
+                for (int i = 0; items != null && i < items.length(); i++) {
+                    writer.bullet(items.optString(i));
+                }
+                writer.endList();
+                break;
+            }
+            case "quote":
+                writer.quote(block.optString("text"));
+                break;
+            case "table": {
+                JSONArray rows = block.optJSONArray("rows");
+                for (int i = 0; rows != null && i < rows.length(); i++) {
+                    JSONObject row = rows.optJSONObject(i);
+                    JSONArray cells = row != null ? row.optJSONArray("cells") : null;
+                    if (cells == null) {
+                        continue;
+                    }
+                    String[] texts = new String[cells.length()];
+                    for (int j = 0; j < texts.length; j++) {
+                        texts[j] = cells.optString(j);
+                    }
+                    writer.tableRow(texts, texts.length, row.optBoolean("header"));
+                }
+                writer.endTable();
+                break;
+            }
+            case "text":
+                writer.text(block.optString("text"));
+                break;
+            case "br":
+                writer.lineBreak();
+                break;
+            default:
+                // Unknown blocks from a newer web build are skipped, not fatal
+                Log.w(TAG, "Skipping report block " + type);
+                break;
+        }
+    }
+
+    // Only the last path segment, and the extension the format implies
+    private static String safeName(String name, String format) {
+        String base = name.replaceAll("\\.(docx|rtf|doc)$", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        if (base.isEmpty() || base.startsWith(".")) {
+            base = "report" + base;
+        }
+        return base + "." + format;
+    }
+}
@@ -0,0 +1,507 @@
+package com.gymbro.app;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams an AI report to a Word-readable file block by block: RTF (what
+ * ExportService.htmlToRTF builds as one string) or DOCX (what
+ * htmlToDocxElements builds as docx.js objects). Nothing but the current
+ * block is held in memory, so the cost of a report does not grow with it.
+ *
+ * The model is the one ExportService.reportModel produces from the report
+ * DOM: headings, paragraphs of styled runs, lists, quotes, table rows, bare
+ * text and line breaks. The page header and footer strings come from the
+ * caller.
+ *
+ * Plain Java, no Android types: tested on the JVM. One writer per file, not
+ * thread-safe.
+ */
+abstract class ReportWriter implements Closeable {
+
+    // Run styles, combinable
+    static final int BOLD = 1;
+    static final int ITALIC = 2;
+    static final int CODE = 4;
+
+    static ReportWriter create(String format, OutputStream out) throws IOException {
+        if ("rtf".equals(format)) {
+            return new Rtf(out);
+        }
+        if ("docx".equals(format)) {
+            return new Docx(out);
+        }
+        throw new IllegalArgumentException("Unknown report format: " + format);
+    }
+
+    /**
+     * Centered brand title and generation date, before any block.
+     */
+    abstract void header(String title, String subtitle) throws IOException;
+
+    abstract void heading(int level, String text) throws IOException;
+
+    /**
+     * One paragraph of {@code count} runs with their styles.
+     */
+    abstract void paragraph(String[] runs, int[] styles, int count) throws IOException;
+
+    abstract void bullet(String text) throws IOException;
+
+    /**
+     * After the last bullet of a list.
+     */
+    abstract void endList() throws IOException;
+
+    abstract void quote(String text) throws IOException;
+
+    abstract void tableRow(String[] cells, int count, boolean header) throws IOException;
+
+    /**
+     * After the last row of a table.
+     */
+    abstract void endTable() throws IOException;
+
+    /**
+     * A text node directly inside a container block.
+     */
+    abstract void text(String text) throws IOException;
+
+    abstract void lineBreak() throws IOException;
+
+    /**
+     * Footer line, then the file is complete; close() follows.
+     */
+    abstract void footer(String text) throws IOException;
+
+    /**
+     * htmlToRTF's output, written as it goes. Non-ASCII characters become
+     * \\uN? escapes, so the stream is plain ASCII.
+     */
+    static final class Rtf extends ReportWriter {
+        private static final String PARAGRAPH = "\\pard\\sa200\\sl276\\slmult1";
+
+        private final Writer out;
+
+        Rtf(OutputStream stream) {
+            out = new BufferedWriter(new OutputStreamWriter(stream, Charset.forName("US-ASCII")), 8192);
+        }
+
+        @Override
+        void header(String title, String subtitle) throws IOException {
+            out.write("{\\rtf1\\ansi\\deff0\n");
+            out.write("{\\fonttbl{\\f0\\fswiss\\fcharset0 Arial;}{\\f1\\fmodern\\fcharset0 Courier New;}}\n");
+            out.write("{\\colortbl;\\red0\\green243\\blue255;\\red102\\green102\\blue102;\\red0\\green0\\blue0;}\n");
+            out.write("\\viewkind4\\uc1\\pard\\sa200\\sl276\\slmult1\\lang1040\\f0\\fs22\n");
+            out.write("\\qc\\b\\fs48 ");
+            escape(title);
+            out.write("\\b0\\fs22\\par\n");
+            out.write("\\qc\\cf2\\fs20 ");
+            escape(subtitle);
+            out.write("\\cf0\\fs22\\par\n");
+            out.write(PARAGRAPH);
+            out.write("\\par\n");
+        }
+
+        @Override
+        void heading(int level, String text) throws IOException {
+            // h1-h3 in the accent colour; h4 plain
+            int size = level <= 1 ? 36 : level == 2 ? 32 : level == 3 ? 28 : 24;
+            boolean colored = level <= 3;
+            out.write(PARAGRAPH);
+            out.write("\\b\\fs");
+            out.write(Integer.toString(size));
+            out.write(colored ? "\\cf1 " : " ");
+            escape(text);
+            out.write(colored ? "\\cf0\\b0\\fs22\\par\n" : "\\b0\\fs22\\par\n");
+        }
+
+        @Override
+        void paragraph(String[] runs, int[] styles, int count) throws IOException {
+            out.write(PARAGRAPH);
+            out.write(' ');
+            for (int i = 0; i < count; i++) {
+                int style = styles[i];
+                if (style == 0) {
+                    escape(runs[i]);
+                    continue;
+                }
+                if ((style & BOLD) != 0) {
+                    out.write("\\b ");
+                }
+                if ((style & ITALIC) != 0) {
+                    out.write("\\i ");
+                }
+                if ((style & CODE) != 0) {
+                    out.write("\\f1\\fs20 ");
+                }
+                escape(runs[i]);
+                if ((style & CODE) != 0) {
+                    out.write("\\f0\\fs22 ");
+                }
+                if ((style & ITALIC) != 0) {
+                    out.write("\\i0 ");
+                }
+                if ((style & BOLD) != 0) {
+                    out.write("\\b0 ");
+                }
+            }
+            out.write("\\par\n");
+        }
+
+        @Override
+        void bullet(String text) throws IOException {
+            out.write("\\pard\\fi-360\\li720\\sa100\\sl276\\slmult1\\bullet  ");
+            escape(text);
+            out.write("\\par\n");
+        }
+
+        @Override
+        void endList() throws IOException {
+            out.write(PARAGRAPH);
+            out.write("\\par\n");
+        }
+
+        @Override
+        void quote(String text) throws IOException {
+            out.write("\\pard\\li720\\sa200\\sl276\\slmult1\\i\\cf2 ");
+            escape(text);
+            out.write("\\cf0\\i0\\par\n");
+        }
+
+        @Override
+        void tableRow(String[] cells, int count, boolean header) throws IOException {
+            out.write("\\pard\\sa100\\sl276\\slmult1");
+            if (header) {
+                out.write("\\b");
+            }
+            out.write(' ');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.write(" | ");
+                }
+                escape(cells[i].trim());
+            }
+            if (header) {
+                out.write("\\b0");
+            }
+            out.write("\\par\n");
+        }
+
+        @Override
+        void endTable() throws IOException {
+            endList();
+        }
+
+        @Override
+        void text(String text) throws IOException {
+            escape(text);
+            out.write(' ');
+        }
+
+        @Override
+        void lineBreak() throws IOException {
+            out.write("\\line\n");
+        }
+
+        @Override
+        void footer(String text) throws IOException {
+            out.write("\\par\\pard\\qc\\brdrb\\brdrs\\brdrw10\\brsp20\\par\n");
+            out.write("\\cf2\\i ");
+            escape(text);
+            out.write("\\i0\\cf0\\par\n");
+            out.write('}');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        /**
+         * escapeRTF: \ { } escaped, newlines as \line, anything past ASCII as
+         * a signed 16-bit \\uN? (surrogate pairs as two escapes, as RTF wants).
+         */
+        private void escape(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' || c == '{' || c == '}') {
+                    out.write('\\');
+                    out.write(c);
+                } else if (c == '\n') {
+                    out.write("\\line ");
+                } else if (c >= 0x80) {
+                    out.write("\\u");
+                    out.write(Integer.toString((short) c));
+                    out.write('?');
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * A minimal WordprocessingML package: the content types, the package and
+     * document relationships and a styles part are fixed and written up
+     * front; word/document.xml is streamed last, one paragraph per block.
+     */
+    static final class Docx extends ReportWriter {
+        private static final String MAIN_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+        private static final String GREY = "666666";
+
+        private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\""
+            + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+            + "<Override PartName=\"/word/styles.xml\" ContentType=\""
+            + "application/vnd.openxmlformats-officedocument.wordprocessingml.styles+xml\"/>"
+            + "</Types>";
+
+        private static final String PACKAGE_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\""
+            + "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" "
+            + "Target=\"word/document.xml\"/>"
+            + "</Relationships>";
+
+        private static final String DOCUMENT_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\""
+            + "http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>"
+            + "</Relationships>";
+
+        private final ZipOutputStream zip;
+        private final Writer out;
+
+        Docx(OutputStream stream) throws IOException {
+            zip = new ZipOutputStream(stream);
+            out = new BufferedWriter(new OutputStreamWriter(zip, Charset.forName("UTF-8")), 8192);
+            writePart("[Content_Types].xml", CONTENT_TYPES);
+            writePart("_rels/.rels", PACKAGE_RELS);
+            writePart("word/_rels/document.xml.rels", DOCUMENT_RELS);
+            writePart("word/styles.xml", styles());
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+            out.write("<w:document xmlns:w=\"" + MAIN_NS + "\"><w:body>");
+        }
+
+        private void writePart(String name, String xml) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            out.write(xml);
+            out.flush();
+            zip.closeEntry();
+        }
+
+        // Heading1-4 sized like the RTF headings (half-points)
+        private static String styles() {
+            StringBuilder xml = new StringBuilder(1024);
+            xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<w:styles xmlns:w=\"").append(MAIN_NS).append("\">")
+                .append("<w:style w:type=\"paragraph\" w:default=\"1\" w:styleId=\"Normal\"><w:name w:val=\"Normal\"/>")
+                .append("<w:rPr><w:rFonts w:ascii=\"Arial\" w:hAnsi=\"Arial\" w:cs=\"Arial\"/><w:sz w:val=\"22\"/>")
+                .append("</w:rPr></w:style>");
+            int[] sizes = {36, 32, 28, 24};
+            for (int level = 1; level <= sizes.length; level++) {
+                xml.append("<w:style w:type=\"paragraph\" w:styleId=\"Heading").append(level).append("\">")
+                    .append("<w:name w:val=\"heading ").append(level).append("\"/>")
+                    .append("<w:basedOn w:val=\"Normal\"/><w:next w:val=\"Normal\"/><w:qFormat/>")
+                    .append("<w:pPr><w:keepNext/><w:outlineLvl w:val=\"").append(level - 1).append("\"/></w:pPr>")
+                    .append("<w:rPr><w:b/><w:sz w:val=\"").append(sizes[level - 1]).append("\"/></w:rPr></w:style>");
+            }
+            return xml.append("</w:styles>").toString();
+        }
+
+        @Override
+        void header(String title, String subtitle) throws IOException {
+            startParagraph("Heading1", 0, 200, 0, true);
+            run(title, 0, null, 0);
+            endParagraph();
+            startParagraph(null, 0, 400, 0, true);
+            run(subtitle, 0, GREY, 20);
+            endParagraph();
+        }
+
+        @Override
+        void heading(int level, String text) throws IOException {
+            int clamped = Math.max(1, Math.min(4, level));
+            int[] before = {240, 200, 160, 120};
+            startParagraph("Heading" + clamped, before[clamped - 1], before[clamped - 1] / 2, 0, false);
+            run(text, 0, null, 0);
+            endParagraph();
+        }
+
+        @Override
+        void paragraph(String[] runs, int[] styles, int count) throws IOException {
+            startParagraph(null, 0, 120, 0, false);
+            for (int i = 0; i < count; i++) {
+                run(runs[i], styles[i], null, (styles[i] & CODE) != 0 ? 20 : 0);
+            }
+            endParagraph();
+        }
+
+        @Override
+        void bullet(String text) throws IOException {
+            startParagraph(null, 0, 80, 720, false);
+            run("\u2022 " + text, 0, null, 0);
+            endParagraph();
+        }
+
+        @Override
+        void endList() {
+            // Spacing comes from the paragraphs themselves
+        }
+
+        @Override
+        void quote(String text) throws IOException {
+            startParagraph(null, 120, 120, 720, false);
+            run(text, ITALIC, GREY, 0);
+            endParagraph();
+        }
+
+        @Override
+        void tableRow(String[] cells, int count, boolean header) throws IOException {
+            startParagraph(null, 0, 60, 0, false);
+            for (int i = 0; i < count; i++) {
+                run((i > 0 ? " | " : "") + cells[i].trim(), header ? BOLD : 0, null, 0);
+            }
+            endParagraph();
+        }
+
+        @Override
+        void endTable() {
+            // As endList
+        }
+
+        @Override
+        void text(String text) throws IOException {
+            startParagraph(null, 0, 100, 0, false);
+            run(text, 0, null, 0);
+            endParagraph();
+        }
+
+        @Override
+        void lineBreak() throws IOException {
+            out.write("<w:p/>");
+        }
+
+        @Override
+        void footer(String text) throws IOException {
+            startParagraph(null, 400, 200, 0, false);
+            StringBuilder rule = new StringBuilder(50);
+            for (int i = 0; i < 50; i++) {
+                rule.append('\u2500');
+            }
+            run(rule.toString(), 0, "CCCCCC", 0);
+            endParagraph();
+            startParagraph(null, 0, 0, 0, true);
+            run(text, ITALIC, GREY, 18);
+            endParagraph();
+            // A4 with 1" margins
+            out.write("<w:sectPr><w:pgSz w:w=\"11906\" w:h=\"16838\"/>"
+                + "<w:pgMar w:top=\"1440\" w:right=\"1440\" w:bottom=\"1440\" w:left=\"1440\" "
+                + "w:header=\"708\" w:footer=\"708\" w:gutter=\"0\"/></w:sectPr>");
+            out.write("</w:body></w:document>");
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+            zip.closeEntry();
+            out.close();
+        }
+
+        private void startParagraph(String style, int before, int after, int indent, boolean center)
+                throws IOException {
+            out.write("<w:p><w:pPr>");
+            if (style != null) {
+                out.write("<w:pStyle w:val=\"");
+                out.write(style);
+                out.write("\"/>");
+            }
+            out.write("<w:spacing w:before=\"");
+            out.write(Integer.toString(before));
+            out.write("\" w:after=\"");
+            out.write(Integer.toString(after));
+            out.write("\"/>");
+            if (indent > 0) {
+                out.write("<w:ind w:left=\"");
+                out.write(Integer.toString(indent));
+                out.write("\"/>");
+            }
+            if (center) {
+                out.write("<w:jc w:val=\"center\"/>");
+            }
+            out.write("</w:pPr>");
+        }
+
+        private void endParagraph() throws IOException {
+            out.write("</w:p>");
+        }
+
+        /**
+         * One run; newlines in the text become w:br. size is in half-points,
+         * 0 for the paragraph default.
+         */
+        private void run(String text, int style, String color, int size) throws IOException {
+            out.write("<w:r>");
+            if (style != 0 || color != null || size > 0) {
+                out.write("<w:rPr>");
+                if ((style & CODE) != 0) {
+                    out.write("<w:rFonts w:ascii=\"Courier New\" w:hAnsi=\"Courier New\" w:cs=\"Courier New\"/>");
+                }
+                if ((style & BOLD) != 0) {
+                    out.write("<w:b/>");
+                }
+                if ((style & ITALIC) != 0) {
+                    out.write("<w:i/>");
+                }
+                if (color != null) {
+                    out.write("<w:color w:val=\"");
+                    out.write(color);
+                    out.write("\"/>");
+                }
+                if (size > 0) {
+                    out.write("<w:sz w:val=\"");
+                    out.write(Integer.toString(size));
+                    out.write("\"/>");
+                }
+                out.write("</w:rPr>");
+            }
+            out.write("<w:t xml:space=\"preserve\">");
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&':
+                        out.write("&amp;");
+                        break;
+                    case '<':
+                        out.write("&lt;");
+                        break;
+                    case '>':
+                        out.write("&gt;");
+                        break;
+                    case '\n':
+                        out.write("</w:t><w:br/><w:t xml:space=\"preserve\">");
+                        break;
+                    default:
+                        // Control characters are not allowed in XML 1.0
+                        if (c >= 0x20 || c == '\t') {
+                            out.write(c);
+                        }
+                        break;
+                }
+            }
+            out.write("</w:t></w:r>");
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.gymbro.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the focus-session state: one snapshot record when a
+ * session starts, then one small delta record per save, so logging a set
+ * writes that set instead of the whole session again.
+ *
+ * Appends only copy the record into a pending buffer; commit() writes
+ * everything pending and fsyncs once, so appends arriving while a sync is in
+ * flight share the next one (group commit). Each record is framed with its
+ * length and a CRC: a kill halfway through a write leaves a torn tail, which
+ * open() cuts off. compact() replaces the file with a single snapshot.
+ *
+ * Android-free so the framing and recovery run in JVM tests. append() may be
+ * called from any thread; commit(), compact() and reset() from one flusher.
+ */
+final class SessionJournal {
+
+    static final int TYPE_SNAPSHOT = 1;
+    static final int TYPE_DELTA = 2;
+
+    // payload length (int) + crc of type and payload (int) + type (byte)
+    private static final int RECORD_HEADER_SIZE = 9;
+    // A session state is a few KB; anything far bigger is a corrupt length
+    private static final int MAX_PAYLOAD_SIZE = 8 * 1024 * 1024;
+
+    interface Visitor {
+        void record(int type, byte[] payload) throws IOException;
+    }
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    // Guarded by this
+    private byte[] pending = new byte[4096];
+    private int pendingSize;
+    private long appendedSeq;
+
+    // Flusher-confined; holds the previous batch between commits
+    private byte[] spare = new byte[4096];
+    private long size;
+    private int records;
+    private long syncs;
+    private volatile long durableSeq;
+
+    private SessionJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens (or creates) the journal, dropping any torn or corrupt tail.
+     */
+    static SessionJournal open(File file) throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        journal.openChannel();
+        int[] count = {0};
+        long valid = journal.scan((type, payload) -> count[0]++);
+        journal.records = count[0];
+        if (valid < journal.channel.size()) {
+            journal.channel.truncate(valid);
+            journal.channel.force(false);
+        }
+        journal.size = valid;
+        return journal;
+    }
+
+    private void openChannel() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+    }
+
+    /**
+     * Visits every intact record from the start of the file, oldest first.
+     * Only what has been committed is on disk.
+     */
+    void replay(Visitor visitor) throws IOException {
+        scan(visitor);
+    }
+
+    /**
+     * Reads records until the end or the first one failing its checks, and
+     * returns the offset where the intact prefix ends.
+     */
+    private long scan(Visitor visitor) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        long offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= fileSize) {
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+            int length = header.getInt();
+            int expected = header.getInt();
+            byte type = header.get();
+            if (length < 0 || length > MAX_PAYLOAD_SIZE || offset + RECORD_HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, offset + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(type);
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+            visitor.record(type, payload.array());
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of session journal");
+            }
+        }
+    }
+
+    /**
+     * Queues a record for the next commit and returns its sequence number.
+     */
+    synchronized long append(int type, byte[] payload) {
+        int needed = pendingSize + RECORD_HEADER_SIZE + payload.length;
+        if (needed > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(needed, pending.length * 2));
+        }
+        pendingSize = frame(pending, pendingSize, type, payload);
+        return ++appendedSeq;
+    }
+
+    /**
+     * Writes one framed record into {@code dest} at {@code at}; returns the
+     * offset just past it.
+     */
+    private static int frame(byte[] dest, int at, int type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        ByteBuffer out = ByteBuffer.wrap(dest, at, RECORD_HEADER_SIZE);
+        out.putInt(payload.length);
+        out.putInt((int) crc.getValue());
+        out.put((byte) type);
+        System.arraycopy(payload, 0, dest, at + RECORD_HEADER_SIZE, payload.length);
+        return at + RECORD_HEADER_SIZE + payload.length;
+    }
+
+    /**
+     * Writes everything appended so far with a single fsync and returns the
+     * highest durable sequence number. Nothing pending: no I/O at all.
+     */
+    long commit() throws IOException {
+        byte[] batch;
+        int batchSize;
+        long batchSeq;
+        synchronized (this) {
+            if (pendingSize == 0) {
+                return durableSeq;
+            }
+            batch = pending;
+            batchSize = pendingSize;
+            batchSeq = appendedSeq;
+            // Appends made during the write and fsync go to the other buffer
+            pending = spare;
+            pendingSize = 0;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch, 0, batchSize);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, size + buffer.position());
+            }
+            channel.force(false);
+        } finally {
+            // A failed batch is lost: its appends are reported as failed by the caller
+            spare = batch;
+        }
+        size += batchSize;
+        records += countRecords(batch, batchSize);
+        syncs++;
+        durableSeq = batchSeq;
+        return batchSeq;
+    }
+
+    private static int countRecords(byte[] batch, int batchSize) {
+        int count = 0;
+        for (int offset = 0; offset < batchSize; count++) {
+            offset += RECORD_HEADER_SIZE + ByteBuffer.wrap(batch, offset, 4).getInt();
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the journal with one snapshot record. The caller guarantees the
+     * snapshot already includes every record appended so far (no append may
+     * run concurrently); the pending ones are dropped with the old file.
+     */
+    void compact(byte[] snapshot) throws IOException {
+        byte[] record = new byte[RECORD_HEADER_SIZE + snapshot.length];
+        frame(record, 0, TYPE_SNAPSHOT, snapshot);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            out.write(record);
+            out.getFD().sync();
+        }
+        synchronized (this) {
+            closeChannel();
+            // rename() is atomic: a crash leaves either the old journal or the new one
+            boolean renamed = tmp.renameTo(file);
+            openChannel();
+            if (!renamed) {
+                throw new IOException("Cannot replace " + file);
+            }
+            pendingSize = 0;
+            size = record.length;
+            records = 1;
+            syncs++;
+            durableSeq = appendedSeq;
+        }
+    }
+
+    /**
+     * Empties the journal (the session ended normally).
+     */
+    synchronized void reset() throws IOException {
+        pendingSize = 0;
+        channel.truncate(0);
+        channel.force(false);
+        size = 0;
+        records = 0;
+        durableSeq = appendedSeq;
+    }
+
+    long durableSeq() {
+        return durableSeq;
+    }
+
+    long size() {
+        return size;
+    }
+
+    int records() {
+        return records;
+    }
+
+    long syncs() {
+        return syncs;
+    }
+
+    void close() throws IOException {
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException {
+        channel.close();
+        raf.close();
+    }
+}
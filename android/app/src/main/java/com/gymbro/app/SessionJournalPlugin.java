@@ -0,0 +1,273 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Crash-safe store of the focus session for SessionRecoveryManager. Instead of
+ * the whole session JSON written to four places on every save, the web side
+ * sends the full state once (begin) and then only the fields that changed
+ * (append), which land in a SessionJournal as one small record each.
+ *
+ * Every call runs on one background thread. Appends queued behind a running
+ * fsync are committed together by the next one, and each call resolves only
+ * once its record is on disk.
+ */
+@CapacitorPlugin(name = "SessionJournal")
+public class SessionJournalPlugin extends Plugin {
+
+    private static final String TAG = "SessionJournalPlugin";
+    private static final String JOURNAL_FILE = "session_journal.bin";
+
+    // Compaction folds the journal back into one snapshot past either limit
+    private static final int COMPACT_RECORDS = 200;
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroJournal");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Executor-confined
+    private SessionJournal journal;
+    private boolean journalOpened = false;
+    // Current session state: the snapshot with every journaled delta applied
+    private JSONObject state;
+    private final List<Pending> awaitingCommit = new ArrayList<>();
+    private boolean commitScheduled = false;
+
+    private static final class Pending {
+        final PluginCall call;
+        final long seq;
+        final int bytes;
+
+        Pending(PluginCall call, long seq, int bytes) {
+            this.call = call;
+            this.seq = seq;
+            this.bytes = bytes;
+        }
+    }
+
+    private interface JournalTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        // Queued appends still reach the disk
+        executor.execute(() -> {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot close session journal", e);
+                }
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void submit(PluginCall call, JournalTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private SessionJournal journal() throws IOException {
+        if (!journalOpened) {
+            journalOpened = true;
+            journal = SessionJournal.open(new File(getContext().getNoBackupFilesDir(), JOURNAL_FILE));
+        }
+        if (journal == null) {
+            throw new IOException("Session journal not available");
+        }
+        return journal;
+    }
+
+    /**
+     * { state }: starts a session from its full state, replacing whatever the
+     * journal held.
+     */
+    @PluginMethod
+    public void begin(PluginCall call) {
+        JSObject snapshot = call.getObject("state");
+        if (snapshot == null) {
+            call.reject("state is required");
+            return;
+        }
+        submit(call, c -> {
+            SessionJournal journal = journal();
+            journal.reset();
+            state = snapshot;
+            byte[] record = bytes(snapshot);
+            awaitCommit(c, journal.append(SessionJournal.TYPE_SNAPSHOT, record), record.length);
+        });
+    }
+
+    /**
+     * { delta: { set, append, remove } }: set replaces top-level fields,
+     * append adds items to array fields (completedSets, setHistory), remove
+     * drops fields. Resolves { seq, bytes, journalBytes } once the record is
+     * durable; bytes is what this save wrote.
+     */
+    @PluginMethod
+    public void append(PluginCall call) {
+        JSObject delta = call.getObject("delta");
+        if (delta == null) {
+            call.reject("delta is required");
+            return;
+        }
+        submit(call, c -> {
+            if (state == null) {
+                c.reject("No session in progress: call begin first");
+                return;
+            }
+            applyDelta(state, delta);
+            byte[] record = bytes(delta);
+            awaitCommit(c, journal().append(SessionJournal.TYPE_DELTA, record), record.length);
+        });
+    }
+
+    /**
+     * Replays the journal after a restart. Resolves { state, records, bytes,
+     * replayMs }; state is null when no session was in progress.
+     */
+    @PluginMethod
+    public void recover(PluginCall call) {
+        submit(call, c -> {
+            long start = System.nanoTime();
+            SessionJournal journal = journal();
+            JSONObject[] folded = {null};
+            journal.replay((type, payload) -> {
+                try {
+                    JSONObject record = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                    if (type == SessionJournal.TYPE_SNAPSHOT) {
+                        folded[0] = record;
+                    } else if (folded[0] != null) {
+                        applyDelta(folded[0], record);
+                    }
+                } catch (JSONException e) {
+                    throw new IOException("Corrupt session journal record", e);
+                }
+            });
+            state = folded[0];
+
+            JSObject ret = new JSObject();
+            ret.put("state", state != null ? state : JSONObject.NULL);
+            ret.put("records", journal.records());
+            ret.put("bytes", journal.size());
+            ret.put("replayMs", (Object) ((System.nanoTime() - start) / 1e6));
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * Ends the session: the journal is emptied.
+     */
+    @PluginMethod
+    public void clear(PluginCall call) {
+        submit(call, c -> {
+            journal().reset();
+            state = null;
+            c.resolve();
+        });
+    }
+
+    private void awaitCommit(PluginCall call, long seq, int bytes) {
+        awaitingCommit.add(new Pending(call, seq, bytes));
+        if (!commitScheduled) {
+            commitScheduled = true;
+            // Queued behind the appends already waiting, so one fsync covers them all
+            executor.execute(this::commitPending);
+        }
+    }
+
+    private void commitPending() {
+        commitScheduled = false;
+        List<Pending> batch = new ArrayList<>(awaitingCommit);
+        awaitingCommit.clear();
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            Log.e(TAG, "Session journal commit failed", e);
+            for (Pending pending : batch) {
+                pending.call.reject("Session journal commit failed: " + e.getMessage(), e);
+            }
+            return;
+        }
+        for (Pending pending : batch) {
+            JSObject ret = new JSObject();
+            ret.put("seq", pending.seq);
+            ret.put("bytes", pending.bytes);
+            ret.put("journalBytes", journal.size());
+            pending.call.resolve(ret);
+        }
+
+        if (state != null && (journal.records() >= COMPACT_RECORDS || journal.size() >= COMPACT_BYTES)) {
+            try {
+                long before = journal.size();
+                journal.compact(bytes(state));
+                Log.d(TAG, "Compacted session journal from " + before + " to " + journal.size() + " bytes");
+            } catch (IOException e) {
+                // The uncompacted journal is still valid
+                Log.w(TAG, "Session journal compaction failed", e);
+            }
+        }
+    }
+
+    private static void applyDelta(JSONObject target, JSONObject delta) throws JSONException {
+        JSONObject set = delta.optJSONObject("set");
+        if (set != null) {
+            Iterator<String> keys = set.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                target.put(key, set.opt(key));
+            }
+        }
+        JSONObject append = delta.optJSONObject("append");
+        if (append != null) {
+            Iterator<String> keys = append.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONArray items = append.optJSONArray(key);
+                JSONArray list = target.optJSONArray(key);
+                if (list == null) {
+                    list = new JSONArray();
+                    target.put(key, list);
+                }
+                for (int i = 0; items != null && i < items.length(); i++) {
+                    list.put(items.opt(i));
+                }
+            }
+        }
+        JSONArray remove = delta.optJSONArray("remove");
+        for (int i = 0; remove != null && i < remove.length(); i++) {
+            target.remove(remove.optString(i, ""));
+        }
+    }
+
+    private static byte[] bytes(JSONObject json) {
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
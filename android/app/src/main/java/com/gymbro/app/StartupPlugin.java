@@ -0,0 +1,65 @@
+package com.gymbro.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+/**
+ * The page's side of the cold start. The splash used to stay up for a fixed
+ * three seconds; MainActivity now keeps it until the page calls firstFrame()
+ * once it has painted, which also closes the StartupTrace and reports the
+ * activity as fully drawn. getStartupTrace() reads the markers back.
+ */
+@CapacitorPlugin(name = "Startup")
+public class StartupPlugin extends Plugin {
+
+    private static final String TAG = "StartupPlugin";
+
+    private static volatile boolean firstFrameReady = false;
+
+    static boolean isFirstFrameReady() {
+        return firstFrameReady;
+    }
+
+    /**
+     * { page, sinceNavigationMs }: the page has painted. The first call
+     * releases the splash; every call resolves the trace.
+     */
+    @PluginMethod
+    public void firstFrame(PluginCall call) {
+        if (GymBroApplication.TRACE.mark(StartupTrace.FIRST_PAINT, SystemClock.elapsedRealtime())) {
+            firstFrameReady = true;
+            Log.i(TAG, "Startup (" + call.getString("page", "?") + ", "
+                + call.getDouble("sinceNavigationMs", -1.0) + "ms after navigation): "
+                + GymBroApplication.TRACE.summary());
+            getActivity().runOnUiThread(() -> getActivity().reportFullyDrawn());
+        }
+        call.resolve(trace());
+    }
+
+    /**
+     * { marks: [{ name, ms }] }, ms since the process started.
+     */
+    @PluginMethod
+    public void getStartupTrace(PluginCall call) {
+        call.resolve(trace());
+    }
+
+    private static JSObject trace() {
+        JSArray marks = new JSArray();
+        for (StartupTrace.Mark mark : GymBroApplication.TRACE.marks()) {
+            JSObject item = new JSObject();
+            item.put("name", mark.name);
+            item.put("ms", mark.elapsedMs);
+            marks.put(item);
+        }
+        JSObject result = new JSObject();
+        result.put("marks", marks);
+        return result;
+    }
+}
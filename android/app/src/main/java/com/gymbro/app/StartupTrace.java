@@ -0,0 +1,85 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cold-start markers of one process: process start, Application.onCreate,
+ * MainActivity.onCreate, bridge ready, WebView warm, first paint signalled by
+ * the page. Each marker is recorded once, the first time it is reached, on
+ * the elapsedRealtime clock; marks() reports them relative to the first one.
+ *
+ * Thread-safe: markers come from the main thread, the warm-up thread and the
+ * plugin thread. Plain Java, no Android types: tested on the JVM.
+ */
+final class StartupTrace {
+
+    static final String PROCESS_START = "processStart";
+    static final String APPLICATION_CREATE = "applicationCreate";
+    static final String WEBVIEW_WARM = "webViewWarm";
+    static final String ACTIVITY_CREATE = "activityCreate";
+    static final String BRIDGE_READY = "bridgeReady";
+    static final String FIRST_PAINT = "firstPaint";
+
+    static final class Mark {
+        final String name;
+        final long elapsedMs;
+
+        Mark(String name, long elapsedMs) {
+            this.name = name;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private final List<Mark> marks = new ArrayList<>();
+
+    /**
+     * Records {@code name} at {@code elapsedMs}; false if it was already
+     * recorded (a later page or a recreated activity reaching it again).
+     */
+    synchronized boolean mark(String name, long elapsedMs) {
+        if (has(name)) {
+            return false;
+        }
+        marks.add(new Mark(name, elapsedMs));
+        return true;
+    }
+
+    synchronized boolean has(String name) {
+        for (Mark mark : marks) {
+            if (mark.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Markers in time order as {name, ms since the earliest}.
+     */
+    synchronized List<Mark> marks() {
+        List<Mark> sorted = new ArrayList<>(marks);
+        Collections.sort(sorted, (a, b) -> Long.compare(a.elapsedMs, b.elapsedMs));
+        List<Mark> relative = new ArrayList<>(sorted.size());
+        long origin = sorted.isEmpty() ? 0 : sorted.get(0).elapsedMs;
+        for (Mark mark : sorted) {
+            relative.add(new Mark(mark.name, mark.elapsedMs - origin));
+        }
+        return relative;
+    }
+
+    /**
+     * One log line: "processStart +0ms, applicationCreate +85ms, ...".
+     */
+    synchronized String summary() {
+        StringBuilder out = new StringBuilder();
+        for (Mark mark : marks()) {
+            if (out.length() > 0) {
+                out.append(", ");
+            }
+            out.append(mark.name).append(" +").append(mark.elapsedMs).append("ms");
+        }
+        return out.toString();
+    }
+}
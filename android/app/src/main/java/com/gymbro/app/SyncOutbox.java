@@ -0,0 +1,486 @@
+package com.gymbro.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Change tracking behind FirestoreService.syncToCloud. The old sync rewrote
+ * the whole history (workouts, logs, body stats, photos, AI plans) as one
+ * document on every call; here each entity is a key (collection/id) and the
+ * outbox holds only the ones whose content changed since the server last
+ * acknowledged them, coalesced so a log edited five times offline goes up
+ * once, in its latest form.
+ *
+ * track() diffs the app's current items against the acknowledged content
+ * hashes. nextBatch() hands out due entries up to an op and byte budget;
+ * ack() retires them (an entity edited again while its batch was in flight
+ * stays queued) and fail() puts them back with exponential backoff. Bytes
+ * and ops acknowledged are counted per sync (since beginSync()) and in
+ * total.
+ *
+ * State is saved to one file after every change (tmp file and rename), so
+ * the outbox survives being offline across restarts; batches in flight at a
+ * crash are simply sent again. Android-free, tested on the JVM. Not
+ * thread-safe: CloudSyncPlugin confines it to its executor.
+ */
+final class SyncOutbox {
+
+    static final int UPSERT = 1;
+    static final int DELETE = 2;
+
+    private static final int MAGIC = 0x47425331; // "GBS1"
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final long BASE_BACKOFF_MS = 30_000;
+    static final long MAX_BACKOFF_MS = 60 * 60 * 1000L;
+
+    /**
+     * One entity as the app has it now: its id and JSON text.
+     */
+    static final class Item {
+        final String id;
+        final String json;
+
+        Item(String id, String json) {
+            this.id = id;
+            this.json = json;
+        }
+    }
+
+    /**
+     * One write of a batch. json is null for deletes.
+     */
+    static final class Op {
+        final String collection;
+        final String id;
+        final int type;
+        final String json;
+
+        Op(String collection, String id, int type, String json) {
+            this.collection = collection;
+            this.id = id;
+            this.type = type;
+            this.json = json;
+        }
+    }
+
+    static final class Batch {
+        final int id;
+        final List<Op> ops = new ArrayList<>();
+        long bytes;
+
+        Batch(int id) {
+            this.id = id;
+        }
+    }
+
+    static final class Stats {
+        int pending;
+        int inFlight;
+        long lastSyncBytes;
+        int lastSyncOps;
+        long totalBytes;
+        long totalOps;
+    }
+
+    private static final class Entry {
+        final int type;
+        final long hash;
+        final String json;
+        final long seq;
+        int attempts;
+        long dueAt;
+        int batch;
+
+        Entry(int type, long hash, String json, long seq) {
+            this.type = type;
+            this.hash = hash;
+            this.json = json;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Sent {
+        final String key;
+        final long seq;
+        final int type;
+        final long hash;
+
+        Sent(String key, long seq, int type, long hash) {
+            this.key = key;
+            this.seq = seq;
+            this.type = type;
+            this.hash = hash;
+        }
+    }
+
+    private final File file;
+    private String owner = "";
+    // key -> content hash the server acknowledged
+    private final Map<String, Long> acked = new HashMap<>();
+    // Oldest change first; coalescing keeps an entity's place in line
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    private final Map<Integer, List<Sent>> inFlight = new HashMap<>();
+    private final Map<Integer, Long> inFlightBytes = new HashMap<>();
+    // Keys with a write in flight: a newer change of one waits for its ack or failure
+    private final Set<String> sending = new HashSet<>();
+    private long nextSeq;
+    private int nextBatch = 1;
+    private long lastSyncBytes;
+    private int lastSyncOps;
+    private long totalBytes;
+    private long totalOps;
+
+    private SyncOutbox(File file) {
+        this.file = file;
+    }
+
+    static SyncOutbox open(File file) throws IOException {
+        SyncOutbox outbox = new SyncOutbox(file);
+        if (file.exists()) {
+            outbox.load();
+        }
+        return outbox;
+    }
+
+    /**
+     * The account the state belongs to; another one starts from scratch.
+     */
+    void owner(String uid) throws IOException {
+        if (owner.equals(uid)) {
+            return;
+        }
+        owner = uid;
+        acked.clear();
+        pending.clear();
+        inFlight.clear();
+        inFlightBytes.clear();
+        sending.clear();
+        lastSyncBytes = 0;
+        lastSyncOps = 0;
+        save();
+    }
+
+    /**
+     * Resets the per-sync counters.
+     */
+    void beginSync() {
+        lastSyncBytes = 0;
+        lastSyncOps = 0;
+    }
+
+    /**
+     * The app's current items of a collection: changed and new ones are
+     * queued as upserts, with {@code complete} the ones no longer there as
+     * deletes. Returns the number of entities queued.
+     */
+    int track(String collection, List<Item> items, boolean complete) throws IOException {
+        String prefix = collection + "/";
+        int queued = 0;
+        Map<String, Boolean> present = new HashMap<>();
+        for (Item item : items) {
+            String key = prefix + item.id;
+            present.put(key, Boolean.TRUE);
+            long hash = hash(item.json);
+            Long server = acked.get(key);
+            Entry entry = pending.get(key);
+            if (entry != null && entry.type == UPSERT && entry.hash == hash) {
+                continue;
+            }
+            if (server != null && server == hash) {
+                // Back to what the server has: the queued change is moot, unless it is on its way
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.batch == 0) {
+                    pending.remove(key);
+                    continue;
+                }
+            }
+            enqueue(key, UPSERT, hash, item.json);
+            queued++;
+        }
+        if (complete) {
+            List<String> gone = new ArrayList<>();
+            for (String key : acked.keySet()) {
+                if (key.startsWith(prefix) && !present.containsKey(key)) {
+                    gone.add(key);
+                }
+            }
+            for (Map.Entry<String, Entry> e : pending.entrySet()) {
+                if (e.getKey().startsWith(prefix) && !present.containsKey(e.getKey()) && !acked.containsKey(e.getKey())) {
+                    gone.add(e.getKey());
+                }
+            }
+            for (String key : gone) {
+                Entry entry = pending.get(key);
+                if (entry != null && entry.type == DELETE) {
+                    continue;
+                }
+                if (!acked.containsKey(key) && (entry == null || entry.batch == 0)) {
+                    // Never reached the server: nothing to delete there
+                    pending.remove(key);
+                    continue;
+                }
+                enqueue(key, DELETE, 0, null);
+                queued++;
+            }
+        }
+        save();
+        return queued;
+    }
+
+    /**
+     * Records items as already on the server (just loaded from it), so the
+     * next track() does not send them back.
+     */
+    void markSynced(String collection, List<Item> items) throws IOException {
+        for (Item item : items) {
+            String key = collection + "/" + item.id;
+            long hash = hash(item.json);
+            acked.put(key, hash);
+            Entry entry = pending.get(key);
+            if (entry != null && entry.batch == 0 && entry.type == UPSERT && entry.hash == hash) {
+                pending.remove(key);
+            }
+        }
+        save();
+    }
+
+    /**
+     * The next due entries, oldest change first, up to {@code maxOps} and
+     * about {@code maxBytes} of payload (always at least one); null when
+     * nothing is due.
+     */
+    Batch nextBatch(int maxOps, long maxBytes, long now) {
+        Batch batch = null;
+        List<Sent> sent = null;
+        for (Map.Entry<String, Entry> e : pending.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.batch != 0 || entry.dueAt > now || sending.contains(e.getKey())) {
+                continue;
+            }
+            long bytes = e.getKey().length() + (entry.json != null ? entry.json.getBytes(UTF8).length : 0);
+            if (batch == null) {
+                batch = new Batch(nextBatch++);
+                sent = new ArrayList<>();
+            } else if (batch.ops.size() >= maxOps || batch.bytes + bytes > maxBytes) {
+                break;
+            }
+            String key = e.getKey();
+            int slash = key.indexOf('/');
+            batch.ops.add(new Op(key.substring(0, slash), key.substring(slash + 1), entry.type, entry.json));
+            batch.bytes += bytes;
+            entry.batch = batch.id;
+            sent.add(new Sent(key, entry.seq, entry.type, entry.hash));
+            sending.add(key);
+        }
+        if (batch != null) {
+            inFlight.put(batch.id, sent);
+            inFlightBytes.put(batch.id, batch.bytes);
+        }
+        return batch;
+    }
+
+    /**
+     * The server applied the batch; counts its payload bytes. -1 for an
+     * unknown batch (already acknowledged, or from before a restart).
+     */
+    long ack(int batchId) throws IOException {
+        List<Sent> sent = inFlight.remove(batchId);
+        if (sent == null) {
+            return -1;
+        }
+        long bytes = inFlightBytes.remove(batchId);
+        for (Sent s : sent) {
+            sending.remove(s.key);
+            if (s.type == DELETE) {
+                acked.remove(s.key);
+            } else {
+                acked.put(s.key, s.hash);
+            }
+            Entry entry = pending.get(s.key);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.seq == s.seq) {
+                pending.remove(s.key);
+            } else if (entry.batch == 0 && entry.type == UPSERT && entry.hash == s.hash) {
+                // Edited and edited back while in flight
+                pending.remove(s.key);
+            }
+        }
+        lastSyncBytes += bytes;
+        lastSyncOps += sent.size();
+        totalBytes += bytes;
+        totalOps += sent.size();
+        save();
+        return bytes;
+    }
+
+    /**
+     * The batch did not go through: its entries are due again after a
+     * backoff that doubles with each failure.
+     */
+    boolean fail(int batchId, long now) throws IOException {
+        List<Sent> sent = inFlight.remove(batchId);
+        if (sent == null) {
+            return false;
+        }
+        inFlightBytes.remove(batchId);
+        for (Sent s : sent) {
+            sending.remove(s.key);
+            Entry entry = pending.get(s.key);
+            if (entry == null || entry.batch != batchId) {
+                continue;
+            }
+            entry.batch = 0;
+            entry.attempts++;
+            entry.dueAt = now + backoff(entry.attempts);
+        }
+        save();
+        return true;
+    }
+
+    Stats stats() {
+        Stats stats = new Stats();
+        for (Entry entry : pending.values()) {
+            if (entry.batch == 0) {
+                stats.pending++;
+            }
+        }
+        stats.inFlight = sending.size();
+        stats.lastSyncBytes = lastSyncBytes;
+        stats.lastSyncOps = lastSyncOps;
+        stats.totalBytes = totalBytes;
+        stats.totalOps = totalOps;
+        return stats;
+    }
+
+    static long backoff(int attempts) {
+        long delay = BASE_BACKOFF_MS;
+        for (int i = 1; i < attempts && delay < MAX_BACKOFF_MS; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Queues a change. A newer change of an entity replaces the queued one
+     * in place; one whose entry is in flight waits behind it.
+     */
+    private void enqueue(String key, int type, long hash, String json) {
+        Entry entry = new Entry(type, hash, json, nextSeq++);
+        Entry old = pending.get(key);
+        if (old != null && old.batch == 0) {
+            entry.attempts = old.attempts;
+            entry.dueAt = old.dueAt;
+        }
+        pending.put(key, entry);
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units
+    static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 16 * 1024))) {
+            out.writeInt(MAGIC);
+            writeString(out, owner);
+            out.writeLong(nextSeq);
+            out.writeLong(lastSyncBytes);
+            out.writeInt(lastSyncOps);
+            out.writeLong(totalBytes);
+            out.writeLong(totalOps);
+            out.writeInt(acked.size());
+            for (Map.Entry<String, Long> e : acked.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeLong(e.getValue());
+            }
+            out.writeInt(pending.size());
+            for (Map.Entry<String, Entry> e : pending.entrySet()) {
+                Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeByte(entry.type);
+                out.writeLong(entry.hash);
+                out.writeInt(entry.attempts);
+                out.writeLong(entry.dueAt);
+                writeString(out, entry.json != null ? entry.json : "");
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a sync outbox: " + file);
+            }
+            owner = readString(in);
+            nextSeq = in.readLong();
+            lastSyncBytes = in.readLong();
+            lastSyncOps = in.readInt();
+            totalBytes = in.readLong();
+            totalOps = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                String key = readString(in);
+                acked.put(key, in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String key = readString(in);
+                int type = in.readByte();
+                long hash = in.readLong();
+                int attempts = in.readInt();
+                long dueAt = in.readLong();
+                String json = readString(in);
+                Entry entry = new Entry(type, hash, type == DELETE ? null : json, nextSeq++);
+                entry.attempts = attempts;
+                entry.dueAt = dueAt;
+                pending.put(key, entry);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated sync outbox: " + file, e);
+        }
+    }
+
+    // Length-prefixed UTF-8: writeUTF stops at 64 KB, a photo entity does not
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 64 * 1024 * 1024) {
+            throw new IOException("Corrupt sync outbox string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,9 @@
+package com.gymbro.app;
+
+/**
+ * Monotonic time source for the timer core. TimerService passes
+ * SystemClock::elapsedRealtime; JVM tests pass a fake they advance by hand.
+ */
+interface TimerClock {
+    long elapsedRealtime();
+}
@@ -0,0 +1,315 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped journal of the TimerService state, rewritten on every state
+ * change and read back in onCreate after a process kill.
+ *
+ * The file has a fixed layout: a small header and two slots. Each write goes
+ * to the slot not holding the latest record, so a kill in the middle of a write
+ * still leaves the previous record intact; the reader keeps the valid slot
+ * (CRC checked) with the highest sequence number. Pages of a shared mapping
+ * belong to the kernel, so a write survives the process dying right after it.
+ */
+final class TimerJournal {
+    private static final String TAG = "TimerJournal";
+
+    private static final int MAGIC = 0x47424A31; // "GBJ1"
+    // 2: the boot wall time (wall - elapsed) replaces the wall clock at write
+    private static final int PAYLOAD_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 8192;
+    // seq (long) + payload length (int) + crc (int)
+    private static final int SLOT_HEADER_SIZE = 16;
+    private static final int FILE_SIZE = HEADER_SIZE + 2 * SLOT_SIZE;
+    // The boot wall time only moves within a boot when the clock is adjusted
+    private static final long BOOT_SLACK_MS = 60_000;
+
+    /**
+     * State read back from the journal. Timers come back with their anchors in
+     * the current boot's elapsedRealtime timebase.
+     */
+    static final class State {
+        long stateSeq;
+        String exercise;
+        String workout;
+        final List<WorkoutTimer> timers = new ArrayList<>();
+        WorkoutProgram program;
+
+        /**
+         * Whether a timer is still live: TimerService only restores those,
+         * with the program they belong to.
+         */
+        boolean isRestorable() {
+            for (WorkoutTimer timer : timers) {
+                if (timer.state != WorkoutTimer.STATE_DONE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final ByteBuffer map;
+    // Encoding buffer reused across writes so journaling does not allocate
+    private final ByteBuffer scratch = ByteBuffer.allocate(SLOT_SIZE - SLOT_HEADER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private long lastSeq;
+    private int nextSlot;
+
+    private TimerJournal(ByteBuffer map) {
+        this.map = map;
+    }
+
+    /**
+     * Opens (or creates) the journal file. Returns null if the file cannot be
+     * mapped; the service then simply runs without persistence.
+     */
+    static TimerJournal open(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != FILE_SIZE) {
+                raf.setLength(FILE_SIZE);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (map.getInt(0) != MAGIC) {
+                map.putInt(0, MAGIC);
+                map.putLong(HEADER_SIZE, 0);
+                map.putLong(HEADER_SIZE + SLOT_SIZE, 0);
+            }
+            return new TimerJournal(map);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot open timer journal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether {@code file} holds timers to restore, read without
+     * mapping or creating it. Lets the plugin leave the service unbound at
+     * startup when there is nothing to bring back.
+     */
+    static boolean hasState(File file, long nowElapsed, long nowWall) {
+        if (file.length() != FILE_SIZE) {
+            return false;
+        }
+        byte[] bytes = new byte[FILE_SIZE];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read timer journal", e);
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(0) != MAGIC) {
+            return false;
+        }
+        State state = new TimerJournal(buffer).read(nowElapsed, nowWall);
+        return state != null && state.isRestorable();
+    }
+
+    synchronized void write(long stateSeq, String exercise, String workout,
+                            Collection<WorkoutTimer> timers, WorkoutProgram program,
+                            long nowElapsed, long nowWall) {
+        try {
+            encode(stateSeq, exercise, workout, timers, program, nowElapsed, nowWall);
+        } catch (BufferOverflowException e) {
+            // Very long programs do not fit a slot: keep the timers, drop the program
+            Log.w(TAG, "Program too large for the journal, persisting timers only");
+            encode(stateSeq, exercise, workout, timers, null, nowElapsed, nowWall);
+        }
+
+        crc.reset();
+        crc.update(scratch.array(), 0, scratch.position());
+        long seq = ++lastSeq;
+        int base = HEADER_SIZE + nextSlot * SLOT_SIZE;
+
+        // Payload first, slot header last: a torn write fails the CRC check
+        map.position(base + SLOT_HEADER_SIZE);
+        map.put(scratch.array(), 0, scratch.position());
+        map.putInt(base + 8, scratch.position());
+        map.putInt(base + 12, (int) crc.getValue());
+        map.putLong(base, seq);
+        nextSlot ^= 1;
+    }
+
+    /**
+     * Returns the latest valid state, or null if there is none.
+     */
+    synchronized State read(long nowElapsed, long nowWall) {
+        int best = -1;
+        long bestSeq = 0;
+        for (int slot = 0; slot < 2; slot++) {
+            int base = HEADER_SIZE + slot * SLOT_SIZE;
+            long seq = map.getLong(base);
+            if (seq > bestSeq && isValid(base)) {
+                best = slot;
+                bestSeq = seq;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        lastSeq = bestSeq;
+        nextSlot = best ^ 1;
+
+        int base = HEADER_SIZE + best * SLOT_SIZE;
+        ByteBuffer in = map.duplicate();
+        in.position(base + SLOT_HEADER_SIZE);
+        in.limit(base + SLOT_HEADER_SIZE + map.getInt(base + 8));
+        try {
+            return decode(in, nowElapsed, nowWall);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable timer journal", e);
+            return null;
+        }
+    }
+
+    private boolean isValid(int base) {
+        int length = map.getInt(base + 8);
+        if (length <= 0 || length > SLOT_SIZE - SLOT_HEADER_SIZE) {
+            return false;
+        }
+        crc.reset();
+        ByteBuffer payload = map.duplicate();
+        payload.position(base + SLOT_HEADER_SIZE);
+        payload.limit(base + SLOT_HEADER_SIZE + length);
+        crc.update(payload);
+        return (int) crc.getValue() == map.getInt(base + 12);
+    }
+
+    private void encode(long stateSeq, String exercise, String workout,
+                        Collection<WorkoutTimer> timers, WorkoutProgram program,
+                        long nowElapsed, long nowWall) {
+        ByteBuffer out = scratch;
+        out.clear();
+        out.putInt(PAYLOAD_VERSION);
+        out.putLong(nowElapsed);
+        out.putLong(nowWall - nowElapsed);
+        out.putLong(stateSeq);
+        putString(out, exercise);
+        putString(out, workout);
+
+        out.putInt(timers.size());
+        for (WorkoutTimer timer : timers) {
+            putString(out, timer.id);
+            out.put((byte) timer.mode);
+            putString(out, timer.label);
+            out.putLong(timer.durationMs);
+            out.putLong(timer.restMs);
+            out.putInt(timer.rounds);
+            out.putInt(timer.round);
+            out.put((byte) (timer.inRest ? 1 : 0));
+            out.put((byte) timer.state);
+            out.putLong(timer.anchorElapsedMs);
+            out.putLong(timer.pausedValueMs);
+        }
+
+        out.put((byte) (program != null ? 1 : 0));
+        if (program != null) {
+            putString(out, program.workout);
+            out.putInt(program.index());
+            out.put((byte) program.phase());
+            out.putInt(program.size());
+            for (int i = 0; i < program.size(); i++) {
+                WorkoutProgram.Step step = program.step(i);
+                putString(out, step.exercise);
+                out.putInt(step.set);
+                out.putInt(step.totalSets);
+                out.putLong(step.restMs);
+            }
+        }
+    }
+
+    private static State decode(ByteBuffer in, long nowElapsed, long nowWall) {
+        if (in.getInt() != PAYLOAD_VERSION) {
+            return null;
+        }
+        long savedElapsed = in.getLong();
+        long savedBootWall = in.getLong();
+        // elapsedRealtime restarts at boot: after a reboot, move anchors through the wall clock.
+        // Elapsed time alone misses a reboot once the new uptime passes the saved one
+        long bootWall = nowWall - nowElapsed;
+        boolean rebooted = nowElapsed < savedElapsed
+            || Math.abs(bootWall - savedBootWall) > BOOT_SLACK_MS;
+        long shift = rebooted ? savedBootWall - bootWall : 0;
+
+        State state = new State();
+        state.stateSeq = in.getLong();
+        state.exercise = getString(in);
+        state.workout = getString(in);
+
+        int timerCount = in.getInt();
+        for (int i = 0; i < timerCount; i++) {
+            String id = getString(in);
+            int mode = in.get();
+            String label = getString(in);
+            long durationMs = in.getLong();
+            long restMs = in.getLong();
+            int rounds = in.getInt();
+            WorkoutTimer timer = new WorkoutTimer(id, mode, label, durationMs, restMs, rounds);
+            timer.round = in.getInt();
+            timer.inRest = in.get() != 0;
+            timer.state = in.get();
+            timer.anchorElapsedMs = in.getLong() + shift;
+            timer.pausedValueMs = in.getLong();
+            // Let the scheduler look at it straight away (deadlines may have passed)
+            timer.nextDueElapsedMs = nowElapsed;
+            state.timers.add(timer);
+        }
+
+        if (in.get() != 0) {
+            String workout = getString(in);
+            int index = in.getInt();
+            int phase = in.get();
+            int stepCount = in.getInt();
+            List<WorkoutProgram.Step> steps = new ArrayList<>(stepCount);
+            for (int i = 0; i < stepCount; i++) {
+                steps.add(new WorkoutProgram.Step(getString(in), in.getInt(), in.getInt(), in.getLong()));
+            }
+            WorkoutProgram program = new WorkoutProgram(workout, steps, index);
+            if (phase == WorkoutProgram.PHASE_REST) {
+                program.startRest();
+            }
+            if (phase != WorkoutProgram.PHASE_DONE) {
+                state.program = program;
+            }
+        }
+        return state;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
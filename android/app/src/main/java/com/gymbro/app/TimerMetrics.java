@@ -0,0 +1,158 @@
+package com.gymbro.app;
+
+import java.util.Arrays;
+
+/**
+ * Counters and histograms for the timer pipeline. Recording only touches
+ * preallocated fields, so it can sit on the tick path: no boxing, no
+ * allocation, one uncontended lock per sample.
+ */
+final class TimerMetrics {
+
+    /**
+     * Power-of-two bucketed histogram: bucket i holds values in [2^(i-1), 2^i),
+     * bucket 0 holds zero. Percentiles are reported as the bucket upper bound.
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        final String unit;
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max;
+
+        Histogram(String unit) {
+            this.unit = unit;
+        }
+
+        synchronized void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+            buckets[bucket]++;
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        synchronized long min() {
+            return count > 0 ? min : 0;
+        }
+
+        synchronized long max() {
+            return max;
+        }
+
+        synchronized long mean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Upper bound of the bucket holding the {@code percent}-th percentile,
+         * clamped to the largest value seen.
+         */
+        synchronized long percentile(int percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (count * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : (1L << i) - 1;
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+
+        synchronized void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            min = Long.MAX_VALUE;
+            max = 0;
+        }
+    }
+
+    // How late each scheduler pass handled a tick or deadline, in ms
+    final Histogram tickJitter = new Histogram("ms");
+    // Cost of one NotificationManager.notify()/startForeground() call, in us
+    final Histogram notifyCost = new Histogram("us");
+    // From bindService() to onServiceConnected, in ms
+    final Histogram bindLatency = new Histogram("ms");
+    // Cost of one notifyListeners() call into the bridge, in us
+    final Histogram dispatchLatency = new Histogram("us");
+
+    private long ticks;
+    private long deadlines;
+    private long lateDeadlines;
+    private long eventsDispatched;
+    private long eventsSuppressed;
+
+    synchronized void countTick() {
+        ticks++;
+    }
+
+    synchronized void countDeadline(boolean late) {
+        deadlines++;
+        if (late) {
+            lateDeadlines++;
+        }
+    }
+
+    synchronized void countEvent(boolean dispatched) {
+        if (dispatched) {
+            eventsDispatched++;
+        } else {
+            eventsSuppressed++;
+        }
+    }
+
+    synchronized long ticks() {
+        return ticks;
+    }
+
+    synchronized long deadlines() {
+        return deadlines;
+    }
+
+    synchronized long lateDeadlines() {
+        return lateDeadlines;
+    }
+
+    synchronized long eventsDispatched() {
+        return eventsDispatched;
+    }
+
+    synchronized long eventsSuppressed() {
+        return eventsSuppressed;
+    }
+
+    void reset() {
+        synchronized (this) {
+            ticks = 0;
+            deadlines = 0;
+            lateDeadlines = 0;
+            eventsDispatched = 0;
+            eventsSuppressed = 0;
+        }
+        tickJitter.reset();
+        notifyCost.reset();
+        // Bind latency is kept: the service usually binds once per process
+        dispatchLatency.reset();
+    }
+}
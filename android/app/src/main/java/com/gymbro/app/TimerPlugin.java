@@ -8,9 +8,11 @@ import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -19,6 +21,11 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 import com.getcapacitor.PermissionState;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONObject;
 
 @CapacitorPlugin(
     name = "TimerNotification",
@@ -33,30 +40,178 @@ public class TimerPlugin extends Plugin {
     
     private static final String TAG = "TimerPlugin";
     
-    private TimerService timerService;
-    private boolean isBound = false;
+    // Ticks from several timers landing within one frame are merged into one event
+    private static final long FRAME_BUDGET_MS = 16;
+    
+    // Layout version of the getState()/timerState snapshot
+    private static final int SNAPSHOT_VERSION = 1;
+    
+    private volatile TimerService timerService;
+    
+    // Commands issued before onServiceConnected, run in arrival order once it
+    // fires. Plugin calls arrive on the Capacitor plugin thread, the connection
+    // callback on the main thread: both sides go through the queue's lock
+    private final ArrayDeque<Runnable> pendingCommands = new ArrayDeque<>();
+    private boolean serviceReady = false;
+    // Set by the bindService() call, not by the connection: a binding still
+    // waiting for onServiceConnected must be released too
+    private boolean bindRequested = false;
+    
+    // Time from a startTimer call to the first tick it produces, -1 until measured
+    private volatile long startRequestedAtMs = -1;
+    private volatile long timeToFirstTickMs = -1;
+    // When the pending bindService() call was made, -1 once connected
+    private volatile long bindRequestedAtMs = -1;
+    
+    // Tick subscription: 0 keeps the legacy per-timer timerTick events, otherwise
+    // one coalesced timerTicks event at most every tickIntervalMs. The flush runs on
+    // the service's timer thread; lastTickEmitMs and tickFlushPending live there
+    private final Runnable flushTicksRunnable = this::flushTicks;
+    private volatile boolean webViewVisible = true;
+    private volatile long tickIntervalMs = 0;
+    private long lastTickEmitMs = 0;
+    private boolean tickFlushPending = false;
+    
+    // One callback for every timer in the service; events carry the timer id.
+    // Invoked on the service's timer thread: notifyListeners hands the event to
+    // the WebView thread itself, so that is the only hop
+    private final TimerService.TimerCallback timerCallback = new TimerService.TimerCallback() {
+        @Override
+        public void onTick(String timerId, long seconds) {
+            long requestedAt = startRequestedAtMs;
+            if (requestedAt >= 0) {
+                startRequestedAtMs = -1;
+                timeToFirstTickMs = SystemClock.elapsedRealtime() - requestedAt;
+                Log.d(TAG, "Time to first tick: " + timeToFirstTickMs + "ms");
+            }
+            if (!webViewVisible) {
+                // Nobody can see it: the bridge stays silent until handleOnResume
+                countSuppressed();
+                return;
+            }
+            if (tickIntervalMs > 0) {
+                scheduleTickFlush();
+                return;
+            }
+            JSObject ret = new JSObject();
+            ret.put("id", timerId);
+            ret.put("remaining", seconds);
+            dispatch("timerTick", ret);
+        }
+        
+        @Override
+        public void onPhaseChange(String timerId, int round, boolean rest) {
+            if (!webViewVisible) {
+                countSuppressed();
+                return;
+            }
+            JSObject ret = new JSObject();
+            ret.put("id", timerId);
+            ret.put("round", round);
+            ret.put("rest", rest);
+            dispatch("timerPhase", ret);
+        }
+        
+        @Override
+        public void onFinish(String timerId) {
+            Log.d(TAG, "Timer finished: " + timerId);
+            if (!webViewVisible) {
+                // The timerState snapshot pushed on resume carries the outcome
+                countSuppressed();
+                return;
+            }
+            JSObject ret = new JSObject();
+            ret.put("id", timerId);
+            ret.put("completed", true);
+            dispatch("timerComplete", ret);
+        }
+        
+        @Override
+        public void onProgramProgress(int index, int phase) {
+            if (!webViewVisible) {
+                countSuppressed();
+                return;
+            }
+            // Compact on purpose: JS already holds the program and looks the step up by index
+            JSObject ret = new JSObject();
+            ret.put("index", index);
+            ret.put("phase", phaseName(phase));
+            dispatch("programProgress", ret);
+        }
+    };
+    
+    /**
+     * notifyListeners with its cost recorded. Runs on the timer thread.
+     */
+    private void dispatch(String event, JSObject data) {
+        long start = System.nanoTime();
+        notifyListeners(event, data);
+        TimerService service = timerService;
+        if (service != null) {
+            service.getMetrics().dispatchLatency.record((System.nanoTime() - start) / 1000);
+            service.getMetrics().countEvent(true);
+        }
+    }
+    
+    private void countSuppressed() {
+        TimerService service = timerService;
+        if (service != null) {
+            service.getMetrics().countEvent(false);
+        }
+    }
+    
+    private static String phaseName(int phase) {
+        if (phase == WorkoutProgram.PHASE_SET) {
+            return "set";
+        }
+        return phase == WorkoutProgram.PHASE_REST ? "rest" : "done";
+    }
     
     private ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             TimerService.TimerBinder binder = (TimerService.TimerBinder) service;
             timerService = binder.getService();
-            isBound = true;
+            timerService.setCallback(timerCallback);
+            long requestedAt = bindRequestedAtMs;
+            if (requestedAt >= 0) {
+                bindRequestedAtMs = -1;
+                timerService.getMetrics().bindLatency.record(SystemClock.elapsedRealtime() - requestedAt);
+            }
+            timerService.runOnTimerThread(() -> {
+                if (!timerService.getTimers().isEmpty()) {
+                    // Timers restored from the journal after a kill: hand them to JS.
+                    // Retained, since the page may register its listener after we connect
+                    notifyListeners("timerState", buildSnapshot(), true);
+                }
+            });
+            drainPendingCommands();
         }
         
         @Override
         public void onServiceDisconnected(ComponentName name) {
+            // The binding stays: the system reconnects us once the service is back
+            synchronized (pendingCommands) {
+                serviceReady = false;
+            }
             timerService = null;
-            isBound = false;
         }
     };
     
     @Override
     public void load() {
-        // Bind to the service when plugin loads
-        Intent intent = new Intent(getContext(), TimerService.class);
-        getContext().bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
-        Log.d(TAG, "TimerPlugin loaded and service binding initiated");
+        // The service is bound by the first call that needs it, off the cold
+        // start. Only timers journaled by a previous process bind it now, so
+        // they are restored and their notification comes back.
+        Thread probe = new Thread(() -> {
+            File journal = new File(getContext().getNoBackupFilesDir(), TimerService.JOURNAL_FILE);
+            if (TimerJournal.hasState(journal, SystemClock.elapsedRealtime(), System.currentTimeMillis())) {
+                withService(() -> { });
+            }
+        }, "GymBroTimerProbe");
+        probe.setPriority(Thread.NORM_PRIORITY - 1);
+        probe.start();
+        Log.d(TAG, "TimerPlugin loaded, service bound on first use");
     }
     
     @PluginMethod
@@ -94,12 +249,16 @@ public class TimerPlugin extends Plugin {
     public void startTimer(PluginCall call) {
         Log.d(TAG, "startTimer called");
         
-        int seconds = call.getInt("seconds", 90);
-        String exercise = call.getString("exercise", "Prossimo esercizio");
-        String workout = call.getString("workout", "Allenamento");
-        
-        Log.d(TAG, "Timer params: " + seconds + "s, exercise: " + exercise + ", workout: " + workout);
+        String id = call.getString("id", TimerService.DEFAULT_TIMER_ID);
+        Log.d(TAG, "Timer params: id " + id + ", mode " + call.getString("mode", "countdown")
+            + ", " + call.getInt("seconds", 90) + "s");
         
+        ensureNotificationPermission();
+        startRequestedAtMs = SystemClock.elapsedRealtime();
+        withService(() -> startTimerInternal(call));
+    }
+    
+    private void ensureNotificationPermission() {
         // Check notification permission for Android 13+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             if (ContextCompat.checkSelfPermission(getContext(), Manifest.permission.POST_NOTIFICATIONS) 
@@ -110,54 +269,92 @@ public class TimerPlugin extends Plugin {
                     new String[]{Manifest.permission.POST_NOTIFICATIONS}, 1001);
             }
         }
-        
-        if (!isBound) {
-            Log.d(TAG, "Service not bound, starting and binding...");
-            // Start and bind service if not already bound
-            Intent intent = new Intent(getContext(), TimerService.class);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                getContext().startForegroundService(intent);
-            } else {
-                getContext().startService(intent);
+    }
+    
+    /**
+     * Runs {@code action} against the service, on its timer thread. Until the
+     * service is connected the action is queued (binding first if nobody asked
+     * yet) and runs as soon as onServiceConnected fires, in the order the calls
+     * arrived.
+     */
+    private void withService(Runnable action) {
+        boolean queued;
+        boolean bind = false;
+        synchronized (pendingCommands) {
+            queued = !serviceReady;
+            if (queued) {
+                pendingCommands.add(action);
+                bind = !bindRequested;
+                bindRequested = true;
             }
+        }
+        if (bind) {
+            Log.d(TAG, "Service not bound, binding...");
+            // Binding is enough: the service promotes itself to started/foreground
+            // when its first timer starts
+            bindRequestedAtMs = SystemClock.elapsedRealtime();
+            Intent intent = new Intent(getContext(), TimerService.class);
             getContext().bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
-            
-            // Wait a bit for binding then start timer
-            getActivity().runOnUiThread(() -> {
-                new android.os.Handler().postDelayed(() -> {
-                    startTimerInternal(seconds, exercise, workout, call);
-                }, 300);
-            });
-        } else {
-            startTimerInternal(seconds, exercise, workout, call);
+        }
+        if (!queued) {
+            timerService.runOnTimerThread(action);
+        }
+    }
+    
+    /**
+     * Runs the commands queued while binding. serviceReady only flips once the
+     * queue is empty, so a call arriving meanwhile still lines up behind them.
+     */
+    private void drainPendingCommands() {
+        int drained = 0;
+        while (true) {
+            Runnable next;
+            synchronized (pendingCommands) {
+                next = pendingCommands.poll();
+                if (next == null) {
+                    serviceReady = true;
+                    break;
+                }
+            }
+            timerService.runOnTimerThread(next);
+            drained++;
+        }
+        if (drained > 0) {
+            Log.d(TAG, "Ran " + drained + " commands queued while binding");
         }
     }
     
-    private void startTimerInternal(int seconds, String exercise, String workout, PluginCall call) {
+    private void startTimerInternal(PluginCall call) {
         Log.d(TAG, "startTimerInternal called, timerService: " + (timerService != null ? "available" : "null"));
         
         if (timerService != null) {
-            Log.d(TAG, "Starting timer service with " + seconds + " seconds");
-            timerService.startTimer(seconds * 1000L, exercise, workout, new TimerService.TimerCallback() {
-                @Override
-                public void onTick(long remainingSeconds) {
-                    JSObject ret = new JSObject();
-                    ret.put("remaining", remainingSeconds);
-                    notifyListeners("timerTick", ret);
-                }
-                
-                @Override
-                public void onFinish() {
-                    Log.d(TAG, "Timer finished");
-                    JSObject ret = new JSObject();
-                    ret.put("completed", true);
-                    notifyListeners("timerComplete", ret);
-                }
-            });
+            String id = call.getString("id", TimerService.DEFAULT_TIMER_ID);
+            String mode = call.getString("mode", "countdown");
+            int seconds = call.getInt("seconds", 90);
+            String exercise = call.getString("exercise", "Prossimo esercizio");
+            String workout = call.getString("workout", "Allenamento");
+            String label = call.getString("label");
+            String renderMode = call.getString("renderMode");
+            
+            if (renderMode != null) {
+                timerService.setRenderMode("text".equals(renderMode)
+                    ? TimerService.RENDER_MODE_TEXT : TimerService.RENDER_MODE_CHRONOMETER);
+            }
+            
+            if ("stopwatch".equals(mode)) {
+                timerService.startStopwatch(id, label, workout);
+            } else if ("interval".equals(mode)) {
+                int restSeconds = call.getInt("restSeconds", 0);
+                int rounds = call.getInt("rounds", 1);
+                timerService.startInterval(id, seconds * 1000L, restSeconds * 1000L, rounds, label, workout);
+            } else {
+                timerService.startTimer(id, seconds * 1000L, exercise, workout);
+            }
             
             Log.d(TAG, "Timer started successfully");
             JSObject ret = new JSObject();
             ret.put("started", true);
+            ret.put("id", id);
             call.resolve(ret);
         } else {
             Log.e(TAG, "Timer service not available!");
@@ -167,57 +364,400 @@ public class TimerPlugin extends Plugin {
     
     @PluginMethod
     public void stopTimer(PluginCall call) {
-        if (timerService != null) {
-            timerService.stopTimer();
+        String id = call.getString("id");
+        withService(() -> {
+            timerService.stopTimer(id);
             
-            // Stop the foreground service
-            Intent intent = new Intent(getContext(), TimerService.class);
-            getContext().stopService(intent);
-        }
-        
-        JSObject ret = new JSObject();
-        ret.put("stopped", true);
-        call.resolve(ret);
+            // Stop the foreground service once no timer is left
+            if (timerService.getTimers().isEmpty()) {
+                Intent intent = new Intent(getContext(), TimerService.class);
+                getContext().stopService(intent);
+            }
+            
+            JSObject ret = new JSObject();
+            ret.put("stopped", true);
+            call.resolve(ret);
+        });
     }
     
     @PluginMethod
     public void pauseTimer(PluginCall call) {
-        if (timerService != null) {
-            timerService.pauseTimer();
+        withService(() -> {
+            timerService.pauseTimer(call.getString("id"));
+            
+            JSObject ret = new JSObject();
+            ret.put("paused", true);
+            call.resolve(ret);
+        });
+    }
+    
+    @PluginMethod
+    public void resumeTimer(PluginCall call) {
+        withService(() -> {
+            timerService.resumeTimer(call.getString("id"));
+            
+            JSObject ret = new JSObject();
+            ret.put("resumed", true);
+            call.resolve(ret);
+        });
+    }
+    
+    @PluginMethod
+    public void adjustTimer(PluginCall call) {
+        int seconds = call.getInt("seconds", 0);
+        withService(() -> {
+            timerService.adjustTimer(call.getString("id"), seconds * 1000L);
+            
+            JSObject ret = new JSObject();
+            ret.put("adjusted", true);
+            call.resolve(ret);
+        });
+    }
+    
+    /**
+     * Uploads a whole precompiled workout (one entry per set, in execution
+     * order) so the service can walk sets and rests without a bridge call per set.
+     */
+    @PluginMethod
+    public void loadProgram(PluginCall call) {
+        JSArray steps = call.getArray("steps");
+        if (steps == null || steps.length() == 0) {
+            call.reject("Program has no steps");
+            return;
+        }
+        
+        List<WorkoutProgram.Step> parsed = new ArrayList<>(steps.length());
+        for (int i = 0; i < steps.length(); i++) {
+            JSONObject step = steps.optJSONObject(i);
+            if (step == null) {
+                continue;
+            }
+            parsed.add(new WorkoutProgram.Step(
+                step.optString("exercise", "Esercizio"),
+                step.optInt("set", 1),
+                step.optInt("totalSets", 1),
+                step.optLong("rest", 0) * 1000L
+            ));
         }
+        WorkoutProgram program = new WorkoutProgram(
+            call.getString("workout", "Allenamento"), parsed, call.getInt("startIndex", 0));
         
+        ensureNotificationPermission();
+        withService(() -> {
+            if (timerService == null) {
+                call.reject("Timer service not available");
+                return;
+            }
+            timerService.loadProgram(program);
+            JSObject ret = new JSObject();
+            ret.put("loaded", true);
+            ret.put("steps", program.size());
+            call.resolve(ret);
+        });
+    }
+    
+    @PluginMethod
+    public void completeSet(PluginCall call) {
+        withService(() -> {
+            timerService.completeSet();
+            call.resolve(programState());
+        });
+    }
+    
+    @PluginMethod
+    public void skipRest(PluginCall call) {
+        withService(() -> {
+            timerService.skipRest();
+            call.resolve(programState());
+        });
+    }
+    
+    @PluginMethod
+    public void stopProgram(PluginCall call) {
+        withService(() -> {
+            timerService.stopProgram();
+            call.resolve(programState());
+        });
+    }
+    
+    @PluginMethod
+    public void getProgramState(PluginCall call) {
+        withService(() -> call.resolve(programState()));
+    }
+    
+    private JSObject programState() {
+        WorkoutProgram program = timerService != null ? timerService.getProgram() : null;
         JSObject ret = new JSObject();
-        ret.put("paused", true);
-        call.resolve(ret);
+        ret.put("active", program != null);
+        if (program != null) {
+            ret.put("index", program.index());
+            ret.put("phase", phaseName(program.phase()));
+        }
+        return ret;
     }
     
     @PluginMethod
-    public void resumeTimer(PluginCall call) {
-        if (timerService != null) {
-            timerService.resumeTimer();
+    public void updateExercise(PluginCall call) {
+        String exercise = call.getString("exercise");
+        withService(() -> {
+            timerService.setExercise(exercise);
+            
+            JSObject ret = new JSObject();
+            ret.put("updated", true);
+            call.resolve(ret);
+        });
+    }
+    
+    @PluginMethod
+    public void isRunning(PluginCall call) {
+        String id = call.getString("id", TimerService.DEFAULT_TIMER_ID);
+        withService(() -> {
+            long now = SystemClock.elapsedRealtime();
+            JSArray list = new JSArray();
+            for (WorkoutTimer timer : timerService.getTimers()) {
+                JSObject item = new JSObject();
+                item.put("id", timer.id);
+                item.put("running", timer.isRunning());
+                item.put("seconds", timer.displaySeconds(now));
+                list.put(item);
+            }
+            
+            JSObject ret = new JSObject();
+            ret.put("running", timerService.isRunning(id));
+            ret.put("remaining", timerService.getRemainingTimeMs(id) / 1000);
+            ret.put("timers", list);
+            ret.put("notifyCount", timerService.getNotifyCount());
+            ret.put("finishLatenessMs", timerService.getLastFinishLatenessMs());
+            ret.put("timeToFirstTickMs", timeToFirstTickMs);
+            call.resolve(ret);
+        });
+    }
+    
+    /**
+     * Timer pipeline metrics since the last reset: scheduler jitter, notify()
+     * cost, bind latency and bridge dispatch cost as histograms, plus counters.
+     * Pass {@code reset: true} to start a new collection window.
+     */
+    @PluginMethod
+    public void getTimerMetrics(PluginCall call) {
+        boolean reset = Boolean.TRUE.equals(call.getBoolean("reset", false));
+        withService(() -> {
+            TimerMetrics metrics = timerService.getMetrics();
+            JSObject ret = new JSObject();
+            ret.put("ticks", metrics.ticks());
+            ret.put("deadlines", metrics.deadlines());
+            ret.put("lateDeadlines", metrics.lateDeadlines());
+            ret.put("eventsDispatched", metrics.eventsDispatched());
+            ret.put("eventsSuppressed", metrics.eventsSuppressed());
+            ret.put("notifyCount", timerService.getNotifyCount());
+            ret.put("timeToFirstTickMs", timeToFirstTickMs);
+            ret.put("tickJitter", histogramJson(metrics.tickJitter));
+            ret.put("notifyCost", histogramJson(metrics.notifyCost));
+            ret.put("bindLatency", histogramJson(metrics.bindLatency));
+            ret.put("dispatchLatency", histogramJson(metrics.dispatchLatency));
+            if (reset) {
+                metrics.reset();
+            }
+            call.resolve(ret);
+        });
+    }
+    
+    private static JSObject histogramJson(TimerMetrics.Histogram histogram) {
+        JSObject ret = new JSObject();
+        ret.put("unit", histogram.unit);
+        ret.put("count", histogram.count());
+        ret.put("min", histogram.min());
+        ret.put("mean", histogram.mean());
+        ret.put("p50", histogram.percentile(50));
+        ret.put("p90", histogram.percentile(90));
+        ret.put("p99", histogram.percentile(99));
+        ret.put("max", histogram.max());
+        return ret;
+    }
+    
+    /**
+     * Switches to the coalesced tick stream. JS picks the rate; each event
+     * carries wall-clock deadlines so the UI can interpolate between events.
+     */
+    @PluginMethod
+    public void subscribeTicks(PluginCall call) {
+        long intervalMs = Math.max(FRAME_BUDGET_MS, call.getInt("intervalMs", 1000));
+        withService(() -> {
+            tickIntervalMs = intervalMs;
+            
+            JSObject ret = new JSObject();
+            ret.put("intervalMs", intervalMs);
+            call.resolve(ret);
+            if (webViewVisible) {
+                flushTicks();
+            }
+        });
+    }
+    
+    @PluginMethod
+    public void unsubscribeTicks(PluginCall call) {
+        withService(() -> {
+            tickIntervalMs = 0;
+            cancelTickFlush();
+            call.resolve();
+        });
+    }
+    
+    private void scheduleTickFlush() {
+        if (tickFlushPending) {
+            return;
+        }
+        tickFlushPending = true;
+        long dueIn = lastTickEmitMs + tickIntervalMs - SystemClock.uptimeMillis();
+        timerService.getTimerHandler().postDelayed(flushTicksRunnable, Math.max(FRAME_BUDGET_MS, dueIn));
+    }
+    
+    private void cancelTickFlush() {
+        timerService.getTimerHandler().removeCallbacks(flushTicksRunnable);
+        tickFlushPending = false;
+    }
+    
+    private void flushTicks() {
+        tickFlushPending = false;
+        if (!webViewVisible || timerService == null) {
+            return;
+        }
+        lastTickEmitMs = SystemClock.uptimeMillis();
+        
+        long now = SystemClock.elapsedRealtime();
+        long wallNow = System.currentTimeMillis();
+        JSArray list = new JSArray();
+        for (WorkoutTimer timer : timerService.getTimers()) {
+            JSObject item = new JSObject();
+            item.put("id", timer.id);
+            item.put("running", timer.isRunning());
+            item.put("remaining", timer.displaySeconds(now));
+            if (timer.hasDeadline()) {
+                // Wall-clock deadline: JS derives the remaining time from Date.now()
+                item.put("deadline", wallNow + timer.remainingMs(now));
+            } else {
+                item.put("startedAt", wallNow - timer.elapsedMs(now));
+            }
+            list.put(item);
         }
         
         JSObject ret = new JSObject();
-        ret.put("resumed", true);
-        call.resolve(ret);
+        ret.put("ts", wallNow);
+        ret.put("timers", list);
+        dispatch("timerTicks", ret);
     }
     
+    /**
+     * Full timer state in one call, so JS can resync without polling isRunning.
+     */
     @PluginMethod
-    public void isRunning(PluginCall call) {
-        boolean running = timerService != null && timerService.isRunning();
-        long remaining = timerService != null ? timerService.getRemainingTimeMs() / 1000 : 0;
+    public void getState(PluginCall call) {
+        withService(() -> call.resolve(buildSnapshot()));
+    }
+    
+    /**
+     * Snapshot of every timer and the program position. Deadlines are in the
+     * monotonic elapsedRealtime timebase and come with a wall-clock anchor read at
+     * the same instant: deadlineWall = wallNow + (deadline - monotonicNow).
+     * {@code seq} grows on every state change, so stale snapshots can be dropped.
+     */
+    private JSObject buildSnapshot() {
+        long now = SystemClock.elapsedRealtime();
+        long wallNow = System.currentTimeMillis();
         
         JSObject ret = new JSObject();
-        ret.put("running", running);
-        ret.put("remaining", remaining);
-        call.resolve(ret);
+        ret.put("version", SNAPSHOT_VERSION);
+        ret.put("seq", timerService != null ? timerService.getStateSeq() : 0);
+        ret.put("monotonicNow", now);
+        ret.put("wallNow", wallNow);
+        
+        JSArray list = new JSArray();
+        if (timerService != null) {
+            for (WorkoutTimer timer : timerService.getTimers()) {
+                list.put(timerSnapshot(timer, now, wallNow));
+            }
+            ret.put("exercise", timerService.getExerciseName());
+            ret.put("workout", timerService.getWorkoutName());
+        }
+        ret.put("timers", list);
+        
+        WorkoutProgram program = timerService != null ? timerService.getProgram() : null;
+        if (program != null) {
+            JSObject position = new JSObject();
+            position.put("index", program.index());
+            position.put("phase", phaseName(program.phase()));
+            position.put("size", program.size());
+            ret.put("program", position);
+        }
+        return ret;
+    }
+    
+    private static JSObject timerSnapshot(WorkoutTimer timer, long now, long wallNow) {
+        JSObject item = new JSObject();
+        item.put("id", timer.id);
+        item.put("mode", timer.mode == WorkoutTimer.MODE_STOPWATCH ? "stopwatch"
+            : timer.mode == WorkoutTimer.MODE_INTERVAL ? "interval" : "countdown");
+        item.put("state", timer.state == WorkoutTimer.STATE_RUNNING ? "running"
+            : timer.state == WorkoutTimer.STATE_PAUSED ? "paused" : "done");
+        item.put("paused", timer.state == WorkoutTimer.STATE_PAUSED);
+        item.put("label", timer.label);
+        if (timer.hasDeadline()) {
+            long remaining = timer.remainingMs(now);
+            item.put("remainingMs", remaining);
+            if (timer.isRunning()) {
+                item.put("deadline", timer.anchorElapsedMs);
+                item.put("deadlineWall", wallNow + remaining);
+            }
+        } else {
+            item.put("elapsedMs", timer.elapsedMs(now));
+            if (timer.isRunning()) {
+                item.put("startedAt", timer.anchorElapsedMs);
+            }
+        }
+        if (timer.mode == WorkoutTimer.MODE_INTERVAL) {
+            item.put("round", timer.round);
+            item.put("rounds", timer.rounds);
+            item.put("rest", timer.inRest);
+        }
+        return item;
+    }
+    
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        webViewVisible = true;
+        boolean bound;
+        synchronized (pendingCommands) {
+            bound = bindRequested;
+        }
+        // One pushed event replaces whatever was held back while hidden; with
+        // no service yet nothing was, and resuming must not bind it
+        if (bound) {
+            withService(() -> dispatch("timerState", buildSnapshot()));
+        }
+    }
+    
+    @Override
+    protected void handleOnPause() {
+        webViewVisible = false;
+        TimerService service = timerService;
+        if (service != null) {
+            service.runOnTimerThread(this::cancelTickFlush);
+        }
+        super.handleOnPause();
     }
     
     @Override
     protected void handleOnDestroy() {
-        if (isBound) {
+        boolean bound;
+        synchronized (pendingCommands) {
+            bound = bindRequested;
+            bindRequested = false;
+            serviceReady = false;
+            pendingCommands.clear();
+        }
+        if (bound) {
             getContext().unbindService(serviceConnection);
-            isBound = false;
         }
         super.handleOnDestroy();
     }
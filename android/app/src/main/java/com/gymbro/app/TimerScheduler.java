@@ -0,0 +1,270 @@
+package com.gymbro.app;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Android-free core of TimerService: the timer registry and the queue that
+ * decides which timer needs attention next. It never sleeps or posts anything;
+ * the owner calls runDue() whenever nextDueElapsedMs() is reached and re-arms
+ * its own wakeup (a Handler on device, a fake clock in tests).
+ */
+final class TimerScheduler {
+
+    interface Listener {
+        void onTick(WorkoutTimer timer, long seconds);
+        void onPhaseChange(WorkoutTimer timer, long latenessMs);
+        void onFinish(WorkoutTimer timer, long latenessMs);
+    }
+
+    // Completion should land within this many ms of the deadline, screen on or off
+    static final long ACCURACY_TARGET_MS = 50;
+
+    // runDue() result bits
+    static final int RESULT_TICKED = 1;
+    static final int RESULT_STATE_CHANGED = 2;
+
+    private final TimerClock clock;
+    private final TimerMetrics metrics;
+    private final Listener listener;
+
+    // Timer registry keyed by id; insertion order is the order of the notification rows
+    private final Map<String, WorkoutTimer> timers = new LinkedHashMap<>();
+    // Running timers ordered by the next time they need attention. One pass drains
+    // it, so N timers cost one wakeup instead of N
+    private final PriorityQueue<WorkoutTimer> dueQueue = new PriorityQueue<>(8,
+        (a, b) -> Long.compare(a.nextDueElapsedMs, b.nextDueElapsedMs));
+
+    private long lastFinishLatenessMs = -1;
+
+    TimerScheduler(TimerClock clock, TimerMetrics metrics, Listener listener) {
+        this.clock = clock;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    long now() {
+        return clock.elapsedRealtime();
+    }
+
+    /**
+     * Starts {@code timer}, replacing any timer registered under the same id,
+     * and reports its first tick straight away.
+     */
+    void start(WorkoutTimer timer) {
+        WorkoutTimer previous = timers.remove(timer.id);
+        if (previous != null) {
+            dueQueue.remove(previous);
+        }
+        long now = now();
+        timer.start(now);
+        timers.put(timer.id, timer);
+        tick(timer, now);
+    }
+
+    /**
+     * Registers a timer as-is (restored from the journal). Running timers are
+     * looked at on the next pass.
+     */
+    void restore(WorkoutTimer timer) {
+        timers.put(timer.id, timer);
+        if (timer.isRunning()) {
+            dueQueue.add(timer);
+        }
+    }
+
+    boolean remove(String id) {
+        WorkoutTimer timer = timers.remove(id);
+        if (timer == null) {
+            return false;
+        }
+        dueQueue.remove(timer);
+        return true;
+    }
+
+    void clear() {
+        timers.clear();
+        dueQueue.clear();
+    }
+
+    /**
+     * Drops timers that reached their end. Returns true if any was removed.
+     */
+    boolean removeFinished() {
+        return timers.values().removeIf(t -> t.state == WorkoutTimer.STATE_DONE);
+    }
+
+    /**
+     * Pauses the given timer, or every running timer when {@code id} is null.
+     */
+    boolean pause(String id) {
+        long now = now();
+        boolean changed = false;
+        for (WorkoutTimer timer : select(id)) {
+            if (timer.isRunning()) {
+                timer.pause(now);
+                dueQueue.remove(timer);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Resumes the given timer, or every paused timer when {@code id} is null.
+     */
+    boolean resume(String id) {
+        long now = now();
+        boolean changed = false;
+        for (WorkoutTimer timer : select(id)) {
+            if (timer.state == WorkoutTimer.STATE_PAUSED) {
+                timer.resume(now);
+                tick(timer, now);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Shifts a running or paused countdown by {@code deltaMs}.
+     */
+    boolean adjust(String id, long deltaMs) {
+        WorkoutTimer timer = timers.get(id);
+        if (timer == null || !timer.hasDeadline() || timer.state == WorkoutTimer.STATE_DONE) {
+            return false;
+        }
+        long now = now();
+        boolean queued = dueQueue.remove(timer);
+        timer.adjust(deltaMs, now);
+        if (queued) {
+            tick(timer, now);
+        }
+        return true;
+    }
+
+    private Collection<WorkoutTimer> select(String id) {
+        if (id == null) {
+            return timers.values();
+        }
+        WorkoutTimer timer = timers.get(id);
+        return timer != null ? Collections.singletonList(timer) : Collections.emptyList();
+    }
+
+    /**
+     * Drains every timer whose next tick or deadline has passed. Ticks are
+     * recomputed from each timer's absolute deadline, so a late pass never
+     * shifts the ones after it. Returns RESULT_* bits.
+     */
+    int runDue() {
+        long now = now();
+        int result = 0;
+
+        WorkoutTimer timer;
+        while ((timer = dueQueue.peek()) != null && timer.nextDueElapsedMs <= now) {
+            dueQueue.poll();
+            metrics.tickJitter.record(now - timer.nextDueElapsedMs);
+            if (timer.hasDeadline() && timer.anchorElapsedMs <= now) {
+                result |= RESULT_STATE_CHANGED;
+                onDeadline(timer, now);
+                continue;
+            }
+            tick(timer, now);
+            metrics.countTick();
+            result |= RESULT_TICKED;
+        }
+        return result;
+    }
+
+    private void onDeadline(WorkoutTimer timer, long now) {
+        long lateness = now - timer.anchorElapsedMs;
+        lastFinishLatenessMs = lateness;
+        metrics.countDeadline(lateness > ACCURACY_TARGET_MS);
+
+        if (timer.advancePhase()) {
+            // Interval timers continue from the previous deadline, not from now
+            listener.onPhaseChange(timer, lateness);
+            if (timer.anchorElapsedMs > now) {
+                tick(timer, now);
+            } else {
+                // Several phases passed at once (process was asleep): catch up this pass
+                dueQueue.add(timer);
+            }
+            return;
+        }
+
+        timer.state = WorkoutTimer.STATE_DONE;
+        listener.onFinish(timer, lateness);
+    }
+
+    private void tick(WorkoutTimer timer, long now) {
+        listener.onTick(timer, timer.displaySeconds(now));
+        timer.scheduleNextTick(now);
+        dueQueue.add(timer);
+    }
+
+    /**
+     * When runDue() has to be called next, or Long.MAX_VALUE if nothing is running.
+     */
+    long nextDueElapsedMs() {
+        WorkoutTimer next = dueQueue.peek();
+        return next != null ? next.nextDueElapsedMs : Long.MAX_VALUE;
+    }
+
+    /**
+     * Earliest running deadline, or Long.MAX_VALUE if there is none.
+     */
+    long earliestDeadline() {
+        long earliest = Long.MAX_VALUE;
+        for (WorkoutTimer timer : timers.values()) {
+            if (timer.isRunning() && timer.hasDeadline() && timer.anchorElapsedMs < earliest) {
+                earliest = timer.anchorElapsedMs;
+            }
+        }
+        return earliest;
+    }
+
+    WorkoutTimer get(String id) {
+        return timers.get(id);
+    }
+
+    Collection<WorkoutTimer> timers() {
+        return Collections.unmodifiableCollection(timers.values());
+    }
+
+    boolean isEmpty() {
+        return timers.isEmpty();
+    }
+
+    int size() {
+        return timers.size();
+    }
+
+    int queuedCount() {
+        return dueQueue.size();
+    }
+
+    /**
+     * How late the last deadline was handled, or -1 if none yet.
+     */
+    long lastFinishLatenessMs() {
+        return lastFinishLatenessMs;
+    }
+
+    /**
+     * Formats whole seconds as m:ss without going through String.format.
+     */
+    static String formatTime(long seconds) {
+        long mins = seconds / 60;
+        long secs = seconds % 60;
+        StringBuilder out = new StringBuilder(6);
+        out.append(mins).append(':');
+        if (secs < 10) {
+            out.append('0');
+        }
+        return out.append(secs).toString();
+    }
+}
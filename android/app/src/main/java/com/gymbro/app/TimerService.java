@@ -1,5 +1,6 @@
 package com.gymbro.app;
 
+import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -8,34 +9,115 @@ import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Build;
-import android.os.CountDownTimer;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.View;
 import android.widget.RemoteViews;
 import androidx.core.app.NotificationCompat;
+import java.io.File;
+import java.util.Collection;
 
 public class TimerService extends Service {
     private static final String TAG = "TimerService";
     private static final String CHANNEL_ID = "gymbro_timer_channel";
     private static final int NOTIFICATION_ID = 1001;
+    private static final String ACTION_DEADLINE = "TIMER_DEADLINE";
+    private static final String ACTION_COMPLETE_SET = "PROGRAM_COMPLETE_SET";
+    private static final String ACTION_SKIP_REST = "PROGRAM_SKIP_REST";
+    private static final String ACTION_ADD_REST = "PROGRAM_ADD_REST";
+    
+    // Seconds added by the "+15s" notification action
+    private static final long REST_ADJUST_STEP_MS = 15000;
+    
+    // Id used when the caller does not name its timer (the classic rest timer)
+    static final String DEFAULT_TIMER_ID = "rest";
+    // Stopwatch running while the user performs a set of the loaded program
+    static final String PROGRAM_SET_TIMER_ID = "set";
+    
+    // Render modes: in chronometer mode SystemUI draws the countdown itself and the
+    // notification is posted only on state changes; text mode rebuilds it every tick
+    // and is kept for devices without countdown chronometers (pre API 24)
+    static final int RENDER_MODE_CHRONOMETER = 0;
+    static final int RENDER_MODE_TEXT = 1;
+    
+    // Secondary timers listed under the main one in the expanded notification
+    private static final int MAX_NOTIFICATION_ROWS = 4;
+    
+    // Kill-safe copy of the timer state, in no-backup storage (it is device-local anyway)
+    static final String JOURNAL_FILE = "timer_journal.bin";
     
     private final IBinder binder = new TimerBinder();
-    private CountDownTimer countDownTimer;
+    // Scheduler, notification rendering and callbacks run on this thread, away from
+    // the main looper the WebView renders on. Every method touching the registry
+    // runs here too (callers go through runOnTimerThread), so it needs no locking
+    private HandlerThread timerThread;
+    private Handler tickHandler;
+    private final Runnable schedulerRunnable = this::runDueTimers;
+    private final Runnable pruneFinishedRunnable = this::pruneFinishedTimers;
     private NotificationManager notificationManager;
-    private NotificationCompat.Builder notificationBuilder;
+    private AlarmManager alarmManager;
+    private PendingIntent contentPendingIntent;
+    private PendingIntent stopPendingIntent;
+    private PendingIntent deadlinePendingIntent;
+    private PendingIntent completeSetPendingIntent;
+    private PendingIntent skipRestPendingIntent;
+    private PendingIntent addRestPendingIntent;
+    private int renderMode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+        ? RENDER_MODE_CHRONOMETER : RENDER_MODE_TEXT;
+    private int notifyCount = 0;
+    private boolean inForeground = false;
     
-    private long remainingTimeMs = 0;
+    private final TimerMetrics metrics = new TimerMetrics();
+    // Registry and due queue; this class only turns its events into callbacks,
+    // notifications and Handler wakeups
+    private final TimerScheduler timers = new TimerScheduler(SystemClock::elapsedRealtime, metrics,
+        new TimerScheduler.Listener() {
+            @Override
+            public void onTick(WorkoutTimer timer, long seconds) {
+                TimerCallback cb = callback;
+                if (cb != null) {
+                    cb.onTick(timer.id, seconds);
+                }
+            }
+            
+            @Override
+            public void onPhaseChange(WorkoutTimer timer, long latenessMs) {
+                warnIfLate(timer, latenessMs);
+                TimerCallback cb = callback;
+                if (cb != null) {
+                    cb.onPhaseChange(timer.id, timer.round, timer.inRest);
+                }
+            }
+            
+            @Override
+            public void onFinish(WorkoutTimer timer, long latenessMs) {
+                warnIfLate(timer, latenessMs);
+                onTimerFinished(timer);
+            }
+        });
+    // Bumped on every state change (start, pause, resume, stop, adjust, deadline,
+    // program step) so JS can tell whether a snapshot is newer than what it has
+    private long stateSeq = 0;
     private String exerciseName = "Riposo";
     private String workoutName = "Allenamento";
-    private boolean isRunning = false;
+    private WorkoutProgram program;
+    private TimerJournal journal;
     
     // Callback interface for timer updates
     public interface TimerCallback {
-        void onTick(long remainingSeconds);
-        void onFinish();
+        void onTick(String timerId, long seconds);
+        void onPhaseChange(String timerId, int round, boolean rest);
+        void onFinish(String timerId);
+        void onProgramProgress(int index, int phase);
     }
     
-    private TimerCallback callback;
+    // Set from the main thread (onServiceConnected), read on the timer thread
+    private volatile TimerCallback callback;
     
     public class TimerBinder extends Binder {
         TimerService getService() {
@@ -48,7 +130,76 @@ public class TimerService extends Service {
         super.onCreate();
         Log.d(TAG, "TimerService onCreate");
         notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
         createNotificationChannel();
+        createPendingIntents();
+        timerThread = new HandlerThread("GymBroTimer", Process.THREAD_PRIORITY_BACKGROUND);
+        timerThread.start();
+        tickHandler = new Handler(timerThread.getLooper());
+        journal = TimerJournal.open(new File(getNoBackupFilesDir(), JOURNAL_FILE));
+        tickHandler.post(this::restoreState);
+    }
+    
+    /**
+     * Runs {@code action} on the timer thread: inline when already there,
+     * otherwise posted, so actions from one caller keep their order.
+     */
+    void runOnTimerThread(Runnable action) {
+        if (Looper.myLooper() == tickHandler.getLooper()) {
+            action.run();
+        } else {
+            tickHandler.post(action);
+        }
+    }
+    
+    Handler getTimerHandler() {
+        return tickHandler;
+    }
+    
+    /**
+     * Brings back the timers journaled before the process was killed (by the
+     * system, a crash or a swipe from recents). Anchors are absolute, so a
+     * countdown resumes exactly where it would have been; deadlines that passed
+     * in the meantime are handled by the first scheduler pass.
+     */
+    private void restoreState() {
+        if (journal == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        TimerJournal.State state = journal.read(timers.now(), System.currentTimeMillis());
+        if (state == null || !state.isRestorable()) {
+            return;
+        }
+        stateSeq = state.stateSeq;
+        if (state.exercise != null) {
+            exerciseName = state.exercise;
+        }
+        if (state.workout != null) {
+            workoutName = state.workout;
+        }
+        program = state.program;
+        for (WorkoutTimer timer : state.timers) {
+            if (timer.state == WorkoutTimer.STATE_DONE) {
+                continue;
+            }
+            timers.restore(timer);
+        }
+        Log.d(TAG, "Restored " + timers.size() + " timers in " + (System.nanoTime() - start) / 1000 + "us");
+        if (timers.isEmpty()) {
+            return;
+        }
+        
+        try {
+            markStarted();
+            startForegroundNotification(buildNotification());
+            inForeground = true;
+        } catch (RuntimeException e) {
+            // Background start restrictions: keep ticking, the notification comes with the next post
+            Log.w(TAG, "Cannot re-enter foreground after restore", e);
+        }
+        runDueTimers();
+        updateDeadlineAlarm();
     }
     
     @Override
@@ -56,9 +207,20 @@ public class TimerService extends Service {
         if (intent != null) {
             String action = intent.getAction();
             if ("STOP_TIMER".equals(action)) {
-                stopTimer();
-                stopForeground(true);
-                stopSelf();
+                tickHandler.post(() -> {
+                    stopTimer();
+                    leaveForeground();
+                    stopSelf();
+                });
+            } else if (ACTION_DEADLINE.equals(action)) {
+                // Exact-alarm backstop: the scheduler may have been held back by Doze
+                tickHandler.post(this::runDueTimers);
+            } else if (ACTION_COMPLETE_SET.equals(action)) {
+                tickHandler.post(this::completeSet);
+            } else if (ACTION_SKIP_REST.equals(action)) {
+                tickHandler.post(this::skipRest);
+            } else if (ACTION_ADD_REST.equals(action)) {
+                tickHandler.post(() -> adjustTimer(DEFAULT_TIMER_ID, REST_ADJUST_STEP_MS));
             }
         }
         return START_STICKY;
@@ -86,223 +248,603 @@ public class TimerService extends Service {
     }
 
     
-    public void startTimer(long durationMs, String exercise, String workout, TimerCallback cb) {
-        Log.d(TAG, "startTimer called: " + durationMs + "ms, exercise: " + exercise);
-        
-        this.exerciseName = exercise;
-        this.workoutName = workout;
+    public void setCallback(TimerCallback cb) {
         this.callback = cb;
-        this.remainingTimeMs = durationMs;
-        this.isRunning = true;
-        
-        // Stop any existing timer
-        if (countDownTimer != null) {
-            countDownTimer.cancel();
+    }
+    
+    public void startTimer(String id, long durationMs, String exercise, String workout) {
+        Log.d(TAG, "startTimer called: " + id + ", " + durationMs + "ms, exercise: " + exercise);
+        if (exercise != null) {
+            this.exerciseName = exercise;
+        }
+        addTimer(new WorkoutTimer(id, WorkoutTimer.MODE_COUNTDOWN, "RIPOSO", durationMs, 0, 1), workout);
+    }
+    
+    public void startStopwatch(String id, String label, String workout) {
+        Log.d(TAG, "startStopwatch called: " + id);
+        addTimer(new WorkoutTimer(id, WorkoutTimer.MODE_STOPWATCH,
+            label != null ? label : "SESSIONE", 0, 0, 1), workout);
+    }
+    
+    /**
+     * Starts an EMOM/tabata style timer: {@code rounds} work phases of
+     * {@code workMs}, separated by {@code restMs} (0 for EMOM).
+     */
+    public void startInterval(String id, long workMs, long restMs, int rounds, String label, String workout) {
+        Log.d(TAG, "startInterval called: " + id + ", " + rounds + " x " + workMs + "/" + restMs + "ms");
+        addTimer(new WorkoutTimer(id, WorkoutTimer.MODE_INTERVAL,
+            label != null ? label : "INTERVALLI", workMs, restMs, rounds), workout);
+    }
+    
+    private void addTimer(WorkoutTimer timer, String workout) {
+        if (workout != null) {
+            this.workoutName = workout;
         }
         
-        // Create and show notification
-        Log.d(TAG, "Building notification...");
-        Notification notification = buildNotification(durationMs / 1000);
-        Log.d(TAG, "Starting foreground service...");
-        startForeground(NOTIFICATION_ID, notification);
-        Log.d(TAG, "Foreground service started");
+        if (timers.isEmpty()) {
+            notifyCount = 0;
+        }
+        // Starting a timer with an id already in use replaces it
+        timers.start(timer);
         
-        // Start countdown
-        countDownTimer = new CountDownTimer(durationMs, 1000) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                remainingTimeMs = millisUntilFinished;
-                long seconds = millisUntilFinished / 1000;
-                updateNotification(seconds);
-                if (callback != null) {
-                    callback.onTick(seconds);
-                }
-            }
-            
-            @Override
-            public void onFinish() {
-                isRunning = false;
-                remainingTimeMs = 0;
-                updateNotificationComplete();
-                if (callback != null) {
-                    callback.onFinish();
-                }
-                // Keep notification for a moment then remove
-                new android.os.Handler().postDelayed(() -> {
-                    stopForeground(true);
-                }, 2000);
-            }
-        }.start();
+        if (!inForeground) {
+            markStarted();
+            startForegroundNotification(buildNotification());
+            inForeground = true;
+            Log.d(TAG, "Foreground service started");
+        } else {
+            postNotification(buildNotification());
+        }
+        onTimersChanged();
+    }
+    
+    private void runDueTimers() {
+        int result = timers.runDue();
+        if ((result & TimerScheduler.RESULT_STATE_CHANGED) != 0) {
+            markStateChanged();
+            postNotification(buildNotification());
+            updateDeadlineAlarm();
+        } else if ((result & TimerScheduler.RESULT_TICKED) != 0 && renderMode == RENDER_MODE_TEXT) {
+            postNotification(buildNotification());
+        }
+        scheduleNextPass();
+    }
+    
+    private void warnIfLate(WorkoutTimer timer, long latenessMs) {
+        if (latenessMs > TimerScheduler.ACCURACY_TARGET_MS) {
+            Log.w(TAG, "Timer " + timer.id + " reached its deadline " + latenessMs + "ms late");
+        }
     }
     
+    private void onTimerFinished(WorkoutTimer timer) {
+        Log.d(TAG, "Timer " + timer.id + " finished, notify() calls this session: " + notifyCount);
+        TimerCallback cb = callback;
+        if (cb != null) {
+            cb.onFinish(timer.id);
+        }
+        if (program != null && program.phase() == WorkoutProgram.PHASE_REST
+                && DEFAULT_TIMER_ID.equals(timer.id)) {
+            // Rest over: move the program on without waiting for JS
+            advanceProgram();
+        }
+        // Keep the finished timer visible for a moment then drop it
+        tickHandler.removeCallbacks(pruneFinishedRunnable);
+        tickHandler.postDelayed(pruneFinishedRunnable, 2000);
+    }
+    
+    private void pruneFinishedTimers() {
+        boolean removed = timers.removeFinished();
+        if (removed) {
+            markStateChanged();
+        }
+        if (timers.isEmpty()) {
+            leaveForeground();
+        } else if (removed) {
+            postNotification(buildNotification());
+        }
+    }
+    
+    private void scheduleNextPass() {
+        tickHandler.removeCallbacks(schedulerRunnable);
+        long nextDue = timers.nextDueElapsedMs();
+        if (nextDue != Long.MAX_VALUE) {
+            long delay = nextDue - timers.now();
+            tickHandler.postDelayed(schedulerRunnable, Math.max(0, delay));
+        }
+    }
+    
+    private void onTimersChanged() {
+        markStateChanged();
+        updateDeadlineAlarm();
+        scheduleNextPass();
+    }
+    
+    private void markStateChanged() {
+        stateSeq++;
+        if (journal != null) {
+            journal.write(stateSeq, exerciseName, workoutName, timers.timers(), program,
+                timers.now(), System.currentTimeMillis());
+        }
+    }
+    
+    /**
+     * Keeps one exact alarm armed at the earliest running deadline.
+     */
+    private void updateDeadlineAlarm() {
+        if (alarmManager == null) {
+            return;
+        }
+        long earliest = timers.earliestDeadline();
+        if (earliest == Long.MAX_VALUE) {
+            alarmManager.cancel(deadlinePendingIntent);
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            // Exact alarms not granted: inexact backstop, the scheduler still drives completion
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                earliest, deadlinePendingIntent);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                earliest, deadlinePendingIntent);
+        }
+    }
+    
+    /**
+     * Clients only bind; starting ourselves lets running timers outlive the
+     * activity's binding (swipe from recents, WebView reload).
+     */
+    private void markStarted() {
+        try {
+            startService(new Intent(this, TimerService.class));
+        } catch (IllegalStateException e) {
+            // Background start restriction: already started in that case (sticky restart, alarm)
+            Log.w(TAG, "Cannot mark service as started", e);
+        }
+    }
+    
+    private void leaveForeground() {
+        if (inForeground) {
+            stopForeground(true);
+            inForeground = false;
+        }
+    }
+    
+    /**
+     * Stops every timer.
+     */
     public void stopTimer() {
-        if (countDownTimer != null) {
-            countDownTimer.cancel();
-            countDownTimer = null;
+        tickHandler.removeCallbacks(schedulerRunnable);
+        tickHandler.removeCallbacks(pruneFinishedRunnable);
+        timers.clear();
+        if (alarmManager != null) {
+            alarmManager.cancel(deadlinePendingIntent);
+        }
+        markStateChanged();
+    }
+    
+    /**
+     * Stops the given timer, or every timer when {@code id} is null. The
+     * last one gone also takes down the ongoing notification.
+     */
+    public void stopTimer(String id) {
+        if (id != null && !timers.remove(id)) {
+            return;
+        }
+        if (id == null || timers.isEmpty()) {
+            stopTimer();
+            leaveForeground();
+        } else {
+            postNotification(buildNotification());
+            onTimersChanged();
+        }
+    }
+    
+    /**
+     * Pauses the given timer, or every running timer when {@code id} is null.
+     */
+    public void pauseTimer(String id) {
+        if (timers.pause(id)) {
+            postNotification(buildNotification());
+            onTimersChanged();
+        }
+    }
+    
+    /**
+     * Resumes the given timer, or every paused timer when {@code id} is null.
+     */
+    public void resumeTimer(String id) {
+        if (timers.resume(id)) {
+            postNotification(buildNotification());
+            onTimersChanged();
+        }
+    }
+    
+    /**
+     * Shifts a running or paused countdown by {@code deltaMs}.
+     */
+    public void adjustTimer(String id, long deltaMs) {
+        if (timers.adjust(id != null ? id : DEFAULT_TIMER_ID, deltaMs)) {
+            postNotification(buildNotification());
+            onTimersChanged();
+        }
+    }
+    
+    /**
+     * Loads a precompiled program and starts its first set. From here on the
+     * service advances on its own: completeSet() starts the rest, the end of
+     * the rest starts the next set.
+     */
+    public void loadProgram(WorkoutProgram newProgram) {
+        Log.d(TAG, "loadProgram: " + newProgram.size() + " steps, starting at " + newProgram.index());
+        this.program = newProgram;
+        if (newProgram.workout != null) {
+            this.workoutName = newProgram.workout;
+        }
+        if (newProgram.phase() == WorkoutProgram.PHASE_DONE) {
+            finishProgram();
+            return;
+        }
+        enterSetPhase();
+        stopTimer(DEFAULT_TIMER_ID);
+    }
+    
+    public void completeSet() {
+        if (program == null || program.phase() != WorkoutProgram.PHASE_SET) {
+            return;
         }
-        isRunning = false;
-        remainingTimeMs = 0;
+        WorkoutProgram.Step step = program.current();
+        if (program.isLastStep()) {
+            finishProgram();
+            return;
+        }
+        if (step.restMs <= 0) {
+            advanceProgram();
+            return;
+        }
+        
+        program.startRest();
+        WorkoutProgram.Step next = program.next();
+        // Start the rest before dropping the set stopwatch so the service never leaves foreground
+        startTimer(DEFAULT_TIMER_ID, step.restMs, next.exercise, null);
+        stopTimer(PROGRAM_SET_TIMER_ID);
+        notifyProgramProgress();
     }
     
-    public void pauseTimer() {
-        if (countDownTimer != null && isRunning) {
-            countDownTimer.cancel();
-            isRunning = false;
-            updateNotificationPaused();
+    public void skipRest() {
+        if (program == null || program.phase() != WorkoutProgram.PHASE_REST) {
+            return;
         }
+        advanceProgram();
+        stopTimer(DEFAULT_TIMER_ID);
     }
     
-    public void resumeTimer() {
-        if (!isRunning && remainingTimeMs > 0) {
-            startTimer(remainingTimeMs, exerciseName, workoutName, callback);
+    public void stopProgram() {
+        if (program == null) {
+            return;
+        }
+        program = null;
+        stopTimer(PROGRAM_SET_TIMER_ID);
+        stopTimer(DEFAULT_TIMER_ID);
+    }
+    
+    WorkoutProgram getProgram() {
+        return program;
+    }
+    
+    long getStateSeq() {
+        return stateSeq;
+    }
+    
+    String getExerciseName() {
+        return exerciseName;
+    }
+    
+    String getWorkoutName() {
+        return workoutName;
+    }
+    
+    private void advanceProgram() {
+        if (program.advance()) {
+            enterSetPhase();
+        } else {
+            finishProgram();
+        }
+    }
+    
+    private void enterSetPhase() {
+        WorkoutProgram.Step step = program.current();
+        this.exerciseName = step.exercise;
+        startStopwatch(PROGRAM_SET_TIMER_ID, "SERIE " + step.set + "/" + step.totalSets, null);
+        notifyProgramProgress();
+    }
+    
+    private void finishProgram() {
+        program.finish();
+        notifyProgramProgress();
+        program = null;
+        stopTimer(PROGRAM_SET_TIMER_ID);
+    }
+    
+    private void notifyProgramProgress() {
+        markStateChanged();
+        if (callback != null) {
+            callback.onProgramProgress(program.index(), program.phase());
+        }
+    }
+    
+    /**
+     * Updates the exercise shown in the notification without touching the timers.
+     */
+    public void setExercise(String exercise) {
+        if (exercise == null || exercise.equals(exerciseName)) {
+            return;
+        }
+        this.exerciseName = exercise;
+        markStateChanged();
+        if (!timers.isEmpty()) {
+            postNotification(buildNotification());
         }
     }
     
     public boolean isRunning() {
-        return isRunning;
+        for (WorkoutTimer timer : timers.timers()) {
+            if (timer.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public boolean isRunning(String id) {
+        WorkoutTimer timer = timers.get(id);
+        return timer != null && timer.isRunning();
+    }
+    
+    public long getRemainingTimeMs(String id) {
+        WorkoutTimer timer = timers.get(id);
+        return timer != null ? timer.remainingMs(timers.now()) : 0;
+    }
+    
+    Collection<WorkoutTimer> getTimers() {
+        return timers.timers();
+    }
+    
+    /**
+     * How late the last deadline was handled, or -1 if none yet.
+     */
+    public long getLastFinishLatenessMs() {
+        return timers.lastFinishLatenessMs();
+    }
+    
+    /**
+     * Number of notifications posted since the first timer of this session was started.
+     */
+    public int getNotifyCount() {
+        return notifyCount;
     }
     
-    public long getRemainingTimeMs() {
-        return remainingTimeMs;
+    TimerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public void setRenderMode(int mode) {
+        if (mode == RENDER_MODE_CHRONOMETER && Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            mode = RENDER_MODE_TEXT;
+        }
+        this.renderMode = mode;
     }
     
-    private Notification buildNotification(long seconds) {
+    private void createPendingIntents() {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         notificationIntent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        PendingIntent pendingIntent = PendingIntent.getActivity(
+        contentPendingIntent = PendingIntent.getActivity(
             this, 0, notificationIntent, 
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         
         Intent stopIntent = new Intent(this, TimerService.class);
         stopIntent.setAction("STOP_TIMER");
-        PendingIntent stopPendingIntent = PendingIntent.getService(
+        stopPendingIntent = PendingIntent.getService(
             this, 0, stopIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         
-        String timeText = formatTime(seconds);
+        Intent deadlineIntent = new Intent(this, TimerService.class);
+        deadlineIntent.setAction(ACTION_DEADLINE);
+        deadlinePendingIntent = PendingIntent.getService(
+            this, 1, deadlineIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
         
-        // Create custom RemoteViews for collapsed notification
-        RemoteViews collapsedView = new RemoteViews(getPackageName(), R.layout.notification_timer);
-        collapsedView.setTextViewText(R.id.timer_text, timeText);
-        collapsedView.setTextViewText(R.id.label_text, "RIPOSO");
-        collapsedView.setTextViewText(R.id.workout_text, workoutName);
+        completeSetPendingIntent = serviceAction(ACTION_COMPLETE_SET, 2);
+        skipRestPendingIntent = serviceAction(ACTION_SKIP_REST, 3);
+        addRestPendingIntent = serviceAction(ACTION_ADD_REST, 4);
+    }
+    
+    private PendingIntent serviceAction(String action, int requestCode) {
+        Intent intent = new Intent(this, TimerService.class);
+        intent.setAction(action);
+        return PendingIntent.getService(
+            this, requestCode, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+    
+    /**
+     * Picks the timer shown large in the notification: the running timer with
+     * the nearest deadline, then a running stopwatch, then anything else.
+     */
+    private WorkoutTimer primaryTimer() {
+        WorkoutTimer best = null;
+        for (WorkoutTimer timer : timers.timers()) {
+            if (best == null || rank(timer) < rank(best)
+                    || (rank(timer) == rank(best) && rank(timer) == 0
+                        && timer.anchorElapsedMs < best.anchorElapsedMs)) {
+                best = timer;
+            }
+        }
+        return best;
+    }
+    
+    private static int rank(WorkoutTimer timer) {
+        if (timer.isRunning()) {
+            return timer.hasDeadline() ? 0 : 1;
+        }
+        return timer.state == WorkoutTimer.STATE_PAUSED ? 2 : 3;
+    }
+    
+    private static String labelFor(WorkoutTimer timer) {
+        if (timer.state == WorkoutTimer.STATE_DONE) {
+            return "FATTO!";
+        }
+        if (timer.state == WorkoutTimer.STATE_PAUSED) {
+            return "PAUSA";
+        }
+        if (timer.mode == WorkoutTimer.MODE_INTERVAL) {
+            return (timer.inRest ? "RECUPERO" : timer.label) + " " + timer.round + "/" + timer.rounds;
+        }
+        return timer.label;
+    }
+    
+    /**
+     * Builds the single notification that groups every registered timer. In
+     * chronometer mode each countdown is drawn by SystemUI from the base we pass
+     * in, so this is only called on state changes (start, pause, resume, finish,
+     * exercise change).
+     */
+    private Notification buildNotification() {
+        long now = SystemClock.elapsedRealtime();
+        WorkoutTimer primary = primaryTimer();
+        int state = primary != null ? primary.state : WorkoutTimer.STATE_DONE;
+        boolean useChronometer = renderMode == RENDER_MODE_CHRONOMETER;
+        String timeText = primary != null ? TimerScheduler.formatTime(primary.displaySeconds(now)) : "";
+        String label = primary != null ? labelFor(primary) : "FATTO!";
         
-        // Create custom RemoteViews for expanded notification
+        String title;
+        String detail;
+        if (state == WorkoutTimer.STATE_RUNNING) {
+            title = useChronometer ? "⏱ " + label : "⏱ " + timeText + "  " + label;
+            detail = primary.mode == WorkoutTimer.MODE_COUNTDOWN ? "Prossimo: " + exerciseName : exerciseName;
+        } else if (state == WorkoutTimer.STATE_PAUSED) {
+            title = "⏸ " + timeText + "  " + label;
+            detail = exerciseName;
+        } else {
+            title = "✅ " + label;
+            detail = "Inizia: " + exerciseName;
+        }
+        String workoutLine = timers.size() > 1
+            ? workoutName + " • +" + (timers.size() - 1) + " timer"
+            : workoutName;
+        
+        // Create custom RemoteViews for collapsed and expanded notification
+        RemoteViews collapsedView = new RemoteViews(getPackageName(), R.layout.notification_timer);
         RemoteViews expandedView = new RemoteViews(getPackageName(), R.layout.notification_timer_expanded);
-        expandedView.setTextViewText(R.id.timer_text, timeText);
-        expandedView.setTextViewText(R.id.label_text, "RIPOSO");
+        bindTimerView(collapsedView, R.id.timer_chronometer, R.id.timer_text, primary, now, useChronometer);
+        bindTimerView(expandedView, R.id.timer_chronometer, R.id.timer_text, primary, now, useChronometer);
+        collapsedView.setTextViewText(R.id.label_text, label);
+        collapsedView.setTextViewText(R.id.workout_text, workoutLine);
+        expandedView.setTextViewText(R.id.label_text, label);
         expandedView.setTextViewText(R.id.workout_text, workoutName);
-        expandedView.setTextViewText(R.id.exercise_text, "Prossimo: " + exerciseName);
+        expandedView.setTextViewText(R.id.exercise_text, detail);
+        
+        // Other timers as rows under the main one, each with its own chronometer
+        expandedView.removeAllViews(R.id.timer_rows);
+        int rows = 0;
+        for (WorkoutTimer timer : timers.timers()) {
+            if (timer == primary || rows == MAX_NOTIFICATION_ROWS) {
+                continue;
+            }
+            RemoteViews row = new RemoteViews(getPackageName(), R.layout.notification_timer_row);
+            row.setTextViewText(R.id.row_label, labelFor(timer));
+            bindTimerView(row, R.id.row_chronometer, R.id.row_text, timer, now, useChronometer);
+            expandedView.addView(R.id.timer_rows, row);
+            rows++;
+        }
+        expandedView.setViewVisibility(R.id.timer_rows, rows > 0 ? View.VISIBLE : View.GONE);
         
         // BigTextStyle per lockscreen + custom view per notification shade
         NotificationCompat.BigTextStyle bigTextStyle = new NotificationCompat.BigTextStyle()
-            .setBigContentTitle("⏱ " + timeText + "  RIPOSO")
-            .bigText(workoutName + "\nProssimo: " + exerciseName)
+            .setBigContentTitle(title)
+            .bigText(workoutLine + "\n" + detail)
             .setSummaryText("GymBro Timer");
         
-        notificationBuilder = new NotificationCompat.Builder(this, CHANNEL_ID)
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
             .setSmallIcon(android.R.drawable.ic_media_play)
-            .setContentTitle("⏱ " + timeText + "  RIPOSO")
-            .setContentText(workoutName + " • Prossimo: " + exerciseName)
+            .setContentTitle(title)
+            .setContentText(workoutLine + " • " + detail)
             .setStyle(bigTextStyle)
+            .setCustomContentView(collapsedView)
             .setCustomBigContentView(expandedView)  // Custom view nel notification shade
-            .setOngoing(true)
+            .setOngoing(state != WorkoutTimer.STATE_DONE)
             .setOnlyAlertOnce(true)
-            .setShowWhen(false)
-            .setContentIntent(pendingIntent)
-            .addAction(android.R.drawable.ic_media_pause, "Stop", stopPendingIntent)
+            .setContentIntent(contentPendingIntent)
             .setPriority(NotificationCompat.PRIORITY_MAX)
             .setCategory(NotificationCompat.CATEGORY_ALARM)
             .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
             .setColorized(true)
             .setColor(0xFF2D5A6B); // Teal scuro rilassante
         
-        return notificationBuilder.build();
+        // Program controls work from the lockscreen even while the WebView is frozen
+        if (program != null && program.phase() == WorkoutProgram.PHASE_SET) {
+            builder.addAction(android.R.drawable.ic_media_next, "Serie fatta", completeSetPendingIntent);
+        } else if (program != null && program.phase() == WorkoutProgram.PHASE_REST) {
+            builder.addAction(android.R.drawable.ic_media_play, "+15s", addRestPendingIntent);
+            builder.addAction(android.R.drawable.ic_media_next, "Salta", skipRestPendingIntent);
+        }
+        builder.addAction(android.R.drawable.ic_media_pause, "Stop", stopPendingIntent);
+        
+        if (useChronometer && state == WorkoutTimer.STATE_RUNNING) {
+            // Header chronometer for the lockscreen/heads-up template
+            boolean countDown = primary.hasDeadline();
+            long offset = countDown ? primary.remainingMs(now) : -primary.elapsedMs(now);
+            builder.setShowWhen(true)
+                .setWhen(System.currentTimeMillis() + offset)
+                .setUsesChronometer(true)
+                .setChronometerCountDown(countDown);
+        } else {
+            builder.setShowWhen(false);
+        }
+        
+        return builder.build();
     }
     
-    private void updateNotification(long seconds) {
-        if (notificationBuilder != null) {
-            String timeText = formatTime(seconds);
-            
-            // Update expanded view
-            RemoteViews expandedView = new RemoteViews(getPackageName(), R.layout.notification_timer_expanded);
-            expandedView.setTextViewText(R.id.timer_text, timeText);
-            expandedView.setTextViewText(R.id.label_text, "RIPOSO");
-            expandedView.setTextViewText(R.id.workout_text, workoutName);
-            expandedView.setTextViewText(R.id.exercise_text, "Prossimo: " + exerciseName);
-            
-            NotificationCompat.BigTextStyle bigTextStyle = new NotificationCompat.BigTextStyle()
-                .setBigContentTitle("⏱ " + timeText + "  RIPOSO")
-                .bigText(workoutName + "\nProssimo: " + exerciseName)
-                .setSummaryText("GymBro Timer");
-            
-            notificationBuilder
-                .setContentTitle("⏱ " + timeText + "  RIPOSO")
-                .setContentText(workoutName + " • Prossimo: " + exerciseName)
-                .setStyle(bigTextStyle)
-                .setCustomBigContentView(expandedView);
-            notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
+    private void bindTimerView(RemoteViews view, int chronometerId, int textId,
+                               WorkoutTimer timer, long now, boolean useChronometer) {
+        boolean done = timer == null || timer.state == WorkoutTimer.STATE_DONE;
+        if (useChronometer && !done) {
+            // Chronometer base lives in the elapsedRealtime timebase
+            boolean countDown = timer.hasDeadline();
+            long base = countDown ? now + timer.remainingMs(now) : now - timer.elapsedMs(now);
+            view.setViewVisibility(textId, View.GONE);
+            view.setViewVisibility(chronometerId, View.VISIBLE);
+            view.setChronometerCountDown(chronometerId, countDown);
+            view.setChronometer(chronometerId, base, null, timer.isRunning());
+        } else {
+            view.setViewVisibility(chronometerId, View.GONE);
+            view.setViewVisibility(textId, View.VISIBLE);
+            view.setTextViewText(textId, done ? "✓" : TimerScheduler.formatTime(timer.displaySeconds(now)));
         }
     }
     
-    private void updateNotificationPaused() {
-        if (notificationBuilder != null) {
-            String timeText = formatTime(remainingTimeMs / 1000);
-            
-            RemoteViews expandedView = new RemoteViews(getPackageName(), R.layout.notification_timer_expanded);
-            expandedView.setTextViewText(R.id.timer_text, timeText);
-            expandedView.setTextViewText(R.id.label_text, "PAUSA");
-            expandedView.setTextViewText(R.id.workout_text, workoutName);
-            expandedView.setTextViewText(R.id.exercise_text, exerciseName);
-            
-            NotificationCompat.BigTextStyle bigTextStyle = new NotificationCompat.BigTextStyle()
-                .setBigContentTitle("⏸ " + timeText + "  PAUSA")
-                .bigText(workoutName + "\n" + exerciseName)
-                .setSummaryText("GymBro Timer");
-            
-            notificationBuilder
-                .setContentTitle("⏸ " + timeText + "  PAUSA")
-                .setContentText(workoutName + " • " + exerciseName)
-                .setStyle(bigTextStyle)
-                .setCustomBigContentView(expandedView);
-            notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
-        }
-    }
-    
-    private void updateNotificationComplete() {
-        if (notificationBuilder != null) {
-            RemoteViews expandedView = new RemoteViews(getPackageName(), R.layout.notification_timer_expanded);
-            expandedView.setTextViewText(R.id.timer_text, "✓");
-            expandedView.setTextViewText(R.id.label_text, "FATTO!");
-            expandedView.setTextViewText(R.id.workout_text, workoutName);
-            expandedView.setTextViewText(R.id.exercise_text, "Inizia: " + exerciseName);
-            
-            NotificationCompat.BigTextStyle bigTextStyle = new NotificationCompat.BigTextStyle()
-                .setBigContentTitle("✅ FATTO!")
-                .bigText(workoutName + "\nInizia: " + exerciseName)
-                .setSummaryText("GymBro Timer");
-            
-            notificationBuilder
-                .setContentTitle("✅ FATTO!")
-                .setContentText(workoutName + " • Inizia: " + exerciseName)
-                .setStyle(bigTextStyle)
-                .setCustomBigContentView(expandedView)
-                .setOngoing(false);
-            notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
-        }
+    private void postNotification(Notification notification) {
+        notifyCount++;
+        long start = System.nanoTime();
+        notificationManager.notify(NOTIFICATION_ID, notification);
+        metrics.notifyCost.record((System.nanoTime() - start) / 1000);
     }
     
-    private String formatTime(long seconds) {
-        long mins = seconds / 60;
-        long secs = seconds % 60;
-        return String.format("%d:%02d", mins, secs);
+    private void startForegroundNotification(Notification notification) {
+        notifyCount++;
+        long start = System.nanoTime();
+        startForeground(NOTIFICATION_ID, notification);
+        metrics.notifyCost.record((System.nanoTime() - start) / 1000);
     }
     
     @Override
     public void onDestroy() {
-        stopTimer();
+        tickHandler.post(this::stopTimer);
+        // Lets the stop above run, then ends the thread
+        timerThread.quitSafely();
         super.onDestroy();
     }
 }
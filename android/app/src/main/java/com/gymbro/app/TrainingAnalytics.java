@@ -0,0 +1,319 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Java port of AdvancedMetricsEngine.calculateTrainingLoad,
+ * calculateRecoveryScore and calculateMuscleBalance (js/advanced-metrics.js)
+ * over a TrainingColumns snapshot. Weights, thresholds and rounding follow
+ * the JS so both sides report the same numbers.
+ *
+ * Plain Java, no Android types: tested on the JVM. Not thread-safe; the
+ * plugin calls it from its single executor.
+ */
+final class TrainingAnalytics {
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Chart categories, in the order of the JS muscleVolume object
+    static final String[] CATEGORIES = {"chest", "back", "shoulders", "biceps", "triceps", "legs", "core"};
+
+    // Detailed EXERCISE_DB muscle -> chart category (muscleCategoryMap in the JS)
+    private static final Map<String, Integer> MUSCLE_CATEGORY = new LinkedHashMap<>();
+
+    // Fallback for names not in EXERCISE_DB, checked in category order
+    private static final String[][] KEYWORDS = {
+        {"panca", "chest", "pettoral", "push up", "dip", "fly", "croci"},
+        {"lat", "row", "pull", "dorsal", "rematore", "trazioni", "pulldown"},
+        {"shoulder", "spalle", "military", "lateral", "alzate", "deltoide", "lento"},
+        {"bicep", "curl", "bicipite"},
+        {"tricep", "french", "pushdown", "tricipite", "skull"},
+        {"squat", "leg", "gambe", "quadricip", "hamstring", "calf", "polpacci", "stacco", "deadlift", "lunge",
+            "affondi", "pressa"},
+        {"abs", "addominali", "plank", "crunch", "core", "obliqui"}
+    };
+
+    static {
+        String[][] map = {
+            {"chest", "chest"}, {"upper-chest", "chest"},
+            {"lats", "back"}, {"traps", "back"}, {"rhomboids", "back"}, {"lower-back", "back"},
+            {"front-delts", "shoulders"}, {"side-delts", "shoulders"}, {"rear-delts", "shoulders"},
+            {"biceps", "biceps"}, {"forearms", "biceps"},
+            {"triceps", "triceps"},
+            {"quads", "legs"}, {"hamstrings", "legs"}, {"calves", "legs"}, {"glutes", "legs"},
+            {"abs", "core"}, {"core", "core"}
+        };
+        for (String[] entry : map) {
+            MUSCLE_CATEGORY.put(entry[0], categoryIndex(entry[1]));
+        }
+    }
+
+    static final class TrainingLoad {
+        int score;
+        // Null when there are no sessions in the window (the JS returns {} then)
+        int[] breakdown;
+        double totalVolume;
+        int sessions;
+        double avgRpe;
+        String trend;
+    }
+
+    static final class Recovery {
+        int score;
+        // sleep, stress, soreness, rest; null when there are no logs
+        int[] factors;
+        long daysSinceWorkout;
+        String recommendation;
+    }
+
+    static final class Imbalance {
+        final String muscle;
+        final String type;
+        final long value;
+
+        Imbalance(String muscle, String type, long value) {
+            this.muscle = muscle;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    static final class MuscleBalance {
+        // Indexed like CATEGORIES
+        final long[] distribution = new long[CATEGORIES.length];
+        final double[] rawVolume = new double[CATEGORIES.length];
+        double totalVolume;
+        final List<Imbalance> imbalances = new ArrayList<>();
+        long balanceScore;
+    }
+
+    // EXERCISE_DB keys in declaration order: the JS takes the first key the name contains
+    private String[] dbKeys = new String[0];
+    private int[] dbMasks = new int[0];
+
+    // Category bitmask per interned name of the last columns seen, -1 = not resolved yet
+    private TrainingColumns maskColumns;
+    private int[] nameMasks;
+
+    /**
+     * Installs EXERCISE_DB: exercise key -> detailed muscles, in the JS order.
+     */
+    void setExerciseDb(Map<String, List<String>> exerciseDb) {
+        dbKeys = new String[exerciseDb.size()];
+        dbMasks = new int[exerciseDb.size()];
+        int i = 0;
+        for (Map.Entry<String, List<String>> entry : exerciseDb.entrySet()) {
+            int mask = 0;
+            for (String muscle : entry.getValue()) {
+                Integer category = MUSCLE_CATEGORY.get(muscle);
+                if (category != null) {
+                    mask |= 1 << category;
+                }
+            }
+            dbKeys[i] = entry.getKey().toLowerCase(Locale.ROOT);
+            dbMasks[i] = mask;
+            i++;
+        }
+        maskColumns = null;
+    }
+
+    TrainingLoad trainingLoad(TrainingColumns columns, int days, long nowMs) {
+        TrainingLoad result = new TrainingLoad();
+        long cutoff = nowMs - days * DAY_MS;
+        int count = columns.countSince(cutoff);
+        if (count == 0) {
+            result.trend = "neutral";
+            return result;
+        }
+
+        double totalVolume = 0;
+        double rpeSum = 0;
+        int rpeCount = 0;
+        for (int i = 0; i < count; i++) {
+            totalVolume += columns.volume[i];
+            float rpe = columns.rpe[i];
+            if (rpe > 0) {
+                rpeSum += rpe;
+                rpeCount++;
+            }
+        }
+        double avgRpe = rpeCount > 0 ? rpeSum / rpeCount : 5;
+
+        double volumeScore = Math.min(100, totalVolume / 50000 * 100);
+        double frequencyScore = Math.min(100, count / 6.0 * 100);
+        double intensityScore = avgRpe / 10 * 100;
+
+        // Same window length right before this one
+        int prevEnd = columns.countSince(cutoff - days * DAY_MS);
+        double prevVolume = 0;
+        for (int i = count; i < prevEnd; i++) {
+            prevVolume += columns.volume[i];
+        }
+
+        result.score = (int) Math.round(volumeScore * 0.4 + frequencyScore * 0.35 + intensityScore * 0.25);
+        result.breakdown = new int[]{
+            (int) Math.round(volumeScore), (int) Math.round(frequencyScore), (int) Math.round(intensityScore)
+        };
+        result.totalVolume = totalVolume;
+        result.sessions = count;
+        result.avgRpe = avgRpe;
+        if (totalVolume > prevVolume * 1.1) {
+            result.trend = "increasing";
+        } else if (totalVolume < prevVolume * 0.9) {
+            result.trend = "decreasing";
+        } else {
+            result.trend = "stable";
+        }
+        return result;
+    }
+
+    /**
+     * Wellness averages over the 14 most recent logs plus days of rest since the
+     * last one.
+     */
+    Recovery recovery(TrainingColumns columns, long nowMs) {
+        Recovery result = new Recovery();
+        int count = Math.min(14, columns.logCount);
+        if (count == 0) {
+            result.score = 75;
+            return result;
+        }
+
+        double avgSleep = mean(columns.sleep, count, 7);
+        double avgStress = mean(columns.stress, count, 5);
+        double avgSoreness = mean(columns.soreness, count, 3);
+        long daysSinceWorkout = (long) Math.floor((double) (nowMs - columns.dateMs[0]) / DAY_MS);
+        double restScore = Math.min(100, daysSinceWorkout * 20);
+
+        double sleepScore = avgSleep / 10 * 100;
+        double stressScore = (10 - avgStress) / 10 * 100;
+        double sorenessScore = (10 - avgSoreness) / 10 * 100;
+        long score = Math.round(sleepScore * 0.35 + stressScore * 0.25 + sorenessScore * 0.25 + restScore * 0.15);
+
+        result.score = (int) Math.min(100, Math.max(0, score));
+        result.factors = new int[]{
+            (int) Math.round(sleepScore), (int) Math.round(stressScore),
+            (int) Math.round(sorenessScore), (int) Math.round(restScore)
+        };
+        result.daysSinceWorkout = daysSinceWorkout;
+        // Like the JS: the recommendation sees the score before clamping
+        result.recommendation = recommendation(score, daysSinceWorkout);
+        return result;
+    }
+
+    static String recommendation(long score, long days) {
+        if (score >= 80 && days >= 1) return "Pronto per allenamento intenso";
+        if (score >= 60) return "OK per allenamento moderato";
+        if (score >= 40) return "Consigliato allenamento leggero o recupero attivo";
+        return "Riposo consigliato";
+    }
+
+    MuscleBalance muscleBalance(TrainingColumns columns, int days, long nowMs) {
+        MuscleBalance result = new MuscleBalance();
+        int[] masks = masksFor(columns);
+        int count = columns.countSince(nowMs - days * DAY_MS);
+        int end = columns.exerciseStart[count];
+        double[] raw = result.rawVolume;
+        for (int e = 0; e < end; e++) {
+            int mask = masks[columns.exerciseName[e]];
+            if (mask == 0) {
+                continue;
+            }
+            float volume = columns.exerciseVolume[e];
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                if ((mask & (1 << c)) != 0) {
+                    raw[c] += volume;
+                }
+            }
+        }
+
+        double total = 0;
+        for (double v : raw) {
+            total += v;
+        }
+        if (total == 0) {
+            total = 1;
+        }
+        double pctSum = 0;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            result.distribution[c] = Math.round(raw[c] / total * 100);
+            pctSum += result.distribution[c];
+        }
+        double avg = pctSum / CATEGORIES.length;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            long pct = result.distribution[c];
+            if (pct < avg * 0.5 && pct < 10) {
+                result.imbalances.add(new Imbalance(CATEGORIES[c], "undertrained", pct));
+            } else if (pct > avg * 1.8) {
+                result.imbalances.add(new Imbalance(CATEGORIES[c], "overtrained", pct));
+            }
+        }
+        result.totalVolume = total;
+        result.balanceScore = Math.round(100 - result.imbalances.size() * 15.0);
+        return result;
+    }
+
+    /**
+     * Category mask of every interned name in {@code columns}, resolved
+     * once per snapshot instead of substring-matching every logged exercise.
+     */
+    private int[] masksFor(TrainingColumns columns) {
+        if (maskColumns != columns) {
+            int[] masks = new int[columns.names.length];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = classify(columns.names[i]);
+            }
+            nameMasks = masks;
+            maskColumns = columns;
+        }
+        return nameMasks;
+    }
+
+    /**
+     * First EXERCISE_DB key the name contains (all its categories), else the
+     * first keyword category that matches. {@code name} is lowercase.
+     */
+    int classify(String name) {
+        for (int i = 0; i < dbKeys.length; i++) {
+            if (name.contains(dbKeys[i])) {
+                if (dbMasks[i] != 0) {
+                    return dbMasks[i];
+                }
+                break;
+            }
+        }
+        for (int c = 0; c < KEYWORDS.length; c++) {
+            for (String keyword : KEYWORDS[c]) {
+                if (name.contains(keyword)) {
+                    return 1 << c;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static double mean(float[] values, int count, double fallback) {
+        double sum = 0;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            float v = values[i];
+            if (!Float.isNaN(v)) {
+                sum += v;
+                n++;
+            }
+        }
+        return n > 0 ? sum / n : fallback;
+    }
+
+    private static int categoryIndex(String category) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i].equals(category)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(category);
+    }
+}
@@ -0,0 +1,166 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable column-oriented view of the workout logs for TrainingAnalytics.
+ * One slot per log in parallel primitive arrays, sorted newest first, so a
+ * "last N days" window is a prefix found by binary search; exercises are
+ * flattened into their own arrays with interned names, so per-name work (the
+ * muscle lookup) runs once per distinct exercise instead of once per entry.
+ *
+ * Missing wellness values are NaN, the way the JS skips non-numbers.
+ */
+final class TrainingColumns {
+    final int logCount;
+    final long[] dateMs;
+    final float[] volume;
+    // log.avgRpe, or the mean of the set RPEs; 0 when the log has none
+    final float[] rpe;
+    final float[] sleep;
+    final float[] stress;
+    final float[] soreness;
+
+    // Exercises of log i are [exerciseStart[i], exerciseStart[i + 1])
+    final int[] exerciseStart;
+    final int[] exerciseName;
+    final float[] exerciseVolume;
+    // Lowercased, indexed by exerciseName
+    final String[] names;
+
+    private TrainingColumns(Builder b, int[] order) {
+        logCount = b.logCount;
+        dateMs = new long[logCount];
+        volume = new float[logCount];
+        rpe = new float[logCount];
+        sleep = new float[logCount];
+        stress = new float[logCount];
+        soreness = new float[logCount];
+        exerciseStart = new int[logCount + 1];
+        exerciseName = new int[b.exerciseCount];
+        exerciseVolume = new float[b.exerciseCount];
+        names = b.names.toArray(new String[0]);
+
+        int e = 0;
+        for (int i = 0; i < logCount; i++) {
+            int src = order[i];
+            dateMs[i] = b.dateMs[src];
+            volume[i] = b.volume[src];
+            rpe[i] = b.rpe[src];
+            sleep[i] = b.sleep[src];
+            stress[i] = b.stress[src];
+            soreness[i] = b.soreness[src];
+            exerciseStart[i] = e;
+            int from = b.exerciseStart[src];
+            int to = src + 1 < logCount ? b.exerciseStart[src + 1] : b.exerciseCount;
+            int n = to - from;
+            System.arraycopy(b.exerciseName, from, exerciseName, e, n);
+            System.arraycopy(b.exerciseVolume, from, exerciseVolume, e, n);
+            e += n;
+        }
+        exerciseStart[logCount] = e;
+    }
+
+    /**
+     * Number of logs dated at or after {@code cutoffMs}: they are the first
+     * ones, the arrays being sorted newest first.
+     */
+    int countSince(long cutoffMs) {
+        int lo = 0;
+        int hi = logCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dateMs[mid] >= cutoffMs) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Accepts logs in any order; build() sorts them newest first (stable, so
+     * same-date logs keep the order they were added in).
+     */
+    static final class Builder {
+        private int logCount;
+        private long[] dateMs = new long[64];
+        private float[] volume = new float[64];
+        private float[] rpe = new float[64];
+        private float[] sleep = new float[64];
+        private float[] stress = new float[64];
+        private float[] soreness = new float[64];
+        private int[] exerciseStart = new int[64];
+
+        private int exerciseCount;
+        private int[] exerciseName = new int[256];
+        private float[] exerciseVolume = new float[256];
+
+        private final HashMap<String, Integer> nameIds = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        Builder addLog(long dateMs, float volume, float rpe, float sleep, float stress, float soreness) {
+            if (logCount == this.dateMs.length) {
+                int capacity = logCount * 2;
+                this.dateMs = Arrays.copyOf(this.dateMs, capacity);
+                this.volume = Arrays.copyOf(this.volume, capacity);
+                this.rpe = Arrays.copyOf(this.rpe, capacity);
+                this.sleep = Arrays.copyOf(this.sleep, capacity);
+                this.stress = Arrays.copyOf(this.stress, capacity);
+                this.soreness = Arrays.copyOf(this.soreness, capacity);
+                this.exerciseStart = Arrays.copyOf(this.exerciseStart, capacity);
+            }
+            this.dateMs[logCount] = dateMs;
+            this.volume[logCount] = volume;
+            this.rpe[logCount] = rpe;
+            this.sleep[logCount] = sleep;
+            this.stress[logCount] = stress;
+            this.soreness[logCount] = soreness;
+            this.exerciseStart[logCount] = exerciseCount;
+            logCount++;
+            return this;
+        }
+
+        /**
+         * Adds an exercise to the log added last.
+         */
+        Builder addExercise(String name, float volume) {
+            if (logCount == 0) {
+                throw new IllegalStateException("addExercise before addLog");
+            }
+            if (exerciseCount == exerciseName.length) {
+                exerciseName = Arrays.copyOf(exerciseName, exerciseCount * 2);
+                exerciseVolume = Arrays.copyOf(exerciseVolume, exerciseCount * 2);
+            }
+            String key = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            Integer id = nameIds.get(key);
+            if (id == null) {
+                id = names.size();
+                nameIds.put(key, id);
+                names.add(key);
+            }
+            exerciseName[exerciseCount] = id;
+            exerciseVolume[exerciseCount] = volume;
+            exerciseCount++;
+            return this;
+        }
+
+        TrainingColumns build() {
+            Integer[] boxed = new Integer[logCount];
+            for (int i = 0; i < logCount; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> Long.compare(dateMs[b], dateMs[a]));
+            int[] order = new int[logCount];
+            for (int i = 0; i < logCount; i++) {
+                order[i] = boxed[i];
+            }
+            return new TrainingColumns(this, order);
+        }
+    }
+}
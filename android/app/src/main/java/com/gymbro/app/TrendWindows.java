@@ -0,0 +1,334 @@
+package com.gymbro.app;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running state behind trendEngine.evaluate (js/trend-engine.js): the recent
+ * window (the last 14 days) and the previous one (the 14 days before), each
+ * with the sums, counts and extrema its metrics need. The JS rescans every
+ * log and body stat on each render; here a new log or stat is added in O(1)
+ * and evaluate() only moves the entries that crossed a boundary since the
+ * last call (each entry moves at most twice, recent -> previous -> out).
+ *
+ * Entries must arrive in date order (undated ones, parsed as 0, only count
+ * toward the totals). add* returns false for one dated before
+ * the newest entry that could still fall in a window, and advance() for a
+ * clock that went back: the caller then rebuilds from the stored history.
+ *
+ * Plain Java, no Android types: tested on the JVM. Not thread-safe; the
+ * plugin confines it to its executor.
+ */
+final class TrendWindows {
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+    static final long WINDOW_MS = 14 * DAY_MS;
+
+    // Wellness fields of a log, in the order of the JS metrics
+    static final String[] WELLNESS = {"sleepQuality", "energyLevel", "stressLevel", "sorenessLevel"};
+
+    // Snapshot columns, named like the JS METRIC_CONFIG ids; the wellness fields come last
+    static final String[] METRICS = {"frequency", "volume", "bodyWeight", "prs", "consistency",
+        "sleepQuality", "energyLevel", "stressLevel", "sorenessLevel"};
+
+    static final class Log {
+        final long dateMs;
+        // date.slice(0, 10) in the JS: training days are counted on it; null when the date is not a string
+        final String day;
+        final double volume;
+        // NaN where the log has no numeric value
+        final double[] wellness = new double[WELLNESS.length];
+        // Exercise name -> best w * (1 + r / 30) of its sets
+        final Map<String, Double> estimates = new HashMap<>();
+        long seq;
+
+        Log(long dateMs, String day, double volume) {
+            this.dateMs = dateMs;
+            this.day = day;
+            this.volume = volume;
+            Arrays.fill(wellness, Double.NaN);
+        }
+    }
+
+    private static final class Stat {
+        final long dateMs;
+        final double weight;
+
+        Stat(long dateMs, double weight) {
+            this.dateMs = dateMs;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Peak {
+        final long seq;
+        final double value;
+
+        Peak(long seq, double value) {
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+
+    /**
+     * One window: its entries oldest first and their running aggregates.
+     * Per exercise, a monotonic deque keeps the best estimate in the window
+     * at its head, so dropping the oldest log never needs a rescan.
+     */
+    private static final class Window {
+        final ArrayDeque<Log> logs = new ArrayDeque<>();
+        final ArrayDeque<Stat> stats = new ArrayDeque<>();
+        double volumeSum;
+        final double[] wellnessSum = new double[WELLNESS.length];
+        final int[] wellnessCount = new int[WELLNESS.length];
+        double weightSum;
+        final Map<String, Integer> days = new HashMap<>();
+        final Map<String, ArrayDeque<Peak>> peaks = new HashMap<>();
+        double peakSum;
+
+        void addLog(Log log) {
+            logs.addLast(log);
+            volumeSum += log.volume;
+            for (int f = 0; f < WELLNESS.length; f++) {
+                if (!Double.isNaN(log.wellness[f])) {
+                    wellnessSum[f] += log.wellness[f];
+                    wellnessCount[f]++;
+                }
+            }
+            countDay(days, log.day, 1);
+            for (Map.Entry<String, Double> entry : log.estimates.entrySet()) {
+                ArrayDeque<Peak> deque = peaks.get(entry.getKey());
+                if (deque == null) {
+                    deque = new ArrayDeque<>();
+                    peaks.put(entry.getKey(), deque);
+                }
+                double value = entry.getValue();
+                double before = deque.isEmpty() ? 0 : deque.peekFirst().value;
+                while (!deque.isEmpty() && deque.peekLast().value <= value) {
+                    deque.pollLast();
+                }
+                deque.addLast(new Peak(log.seq, value));
+                peakSum += deque.peekFirst().value - before;
+            }
+        }
+
+        Log removeFirstLog() {
+            Log log = logs.pollFirst();
+            volumeSum -= log.volume;
+            for (int f = 0; f < WELLNESS.length; f++) {
+                if (!Double.isNaN(log.wellness[f])) {
+                    wellnessSum[f] -= log.wellness[f];
+                    wellnessCount[f]--;
+                }
+            }
+            countDay(days, log.day, -1);
+            for (String name : log.estimates.keySet()) {
+                ArrayDeque<Peak> deque = peaks.get(name);
+                // A later, higher estimate already displaced this log's peak
+                if (deque.peekFirst().seq != log.seq) {
+                    continue;
+                }
+                peakSum -= deque.pollFirst().value;
+                if (deque.isEmpty()) {
+                    peaks.remove(name);
+                } else {
+                    peakSum += deque.peekFirst().value;
+                }
+            }
+            if (logs.isEmpty()) {
+                // No drift left over from adding and subtracting
+                volumeSum = 0;
+                peakSum = 0;
+                Arrays.fill(wellnessSum, 0);
+            }
+            return log;
+        }
+
+        void addStat(Stat stat) {
+            stats.addLast(stat);
+            weightSum += stat.weight;
+        }
+
+        Stat removeFirstStat() {
+            Stat stat = stats.pollFirst();
+            weightSum = stats.isEmpty() ? 0 : weightSum - stat.weight;
+            return stat;
+        }
+
+        double volume() {
+            return logs.isEmpty() ? 0 : volumeSum / logs.size();
+        }
+
+        double weight() {
+            return stats.isEmpty() ? 0 : weightSum / stats.size();
+        }
+
+        double wellness(int field) {
+            return wellnessCount[field] == 0 ? 0 : wellnessSum[field] / wellnessCount[field];
+        }
+
+        double prs() {
+            return peaks.isEmpty() ? 0 : peakSum / peaks.size();
+        }
+    }
+
+    /**
+     * What evaluate() compares: the recent and previous value of each of
+     * METRICS.
+     */
+    static final class Snapshot {
+        final double[] recent = new double[METRICS.length];
+        final double[] previous = new double[METRICS.length];
+        int recentLogs;
+        int previousLogs;
+        int totalLogs;
+        int totalBodyStats;
+    }
+
+    private final long windowMs;
+    private final Window recent = new Window();
+    private final Window previous = new Window();
+    // Training days of both windows together, for the recent consistency
+    private final Map<String, Integer> unionDays = new HashMap<>();
+    private long now;
+    private long newestLogMs = Long.MIN_VALUE;
+    private long newestStatMs = Long.MIN_VALUE;
+    private long nextSeq;
+    private int totalLogs;
+    private int totalBodyStats;
+
+    TrendWindows(long windowMs, long now) {
+        this.windowMs = windowMs;
+        this.now = now;
+    }
+
+    /**
+     * Adds a stored log; false when it is out of order (see the class comment).
+     */
+    boolean addLog(Log log) {
+        if (log.dateMs == 0) {
+            // Undated: the JS skips it too, but logs.length still counts it
+            totalLogs++;
+            return true;
+        }
+        if (log.dateMs < newestLogMs) {
+            if (log.dateMs >= now - 2 * windowMs) {
+                return false;
+            }
+            // Already too old for either window, and the clock only moves on
+            totalLogs++;
+            return true;
+        }
+        newestLogMs = log.dateMs;
+        log.seq = nextSeq++;
+        totalLogs++;
+        recent.addLog(log);
+        countDay(unionDays, log.day, 1);
+        return true;
+    }
+
+    /**
+     * Adds a stored body stat; false when it is out of order.
+     */
+    boolean addBodyStat(long dateMs, double weight) {
+        if (dateMs == 0) {
+            totalBodyStats++;
+            return true;
+        }
+        if (dateMs < newestStatMs) {
+            if (dateMs >= now - 2 * windowMs) {
+                return false;
+            }
+            totalBodyStats++;
+            return true;
+        }
+        newestStatMs = dateMs;
+        totalBodyStats++;
+        recent.addStat(new Stat(dateMs, weight));
+        return true;
+    }
+
+    /**
+     * Moves the window boundaries to {@code now}; false if it is earlier than
+     * a previous call (entries already dropped would be needed again).
+     */
+    boolean advance(long now) {
+        if (now < this.now) {
+            return false;
+        }
+        this.now = now;
+        long recentCutoff = now - windowMs;
+        long previousCutoff = now - 2 * windowMs;
+        while (!recent.logs.isEmpty() && recent.logs.peekFirst().dateMs < recentCutoff) {
+            previous.addLog(recent.removeFirstLog());
+        }
+        while (!previous.logs.isEmpty() && previous.logs.peekFirst().dateMs < previousCutoff) {
+            countDay(unionDays, previous.removeFirstLog().day, -1);
+        }
+        while (!recent.stats.isEmpty() && recent.stats.peekFirst().dateMs < recentCutoff) {
+            previous.addStat(recent.removeFirstStat());
+        }
+        while (!previous.stats.isEmpty() && previous.stats.peekFirst().dateMs < previousCutoff) {
+            previous.removeFirstStat();
+        }
+        return true;
+    }
+
+    /**
+     * The current values; call advance() first.
+     */
+    Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        s.recent[0] = recent.days.size() / 2.0;
+        s.previous[0] = previous.days.size() / 2.0;
+        s.recent[1] = recent.volume();
+        s.previous[1] = previous.volume();
+        s.recent[2] = recent.weight();
+        s.previous[2] = previous.weight();
+        s.recent[3] = recent.prs();
+        s.previous[3] = previous.prs();
+        // The JS takes the recent consistency over both windows together
+        long oldest = !previous.logs.isEmpty() ? previous.logs.peekFirst().dateMs
+            : !recent.logs.isEmpty() ? recent.logs.peekFirst().dateMs : 0;
+        long newest = !recent.logs.isEmpty() ? recent.logs.peekLast().dateMs
+            : !previous.logs.isEmpty() ? previous.logs.peekLast().dateMs : 0;
+        s.recent[4] = consistency(recent.logs.size() + previous.logs.size(), unionDays.size(), oldest, newest);
+        s.previous[4] = previous.logs.isEmpty() ? 0 : consistency(previous.logs.size(), previous.days.size(),
+            previous.logs.peekFirst().dateMs, previous.logs.peekLast().dateMs);
+        for (int f = 0; f < WELLNESS.length; f++) {
+            s.recent[5 + f] = recent.wellness(f);
+            s.previous[5 + f] = previous.wellness(f);
+        }
+        s.recentLogs = recent.logs.size();
+        s.previousLogs = previous.logs.size();
+        s.totalLogs = totalLogs;
+        s.totalBodyStats = totalBodyStats;
+        return s;
+    }
+
+    /**
+     * getConsistency in the JS: training days over four a week, across the
+     * weeks between the oldest and newest log (at least one).
+     */
+    private static double consistency(int logs, int trainingDays, long oldestMs, long newestMs) {
+        if (logs == 0) {
+            return 0;
+        }
+        double weeks = Math.max(1, (newestMs - oldestMs) / (double) (DAY_MS * 7));
+        return Math.min(1, trainingDays / (weeks * 4));
+    }
+
+    private static void countDay(Map<String, Integer> days, String day, int delta) {
+        if (day == null || day.isEmpty()) {
+            return;
+        }
+        Integer count = days.get(day);
+        int next = (count != null ? count : 0) + delta;
+        if (next > 0) {
+            days.put(day, next);
+        } else {
+            days.remove(day);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.gymbro.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A workout precompiled by JS into a flat list of sets in execution order
+ * (supersets already interleaved). TimerService walks it natively: set phase,
+ * then the rest that follows the set, then the next set.
+ */
+final class WorkoutProgram {
+    static final int PHASE_SET = 0;
+    static final int PHASE_REST = 1;
+    static final int PHASE_DONE = 2;
+
+    static final class Step {
+        final String exercise;
+        final int set;
+        final int totalSets;
+        // Rest after this set; 0 moves straight to the next step (superset A -> B)
+        final long restMs;
+
+        Step(String exercise, int set, int totalSets, long restMs) {
+            this.exercise = exercise;
+            this.set = set;
+            this.totalSets = totalSets;
+            this.restMs = restMs;
+        }
+    }
+
+    final String workout;
+    private final List<Step> steps;
+    private int index;
+    private int phase = PHASE_SET;
+
+    WorkoutProgram(String workout, List<Step> steps, int startIndex) {
+        this.workout = workout;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        this.index = Math.max(0, Math.min(startIndex, steps.size()));
+        if (this.index >= steps.size()) {
+            phase = PHASE_DONE;
+        }
+    }
+
+    int index() {
+        return index;
+    }
+
+    int phase() {
+        return phase;
+    }
+
+    int size() {
+        return steps.size();
+    }
+
+    Step step(int i) {
+        return steps.get(i);
+    }
+
+    Step current() {
+        return index < steps.size() ? steps.get(index) : null;
+    }
+
+    Step next() {
+        return index + 1 < steps.size() ? steps.get(index + 1) : null;
+    }
+
+    boolean isLastStep() {
+        return index >= steps.size() - 1;
+    }
+
+    void startRest() {
+        phase = PHASE_REST;
+    }
+
+    /**
+     * Moves to the set phase of the next step. Returns false once the program is done.
+     */
+    boolean advance() {
+        index++;
+        if (index >= steps.size()) {
+            phase = PHASE_DONE;
+            return false;
+        }
+        phase = PHASE_SET;
+        return true;
+    }
+
+    void finish() {
+        phase = PHASE_DONE;
+    }
+}
@@ -0,0 +1,800 @@
+package com.gymbro.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * SQLite store behind WorkoutStorePlugin. Logs keep their original JSON next to
+ * the columns the app filters on, and every exercise of a log gets its own row
+ * in log_exercises, so the history of one exercise is an index range scan
+ * instead of a JSON.parse of the whole diary.
+ *
+ * One instance per process (see {@link #get}): SQLite serialises access itself,
+ * and the class holds no state besides the change counter.
+ */
+final class WorkoutStoreDatabase extends SQLiteOpenHelper {
+    private static final String NAME = "workout_store.db";
+    // 2: personal_records, exercise_key is ExerciseNames.canonicalId
+    private static final int VERSION = 2;
+
+    // Non-log localStorage collections, stored as generic dated documents
+    static final String COLLECTION_WORKOUTS = "workouts";
+    static final String COLLECTION_BODY_STATS = "body_stats";
+    static final String COLLECTION_HEALTH = "health_data";
+
+    static final String META_MIGRATED = "migrated_local_storage";
+    // Set when logs were replaced or deleted: records cannot be lowered
+    // incrementally, so the index is rebuilt before its next use
+    static final String META_RECORDS_STALE = "personal_records_stale";
+
+    private static WorkoutStoreDatabase instance;
+
+    // Bumped after every committed change to logs, so readers that cache a
+    // derived view (AnalyticsPlugin) know when to rebuild it
+    private volatile long logsVersion = 0;
+
+    /**
+     * Callback of {@link #forEachLog} and {@link #forEachDocument}, newest
+     * first.
+     */
+    interface LogVisitor {
+        void visit(long dateMs, JSONObject log);
+    }
+
+    /**
+     * Every logged occurrence of one exercise, oldest first: the unit of work
+     * of a parallel PersonalRecordIndex rebuild.
+     */
+    static final class ExerciseRows {
+        final String id;
+        final List<String> json = new ArrayList<>();
+        long[] dateMs = new long[8];
+
+        ExerciseRows(String id) {
+            this.id = id;
+        }
+
+        void add(long date, String row) {
+            if (json.size() == dateMs.length) {
+                dateMs = Arrays.copyOf(dateMs, dateMs.length * 2);
+            }
+            dateMs[json.size()] = date;
+            json.add(row);
+        }
+    }
+
+    /**
+     * One page of a keyset-paginated query, newest first. {@code nextCursor} is
+     * null on the last page.
+     */
+    static final class Page {
+        final List<JSONObject> items;
+        final String nextCursor;
+
+        Page(List<JSONObject> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    static synchronized WorkoutStoreDatabase get(Context context) {
+        if (instance == null) {
+            instance = new WorkoutStoreDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WorkoutStoreDatabase(Context context) {
+        super(context, NAME, null, VERSION);
+        // Readers do not wait for the migration's write transaction
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE logs ("
+            + "id TEXT PRIMARY KEY, "
+            + "date_ms INTEGER NOT NULL, "
+            + "workout_id TEXT, "
+            + "workout_name TEXT, "
+            + "total_volume REAL, "
+            + "json TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX logs_date ON logs(date_ms)");
+
+        db.execSQL("CREATE TABLE log_exercises ("
+            + "log_id TEXT NOT NULL, "
+            + "position INTEGER NOT NULL, "
+            + "exercise_key TEXT NOT NULL, "
+            + "date_ms INTEGER NOT NULL, "
+            + "json TEXT NOT NULL, "
+            + "PRIMARY KEY (log_id, position))");
+        db.execSQL("CREATE INDEX log_exercises_key ON log_exercises(exercise_key, date_ms)");
+
+        db.execSQL("CREATE TABLE documents ("
+            + "collection TEXT NOT NULL, "
+            + "id TEXT NOT NULL, "
+            + "date_ms INTEGER NOT NULL, "
+            + "json TEXT NOT NULL, "
+            + "PRIMARY KEY (collection, id))");
+        db.execSQL("CREATE INDEX documents_date ON documents(collection, date_ms)");
+
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT)");
+        createPersonalRecords(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createPersonalRecords(db);
+            rekeyExercises(db);
+            db.execSQL("INSERT OR REPLACE INTO meta (key, value) VALUES (?, '1')", new Object[]{META_RECORDS_STALE});
+        }
+    }
+
+    private static void createPersonalRecords(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE personal_records ("
+            + "id TEXT PRIMARY KEY, "
+            + "display_name TEXT, "
+            + "max_weight REAL, "
+            + "max_weight_reps INTEGER, "
+            + "max_1rm REAL, "
+            + "max_reps INTEGER, "
+            + "max_volume REAL, "
+            + "total_sets INTEGER, "
+            + "weight_sum REAL, "
+            + "updated_ms INTEGER)");
+    }
+
+    /**
+     * Version 1 keyed exercises by lowercase name only.
+     */
+    private static void rekeyExercises(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("UPDATE log_exercises SET exercise_key = ? WHERE rowid = ?");
+        try (Cursor c = db.rawQuery("SELECT rowid, json FROM log_exercises", null)) {
+            while (c.moveToNext()) {
+                String name;
+                try {
+                    name = new JSONObject(c.getString(1)).optString("name", "");
+                } catch (JSONException e) {
+                    continue;
+                }
+                update.bindString(1, exerciseKey(name));
+                update.bindLong(2, c.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            update.close();
+        }
+    }
+
+    // ---- Logs ----
+
+    /**
+     * Inserts or replaces logs (matched by id) in one transaction and rebuilds
+     * their exercise rows. Logs whose id was new are added to {@code inserted}
+     * (may be null). Returns the number of logs written.
+     */
+    int putLogs(JSONArray logs, List<JSONObject> inserted) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement deleteLog = db.compileStatement("DELETE FROM logs WHERE id = ?");
+        SQLiteStatement insertLog = db.compileStatement(
+            "INSERT INTO logs (id, date_ms, workout_id, workout_name, total_volume, json) "
+                + "VALUES (?, ?, ?, ?, ?, ?)");
+        SQLiteStatement deleteExercises = db.compileStatement("DELETE FROM log_exercises WHERE log_id = ?");
+        SQLiteStatement insertExercise = db.compileStatement(
+            "INSERT INTO log_exercises (log_id, position, exercise_key, date_ms, json) VALUES (?, ?, ?, ?, ?)");
+        int written = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < logs.length(); i++) {
+                JSONObject log = logs.optJSONObject(i);
+                String id = log != null ? idOf(log) : null;
+                if (id == null) {
+                    continue;
+                }
+                long dateMs = parseDateMs(log.opt("date"));
+
+                // Delete + insert instead of INSERT OR REPLACE tells new logs from edits
+                deleteLog.bindString(1, id);
+                if (deleteLog.executeUpdateDelete() == 0 && inserted != null) {
+                    inserted.add(log);
+                }
+                insertLog.clearBindings();
+                insertLog.bindString(1, id);
+                insertLog.bindLong(2, dateMs);
+                bindNullable(insertLog, 3, log.optString("workoutId", null));
+                bindNullable(insertLog, 4, log.optString("workoutName", null));
+                insertLog.bindDouble(5, log.optDouble("totalVolume", 0));
+                insertLog.bindString(6, log.toString());
+                insertLog.executeInsert();
+
+                deleteExercises.bindString(1, id);
+                deleteExercises.executeUpdateDelete();
+                JSONArray exercises = log.optJSONArray("exercises");
+                if (exercises != null) {
+                    for (int p = 0; p < exercises.length(); p++) {
+                        JSONObject exercise = exercises.optJSONObject(p);
+                        if (exercise == null) {
+                            continue;
+                        }
+                        insertExercise.bindString(1, id);
+                        insertExercise.bindLong(2, p);
+                        insertExercise.bindString(3, exerciseKey(exercise.optString("name", "")));
+                        insertExercise.bindLong(4, dateMs);
+                        insertExercise.bindString(5, exercise.toString());
+                        insertExercise.executeInsert();
+                    }
+                }
+                written++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            deleteLog.close();
+            insertLog.close();
+            deleteExercises.close();
+            insertExercise.close();
+            logsVersion++;
+        }
+        return written;
+    }
+
+    boolean deleteLog(String id) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete("log_exercises", "log_id = ?", new String[]{id});
+            int deleted = db.delete("logs", "id = ?", new String[]{id});
+            db.setTransactionSuccessful();
+            return deleted > 0;
+        } finally {
+            db.endTransaction();
+            logsVersion++;
+        }
+    }
+
+    long logsVersion() {
+        return logsVersion;
+    }
+
+    /**
+     * Full scan of the logs, newest first, for views built over the whole
+     * history. Rows whose JSON no longer parses are skipped.
+     */
+    void forEachLog(LogVisitor visitor) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT date_ms, json FROM logs ORDER BY date_ms DESC, rowid DESC", null)) {
+            while (c.moveToNext()) {
+                JSONObject log;
+                try {
+                    log = new JSONObject(c.getString(1));
+                } catch (JSONException e) {
+                    continue;
+                }
+                visitor.visit(c.getLong(0), log);
+            }
+        }
+    }
+
+    /**
+     * Logs dated in [fromMs, toMs], newest first.
+     */
+    Page queryLogs(long fromMs, long toMs, String cursor, int limit) {
+        return queryPage("SELECT rowid, date_ms, json FROM logs WHERE date_ms BETWEEN ? AND ?",
+            new String[]{Long.toString(fromMs), Long.toString(toMs)}, cursor, limit, false);
+    }
+
+    long countLogs(long fromMs, long toMs) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), "logs", "date_ms BETWEEN ? AND ?",
+            new String[]{Long.toString(fromMs), Long.toString(toMs)});
+    }
+
+    /**
+     * Every logged occurrence of one exercise, newest first. Items are
+     * {logId, date, exercise} where exercise is the entry exactly as logged.
+     */
+    Page queryExercise(String name, long fromMs, long toMs, String cursor, int limit) {
+        return queryPage("SELECT rowid, date_ms, json, log_id FROM log_exercises "
+                + "WHERE exercise_key = ? AND date_ms BETWEEN ? AND ?",
+            new String[]{exerciseKey(name), Long.toString(fromMs), Long.toString(toMs)}, cursor, limit, true);
+    }
+
+    // ---- Personal records ----
+
+    List<PersonalRecordIndex.Record> loadPersonalRecords() {
+        List<PersonalRecordIndex.Record> records = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT id, display_name, max_weight, max_weight_reps, "
+                + "max_1rm, max_reps, max_volume, total_sets, weight_sum, updated_ms FROM personal_records", null)) {
+            while (c.moveToNext()) {
+                PersonalRecordIndex.Record record = new PersonalRecordIndex.Record(c.getString(0), c.getString(1));
+                record.maxWeight = c.getDouble(2);
+                record.maxWeightReps = c.getInt(3);
+                record.max1RM = c.getDouble(4);
+                record.maxReps = c.getInt(5);
+                record.maxVolume = c.getDouble(6);
+                record.totalSets = c.getInt(7);
+                record.weightSum = c.getDouble(8);
+                record.updatedAtMs = c.getLong(9);
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Upserts {@code records}; with {@code replaceAll} the table is emptied
+     * first (after a rebuild). Clears the stale flag in the same transaction.
+     */
+    void savePersonalRecords(Collection<PersonalRecordIndex.Record> records, boolean replaceAll) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO personal_records (id, display_name, "
+            + "max_weight, max_weight_reps, max_1rm, max_reps, max_volume, total_sets, weight_sum, updated_ms) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            if (replaceAll) {
+                db.execSQL("DELETE FROM personal_records");
+                db.delete("meta", "key = ?", new String[]{META_RECORDS_STALE});
+            }
+            for (PersonalRecordIndex.Record record : records) {
+                insert.bindString(1, record.id);
+                bindNullable(insert, 2, record.displayName);
+                insert.bindDouble(3, record.maxWeight);
+                insert.bindLong(4, record.maxWeightReps);
+                insert.bindDouble(5, record.max1RM);
+                insert.bindLong(6, record.maxReps);
+                insert.bindDouble(7, record.maxVolume);
+                insert.bindLong(8, record.totalSets);
+                insert.bindDouble(9, record.weightSum);
+                insert.bindLong(10, record.updatedAtMs);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    boolean personalRecordsStale() {
+        return getMeta(META_RECORDS_STALE) != null;
+    }
+
+    void markPersonalRecordsStale() {
+        putMeta(META_RECORDS_STALE, "1");
+    }
+
+    /**
+     * All exercise rows grouped by canonical id, each group oldest first. Only
+     * strings are read here; parsing happens in the parallel fold.
+     */
+    List<ExerciseRows> readExerciseGroups() {
+        List<ExerciseRows> groups = new ArrayList<>();
+        ExerciseRows current = null;
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT exercise_key, date_ms, json FROM log_exercises "
+                + "ORDER BY exercise_key, date_ms, rowid", null)) {
+            while (c.moveToNext()) {
+                String key = c.getString(0);
+                if (current == null || !current.id.equals(key)) {
+                    current = new ExerciseRows(key);
+                    groups.add(current);
+                }
+                current.add(c.getLong(1), c.getString(2));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * PersonalRecordIndex.GroupFolder over {@link #readExerciseGroups} rows.
+     */
+    static PersonalRecordIndex.Record foldExercise(ExerciseRows rows) {
+        PersonalRecordIndex.Record record = null;
+        double[] weights = new double[16];
+        int[] reps = new int[16];
+        for (int i = 0; i < rows.json.size(); i++) {
+            JSONObject exercise;
+            try {
+                exercise = new JSONObject(rows.json.get(i));
+            } catch (JSONException e) {
+                continue;
+            }
+            String name = exercise.optString("name", "").trim();
+            if (record == null) {
+                record = new PersonalRecordIndex.Record(rows.id, name);
+            }
+            JSONArray sets = exercise.optJSONArray("sets");
+            int count = sets != null ? sets.length() : 0;
+            if (count > weights.length) {
+                weights = new double[count];
+                reps = new int[count];
+            }
+            readSets(sets, weights, reps);
+            record.add(name, rows.dateMs[i], weights, reps, count, null);
+        }
+        return record;
+    }
+
+    /**
+     * weight = parseFloat(set.weight) || 0, reps = parseInt(set.reps) || 0, as
+     * PRTracker reads them. The arrays must hold sets.length() entries.
+     */
+    static void readSets(JSONArray sets, double[] weights, int[] reps) {
+        for (int s = 0; sets != null && s < sets.length(); s++) {
+            JSONObject set = sets.optJSONObject(s);
+            weights[s] = set != null ? jsNumber(set.opt("weight")) : 0;
+            reps[s] = set != null ? (int) jsNumber(set.opt("reps")) : 0;
+        }
+    }
+
+    // ---- Other collections ----
+
+    /**
+     * Inserts or replaces documents of one collection (matched by id). Items
+     * whose id was new are added to {@code inserted} (may be null). Returns
+     * the number written.
+     */
+    int putDocuments(String collection, JSONArray items, List<JSONObject> inserted) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement delete = db.compileStatement("DELETE FROM documents WHERE collection = ? AND id = ?");
+        SQLiteStatement insert = db.compileStatement(
+            "INSERT INTO documents (collection, id, date_ms, json) VALUES (?, ?, ?, ?)");
+        int written = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.optJSONObject(i);
+                String id = item != null ? documentId(item) : null;
+                if (id == null) {
+                    continue;
+                }
+                // As in putLogs: delete + insert tells new documents from edits
+                delete.bindString(1, collection);
+                delete.bindString(2, id);
+                if (delete.executeUpdateDelete() == 0 && inserted != null) {
+                    inserted.add(item);
+                }
+                insert.bindString(1, collection);
+                insert.bindString(2, id);
+                insert.bindLong(3, documentDateMs(item));
+                insert.bindString(4, item.toString());
+                insert.executeInsert();
+                written++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            delete.close();
+            insert.close();
+        }
+        return written;
+    }
+
+    /**
+     * Empties the logs and the imported collections: a forced migration
+     * replaces them with what localStorage holds now.
+     */
+    void clearImported() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete("log_exercises", null, null);
+        db.delete("logs", null, null);
+        db.delete("documents", "collection IN (?, ?, ?)",
+            new String[]{COLLECTION_WORKOUTS, COLLECTION_BODY_STATS, COLLECTION_HEALTH});
+    }
+
+    long countDocuments(String collection) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), "documents", "collection = ?",
+            new String[]{collection});
+    }
+
+    boolean deleteDocument(String collection, String id) {
+        return getWritableDatabase().delete("documents", "collection = ? AND id = ?",
+            new String[]{collection, id}) > 0;
+    }
+
+    /**
+     * Full scan of one collection, newest first. Rows whose JSON no longer
+     * parses are skipped.
+     */
+    void forEachDocument(String collection, LogVisitor visitor) {
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT date_ms, json FROM documents WHERE collection = ? ORDER BY date_ms DESC, rowid DESC",
+                new String[]{collection})) {
+            while (c.moveToNext()) {
+                JSONObject item;
+                try {
+                    item = new JSONObject(c.getString(1));
+                } catch (JSONException e) {
+                    continue;
+                }
+                visitor.visit(c.getLong(0), item);
+            }
+        }
+    }
+
+    Page queryDocuments(String collection, long fromMs, long toMs, String cursor, int limit) {
+        return queryPage("SELECT rowid, date_ms, json FROM documents WHERE collection = ? AND date_ms BETWEEN ? AND ?",
+            new String[]{collection, Long.toString(fromMs), Long.toString(toMs)}, cursor, limit, false);
+    }
+
+    // ---- Meta ----
+
+    String getMeta(String key) {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT value FROM meta WHERE key = ?", new String[]{key})) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    void putMeta(String key, String value) {
+        getWritableDatabase().execSQL("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)",
+            new Object[]{key, value});
+    }
+
+    /**
+     * Runs {@code body} in one write transaction (the migration imports every
+     * collection atomically: a kill halfway leaves the store as it was).
+     */
+    void inTransaction(Runnable body) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            body.run();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            // putLogs already counted, but only now is the outer transaction visible
+            logsVersion++;
+        }
+    }
+
+    // ---- Helpers ----
+
+    /**
+     * Keyset pagination over (date_ms, rowid) descending: the cursor is the
+     * last row of the previous page, so deep pages cost the same as the first.
+     */
+    private Page queryPage(String baseSql, String[] baseArgs, String cursor, int limit, boolean exerciseRows) {
+        StringBuilder sql = new StringBuilder(baseSql);
+        List<String> args = new ArrayList<>(baseArgs.length + 3);
+        for (String arg : baseArgs) {
+            args.add(arg);
+        }
+        long[] position = parseCursor(cursor);
+        if (position != null) {
+            sql.append(" AND (date_ms < ? OR (date_ms = ? AND rowid < ?))");
+            args.add(Long.toString(position[0]));
+            args.add(Long.toString(position[0]));
+            args.add(Long.toString(position[1]));
+        }
+        // One extra row tells whether another page exists
+        sql.append(" ORDER BY date_ms DESC, rowid DESC LIMIT ").append(limit + 1);
+
+        List<JSONObject> items = new ArrayList<>(Math.min(limit, 64));
+        String nextCursor = null;
+        long lastDate = 0;
+        long lastRowId = 0;
+        int rows = 0;
+        try (Cursor c = getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]))) {
+            while (c.moveToNext()) {
+                if (rows == limit) {
+                    nextCursor = lastDate + ":" + lastRowId;
+                    break;
+                }
+                rows++;
+                lastRowId = c.getLong(0);
+                lastDate = c.getLong(1);
+                JSONObject item = toItem(c, exerciseRows);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        }
+        return new Page(items, nextCursor);
+    }
+
+    private static JSONObject toItem(Cursor c, boolean exerciseRow) {
+        try {
+            JSONObject json = new JSONObject(c.getString(2));
+            if (!exerciseRow) {
+                return json;
+            }
+            JSONObject item = new JSONObject();
+            item.put("logId", c.getString(3));
+            item.put("date", c.getLong(1));
+            item.put("exercise", json);
+            return item;
+        } catch (JSONException e) {
+            // A corrupt row must not break the whole page
+            return null;
+        }
+    }
+
+    private static long[] parseCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        int split = cursor.indexOf(':');
+        if (split <= 0) {
+            return null;
+        }
+        try {
+            return new long[]{
+                Long.parseLong(cursor.substring(0, split)),
+                Long.parseLong(cursor.substring(split + 1))
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * The app uses Date.now() numbers and Firestore string ids alike.
+     */
+    private static String idOf(JSONObject item) {
+        Object id = item.opt("id");
+        if (id == null || id == JSONObject.NULL) {
+            return null;
+        }
+        if (id instanceof Number) {
+            return Long.toString(((Number) id).longValue());
+        }
+        return id.toString();
+    }
+
+    /**
+     * Health samples have no id of their own: type + date identifies them, so
+     * re-importing the same sample replaces it instead of duplicating it.
+     */
+    private static String documentId(JSONObject item) {
+        String id = idOf(item);
+        if (id != null) {
+            return id;
+        }
+        long dateMs = documentDateMs(item);
+        return dateMs != 0 ? item.optString("type", "") + "|" + dateMs : null;
+    }
+
+    private static long documentDateMs(JSONObject item) {
+        String[] fields = {"date", "timestamp", "createdAt", "updatedAt"};
+        for (String field : fields) {
+            long ms = parseDateMs(item.opt(field));
+            if (ms != 0) {
+                return ms;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Key exercise rows are indexed by: spelling differences between sessions
+     * ("Panca piana" vs "panca  Piana 80kg") must not split the history.
+     */
+    static String exerciseKey(String name) {
+        return ExerciseNames.canonicalId(name);
+    }
+
+    /**
+     * parseFloat(x) || 0: numbers as they are, strings by their leading number
+     * ("80kg" is 80), anything else 0.
+     */
+    static double jsNumber(Object value) {
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return Double.isNaN(d) ? 0 : d;
+        }
+        if (!(value instanceof String)) {
+            return 0;
+        }
+        String s = ((String) value).trim();
+        int end = 0;
+        if (end < s.length() && (s.charAt(end) == '-' || s.charAt(end) == '+')) {
+            end++;
+        }
+        boolean dot = false;
+        boolean digits = false;
+        while (end < s.length()) {
+            char ch = s.charAt(end);
+            if (ch >= '0' && ch <= '9') {
+                digits = true;
+            } else if (ch == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+            end++;
+        }
+        if (!digits) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(s.substring(0, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Epoch ms from what the app stores as a date: a number, an ISO string from
+     * toISOString() ("2025-03-01T18:30:00.000Z", offsets accepted) or a plain
+     * "YYYY-MM-DD" from a date input (local midnight). 0 when unparseable.
+     */
+    static long parseDateMs(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (!(value instanceof String)) {
+            return 0;
+        }
+        String s = ((String) value).trim();
+        if (s.length() < 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return 0;
+        }
+        try {
+            int year = Integer.parseInt(s.substring(0, 4));
+            int month = Integer.parseInt(s.substring(5, 7));
+            int day = Integer.parseInt(s.substring(8, 10));
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            int millis = 0;
+            TimeZone zone = TimeZone.getDefault();
+
+            int i = 10;
+            if (s.length() >= 16 && (s.charAt(10) == 'T' || s.charAt(10) == ' ')) {
+                hour = Integer.parseInt(s.substring(11, 13));
+                minute = Integer.parseInt(s.substring(14, 16));
+                i = 16;
+                if (s.length() >= 19 && s.charAt(16) == ':') {
+                    second = Integer.parseInt(s.substring(17, 19));
+                    i = 19;
+                }
+                if (i < s.length() && s.charAt(i) == '.') {
+                    int end = i + 1;
+                    while (end < s.length() && Character.isDigit(s.charAt(end))) {
+                        end++;
+                    }
+                    String fraction = (s.substring(i + 1, end) + "00").substring(0, 3);
+                    millis = Integer.parseInt(fraction);
+                    i = end;
+                }
+                if (i < s.length()) {
+                    char z = s.charAt(i);
+                    if (z == 'Z') {
+                        zone = TimeZone.getTimeZone("UTC");
+                    } else if (z == '+' || z == '-') {
+                        zone = TimeZone.getTimeZone("GMT" + s.substring(i));
+                    }
+                }
+            }
+
+            Calendar calendar = Calendar.getInstance(zone);
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            calendar.set(Calendar.MILLISECOND, millis);
+            return calendar.getTimeInMillis();
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+}
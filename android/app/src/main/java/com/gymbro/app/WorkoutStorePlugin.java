@@ -0,0 +1,642 @@
+package com.gymbro.app;
+
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Indexed replacement for the ironflow_* localStorage blobs. The web app used to
+ * JSON.parse the whole diary to render one page or one exercise chart; here
+ * queries are date-range or exercise-keyed and paged with a cursor.
+ *
+ * Every call runs on one background thread, so SQLite never blocks the plugin
+ * thread and writes are applied in call order.
+ *
+ * Also owns the personal-record index and the trend windows: new logs (and
+ * body stats, for the trends) update them as they are stored, edits and
+ * deletions mark them stale and they are rebuilt before their next use.
+ */
+@CapacitorPlugin(name = "WorkoutStore")
+public class WorkoutStorePlugin extends Plugin {
+
+    private static final String TAG = "WorkoutStorePlugin";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GymBroStore");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private WorkoutStoreDatabase database;
+
+    // Executor-confined; null until first used
+    private PersonalRecordIndex personalRecords;
+    private boolean personalRecordsStale = false;
+
+    // Executor-confined; null until first used and after any change but an insert
+    private TrendWindows trends;
+
+    private interface StoreTask {
+        void run(PluginCall call) throws Exception;
+    }
+
+    @Override
+    public void load() {
+        database = WorkoutStoreDatabase.get(getContext());
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        // Queued writes still finish; the database itself is shared and stays open
+        executor.shutdown();
+    }
+
+    /**
+     * Runs {@code task} on the store thread; any failure rejects the call.
+     */
+    private void submit(PluginCall call, StoreTask task) {
+        executor.execute(() -> {
+            try {
+                task.run(call);
+            } catch (Exception e) {
+                Log.e(TAG, call.getMethodName() + " failed", e);
+                call.reject(call.getMethodName() + " failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * One-time import of the localStorage collections. The web side passes the
+     * raw strings it has (logs, workouts, bodyStats, healthData); everything is
+     * written in a single transaction and the store remembers it is done, so a
+     * second call is a no-op unless force is set. A forced import replaces the
+     * store's content (localStorage was replaced wholesale, by a cloud load).
+     */
+    @PluginMethod
+    public void migrateFromLocalStorage(PluginCall call) {
+        submit(call, c -> {
+            boolean force = c.getBoolean("force", false);
+            String migratedAt = database.getMeta(WorkoutStoreDatabase.META_MIGRATED);
+            JSObject ret = new JSObject();
+            if (migratedAt != null && !force) {
+                ret.put("migrated", false);
+                ret.put("migratedAt", Long.parseLong(migratedAt));
+                c.resolve(ret);
+                return;
+            }
+
+            JSONArray logs = parseArray(c.getString("logs"));
+            JSONArray workouts = parseArray(c.getString("workouts"));
+            JSONArray bodyStats = parseArray(c.getString("bodyStats"));
+            JSONArray healthData = parseArray(c.getString("healthData"));
+            int[] counts = new int[4];
+            long now = System.currentTimeMillis();
+            database.inTransaction(() -> {
+                if (force) {
+                    database.clearImported();
+                }
+                counts[0] = database.putLogs(logs, null);
+                counts[1] = database.putDocuments(WorkoutStoreDatabase.COLLECTION_WORKOUTS, workouts, null);
+                counts[2] = database.putDocuments(WorkoutStoreDatabase.COLLECTION_BODY_STATS, bodyStats, null);
+                counts[3] = database.putDocuments(WorkoutStoreDatabase.COLLECTION_HEALTH, healthData, null);
+                database.putMeta(WorkoutStoreDatabase.META_MIGRATED, Long.toString(now));
+            });
+            Log.d(TAG, "Migrated " + counts[0] + " logs, " + counts[1] + " workouts, "
+                + counts[2] + " body stats, " + counts[3] + " health samples");
+            rebuildPersonalRecords();
+            trends = null;
+
+            ret.put("migrated", true);
+            ret.put("migratedAt", now);
+            ret.put("logs", counts[0]);
+            ret.put("workouts", counts[1]);
+            ret.put("bodyStats", counts[2]);
+            ret.put("healthData", counts[3]);
+            c.resolve(ret);
+        });
+    }
+
+    @PluginMethod
+    public void getMigrationStatus(PluginCall call) {
+        submit(call, c -> {
+            String migratedAt = database.getMeta(WorkoutStoreDatabase.META_MIGRATED);
+            JSObject ret = new JSObject();
+            ret.put("migrated", migratedAt != null);
+            if (migratedAt != null) {
+                ret.put("migratedAt", Long.parseLong(migratedAt));
+            }
+            ret.put("logs", database.countLogs(0, Long.MAX_VALUE));
+            ret.put("bodyStats", database.countDocuments(WorkoutStoreDatabase.COLLECTION_BODY_STATS));
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * Insert or replace logs by id: { logs: [...] } -> { written, personalRecords }.
+     * personalRecords lists the records the new logs broke, one entry per
+     * exercise like PRTracker.detectPRsFromLog.
+     */
+    @PluginMethod
+    public void putLogs(PluginCall call) {
+        JSArray logs = call.getArray("logs");
+        if (logs == null) {
+            call.reject("logs is required");
+            return;
+        }
+        submit(call, c -> {
+            PersonalRecordIndex index = personalRecords();
+            List<JSONObject> inserted = new ArrayList<>();
+            JSArray broken = new JSArray();
+            int[] written = new int[1];
+            try {
+                database.inTransaction(() -> {
+                    written[0] = database.putLogs(logs, inserted);
+                    if (written[0] > inserted.size()) {
+                        // An edited log may have lowered a record
+                        database.markPersonalRecordsStale();
+                        personalRecordsStale = true;
+                    } else {
+                        database.savePersonalRecords(applyLogs(index, inserted, broken), false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The index may hold changes the rollback discarded
+                personalRecords = null;
+                throw e;
+            }
+            if (written[0] > inserted.size()) {
+                trends = null;
+            } else {
+                addLogs(inserted);
+            }
+            JSObject ret = new JSObject();
+            ret.put("written", written[0]);
+            ret.put("personalRecords", broken);
+            c.resolve(ret);
+        });
+    }
+
+    @PluginMethod
+    public void deleteLog(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("id is required");
+            return;
+        }
+        submit(call, c -> {
+            boolean deleted = database.deleteLog(id);
+            if (deleted) {
+                database.markPersonalRecordsStale();
+                personalRecordsStale = true;
+                trends = null;
+            }
+            JSObject ret = new JSObject();
+            ret.put("deleted", deleted);
+            c.resolve(ret);
+        });
+    }
+
+    // { exercise } -> { record } (no record key when the exercise was never logged)
+    @PluginMethod
+    public void getPersonalRecord(PluginCall call) {
+        String exercise = call.getString("exercise");
+        if (exercise == null) {
+            call.reject("exercise is required");
+            return;
+        }
+        submit(call, c -> {
+            PersonalRecordIndex.Record record = personalRecords().get(ExerciseNames.canonicalId(exercise));
+            JSObject ret = new JSObject();
+            if (record != null) {
+                ret.put("record", recordJson(record));
+            }
+            c.resolve(ret);
+        });
+    }
+
+    // { sortBy: 'updated' | 'maxWeight', limit? } -> { records }
+    @PluginMethod
+    public void getPersonalRecords(PluginCall call) {
+        submit(call, c -> {
+            List<PersonalRecordIndex.Record> records = new ArrayList<>(personalRecords().records());
+            if ("maxWeight".equals(c.getString("sortBy", "updated"))) {
+                Collections.sort(records, (a, b) -> Double.compare(b.maxWeight, a.maxWeight));
+            } else {
+                Collections.sort(records, (a, b) -> Long.compare(b.updatedAtMs, a.updatedAtMs));
+            }
+            int limit = c.getInt("limit", records.size());
+            JSArray items = new JSArray();
+            for (int i = 0; i < records.size() && i < limit; i++) {
+                items.put(recordJson(records.get(i)));
+            }
+            JSObject ret = new JSObject();
+            ret.put("records", items);
+            c.resolve(ret);
+        });
+    }
+
+    // Full rebuild from the stored logs (normally automatic): -> { exercises, ms }
+    @PluginMethod
+    public void rebuildPersonalRecords(PluginCall call) {
+        submit(call, c -> {
+            long start = System.nanoTime();
+            PersonalRecordIndex index = rebuildPersonalRecords();
+            JSObject ret = new JSObject();
+            ret.put("exercises", index.size());
+            ret.put("ms", (System.nanoTime() - start) / 1_000_000);
+            c.resolve(ret);
+        });
+    }
+
+    // { from?, to?, limit?, cursor? } -> { items, nextCursor }, newest first
+    @PluginMethod
+    public void queryLogs(PluginCall call) {
+        long from = dateOption(call, "from", 0);
+        long to = dateOption(call, "to", Long.MAX_VALUE);
+        submit(call, c -> c.resolve(pageJson(
+            database.queryLogs(from, to, c.getString("cursor"), pageSize(c)))));
+    }
+
+    @PluginMethod
+    public void countLogs(PluginCall call) {
+        long from = dateOption(call, "from", 0);
+        long to = dateOption(call, "to", Long.MAX_VALUE);
+        submit(call, c -> {
+            JSObject ret = new JSObject();
+            ret.put("count", database.countLogs(from, to));
+            c.resolve(ret);
+        });
+    }
+
+    // { exercise, from?, to?, limit?, cursor? } -> { items: [{ logId, date, exercise }], nextCursor }
+    @PluginMethod
+    public void queryExerciseHistory(PluginCall call) {
+        String exercise = call.getString("exercise");
+        if (exercise == null) {
+            call.reject("exercise is required");
+            return;
+        }
+        long from = dateOption(call, "from", 0);
+        long to = dateOption(call, "to", Long.MAX_VALUE);
+        submit(call, c -> c.resolve(pageJson(
+            database.queryExercise(exercise, from, to, c.getString("cursor"), pageSize(c)))));
+    }
+
+    // { collection: 'workouts' | 'body_stats' | 'health_data' | ..., items: [...] }
+    @PluginMethod
+    public void putDocuments(PluginCall call) {
+        String collection = call.getString("collection");
+        JSArray items = call.getArray("items");
+        if (collection == null || items == null) {
+            call.reject("collection and items are required");
+            return;
+        }
+        submit(call, c -> {
+            boolean bodyStats = WorkoutStoreDatabase.COLLECTION_BODY_STATS.equals(collection);
+            List<JSONObject> inserted = bodyStats ? new ArrayList<>() : null;
+            int written = database.putDocuments(collection, items, inserted);
+            if (bodyStats) {
+                if (written > inserted.size()) {
+                    trends = null;
+                } else {
+                    addBodyStats(inserted);
+                }
+            }
+            JSObject ret = new JSObject();
+            ret.put("written", written);
+            c.resolve(ret);
+        });
+    }
+
+    @PluginMethod
+    public void queryDocuments(PluginCall call) {
+        String collection = call.getString("collection");
+        if (collection == null) {
+            call.reject("collection is required");
+            return;
+        }
+        long from = dateOption(call, "from", 0);
+        long to = dateOption(call, "to", Long.MAX_VALUE);
+        submit(call, c -> c.resolve(pageJson(
+            database.queryDocuments(collection, from, to, c.getString("cursor"), pageSize(c)))));
+    }
+
+    @PluginMethod
+    public void deleteDocument(PluginCall call) {
+        String collection = call.getString("collection");
+        String id = call.getString("id");
+        if (collection == null || id == null) {
+            call.reject("collection and id are required");
+            return;
+        }
+        submit(call, c -> {
+            boolean deleted = database.deleteDocument(collection, id);
+            if (deleted && WorkoutStoreDatabase.COLLECTION_BODY_STATS.equals(collection)) {
+                trends = null;
+            }
+            JSObject ret = new JSObject();
+            ret.put("deleted", deleted);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * Recent (last 14 days) and previous (the 14 before) value of every
+     * trendEngine metric, kept up to date as logs and body stats are stored:
+     * { now? } -> { metrics: { frequency: { recent, previous }, ... },
+     * recentLogsCount, previousLogsCount, totalLogs, bodyStatsCount }.
+     */
+    @PluginMethod
+    public void getTrendWindows(PluginCall call) {
+        Long requested = call.getLong("now");
+        long now = requested != null ? requested : System.currentTimeMillis();
+        submit(call, c -> {
+            TrendWindows windows = trends;
+            if (windows == null || !windows.advance(now)) {
+                windows = rebuildTrends(now);
+            }
+            TrendWindows.Snapshot snapshot = windows.snapshot();
+            JSObject metrics = new JSObject();
+            for (int i = 0; i < TrendWindows.METRICS.length; i++) {
+                JSObject metric = new JSObject();
+                metric.put("recent", (Object) snapshot.recent[i]);
+                metric.put("previous", (Object) snapshot.previous[i]);
+                metrics.put(TrendWindows.METRICS[i], metric);
+            }
+            JSObject ret = new JSObject();
+            ret.put("metrics", metrics);
+            ret.put("recentLogsCount", snapshot.recentLogs);
+            ret.put("previousLogsCount", snapshot.previousLogs);
+            ret.put("totalLogs", snapshot.totalLogs);
+            ret.put("bodyStatsCount", snapshot.totalBodyStats);
+            c.resolve(ret);
+        });
+    }
+
+    /**
+     * The index, loaded from personal_records on first use or rebuilt when stale.
+     */
+    private PersonalRecordIndex personalRecords() throws Exception {
+        if (personalRecords != null && !personalRecordsStale) {
+            return personalRecords;
+        }
+        if (personalRecords == null && !database.personalRecordsStale()) {
+            personalRecords = new PersonalRecordIndex(database.loadPersonalRecords());
+            return personalRecords;
+        }
+        return rebuildPersonalRecords();
+    }
+
+    /**
+     * One parallel pass over every stored exercise row, one worker per core.
+     */
+    private PersonalRecordIndex rebuildPersonalRecords() throws Exception {
+        long start = System.nanoTime();
+        List<WorkoutStoreDatabase.ExerciseRows> groups = database.readExerciseGroups();
+        PersonalRecordIndex index = PersonalRecordIndex.rebuild(groups, WorkoutStoreDatabase::foldExercise,
+            Runtime.getRuntime().availableProcessors());
+        database.savePersonalRecords(index.records(), true);
+        personalRecords = index;
+        personalRecordsStale = false;
+        Log.d(TAG, "Rebuilt " + index.size() + " personal records in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
+
+    /**
+     * Adds new logs to the trend windows, oldest first; an out-of-order one
+     * drops them until the next rebuild.
+     */
+    private void addLogs(List<JSONObject> logs) {
+        if (trends == null) {
+            return;
+        }
+        List<JSONObject> ordered = new ArrayList<>(logs);
+        Collections.sort(ordered, (a, b) -> Long.compare(
+            WorkoutStoreDatabase.parseDateMs(a.opt("date")), WorkoutStoreDatabase.parseDateMs(b.opt("date"))));
+        for (JSONObject log : ordered) {
+            if (!trends.addLog(trendLog(log))) {
+                trends = null;
+                return;
+            }
+        }
+    }
+
+    private void addBodyStats(List<JSONObject> stats) {
+        if (trends == null) {
+            return;
+        }
+        List<JSONObject> ordered = new ArrayList<>(stats);
+        Collections.sort(ordered, (a, b) -> Long.compare(statDateMs(a), statDateMs(b)));
+        for (JSONObject stat : ordered) {
+            if (!trends.addBodyStat(statDateMs(stat), WorkoutStoreDatabase.jsNumber(stat.opt("weight")))) {
+                trends = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * One scan of the stored logs and body stats, oldest first.
+     */
+    private TrendWindows rebuildTrends(long now) {
+        long start = System.nanoTime();
+        List<JSONObject> logs = new ArrayList<>();
+        database.forEachLog((dateMs, log) -> logs.add(log));
+        List<JSONObject> stats = new ArrayList<>();
+        database.forEachDocument(WorkoutStoreDatabase.COLLECTION_BODY_STATS, (dateMs, stat) -> stats.add(stat));
+        trends = new TrendWindows(TrendWindows.WINDOW_MS, now);
+        addLogs(logs);
+        addBodyStats(stats);
+        TrendWindows windows = trends;
+        windows.advance(now);
+        Log.d(TAG, "Rebuilt trend windows over " + logs.size() + " logs and " + stats.size()
+            + " body stats in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return windows;
+    }
+
+    /**
+     * What trendEngine.evaluate reads from a log.
+     */
+    private static TrendWindows.Log trendLog(JSONObject log) {
+        Object date = log.opt("date");
+        String day = null;
+        if (date instanceof String) {
+            String text = (String) date;
+            day = text.substring(0, Math.min(10, text.length()));
+        }
+        TrendWindows.Log entry = new TrendWindows.Log(WorkoutStoreDatabase.parseDateMs(date), day,
+            WorkoutStoreDatabase.jsNumber(log.opt("totalVolume")));
+        JSONObject wellness = log.optJSONObject("wellness");
+        for (int f = 0; wellness != null && f < TrendWindows.WELLNESS.length; f++) {
+            Object value = wellness.opt(TrendWindows.WELLNESS[f]);
+            if (value instanceof Number) {
+                entry.wellness[f] = ((Number) value).doubleValue();
+            }
+        }
+        JSONArray exercises = log.optJSONArray("exercises");
+        for (int i = 0; exercises != null && i < exercises.length(); i++) {
+            JSONObject exercise = exercises.optJSONObject(i);
+            JSONArray sets = exercise != null ? exercise.optJSONArray("sets") : null;
+            if (sets == null) {
+                continue;
+            }
+            double[] weights = new double[sets.length()];
+            int[] reps = new int[sets.length()];
+            WorkoutStoreDatabase.readSets(sets, weights, reps);
+            // Keyed by the name as written, like getPRSnapshot
+            String name = exercise.optString("name", "undefined");
+            for (int s = 0; s < weights.length; s++) {
+                if (weights[s] == 0 || reps[s] == 0) {
+                    continue;
+                }
+                double estimate = weights[s] * (1 + reps[s] / 30.0);
+                Double best = entry.estimates.get(name);
+                if (best == null || estimate > best) {
+                    entry.estimates.put(name, estimate);
+                }
+            }
+        }
+        return entry;
+    }
+
+    // stat.date || stat.recordedAt
+    private static long statDateMs(JSONObject stat) {
+        long ms = WorkoutStoreDatabase.parseDateMs(stat.opt("date"));
+        return ms != 0 ? ms : WorkoutStoreDatabase.parseDateMs(stat.opt("recordedAt"));
+    }
+
+    /**
+     * Folds new logs into the index, oldest first, and returns the records to
+     * save. What they broke goes to {@code broken}.
+     */
+    private static List<PersonalRecordIndex.Record> applyLogs(PersonalRecordIndex index, List<JSONObject> logs,
+            JSArray broken) {
+        List<JSONObject> ordered = new ArrayList<>(logs);
+        Collections.sort(ordered, (a, b) -> Long.compare(
+            WorkoutStoreDatabase.parseDateMs(a.opt("date")), WorkoutStoreDatabase.parseDateMs(b.opt("date"))));
+
+        Map<String, PersonalRecordIndex.Record> changed = new LinkedHashMap<>();
+        List<PersonalRecordIndex.Improvement> improvements = new ArrayList<>();
+        for (JSONObject log : ordered) {
+            long dateMs = WorkoutStoreDatabase.parseDateMs(log.opt("date"));
+            JSONArray exercises = log.optJSONArray("exercises");
+            for (int i = 0; exercises != null && i < exercises.length(); i++) {
+                JSONObject exercise = exercises.optJSONObject(i);
+                if (exercise == null) {
+                    continue;
+                }
+                String name = exercise.optString("name", "");
+                JSONArray sets = exercise.optJSONArray("sets");
+                int count = sets != null ? sets.length() : 0;
+                double[] weights = new double[count];
+                int[] reps = new int[count];
+                WorkoutStoreDatabase.readSets(sets, weights, reps);
+
+                improvements.clear();
+                PersonalRecordIndex.Record record = index.apply(name, dateMs, weights, reps, count, improvements);
+                if (record == null) {
+                    continue;
+                }
+                changed.put(record.id, record);
+                if (!improvements.isEmpty()) {
+                    broken.put(improvementsJson(record, log.opt("date"), improvements));
+                }
+            }
+        }
+        return new ArrayList<>(changed.values());
+    }
+
+    private static JSObject improvementsJson(PersonalRecordIndex.Record record, Object date,
+            List<PersonalRecordIndex.Improvement> improvements) {
+        JSArray records = new JSArray();
+        for (PersonalRecordIndex.Improvement improvement : improvements) {
+            JSObject item = new JSObject();
+            item.put("type", improvement.type);
+            item.put("oldValue", (Object) improvement.oldValue);
+            item.put("newValue", (Object) improvement.newValue);
+            boolean reps = PersonalRecordIndex.TYPE_REPS.equals(improvement.type);
+            item.put("unit", reps ? "reps" : "kg");
+            if (reps) {
+                item.put("atWeight", (Object) improvement.atWeight);
+            }
+            records.put(item);
+        }
+        JSObject ret = new JSObject();
+        ret.put("exercise", record.displayName);
+        ret.put("id", record.id);
+        ret.put("date", date);
+        ret.put("records", records);
+        return ret;
+    }
+
+    private static JSObject recordJson(PersonalRecordIndex.Record record) {
+        JSObject ret = new JSObject();
+        ret.put("id", record.id);
+        ret.put("displayName", record.displayName);
+        ret.put("maxWeight", (Object) record.maxWeight);
+        ret.put("maxWeightReps", record.maxWeightReps);
+        ret.put("max1RM", (Object) record.max1RM);
+        ret.put("maxReps", record.maxReps);
+        ret.put("maxVolume", (Object) record.maxVolume);
+        ret.put("totalSets", record.totalSets);
+        ret.put("avgWeight", record.avgWeight());
+        ret.put("lastUpdated", record.updatedAtMs);
+        return ret;
+    }
+
+    private static JSObject pageJson(WorkoutStoreDatabase.Page page) {
+        JSObject ret = new JSObject();
+        ret.put("items", new JSArray(page.items));
+        if (page.nextCursor != null) {
+            ret.put("nextCursor", page.nextCursor);
+        }
+        return ret;
+    }
+
+    private static int pageSize(PluginCall call) {
+        int limit = call.getInt("limit", DEFAULT_PAGE_SIZE);
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Range bounds may come as epoch ms or as the same date strings the logs use.
+     */
+    private static long dateOption(PluginCall call, String key, long fallback) {
+        Object value = call.getData().opt(key);
+        if (value == null || value == JSObject.NULL) {
+            return fallback;
+        }
+        long ms = WorkoutStoreDatabase.parseDateMs(value);
+        return ms != 0 || value instanceof Number ? ms : fallback;
+    }
+
+    private static JSONArray parseArray(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return new JSONArray();
+        }
+        try {
+            return new JSONArray(raw);
+        } catch (JSONException e) {
+            // A corrupt blob must not block the other collections
+            Log.w(TAG, "Skipping unparseable localStorage value", e);
+            return new JSONArray();
+        }
+    }
+}
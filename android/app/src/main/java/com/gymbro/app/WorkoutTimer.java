@@ -0,0 +1,171 @@
+package com.gymbro.app;
+
+/**
+ * State of one named timer held in the TimerService registry.
+ * All times are in the SystemClock.elapsedRealtime() timebase and are passed in
+ * by the caller, so this class never reads the clock itself.
+ */
+final class WorkoutTimer {
+    static final int MODE_COUNTDOWN = 0;
+    static final int MODE_STOPWATCH = 1;
+    static final int MODE_INTERVAL = 2;
+
+    static final int STATE_RUNNING = 0;
+    static final int STATE_PAUSED = 1;
+    static final int STATE_DONE = 2;
+
+    final String id;
+    final int mode;
+    String label;
+
+    // Countdown: total duration. Interval: work phase length
+    final long durationMs;
+    // Interval only: rest phase length (0 for EMOM) and number of rounds
+    final long restMs;
+    final int rounds;
+    int round = 1;
+    boolean inRest = false;
+
+    int state = STATE_RUNNING;
+    // Countdown/interval: end of the current phase. Stopwatch: virtual start time
+    long anchorElapsedMs;
+    // Remaining (countdown/interval) or elapsed (stopwatch) time frozen on pause
+    long pausedValueMs;
+    // When the scheduler has to look at this timer next
+    long nextDueElapsedMs;
+
+    WorkoutTimer(String id, int mode, String label, long durationMs, long restMs, int rounds) {
+        this.id = id;
+        this.mode = mode;
+        this.label = label;
+        this.durationMs = durationMs;
+        this.restMs = restMs;
+        this.rounds = Math.max(1, rounds);
+    }
+
+    void start(long now) {
+        state = STATE_RUNNING;
+        if (mode == MODE_STOPWATCH) {
+            anchorElapsedMs = now;
+        } else {
+            anchorElapsedMs = now + durationMs;
+        }
+        nextDueElapsedMs = now;
+    }
+
+    void pause(long now) {
+        if (state != STATE_RUNNING) {
+            return;
+        }
+        pausedValueMs = mode == MODE_STOPWATCH ? elapsedMs(now) : remainingMs(now);
+        state = STATE_PAUSED;
+    }
+
+    void resume(long now) {
+        if (state != STATE_PAUSED) {
+            return;
+        }
+        anchorElapsedMs = mode == MODE_STOPWATCH ? now - pausedValueMs : now + pausedValueMs;
+        state = STATE_RUNNING;
+        nextDueElapsedMs = now;
+    }
+
+    /**
+     * Shifts the deadline by {@code deltaMs} (positive adds time), like the
+     * web worker's adjust action. A deadline moved into the past fires on the
+     * next scheduler pass.
+     */
+    void adjust(long deltaMs, long now) {
+        if (!hasDeadline()) {
+            return;
+        }
+        if (state == STATE_PAUSED) {
+            pausedValueMs = Math.max(0, pausedValueMs + deltaMs);
+        } else if (state == STATE_RUNNING) {
+            anchorElapsedMs = Math.max(now, anchorElapsedMs + deltaMs);
+            nextDueElapsedMs = now;
+        }
+    }
+
+    boolean isRunning() {
+        return state == STATE_RUNNING;
+    }
+
+    boolean hasDeadline() {
+        return mode != MODE_STOPWATCH;
+    }
+
+    long remainingMs(long now) {
+        if (mode == MODE_STOPWATCH || state == STATE_DONE) {
+            return 0;
+        }
+        if (state == STATE_PAUSED) {
+            return pausedValueMs;
+        }
+        return Math.max(0, anchorElapsedMs - now);
+    }
+
+    long elapsedMs(long now) {
+        if (mode != MODE_STOPWATCH) {
+            return 0;
+        }
+        if (state == STATE_PAUSED) {
+            return pausedValueMs;
+        }
+        return Math.max(0, now - anchorElapsedMs);
+    }
+
+    /**
+     * Value shown to the user in whole seconds: remaining for countdowns,
+     * elapsed for stopwatches. Rounded so a tick landing a few ms off still
+     * reports the intended second.
+     */
+    long displaySeconds(long now) {
+        long value = mode == MODE_STOPWATCH ? elapsedMs(now) : remainingMs(now);
+        return (value + 500) / 1000;
+    }
+
+    /**
+     * Schedules the next whole-second boundary after {@code now}. For
+     * deadline timers the last boundary is the deadline itself.
+     */
+    void scheduleNextTick(long now) {
+        if (mode == MODE_STOPWATCH) {
+            long elapsed = now - anchorElapsedMs;
+            nextDueElapsedMs = anchorElapsedMs + (elapsed / 1000 + 1) * 1000;
+        } else {
+            long remaining = anchorElapsedMs - now;
+            if (remaining <= 0) {
+                nextDueElapsedMs = anchorElapsedMs;
+                return;
+            }
+            long nextRemaining = ((remaining - 1) / 1000) * 1000;
+            nextDueElapsedMs = anchorElapsedMs - nextRemaining;
+        }
+    }
+
+    /**
+     * Moves an interval timer to its next phase, starting it at the previous
+     * phase deadline so that rounds do not drift. Returns false when all rounds
+     * are done.
+     */
+    boolean advancePhase() {
+        if (mode != MODE_INTERVAL) {
+            return false;
+        }
+        long phaseEnd = anchorElapsedMs;
+        if (!inRest && restMs > 0 && round < rounds) {
+            inRest = true;
+            anchorElapsedMs = phaseEnd + restMs;
+        } else {
+            if (round >= rounds) {
+                return false;
+            }
+            round++;
+            inRest = false;
+            anchorElapsedMs = phaseEnd + durationMs;
+        }
+        nextDueElapsedMs = phaseEnd;
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class DailyIndexTest {
+
+    private static long[] range(long first, int count) {
+        long[] days = new long[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = first + i;
+        }
+        return days;
+    }
+
+    @Test
+    public void calendarSumsVolumePerDay() {
+        DailyIndex index = new DailyIndex.Builder()
+            .addCalendarLog(100, 4000)
+            .addCalendarLog(100, 2000)
+            .addCalendarLog(103, 1000)
+            .addCalendarLog(140, 40000)
+            .build();
+        DailyIndex.Consistency calendar = index.calendar(range(98, 7));
+        assertEquals(0, calendar.volume[0], 0);
+        assertEquals(6000, calendar.volume[2], 0);
+        assertEquals(2, calendar.intensity[2]);
+        assertEquals(1, calendar.intensity[5]);
+        assertEquals(2, calendar.activeDays);
+        // Days outside the indexed range read as untrained
+        assertFalse(index.trained(10));
+        assertTrue(index.trained(140));
+        assertEquals(4, DailyIndex.intensity(index.volume(140)));
+    }
+
+    @Test
+    public void streaksFollowTheJsLoop() {
+        Random random = new Random(3);
+        DailyIndex.Builder builder = new DailyIndex.Builder();
+        boolean[] trained = new boolean[364];
+        for (int d = 0; d < trained.length; d++) {
+            trained[d] = random.nextInt(3) > 0;
+            if (trained[d]) {
+                builder.addCalendarLog(5000 + d, 1000);
+            }
+        }
+        // 52 weeks, as long ranges must work too
+        DailyIndex.Consistency calendar = builder.build().calendar(range(5000, trained.length));
+
+        // generateConsistencyCalendar's streak loop, verbatim
+        int currentStreak = 0;
+        int maxStreak = 0;
+        int tempStreak = 0;
+        int active = 0;
+        for (int i = trained.length - 1; i >= 0; i--) {
+            if (trained[i]) {
+                tempStreak++;
+                active++;
+                if (i == trained.length - 1 || trained[i + 1]) {
+                    currentStreak = tempStreak;
+                }
+            } else {
+                maxStreak = Math.max(maxStreak, tempStreak);
+                tempStreak = 0;
+            }
+        }
+        maxStreak = Math.max(maxStreak, tempStreak);
+
+        assertEquals(currentStreak, calendar.currentStreak);
+        assertEquals(maxStreak, calendar.maxStreak);
+        assertEquals(active, calendar.activeDays);
+    }
+
+    @Test
+    public void fatigueDecaysWithAgeAndCaps() {
+        DailyIndex index = new DailyIndex.Builder()
+            .addSets(200, "quads", 3)
+            .addSets(197, "quads", 2)
+            .addSets(192, "quads", 4)
+            .addSets(200, "chest", 10)
+            .addSets(150, "lats", 5)
+            .build();
+        double[] fatigue = index.fatigue(200, 7);
+        assertEquals("quads", index.muscles[0]);
+        assertEquals("lats", index.muscles[2]);
+        // 3 sets today at 1.0, 2 sets three days ago at 0.7; the 8-day-old ones are out
+        assertEquals(3 * 20 + 2 * 20 * 0.7, fatigue[0], 1e-9);
+        assertEquals(100, fatigue[1], 0);
+        assertEquals(0, fatigue[2], 0);
+        // A week later today's sets count at 0.3 and the older ones are out of the window
+        assertEquals(3 * 20 * 0.3, index.fatigue(207, 7)[0], 1e-9);
+        assertEquals(0, new DailyIndex.Builder().build().fatigue(200, 7).length);
+    }
+}
@@ -0,0 +1,162 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class ExerciseNameIndexTest {
+
+    private static final String[] CATALOG = {
+        "panca piana", "panca inclinata", "croci", "chest press", "trazioni", "lat machine",
+        "rematore", "squat", "stacco", "leg press", "curl", "curl manubri", "military press"
+    };
+
+    private static ExerciseNameIndex catalog() {
+        ExerciseNameIndex index = new ExerciseNameIndex();
+        for (String name : CATALOG) {
+            index.add(name);
+        }
+        return index;
+    }
+
+    // ExerciseNormalizer._calculateSimilarity, the reference the index must agree with
+    private static double dice(String a, String b) {
+        if (a.equals(b)) return 1;
+        if (a.isEmpty() || b.isEmpty()) return 0;
+        Set<String> first = new HashSet<>();
+        Set<String> second = new HashSet<>();
+        for (int i = 0; i < a.length() - 1; i++) first.add(a.substring(i, i + 2));
+        for (int i = 0; i < b.length() - 1; i++) second.add(b.substring(i, i + 2));
+        int shared = 0;
+        for (String gram : first) {
+            if (second.contains(gram)) shared++;
+        }
+        return 2.0 * shared / (first.size() + second.size());
+    }
+
+    @Test
+    public void matchKeyFollowsTheNormalizer() {
+        assertEquals("panca piana", ExerciseNames.matchKey("  Pànca   Piana "));
+        assertEquals("curl manubri", ExerciseNames.matchKey("Curl (Manubri)"));
+        // Loads and punctuation are kept, unlike canonicalId
+        assertEquals("squat 100kg", ExerciseNames.matchKey("Squat 100kg"));
+        assertEquals("stacco-rumeno", ExerciseNames.matchKey("Stacco-Rumeno"));
+        assertEquals("", ExerciseNames.matchKey(null));
+    }
+
+    @Test
+    public void exactMatchIgnoresCaseAccentsAndSpacing() {
+        ExerciseNameIndex index = catalog();
+        assertEquals("panca piana", index.resolve("PANCA  PIÀNA"));
+        assertEquals("curl manubri", index.resolve("Curl (manubri)"));
+    }
+
+    @Test
+    public void exactMatchPrefersTheFirstNameInSortOrder() {
+        ExerciseNameIndex index = new ExerciseNameIndex();
+        index.add("squat");
+        index.add("Squat");
+        // "Squat" < "squat": the JS loop over the sorted list meets it first
+        assertEquals("Squat", index.resolve("SQUAT"));
+    }
+
+    @Test
+    public void fuzzyMatchNeedsMoreThanTheThreshold() {
+        ExerciseNameIndex index = catalog();
+        // A dropped letter in a long name stays above 0.85
+        assertEquals("military press", index.resolve("Military pres"));
+        // Too far from everything: the name is kept
+        assertEquals("Hip thrust", index.resolve("Hip thrust"));
+        assertEquals("", index.resolve(""));
+        assertNull(index.resolve(null));
+    }
+
+    @Test
+    public void searchReturnsTopKBestFirst() {
+        ExerciseNameIndex index = catalog();
+        List<ExerciseNameIndex.Match> matches = index.search("panca", 2, 0);
+        assertEquals(2, matches.size());
+        assertEquals("panca piana", matches.get(0).name);
+        assertEquals("panca inclinata", matches.get(1).name);
+        assertTrue(matches.get(0).score >= matches.get(1).score);
+        assertEquals(dice("panca", "panca piana"), matches.get(0).score, 1e-12);
+
+        assertTrue(index.search("zzzz", 5, 0).isEmpty());
+        assertTrue(index.search("panca", 0, 0).isEmpty());
+    }
+
+    @Test
+    public void scoresMatchBruteForceDice() {
+        Random random = new Random(5);
+        String alphabet = "abcdeilnoprstu ";
+        List<String> names = new ArrayList<>();
+        ExerciseNameIndex index = new ExerciseNameIndex();
+        for (int n = 0; n < 400; n++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(14);
+            for (int i = 0; i < length; i++) {
+                name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (index.add(name.toString())) {
+                names.add(name.toString().trim());
+            }
+        }
+
+        for (int q = 0; q < 200; q++) {
+            String query = names.get(random.nextInt(names.size()));
+            if (random.nextBoolean() && query.length() > 2) {
+                // Swap two letters for a near miss
+                char[] chars = query.toCharArray();
+                int i = random.nextInt(chars.length - 1);
+                char tmp = chars[i];
+                chars[i] = chars[i + 1];
+                chars[i + 1] = tmp;
+                query = new String(chars);
+            }
+            String key = ExerciseNames.matchKey(query);
+            List<ExerciseNameIndex.Match> top = index.search(query, 3, 0.3);
+
+            // Brute force: every name scoring at least 0.3, best first, ties by name
+            List<ExerciseNameIndex.Match> expected = new ArrayList<>();
+            for (String name : names) {
+                double score = dice(key, ExerciseNames.matchKey(name));
+                if (score >= 0.3) {
+                    expected.add(new ExerciseNameIndex.Match(name, score));
+                }
+            }
+            expected.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : a.name.compareTo(b.name));
+
+            assertEquals(Math.min(3, expected.size()), top.size());
+            for (int i = 0; i < top.size(); i++) {
+                assertEquals(expected.get(i).name, top.get(i).name);
+                assertEquals(expected.get(i).score, top.get(i).score, 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void cacheServesRepeatsAndIsDroppedOnCatalogChanges() {
+        ExerciseNameIndex index = new ExerciseNameIndex(2);
+        index.add("squat");
+        assertEquals("Front squat", index.resolve("Front squat"));
+        assertEquals("Front squat", index.resolve("Front squat"));
+        assertEquals(1, index.cacheHits());
+        assertEquals(1, index.cacheMisses());
+
+        // The new entry must win over the cached "no match"
+        index.add("front squat");
+        assertEquals("front squat", index.resolve("Front squat"));
+        assertEquals(2, index.cacheMisses());
+
+        // Capacity 2: the least recently used name is evicted
+        index.resolve("a");
+        index.resolve("b");
+        index.resolve("Front squat");
+        assertEquals(5, index.cacheMisses());
+    }
+}
@@ -0,0 +1,25 @@
+package com.gymbro.app;
+
+/**
+ * Hand-driven TimerClock for deterministic scheduler tests.
+ */
+final class FakeClock implements TimerClock {
+    private long now;
+
+    FakeClock(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    void advance(long ms) {
+        now += ms;
+    }
+
+    void set(long ms) {
+        now = ms;
+    }
+}
@@ -0,0 +1,192 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HealthSeriesTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long DAY = HealthSeries.DAY_MS;
+    // 2024-01-01T00:00:00Z, a Monday
+    private static final long JAN_1 = 1_704_067_200_000L;
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("health").toFile();
+        file = new File(dir, "steps.bin");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private static int append(HealthSeries series, long[] ts, float[] values) throws IOException {
+        return series.append(ts, values, ts.length);
+    }
+
+    @Test
+    public void civilFromDaysMatchesTheCalendar() {
+        assertArrayEquals(new int[]{1970, 1, 1}, HealthSeries.civilFromDays(0));
+        assertArrayEquals(new int[]{2024, 2, 29}, HealthSeries.civilFromDays(JAN_1 / DAY + 59));
+        assertArrayEquals(new int[]{1969, 12, 31}, HealthSeries.civilFromDays(-1));
+    }
+
+    @Test
+    public void dailyRollupsSumThePointsOfEachDay() throws IOException {
+        HealthSeries series = new HealthSeries("steps", UTC, file);
+        assertEquals(4, append(series,
+            new long[]{JAN_1 + HOUR, JAN_1 + 2 * HOUR, JAN_1 + DAY + HOUR, JAN_1 + 3 * DAY},
+            new float[]{1000, 500, 4000, 200}));
+
+        List<HealthSeries.Bucket> days = series.rollup(HealthSeries.DAY, JAN_1, JAN_1 + 7 * DAY);
+        assertEquals(3, days.size());
+        assertEquals("2024-01-01", days.get(0).key);
+        assertEquals(1500, days.get(0).sum, 0);
+        assertEquals(2, days.get(0).count);
+        assertEquals(500, days.get(0).min, 0);
+        assertEquals(1000, days.get(0).max, 0);
+        assertEquals(500, days.get(0).last, 0);
+        assertEquals("2024-01-04", days.get(2).key);
+
+        List<HealthSeries.Bucket> weeks = series.rollup(HealthSeries.WEEK, JAN_1, JAN_1 + 7 * DAY);
+        assertEquals(1, weeks.size());
+        assertEquals("2024-01-01", weeks.get(0).key);
+        assertEquals(5700, weeks.get(0).sum, 0);
+
+        List<HealthSeries.Bucket> months = series.rollup(HealthSeries.MONTH, JAN_1, JAN_1 + 7 * DAY);
+        assertEquals("2024-01", months.get(0).key);
+        assertEquals(4, months.get(0).count);
+    }
+
+    @Test
+    public void bucketsFollowTheSeriesTimeZone() throws IOException {
+        HealthSeries series = new HealthSeries("steps", TimeZone.getTimeZone("GMT+02:00"), file);
+        // 23:00 UTC on Jan 1 is already Jan 2 at UTC+2
+        append(series, new long[]{JAN_1 + 23 * HOUR}, new float[]{100});
+        assertEquals("2024-01-02", series.rollup(HealthSeries.DAY, JAN_1, JAN_1 + 2 * DAY).get(0).key);
+    }
+
+    @Test
+    public void syncsOnlyAddPointsNotStoredYet() throws IOException {
+        HealthSeries series = new HealthSeries("steps", UTC, file);
+        append(series, new long[]{JAN_1 + HOUR, JAN_1 + 2 * HOUR}, new float[]{100, 200});
+        // Overlapping window: the first two are already there
+        assertEquals(1, append(series,
+            new long[]{JAN_1 + HOUR, JAN_1 + 2 * HOUR, JAN_1 + 3 * HOUR}, new float[]{999, 999, 300}));
+        assertEquals(3, series.size());
+        assertEquals(600, series.rollup(HealthSeries.DAY, JAN_1, JAN_1).get(0).sum, 0);
+
+        // The same interval twice in one batch keeps the higher value, as the JS grouping
+        assertEquals(1, append(series, new long[]{JAN_1 + 4 * HOUR, JAN_1 + 4 * HOUR}, new float[]{50, 70}));
+        assertEquals(670, series.rollup(HealthSeries.DAY, JAN_1, JAN_1).get(0).sum, 0);
+    }
+
+    @Test
+    public void backfilledPointsAreMergedInOrder() throws IOException {
+        HealthSeries series = new HealthSeries("weight", UTC, file);
+        append(series, new long[]{JAN_1 + 10 * DAY, JAN_1 + 20 * DAY}, new float[]{80, 79});
+        assertEquals(2, append(series, new long[]{JAN_1 + 5 * DAY, JAN_1 + 15 * DAY}, new float[]{81, 79.5f}));
+
+        List<HealthSeries.Point> points = series.points(0, Long.MAX_VALUE, 100);
+        assertEquals(4, points.size());
+        assertEquals(JAN_1 + 5 * DAY, points.get(0).ts);
+        assertEquals(79.5f, points.get(2).value, 0);
+        // The month's last value is still the newest point, not the last one added
+        assertEquals(79, series.rollup(HealthSeries.MONTH, JAN_1, JAN_1).get(0).last, 0);
+
+        HealthSeries reloaded = HealthSeries.load("weight", UTC, file);
+        assertEquals(4, reloaded.size());
+        assertEquals(JAN_1 + 20 * DAY, reloaded.lastTs());
+    }
+
+    @Test
+    public void reloadRebuildsPointsAndRollups() throws IOException {
+        HealthSeries series = new HealthSeries("heartRate", UTC, file);
+        Random random = new Random(3);
+        int n = 10_000;
+        long[] ts = new long[n];
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) {
+            ts[i] = JAN_1 + i * 60_000L;
+            values[i] = 50 + random.nextInt(100);
+        }
+        // Two syncs: the second one appends to the file
+        series.append(ts, values, n / 2);
+        long[] rest = java.util.Arrays.copyOfRange(ts, n / 2, n);
+        float[] restValues = java.util.Arrays.copyOfRange(values, n / 2, n);
+        append(series, rest, restValues);
+        series.markCovered(JAN_1, JAN_1 + 7 * DAY);
+
+        HealthSeries reloaded = HealthSeries.load("heartRate", UTC, file);
+        assertEquals(n, reloaded.size());
+        assertEquals(JAN_1, reloaded.coveredFrom());
+        assertEquals(JAN_1 + 7 * DAY, reloaded.coveredTo());
+        List<HealthSeries.Bucket> expected = series.rollup(HealthSeries.DAY, JAN_1, JAN_1 + 10 * DAY);
+        List<HealthSeries.Bucket> actual = reloaded.rollup(HealthSeries.DAY, JAN_1, JAN_1 + 10 * DAY);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).sum, actual.get(i).sum, 0);
+            assertEquals(expected.get(i).count, actual.get(i).count);
+        }
+        // One-minute deltas take 3 bytes, plus the 4-byte value
+        assertTrue(reloaded.bytesPerPoint() < 7.1);
+
+        // Range reads start from the nearest checkpoint
+        List<HealthSeries.Point> range = reloaded.points(ts[5_000], ts[5_009], 100);
+        assertEquals(10, range.size());
+        assertEquals(ts[5_000], range.get(0).ts);
+        assertEquals(values[5_009], range.get(9).value, 0);
+    }
+
+    @Test
+    public void tornTailIsDroppedOnLoad() throws IOException {
+        HealthSeries series = new HealthSeries("steps", UTC, file);
+        append(series, new long[]{JAN_1, JAN_1 + HOUR}, new float[]{1, 2});
+        long intact = file.length();
+        append(series, new long[]{JAN_1 + 2 * HOUR}, new float[]{3});
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 2);
+        }
+        HealthSeries reloaded = HealthSeries.load("steps", UTC, file);
+        assertEquals(2, reloaded.size());
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    public void coverageMergesOverlappingWindows() throws IOException {
+        HealthSeries series = new HealthSeries("steps", UTC, file);
+        series.markCovered(JAN_1, JAN_1 + 7 * DAY);
+        series.markCovered(JAN_1 + 6 * DAY, JAN_1 + 8 * DAY);
+        assertEquals(JAN_1, series.coveredFrom());
+        assertEquals(JAN_1 + 8 * DAY, series.coveredTo());
+        // A disjoint later window: the gap was never fetched
+        series.markCovered(JAN_1 + 20 * DAY, JAN_1 + 21 * DAY);
+        assertEquals(JAN_1 + 20 * DAY, series.coveredFrom());
+    }
+
+    @Test
+    public void corruptTimestampsAreIgnored() throws IOException {
+        HealthSeries series = new HealthSeries("steps", UTC, file);
+        assertEquals(1, append(series, new long[]{0, JAN_1, Long.MAX_VALUE}, new float[]{1, 2, 3}));
+        assertEquals(1, series.rollup(HealthSeries.DAY, 0, Long.MAX_VALUE - DAY).size());
+    }
+}
@@ -0,0 +1,214 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HealthSyncTest {
+
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long DAY = HealthSeries.DAY_MS;
+    // 2024-01-08T00:00:00Z
+    private static final long NOW = 1_704_672_000_000L;
+    private static final long WINDOW_START = NOW - 7 * DAY;
+
+    private static final HealthSync.Type STEPS = new HealthSync.Type("steps",
+        "derived:com.google.step_count.delta:com.google.android.gms:estimated_steps", "intVal");
+    private static final HealthSync.Type CALORIES = new HealthSync.Type("calories",
+        "derived:com.google.calories.expended:com.google.android.gms:merge_calories_expended", "fpVal");
+
+    private File dir;
+    private HttpServer server;
+    // Stand-in for Google Fit: data source id -> { endMs, value } points; requested windows logged
+    private final Map<String, List<long[]>> remote = new HashMap<>();
+    private final List<String> requests = new ArrayList<>();
+    private int status = 200;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sync").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fitness/dataSources/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.add(path + " " + exchange.getRequestHeaders().getFirst("Authorization"));
+            String[] parts = path.split("/");
+            String[] range = parts[parts.length - 1].split("-");
+            long from = Long.parseLong(range[0]) / 1_000_000L;
+            long to = Long.parseLong(range[1]) / 1_000_000L;
+            StringBuilder json = new StringBuilder("{\"minStartTimeNs\": \"" + range[0] + "\", \"point\": [");
+            String field = parts[parts.length - 3].contains("step_count") ? "intVal" : "fpVal";
+            boolean first = true;
+            for (long[] point : remote.getOrDefault(parts[parts.length - 3], new ArrayList<>())) {
+                if (point[0] < from || point[0] > to) {
+                    continue;
+                }
+                json.append(first ? "" : ",")
+                    .append("{\"startTimeNanos\":\"").append((point[0] - 60_000) * 1_000_000L)
+                    .append("\",\"endTimeNanos\":\"").append(point[0] * 1_000_000L)
+                    .append("\",\"value\":[{\"").append(field).append("\":").append(point[1])
+                    .append(",\"mapVal\":[]}]}");
+                first = false;
+            }
+            byte[] body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private HealthSync.Source source(String token) {
+        return new HealthSync.GoogleFit("http://127.0.0.1:" + server.getAddress().getPort() + "/fitness", token);
+    }
+
+    private void addRemote(HealthSync.Type type, long endMs, long value) {
+        remote.computeIfAbsent(type.dataSourceId, k -> new ArrayList<>()).add(new long[]{endMs, value});
+    }
+
+    /**
+     * HealthSeries files in a temp dir; counts the write batches.
+     */
+    private final class FileStore implements HealthSync.Store {
+        final Map<String, HealthSeries> series = new HashMap<>();
+        int writes;
+
+        HealthSeries series(String type) throws IOException {
+            HealthSeries loaded = series.get(type);
+            if (loaded == null) {
+                loaded = HealthSeries.load(type, TimeZone.getTimeZone("UTC"), new File(dir, type + ".bin"));
+                series.put(type, loaded);
+            }
+            return loaded;
+        }
+
+        @Override
+        public long[][] covered(String[] types) throws IOException {
+            long[][] covered = new long[types.length][];
+            for (int i = 0; i < types.length; i++) {
+                HealthSeries s = series(types[i]);
+                if (s.coveredFrom() <= s.coveredTo()) {
+                    covered[i] = new long[]{s.coveredFrom(), s.coveredTo()};
+                }
+            }
+            return covered;
+        }
+
+        @Override
+        public void write(List<HealthSync.Batch> batches) throws IOException {
+            writes++;
+            for (HealthSync.Batch batch : batches) {
+                batch.added = series(batch.type).append(batch.ts, batch.values, batch.size);
+                series(batch.type).markCovered(batch.from, batch.to);
+            }
+        }
+    }
+
+    @Test
+    public void secondSyncOnlyFetchesWhatIsNew() throws IOException {
+        for (int h = 0; h < 7 * 24; h += 6) {
+            addRemote(STEPS, WINDOW_START + h * HOUR, 1000);
+            addRemote(CALORIES, WINDOW_START + h * HOUR, 90);
+        }
+        FileStore store = new FileStore();
+        HealthSync.Type[] types = {STEPS, CALORIES};
+
+        HealthSync.Report first = HealthSync.run(source("t1"), store, types, WINDOW_START, NOW - HOUR, HOUR);
+        assertEquals(2 * 28, first.added());
+        assertEquals(1, store.writes);
+        assertTrue(first.failed.isEmpty());
+        assertTrue(requests.get(0).endsWith("/datasets/" + WINDOW_START * 1_000_000L + "-"
+            + (NOW - HOUR) * 1_000_000L + " Bearer t1"));
+
+        // Three hours later: one new point each, fetched from an hour before the last sync
+        addRemote(STEPS, NOW + HOUR, 500);
+        addRemote(CALORIES, NOW + HOUR, 40);
+        requests.clear();
+        HealthSync.Report second = HealthSync.run(source("t1"), store, types, WINDOW_START, NOW + 2 * HOUR, HOUR);
+        assertEquals(2, second.added());
+        assertTrue(requests.get(0).contains("/datasets/" + (NOW - 2 * HOUR) * 1_000_000L + "-"));
+        assertEquals(500, store.series("steps").rollup(HealthSeries.DAY, NOW, NOW).get(0).sum, 0);
+        assertEquals(500 + 1000 * 28, sum(store.series("steps").rollup(HealthSeries.DAY, WINDOW_START, NOW + DAY)), 0);
+        assertEquals(40 + 90 * 28, sum(store.series("calories").rollup(HealthSeries.DAY, WINDOW_START, NOW + DAY)), 0);
+
+        // Nothing new: nothing added, so the worker would not wake the WebView
+        assertEquals(0, HealthSync.run(source("t1"), store, types, WINDOW_START, NOW + 3 * HOUR, HOUR).added());
+    }
+
+    @Test
+    public void rejectedTokenStopsTheSync() throws IOException {
+        addRemote(STEPS, NOW - HOUR, 100);
+        status = 401;
+        FileStore store = new FileStore();
+        HealthSync.Report report = HealthSync.run(source("expired"), store,
+            new HealthSync.Type[]{STEPS, CALORIES}, WINDOW_START, NOW, HOUR);
+        assertTrue(report.authFailed);
+        // Calories is never asked for with a dead token
+        assertEquals(1, requests.size());
+        assertEquals(0, store.writes);
+
+        // Any other error fails only its type
+        status = 500;
+        report = HealthSync.run(source("t"), store, new HealthSync.Type[]{STEPS}, WINDOW_START, NOW, HOUR);
+        assertFalse(report.authFailed);
+        assertEquals("steps", report.failed.get(0));
+    }
+
+    @Test
+    public void parsesDatasetsLikeTheJs() throws IOException {
+        String json = "{\"point\": [\n"
+            + "  {\"startTimeNanos\": \"1704067200000000000\", \"endTimeNanos\": \"1704067260000000000\","
+            + " \"value\": [{\"fpVal\": 12.5, \"mapVal\": []}]},\n"
+            + "  {\"startTimeNanos\": \"1704067300000000000\", \"value\": [{\"intVal\": 3}]},\n"
+            + "  {\"value\": [{\"fpVal\": 1}]},\n"
+            + "  {\"endTimeNanos\": \"1704067400000000000\", \"value\": []}\n"
+            + "], \"dataSourceId\": \"x\\u0041\", \"ok\": true, \"none\": null}";
+        HealthSync.Batch batch = HealthSync.parseDataset(CALORIES, 0, 1, json);
+        // No time: skipped; no value or the other field: 0
+        assertEquals(3, batch.size);
+        assertEquals(1_704_067_260_000L, batch.ts[0]);
+        assertEquals(12.5f, batch.values[0], 0);
+        assertEquals(1_704_067_300_000L, batch.ts[1]);
+        assertEquals(0, batch.values[1], 0);
+        assertEquals(0, batch.values[2], 0);
+        assertEquals(0, HealthSync.parseDataset(STEPS, 0, 1, "{}").size);
+        try {
+            HealthSync.parseDataset(STEPS, 0, 1, "<html>");
+            fail("an HTML error page was parsed");
+        } catch (IOException expected) {
+            // The worker counts it as a failed type
+        }
+    }
+
+    private static double sum(List<HealthSeries.Bucket> buckets) {
+        double sum = 0;
+        for (HealthSeries.Bucket bucket : buckets) {
+            sum += bucket.sum;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,103 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class HealthToonTest {
+
+    // 2024-02-29
+    private static final long LEAP_DAY = 19782;
+
+    private static String number(double value) {
+        StringBuilder out = new StringBuilder();
+        HealthToon.appendNumber(out, value);
+        return out.toString();
+    }
+
+    private static List<String> decode(String text) {
+        List<String> out = new ArrayList<>();
+        HealthToon.decode(text, (typeCode, value, timestamp, unit) ->
+            out.add(typeCode + "|" + number(value) + "|" + timestamp + "|" + unit));
+        return out;
+    }
+
+    @Test
+    public void numbersPrintAsInJavaScript() {
+        // Expected strings are `${value}` in JS
+        assertEquals("8000", number(8000));
+        assertEquals("79.4", number(79.4));
+        assertEquals("0.05", number(0.05));
+        assertEquals("-3.25", number(-3.25));
+        assertEquals("0", number(-0.0));
+        assertEquals("1234567.891", number(1234567.891));
+        assertEquals("12345678.9", number(12345678.9));
+        assertEquals("123456789012.5", number(123456789012.5));
+        assertEquals("0.3333333333333333", number(1.0 / 3));
+        assertEquals("0.000025", number(2.5e-5));
+        assertEquals("1e-7", number(1e-7));
+        assertEquals("1e+21", number(1e21));
+        assertEquals("1.5e+22", number(1.5e22));
+        assertEquals("NaN", number(Double.NaN));
+    }
+
+    @Test
+    public void recordsMatchTheJsEncoder() {
+        HealthToon toon = new HealthToon();
+        // healthTOONEncoder.encode('STEPS', v, Date.UTC(2024, 1, 29, 23, 30), 'steps')
+        assertEquals("S|8000|20240229|steps\nS|79.4|20240301|steps",
+            toon.encode("S", "steps", new long[]{LEAP_DAY, LEAP_DAY + 1}, new double[]{8000, 79.4}, 2));
+        // The buffer is reused: nothing from the previous call leaks
+        assertEquals("W|80|19700101|kg", toon.encode("W", "kg", new long[]{0}, new double[]{80}, 1));
+        assertEquals("", toon.encode("W", "kg", new long[0], new double[0], 0));
+    }
+
+    @Test
+    public void compactSeriesUsesDayDeltas() {
+        HealthToon toon = new HealthToon();
+        String compact = toon.encodeCompact("S", "steps",
+            new long[]{LEAP_DAY, LEAP_DAY + 1, LEAP_DAY + 1, LEAP_DAY + 31}, new double[]{8000, 9500, 120, 7000.5}, 4);
+        assertEquals("@S|steps|20240229|8000;1:9500;0:120;30:7000.5", compact);
+        assertEquals(List.of("S|8000|20240229|steps", "S|9500|20240301|steps",
+            "S|120|20240301|steps", "S|7000.5|20240331|steps"), decode(compact));
+    }
+
+    @Test
+    public void compactSeriesMustBeSorted() {
+        try {
+            new HealthToon().encodeCompact("S", "steps", new long[]{2, 1}, new double[]{1, 2}, 2);
+            fail("unsorted days were accepted");
+        } catch (IllegalArgumentException expected) {
+            // the day deltas cannot be negative
+        }
+    }
+
+    @Test
+    public void decodeReadsMixedPayloads() {
+        String text = "S|8000|20240229|steps\r\n\n@W|kg|20240101|80;7:79.5\nW|79.4|7d|kg\nnot toon\nHR|abc|20240101|bpm";
+        assertEquals(List.of("S|8000|20240229|steps", "W|80|20240101|kg", "W|79.5|20240108|kg",
+            "W|79.4|7d|kg", "HR|NaN|20240101|bpm"), decode(text));
+    }
+
+    @Test
+    public void valuesParseLikeParseFloat() {
+        assertEquals(79.4, HealthToon.parseNumber("79.4kg", 0, 6), 0);
+        assertEquals(-0.5, HealthToon.parseNumber(" -.5", 0, 4), 0);
+        assertEquals(1e-7, HealthToon.parseNumber("1e-7", 0, 4), 0);
+        assertEquals(12, HealthToon.parseNumber("12e", 0, 3), 0);
+        assertTrue(Double.isNaN(HealthToon.parseNumber("e5", 0, 2)));
+        assertEquals(Double.POSITIVE_INFINITY, HealthToon.parseNumber("Infinity", 0, 8), 0);
+    }
+
+    @Test
+    public void daysRoundTripThroughTheCalendar() {
+        for (long day = -800_000; day <= 800_000; day += 37) {
+            int[] civil = HealthSeries.civilFromDays(day);
+            assertEquals(day, HealthSeries.daysFromCivil(civil[0], civil[1], civil[2]));
+        }
+        assertEquals(LEAP_DAY, HealthToon.parseDay("20240229", 0));
+        assertEquals(Long.MIN_VALUE, HealthToon.parseDay("2024-02-29", 0));
+    }
+}
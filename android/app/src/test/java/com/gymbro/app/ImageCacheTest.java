@@ -0,0 +1,83 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("images").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private static File write(ImageCache cache, int bytes) throws IOException {
+        File tmp = cache.tmpFile();
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(new byte[bytes]);
+        }
+        return tmp;
+    }
+
+    @Test
+    public void keysBySourceAndParameters() throws IOException {
+        ImageCache cache = new ImageCache(dir, 1024);
+        String key = ImageCache.key("https://i.ibb.co/x.jpg", "480x0q70");
+        assertNotEquals(key, ImageCache.key("https://i.ibb.co/x.jpg", "200x0q70"));
+        assertEquals(key, ImageCache.key("https://i.ibb.co/x.jpg", "480x0q70"));
+
+        assertNull(cache.get(key));
+        File stored = cache.commit(write(cache, 100), key);
+        assertEquals(stored, cache.get(key));
+        assertEquals(100, cache.sizeBytes());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPastTheBudget() throws IOException {
+        ImageCache cache = new ImageCache(dir, 250);
+        File a = cache.commit(write(cache, 100), "a");
+        File b = cache.commit(write(cache, 100), "b");
+        a.setLastModified(1_000_000L);
+        b.setLastModified(2_000_000L);
+
+        // c pushes the total to 300: a, the oldest, goes
+        cache.commit(write(cache, 100), "c");
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+
+        // An entry over the whole budget is still kept, alone
+        cache.commit(write(cache, 400), "big");
+        assertNotNull(cache.get("big"));
+        assertEquals(400, cache.sizeBytes());
+    }
+
+    @Test
+    public void dropsLeftoverTmpFiles() throws IOException {
+        ImageCache cache = new ImageCache(dir, 1024);
+        write(cache, 10);
+        cache.commit(write(cache, 10), "kept");
+        new ImageCache(dir, 1024);
+        assertEquals(1, dir.listFiles().length);
+
+        cache.clear();
+        assertEquals(0, cache.sizeBytes());
+    }
+}
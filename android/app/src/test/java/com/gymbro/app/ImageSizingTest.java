@@ -0,0 +1,39 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ImageSizingTest {
+
+    @Test
+    public void fitsLikeResizeImage() {
+        // 12 MP landscape to the 600 px upload width
+        assertArrayEquals(new int[]{600, 450}, ImageSizing.fit(4000, 3000, 600, 0));
+        // Never scaled up
+        assertArrayEquals(new int[]{320, 240}, ImageSizing.fit(320, 240, 600, 0));
+        // The height limit wins when it is the tighter one
+        assertArrayEquals(new int[]{150, 200}, ImageSizing.fit(3000, 4000, 600, 200));
+        assertArrayEquals(new int[]{600, 1}, ImageSizing.fit(40000, 10, 600, 0));
+    }
+
+    @Test
+    public void subsamplesToAtLeastTheTarget() {
+        assertEquals(4, ImageSizing.sampleSize(4000, 3000, 600, 450));
+        // 4000 / 8 = 500 would be under the target
+        assertEquals(4, ImageSizing.sampleSize(4000, 3000, 501, 375));
+        assertEquals(8, ImageSizing.sampleSize(4000, 3000, 500, 375));
+        assertEquals(1, ImageSizing.sampleSize(600, 450, 600, 450));
+        assertEquals(1, ImageSizing.sampleSize(320, 240, 600, 450));
+    }
+
+    @Test
+    public void mapsExifOrientations() {
+        int[] rotations = {0, 0, 0, 180, 180, 270, 90, 90, 270};
+        boolean[] mirrored = {false, false, true, false, true, true, false, true, false};
+        for (int orientation = 0; orientation <= 8; orientation++) {
+            assertEquals(rotations[orientation], ImageSizing.rotation(orientation));
+            assertEquals(mirrored[orientation], ImageSizing.mirrored(orientation));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class PersonalRecordIndexTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static final class Session {
+        final String name;
+        final long dateMs;
+        final double[] weights;
+        final int[] reps;
+
+        Session(String name, long dateMs, double[] weights, int[] reps) {
+            this.name = name;
+            this.dateMs = dateMs;
+            this.weights = weights;
+            this.reps = reps;
+        }
+    }
+
+    private static List<PersonalRecordIndex.Improvement> apply(PersonalRecordIndex index, String name,
+            long dateMs, double[] weights, int[] reps) {
+        List<PersonalRecordIndex.Improvement> out = new ArrayList<>();
+        index.apply(name, dateMs, weights, reps, weights.length, out);
+        return out;
+    }
+
+    private static List<String> types(List<PersonalRecordIndex.Improvement> improvements) {
+        List<String> out = new ArrayList<>();
+        for (PersonalRecordIndex.Improvement improvement : improvements) {
+            out.add(improvement.type);
+        }
+        return out;
+    }
+
+    @Test
+    public void canonicalIdMergesSpellingVariants() {
+        String id = ExerciseNames.canonicalId("Panca piana");
+        assertEquals("panca piana", id);
+        assertEquals(id, ExerciseNames.canonicalId("  PANCA   Piana 80kg"));
+        assertEquals(id, ExerciseNames.canonicalId("Pànca piana"));
+        assertEquals(id, ExerciseNames.canonicalId("panca-piana"));
+        assertEquals("curl manubri", ExerciseNames.canonicalId("Curl (manubri)"));
+        assertEquals("", ExerciseNames.canonicalId(null));
+    }
+
+    @Test
+    public void firstSessionSetsEveryRecord() {
+        PersonalRecordIndex index = new PersonalRecordIndex();
+        List<PersonalRecordIndex.Improvement> out =
+            apply(index, "Squat", DAY, new double[]{100, 110}, new int[]{5, 3});
+
+        assertEquals(List.of("weight", "1rm", "reps", "weight", "1rm", "volume"), types(out));
+        PersonalRecordIndex.Record record = index.get("squat");
+        assertEquals(110, record.maxWeight, 0);
+        assertEquals(3, record.maxWeightReps);
+        // Brzycki: 100 * 36 / 32 = 112.5 -> 113, then 110 * 36 / 34 = 116.47 -> 116
+        assertEquals(116, record.max1RM, 0);
+        assertEquals(5, record.maxReps);
+        assertEquals(830, record.maxVolume, 0);
+        assertEquals(2, record.totalSets);
+        assertEquals(105, record.avgWeight());
+        assertEquals(DAY, record.updatedAtMs);
+    }
+
+    @Test
+    public void repsRecordNeedsSeventyPercentOfTheMax() {
+        PersonalRecordIndex index = new PersonalRecordIndex();
+        apply(index, "Squat", DAY, new double[]{100}, new int[]{5});
+        // 60 kg is below 70% of 100: twenty reps are no record
+        List<PersonalRecordIndex.Improvement> light = apply(index, "squat", 2 * DAY, new double[]{60}, new int[]{20});
+        assertFalse(types(light).contains("reps"));
+        assertEquals(5, index.get("squat").maxReps);
+
+        List<PersonalRecordIndex.Improvement> heavy = apply(index, "squat", 3 * DAY, new double[]{75}, new int[]{8});
+        assertTrue(types(heavy).contains("reps"));
+        assertEquals(75, heavy.get(heavy.size() - 1).atWeight, 0);
+    }
+
+    @Test
+    public void sessionsWithoutRecordsStillCountSets() {
+        PersonalRecordIndex index = new PersonalRecordIndex();
+        apply(index, "Curl", DAY, new double[]{20, 20}, new int[]{10, 10});
+        List<PersonalRecordIndex.Improvement> out = apply(index, "curl", 2 * DAY, new double[]{10}, new int[]{5});
+        assertTrue(out.isEmpty());
+        PersonalRecordIndex.Record record = index.get("curl");
+        assertEquals(3, record.totalSets);
+        assertEquals(17, record.avgWeight());
+        // Only improvements move the date
+        assertEquals(DAY, record.updatedAtMs);
+    }
+
+    @Test
+    public void invalidSetsAreSkipped() {
+        PersonalRecordIndex index = new PersonalRecordIndex();
+        apply(index, "Plank", DAY, new double[]{0, -5}, new int[]{60, 3});
+        PersonalRecordIndex.Record record = index.get("plank");
+        assertEquals(0, record.totalSets);
+        assertEquals(0, record.maxWeight, 0);
+        assertNull(index.apply("  ", DAY, new double[0], new int[0], 0, null));
+    }
+
+    @Test
+    public void estimate1RMFollowsPrTracker() {
+        assertEquals(100, PersonalRecordIndex.estimate1RM(100, 1), 0);
+        assertEquals(100, PersonalRecordIndex.estimate1RM(100, 15), 0);
+        assertEquals(116, PersonalRecordIndex.estimate1RM(100, 6), 0);
+        assertEquals(0, PersonalRecordIndex.estimate1RM(0, 5), 0);
+    }
+
+    @Test
+    public void parallelRebuildMatchesIncrementalUpdates() throws Exception {
+        String[] names = {"Panca piana", "Squat", "Stacco", "Trazioni", "Curl", "Military press"};
+        Random random = new Random(11);
+        List<Session> sessions = new ArrayList<>();
+        for (int day = 0; day < 2_000; day++) {
+            int sets = 1 + random.nextInt(5);
+            double[] weights = new double[sets];
+            int[] reps = new int[sets];
+            for (int s = 0; s < sets; s++) {
+                weights[s] = 20 + random.nextInt(160);
+                reps[s] = 1 + random.nextInt(15);
+            }
+            sessions.add(new Session(names[random.nextInt(names.length)], day * DAY, weights, reps));
+        }
+
+        PersonalRecordIndex incremental = new PersonalRecordIndex();
+        for (Session session : sessions) {
+            incremental.apply(session.name, session.dateMs, session.weights, session.reps,
+                session.weights.length, null);
+        }
+
+        // Groups as WorkoutStoreDatabase.readExerciseGroups hands them out: per exercise, oldest first
+        List<List<Session>> groups = new ArrayList<>();
+        for (String name : names) {
+            List<Session> group = new ArrayList<>();
+            for (Session session : sessions) {
+                if (session.name.equals(name)) {
+                    group.add(session);
+                }
+            }
+            groups.add(group);
+        }
+        PersonalRecordIndex rebuilt = PersonalRecordIndex.rebuild(groups, group -> {
+            PersonalRecordIndex.Record record =
+                new PersonalRecordIndex.Record(ExerciseNames.canonicalId(group.get(0).name), group.get(0).name);
+            for (Session session : group) {
+                record.add(session.name, session.dateMs, session.weights, session.reps, session.weights.length, null);
+            }
+            return record;
+        }, 4);
+
+        assertEquals(incremental.size(), rebuilt.size());
+        for (PersonalRecordIndex.Record expected : incremental.records()) {
+            PersonalRecordIndex.Record actual = rebuilt.get(expected.id);
+            assertNotNull(actual);
+            assertEquals(expected.maxWeight, actual.maxWeight, 0);
+            assertEquals(expected.maxWeightReps, actual.maxWeightReps);
+            assertEquals(expected.max1RM, actual.max1RM, 0);
+            assertEquals(expected.maxReps, actual.maxReps);
+            assertEquals(expected.maxVolume, actual.maxVolume, 0);
+            assertEquals(expected.totalSets, actual.totalSets);
+            assertEquals(expected.updatedAtMs, actual.updatedAtMs);
+        }
+    }
+
+    @Test
+    public void rebuildPropagatesFolderFailures() {
+        List<String> groups = List.of("a", "b", "c");
+        try {
+            PersonalRecordIndex.rebuild(groups, group -> {
+                throw new IllegalStateException("bad row in " + group);
+            }, 2);
+            fail("expected the folder failure");
+        } catch (Exception e) {
+            assertTrue(e instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+public class ReportWriterTest {
+
+    private static void writeSample(ReportWriter writer) throws IOException {
+        writer.header("GYMBRO", "Report generato il 17/10/2026");
+        writer.heading(2, "Volume & carico");
+        writer.paragraph(new String[]{"Squat ", "+12%", " {settimana}"},
+            new int[]{0, ReportWriter.BOLD, ReportWriter.ITALIC | ReportWriter.CODE}, 3);
+        writer.bullet("Più riposo <48h>");
+        writer.endList();
+        writer.tableRow(new String[]{" Esercizio ", "kg"}, 2, true);
+        writer.tableRow(new String[]{"Panca", "80"}, 2, false);
+        writer.endTable();
+        writer.quote("riga 1\nriga 2");
+        writer.footer("Generato da GymBro");
+        writer.close();
+    }
+
+    @Test
+    public void rtfIsAsciiWithEscapes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeSample(ReportWriter.create("rtf", bytes));
+        String rtf = new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+
+        assertTrue(rtf.startsWith("{\\rtf1\\ansi\\deff0\n"));
+        assertTrue(rtf.endsWith("\\par\n}"));
+        assertTrue(rtf.contains("\\qc\\b\\fs48 GYMBRO\\b0\\fs22\\par\n"));
+        assertTrue(rtf.contains("\\b\\fs32\\cf1 Volume & carico\\cf0\\b0\\fs22\\par\n"));
+        assertTrue(rtf.contains("Squat \\b +12%\\b0 \\i \\f1\\fs20  \\{settimana\\}\\f0\\fs22 \\i0 \\par"));
+        assertTrue(rtf.contains("\\bullet  Pi\\u249? riposo <48h>\\par"));
+        assertTrue(rtf.contains("\\b Esercizio | kg\\b0\\par"));
+        assertTrue(rtf.contains(" Panca | 80\\par"));
+        assertTrue(rtf.contains("riga 1\\line riga 2"));
+        // Past U+7FFF the escape is the signed 16-bit value
+        ByteArrayOutputStream more = new ByteArrayOutputStream();
+        ReportWriter writer = ReportWriter.create("rtf", more);
+        writer.text("\u2022");
+        writer.close();
+        assertEquals("\\u8226? ", new String(more.toByteArray(), StandardCharsets.US_ASCII));
+        more.reset();
+        writer = ReportWriter.create("rtf", more);
+        writer.text("\uFF01");
+        writer.close();
+        assertEquals("\\u-255? ", new String(more.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void docxIsAWellFormedPackage() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeSample(ReportWriter.create("docx", bytes));
+
+        Set<String> entries = new HashSet<>();
+        Document document = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                ByteArrayOutputStream part = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = zip.read(buffer)) > 0) {
+                    part.write(buffer, 0, n);
+                }
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                // Every part must parse
+                Document xml = factory.newDocumentBuilder().parse(new ByteArrayInputStream(part.toByteArray()));
+                if (entry.getName().equals("word/document.xml")) {
+                    document = xml;
+                }
+            }
+        }
+        assertTrue(entries.contains("[Content_Types].xml"));
+        assertTrue(entries.contains("_rels/.rels"));
+        assertTrue(entries.contains("word/styles.xml"));
+        assertNotNull(document);
+
+        String ns = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+        // Title, subtitle, heading, paragraph, bullet, two rows, quote, rule, footer
+        NodeList paragraphs = document.getElementsByTagNameNS(ns, "p");
+        assertEquals(10, paragraphs.getLength());
+        StringBuilder text = new StringBuilder();
+        NodeList runs = document.getElementsByTagNameNS(ns, "t");
+        for (int i = 0; i < runs.getLength(); i++) {
+            text.append(runs.item(i).getTextContent()).append('|');
+        }
+        assertTrue(text.toString().contains("Volume & carico|"));
+        assertTrue(text.toString().contains("\u2022 Più riposo <48h>|"));
+        assertTrue(text.toString().contains("Esercizio| | kg|"));
+        assertEquals(1, document.getElementsByTagNameNS(ns, "br").getLength());
+        assertEquals(1, document.getElementsByTagNameNS(ns, "sectPr").getLength());
+    }
+
+    @Test
+    public void rejectsUnknownFormats() throws IOException {
+        try {
+            ReportWriter.create("pdf", new ByteArrayOutputStream());
+            fail("pdf was accepted");
+        } catch (IllegalArgumentException expected) {
+            // The plugin validates the format before writing
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionJournalTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+        file = new File(dir, "session_journal.bin");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(SessionJournal journal) throws IOException {
+        List<String> out = new ArrayList<>();
+        journal.replay((type, payload) -> out.add(type + ":" + new String(payload, StandardCharsets.UTF_8)));
+        return out;
+    }
+
+    @Test
+    public void committedRecordsSurviveReopening() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("{\"workout\":\"A\"}"));
+        journal.append(SessionJournal.TYPE_DELTA, utf8("{\"set\":{\"currentSetIndex\":1}}"));
+        assertEquals(2, journal.commit());
+        journal.close();
+
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(List.of("1:{\"workout\":\"A\"}", "2:{\"set\":{\"currentSetIndex\":1}}"), replay(reopened));
+        assertEquals(2, reopened.records());
+        reopened.close();
+    }
+
+    @Test
+    public void uncommittedRecordsAreNotOnDisk() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("base"));
+        journal.commit();
+        journal.append(SessionJournal.TYPE_DELTA, utf8("lost"));
+        assertEquals(List.of("1:base"), replay(journal));
+        journal.close();
+    }
+
+    @Test
+    public void oneCommitSyncsEveryPendingAppend() throws Exception {
+        SessionJournal journal = SessionJournal.open(file);
+        int writers = 4;
+        int perWriter = 50;
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    journal.append(SessionJournal.TYPE_DELTA, utf8(id + "-" + i));
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(writers * perWriter, journal.commit());
+        assertEquals(1, journal.syncs());
+        // Nothing pending: no second sync
+        journal.commit();
+        assertEquals(1, journal.syncs());
+        assertEquals(writers * perWriter, replay(journal).size());
+        journal.close();
+    }
+
+    @Test
+    public void tornTailIsCutOffOnOpen() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("base"));
+        journal.append(SessionJournal.TYPE_DELTA, utf8("delta-1"));
+        journal.commit();
+        long intact = journal.size();
+        journal.append(SessionJournal.TYPE_DELTA, utf8("delta-2 that the kill interrupts"));
+        journal.commit();
+        journal.close();
+
+        // The process died halfway through the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(intact + 12);
+        }
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(List.of("1:base", "2:delta-1"), replay(reopened));
+        assertEquals(intact, file.length());
+
+        // New records go after the intact prefix, not after the garbage
+        reopened.append(SessionJournal.TYPE_DELTA, utf8("delta-3"));
+        reopened.commit();
+        assertEquals(List.of("1:base", "2:delta-1", "2:delta-3"), replay(reopened));
+        reopened.close();
+    }
+
+    @Test
+    public void corruptRecordEndsTheReplay() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("base"));
+        journal.commit();
+        long first = journal.size();
+        journal.append(SessionJournal.TYPE_DELTA, utf8("delta"));
+        journal.commit();
+        journal.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(first + 10);
+            raf.write('X');
+        }
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(List.of("1:base"), replay(reopened));
+        reopened.close();
+    }
+
+    @Test
+    public void compactionLeavesOneSnapshot() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("base"));
+        for (int i = 0; i < 100; i++) {
+            journal.append(SessionJournal.TYPE_DELTA, utf8("delta-" + i));
+        }
+        journal.commit();
+        long before = journal.size();
+        assertEquals(101, journal.records());
+
+        journal.compact(utf8("folded"));
+        assertEquals(1, journal.records());
+        assertTrue(journal.size() < before);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        journal.append(SessionJournal.TYPE_DELTA, utf8("after"));
+        journal.commit();
+        journal.close();
+        assertEquals(List.of("1:folded", "2:after"), replay(SessionJournal.open(file)));
+    }
+
+    @Test
+    public void resetEmptiesTheJournal() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.append(SessionJournal.TYPE_SNAPSHOT, utf8("base"));
+        journal.commit();
+        journal.append(SessionJournal.TYPE_DELTA, utf8("pending"));
+        journal.reset();
+        journal.commit();
+        assertEquals(0, file.length());
+        assertTrue(replay(journal).isEmpty());
+        journal.close();
+    }
+}
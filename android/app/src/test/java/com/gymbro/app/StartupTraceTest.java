@@ -0,0 +1,45 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import org.junit.Test;
+
+public class StartupTraceTest {
+
+    @Test
+    public void recordsEachMarkerOnce() {
+        StartupTrace trace = new StartupTrace();
+        assertTrue(trace.mark(StartupTrace.FIRST_PAINT, 1_500));
+        // A second page, or a recreated activity, does not move it
+        assertFalse(trace.mark(StartupTrace.FIRST_PAINT, 9_000));
+        assertTrue(trace.has(StartupTrace.FIRST_PAINT));
+        assertFalse(trace.has(StartupTrace.BRIDGE_READY));
+        assertEquals(1, trace.marks().size());
+    }
+
+    @Test
+    public void reportsMarkersInTimeOrderFromTheEarliest() {
+        StartupTrace trace = new StartupTrace();
+        trace.mark(StartupTrace.APPLICATION_CREATE, 1_080);
+        trace.mark(StartupTrace.ACTIVITY_CREATE, 1_120);
+        // Recorded later, by the warm-up thread, but reached first
+        trace.mark(StartupTrace.WEBVIEW_WARM, 1_100);
+        trace.mark(StartupTrace.PROCESS_START, 1_000);
+
+        List<StartupTrace.Mark> marks = trace.marks();
+        assertEquals(StartupTrace.PROCESS_START, marks.get(0).name);
+        assertEquals(0, marks.get(0).elapsedMs);
+        assertEquals(StartupTrace.WEBVIEW_WARM, marks.get(2).name);
+        assertEquals(120, marks.get(3).elapsedMs);
+        assertEquals("processStart +0ms, applicationCreate +80ms, webViewWarm +100ms, activityCreate +120ms",
+            trace.summary());
+    }
+
+    @Test
+    public void emptyTraceHasNoMarkers() {
+        StartupTrace trace = new StartupTrace();
+        assertTrue(trace.marks().isEmpty());
+        assertEquals("", trace.summary());
+    }
+}
@@ -0,0 +1,215 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncOutboxTest {
+
+    private static final long NOW = 1_704_672_000_000L;
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("outbox").toFile();
+        file = new File(dir, "cloud_sync.bin");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private static List<SyncOutbox.Item> items(String... idsAndJson) {
+        List<SyncOutbox.Item> items = new ArrayList<>();
+        for (int i = 0; i < idsAndJson.length; i += 2) {
+            items.add(new SyncOutbox.Item(idsAndJson[i], idsAndJson[i + 1]));
+        }
+        return items;
+    }
+
+    private static List<String> keys(SyncOutbox.Batch batch) {
+        List<String> keys = new ArrayList<>();
+        for (SyncOutbox.Op op : batch.ops) {
+            keys.add((op.type == SyncOutbox.DELETE ? "-" : "+") + op.collection + "/" + op.id);
+        }
+        return keys;
+    }
+
+    private static void drain(SyncOutbox outbox) throws IOException {
+        SyncOutbox.Batch batch;
+        while ((batch = outbox.nextBatch(100, Long.MAX_VALUE, NOW)) != null) {
+            outbox.ack(batch.id);
+        }
+    }
+
+    @Test
+    public void onlyChangedEntitiesAreSent() throws IOException {
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.beginSync();
+        assertEquals(3, outbox.track("logs", items("1", "{\"w\":80}", "2", "{\"w\":85}", "3", "{\"w\":90}"), true));
+        SyncOutbox.Batch first = outbox.nextBatch(100, Long.MAX_VALUE, NOW);
+        assertEquals(Arrays.asList("+logs/1", "+logs/2", "+logs/3"), keys(first));
+        // Key plus JSON per op
+        assertEquals(3 * ("logs/1".length() + "{\"w\":80}".length()), first.bytes);
+        assertEquals(first.bytes, outbox.ack(first.id));
+        assertNull(outbox.nextBatch(100, Long.MAX_VALUE, NOW));
+
+        // Next sync: one edit, one removal, nothing else goes up
+        outbox.beginSync();
+        assertEquals(2, outbox.track("logs", items("1", "{\"w\":80}", "2", "{\"w\":87}"), true));
+        SyncOutbox.Batch second = outbox.nextBatch(100, Long.MAX_VALUE, NOW);
+        assertEquals(Arrays.asList("+logs/2", "-logs/3"), keys(second));
+        assertNull(second.ops.get(1).json);
+        outbox.ack(second.id);
+        SyncOutbox.Stats stats = outbox.stats();
+        assertEquals(2, stats.lastSyncOps);
+        assertEquals(second.bytes, stats.lastSyncBytes);
+        assertEquals(5, stats.totalOps);
+        assertEquals(first.bytes + second.bytes, stats.totalBytes);
+
+        // Another collection is not touched by a complete track of this one
+        outbox.track("workouts", items("a", "{}"), true);
+        outbox.track("logs", items("1", "{\"w\":80}", "2", "{\"w\":87}"), true);
+        assertEquals(Arrays.asList("+workouts/a"), keys(outbox.nextBatch(100, Long.MAX_VALUE, NOW)));
+    }
+
+    @Test
+    public void offlineEditsCoalesce() throws IOException {
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.track("logs", items("1", "{\"w\":80}", "2", "{\"w\":85}"), true);
+        drain(outbox);
+
+        // Edited five times, added and removed again before any upload
+        for (int w = 81; w <= 85; w++) {
+            outbox.track("logs", items("1", "{\"w\":" + w + "}", "2", "{\"w\":85}", "9", "{}"), true);
+        }
+        outbox.track("logs", items("1", "{\"w\":85}", "2", "{\"w\":85}"), true);
+        SyncOutbox.Batch batch = outbox.nextBatch(100, Long.MAX_VALUE, NOW);
+        assertEquals(Arrays.asList("+logs/1"), keys(batch));
+        assertEquals("{\"w\":85}", batch.ops.get(0).json);
+        outbox.fail(batch.id, NOW);
+
+        // Edited back to what the server has: nothing to send
+        outbox.track("logs", items("1", "{\"w\":80}", "2", "{\"w\":85}"), true);
+        assertEquals(0, outbox.stats().pending);
+    }
+
+    @Test
+    public void editsWhileInFlightStayQueued() throws IOException {
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.track("logs", items("1", "A"), true);
+        drain(outbox);
+
+        outbox.track("logs", items("1", "B"), true);
+        SyncOutbox.Batch batch = outbox.nextBatch(100, Long.MAX_VALUE, NOW);
+        // Back to A while B is on its way: A must follow B
+        outbox.track("logs", items("1", "A"), true);
+        assertEquals(1, outbox.stats().inFlight);
+        assertEquals(1, outbox.stats().pending);
+        assertNull(outbox.nextBatch(100, Long.MAX_VALUE, NOW));
+        outbox.ack(batch.id);
+        SyncOutbox.Batch again = outbox.nextBatch(100, Long.MAX_VALUE, NOW);
+        assertEquals("A", again.ops.get(0).json);
+        outbox.ack(again.id);
+        assertEquals(-1, outbox.ack(again.id));
+        outbox.track("logs", items("1", "A"), true);
+        assertEquals(0, outbox.stats().pending);
+    }
+
+    @Test
+    public void failedBatchesBackOff() throws IOException {
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.track("logs", items("1", "{}", "2", "{}", "3", "{}"), true);
+        SyncOutbox.Batch batch = outbox.nextBatch(2, Long.MAX_VALUE, NOW);
+        assertEquals(2, batch.ops.size());
+        assertTrue(outbox.fail(batch.id, NOW));
+        assertFalse(outbox.fail(batch.id, NOW));
+
+        // Only the untried one is due; the others after the backoff
+        assertEquals(Arrays.asList("+logs/3"), keys(outbox.nextBatch(10, Long.MAX_VALUE, NOW)));
+        assertNull(outbox.nextBatch(10, Long.MAX_VALUE, NOW + SyncOutbox.BASE_BACKOFF_MS - 1));
+        SyncOutbox.Batch retry = outbox.nextBatch(10, Long.MAX_VALUE, NOW + SyncOutbox.BASE_BACKOFF_MS);
+        assertEquals(Arrays.asList("+logs/1", "+logs/2"), keys(retry));
+        outbox.fail(retry.id, NOW);
+        assertNull(outbox.nextBatch(10, Long.MAX_VALUE, NOW + SyncOutbox.BASE_BACKOFF_MS));
+        assertNotNull(outbox.nextBatch(10, Long.MAX_VALUE, NOW + 2 * SyncOutbox.BASE_BACKOFF_MS));
+
+        assertEquals(SyncOutbox.MAX_BACKOFF_MS, SyncOutbox.backoff(30));
+        // The byte budget still lets one oversized entity through
+        SyncOutbox big = SyncOutbox.open(new File(dir, "big.bin"));
+        big.track("photos", items("p", "0123456789"), true);
+        assertEquals(1, big.nextBatch(10, 4, NOW).ops.size());
+    }
+
+    @Test
+    public void aSyncStoppedByBackoffIsNotComplete() throws IOException {
+        // What syncToCloud sees: a batch fails, the loop ends because nothing else is due,
+        // and only the stats tell that entities (here syncOrder) never reached the server
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.track("logs", items("1", "{}", "2", "{}"), true);
+        outbox.track("root", items("profile", "{}", "syncOrder", "{\"logs\":[\"1\",\"2\"]}"), true);
+        SyncOutbox.Batch first = outbox.nextBatch(3, Long.MAX_VALUE, NOW);
+        SyncOutbox.Batch second = outbox.nextBatch(3, Long.MAX_VALUE, NOW);
+        assertEquals(Arrays.asList("+root/syncOrder"), keys(second));
+        outbox.ack(first.id);
+        outbox.fail(second.id, NOW);
+
+        assertNull(outbox.nextBatch(3, Long.MAX_VALUE, NOW));
+        assertEquals(1, outbox.stats().pending);
+        assertEquals(0, outbox.stats().inFlight);
+
+        // Drained once the backoff is over: only then is the sync complete
+        SyncOutbox.Batch retry = outbox.nextBatch(3, Long.MAX_VALUE, NOW + SyncOutbox.BASE_BACKOFF_MS);
+        assertEquals(1, outbox.stats().inFlight);
+        outbox.ack(retry.id);
+        assertEquals(0, outbox.stats().pending);
+        assertEquals(0, outbox.stats().inFlight);
+    }
+
+    @Test
+    public void survivesARestartAndResetsForAnotherAccount() throws IOException {
+        SyncOutbox outbox = SyncOutbox.open(file);
+        outbox.owner("u1");
+        outbox.track("logs", items("1", "{\"note\":\"più\"}", "2", "{}"), true);
+        outbox.ack(outbox.nextBatch(1, Long.MAX_VALUE, NOW).id);
+        // In flight at the crash: sent again
+        outbox.nextBatch(1, Long.MAX_VALUE, NOW);
+
+        SyncOutbox reopened = SyncOutbox.open(file);
+        reopened.owner("u1");
+        SyncOutbox.Batch batch = reopened.nextBatch(10, Long.MAX_VALUE, NOW);
+        assertEquals(Arrays.asList("+logs/2"), keys(batch));
+        reopened.ack(batch.id);
+        assertEquals(0, reopened.track("logs", items("1", "{\"note\":\"più\"}", "2", "{}"), true));
+        assertEquals(2, reopened.stats().totalOps);
+
+        // Loaded from the server: not uploaded again
+        reopened.markSynced("workouts", items("a", "{}"));
+        assertEquals(0, reopened.track("workouts", items("a", "{}"), true));
+
+        // Another account owns nothing of this
+        reopened.owner("u2");
+        assertEquals(2, reopened.track("logs", items("1", "{\"note\":\"più\"}", "2", "{}"), true));
+        assertEquals(0, reopened.track("workouts", items(), true));
+    }
+}
@@ -0,0 +1,93 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerJournalTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long WALL = 1_700_000_000_000L;
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("timers").toFile();
+        file = new File(dir, TimerService.JOURNAL_FILE);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private static WorkoutTimer rest(long now) {
+        WorkoutTimer timer = new WorkoutTimer("rest", WorkoutTimer.MODE_COUNTDOWN, "Squat", 90_000, 0, 0);
+        timer.start(now);
+        return timer;
+    }
+
+    private static WorkoutProgram program() {
+        return new WorkoutProgram("Legs", Collections.singletonList(new WorkoutProgram.Step("Squat", 1, 3, 90_000)), 0);
+    }
+
+    @Test
+    public void keepsAnchorsWithinTheSameBoot() {
+        long elapsed = 5 * HOUR;
+        TimerJournal.open(file).write(1, "Squat", "Legs", List.of(rest(elapsed)), null, elapsed, WALL);
+
+        // Killed and restarted ten seconds later, clock nudged by NTP
+        TimerJournal.State state = TimerJournal.open(file).read(elapsed + 10_000, WALL + 10_500);
+        assertEquals(elapsed + 90_000, state.timers.get(0).anchorElapsedMs);
+    }
+
+    @Test
+    public void movesAnchorsAfterARebootWithALongerUptime() {
+        long elapsed = 5 * HOUR;
+        TimerJournal.open(file).write(1, "Squat", "Legs", List.of(rest(elapsed)), null, elapsed, WALL);
+
+        // Rebooted 30 s later and already up for longer than before: the deadline keeps its wall time
+        long nowElapsed = 6 * HOUR;
+        long nowWall = WALL + 30_000;
+        TimerJournal.State state = TimerJournal.open(file).read(nowElapsed, nowWall);
+        WorkoutTimer timer = state.timers.get(0);
+        assertEquals(60_000, timer.remainingMs(nowElapsed));
+    }
+
+    @Test
+    public void movesAnchorsAfterARebootWithAShorterUptime() {
+        long elapsed = 5 * HOUR;
+        TimerJournal.open(file).write(1, "Squat", "Legs", List.of(rest(elapsed)), null, elapsed, WALL);
+
+        TimerJournal.State state = TimerJournal.open(file).read(20_000, WALL + 30_000);
+        assertEquals(60_000, state.timers.get(0).remainingMs(20_000));
+    }
+
+    @Test
+    public void aProgramWithoutLiveTimersIsNothingToRestore() {
+        long elapsed = HOUR;
+        TimerJournal.open(file).write(1, "Squat", "Legs", Collections.<WorkoutTimer>emptyList(), program(),
+            elapsed, WALL);
+
+        assertFalse(TimerJournal.hasState(file, elapsed + 1_000, WALL + 1_000));
+        TimerJournal.State state = TimerJournal.open(file).read(elapsed + 1_000, WALL + 1_000);
+        assertNotNull(state.program);
+        assertFalse(state.isRestorable());
+
+        TimerJournal.open(file).write(2, "Squat", "Legs", List.of(rest(elapsed)), program(), elapsed, WALL);
+        assertTrue(TimerJournal.hasState(file, elapsed + 1_000, WALL + 1_000));
+    }
+}
@@ -0,0 +1,118 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Test;
+
+/**
+ * JMH-style microbenchmark of the scheduler tick path, run by plain
+ * {@code ./gradlew test}: warmup iterations, then measured iterations
+ * reporting CPU time and allocated bytes per tick. The report is printed
+ * with {@code ./gradlew test -PbenchIterations=20}, which runs only this
+ * class.
+ *
+ * The tick path runs every second per timer for the whole workout, so it must
+ * not allocate; that part is asserted, timings are only reported.
+ */
+public class TimerSchedulerBenchmark {
+
+    private static final int TIMERS = 8;
+    private static final int PASSES_PER_ITERATION = 200_000;
+    private static final int WARMUP_ITERATIONS = 3;
+
+    // Consumed by the listener so the JIT cannot drop the tick work
+    private long sink;
+
+    @Test
+    public void tickPath() {
+        FakeClock clock = new FakeClock(1_000);
+        TimerScheduler scheduler = new TimerScheduler(clock, new TimerMetrics(), new TimerScheduler.Listener() {
+            @Override
+            public void onTick(WorkoutTimer timer, long seconds) {
+                sink += seconds;
+            }
+
+            @Override
+            public void onPhaseChange(WorkoutTimer timer, long latenessMs) {
+                sink += timer.round;
+            }
+
+            @Override
+            public void onFinish(WorkoutTimer timer, long latenessMs) {
+                sink += latenessMs;
+            }
+        });
+        for (int i = 0; i < TIMERS; i++) {
+            // Long enough never to finish: every pass is pure ticking
+            WorkoutTimer timer = i % 2 == 0
+                ? new WorkoutTimer("countdown" + i, WorkoutTimer.MODE_COUNTDOWN, "RIPOSO", Long.MAX_VALUE / 4, 0, 1)
+                : new WorkoutTimer("stopwatch" + i, WorkoutTimer.MODE_STOPWATCH, "SESSIONE", 0, 0, 1);
+            scheduler.start(timer);
+        }
+
+        int iterations = Integer.getInteger("timer.bench.iterations", 5);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runPasses(clock, scheduler);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long ticksPerIteration = (long) PASSES_PER_ITERATION * TIMERS;
+        double bestNsPerTick = Double.MAX_VALUE;
+        double totalNsPerTick = 0;
+        double worstBytesPerTick = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = allocatedBytes(threads);
+            long cpuBefore = cpuTimeNs(threads);
+            runPasses(clock, scheduler);
+            long cpu = cpuTimeNs(threads) - cpuBefore;
+            long bytes = allocatedBytes(threads) - bytesBefore;
+
+            double nsPerTick = (double) cpu / ticksPerIteration;
+            bestNsPerTick = Math.min(bestNsPerTick, nsPerTick);
+            totalNsPerTick += nsPerTick;
+            worstBytesPerTick = Math.max(worstBytesPerTick, (double) bytes / ticksPerIteration);
+        }
+
+        System.out.println("Benchmark                          Mode  Cnt   Score   Units");
+        System.out.println(String.format("TimerScheduler.tick (mean)         avgt  %3d  %6.1f   ns/tick",
+            iterations, totalNsPerTick / iterations));
+        System.out.println(String.format("TimerScheduler.tick (best)         avgt  %3d  %6.1f   ns/tick",
+            iterations, bestNsPerTick));
+        System.out.println(String.format("TimerScheduler.tick:alloc (worst)  avgt  %3d  %6.2f   B/tick",
+            iterations, worstBytesPerTick));
+        System.out.println("(sink " + sink + ")");
+
+        if (allocatedBytes(threads) >= 0) {
+            // A handful of bytes per iteration is measurement noise; one object per tick is not
+            assertTrue("tick path allocates " + worstBytesPerTick + " B/tick", worstBytesPerTick < 1.0);
+        }
+    }
+
+    private static void runPasses(FakeClock clock, TimerScheduler scheduler) {
+        for (int pass = 0; pass < PASSES_PER_ITERATION; pass++) {
+            clock.set(scheduler.nextDueElapsedMs());
+            scheduler.runDue();
+        }
+    }
+
+    private static long cpuTimeNs(ThreadMXBean threads) {
+        return threads.isCurrentThreadCpuTimeSupported()
+            ? threads.getCurrentThreadCpuTime()
+            : System.nanoTime();
+    }
+
+    /**
+     * Bytes allocated by this thread so far, or -1 where the JVM cannot tell.
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,297 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerSchedulerTest {
+
+    private static final class Event {
+        final String kind;
+        final String id;
+        final long at;
+        final long value;
+
+        Event(String kind, String id, long at, long value) {
+            this.kind = kind;
+            this.id = id;
+            this.at = at;
+            this.value = value;
+        }
+    }
+
+    private FakeClock clock;
+    private TimerScheduler scheduler;
+    private final List<Event> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(1_000);
+        events.clear();
+        scheduler = new TimerScheduler(clock, new TimerMetrics(), new TimerScheduler.Listener() {
+            @Override
+            public void onTick(WorkoutTimer timer, long seconds) {
+                events.add(new Event("tick", timer.id, clock.elapsedRealtime(), seconds));
+            }
+
+            @Override
+            public void onPhaseChange(WorkoutTimer timer, long latenessMs) {
+                events.add(new Event("phase", timer.id, clock.elapsedRealtime(), timer.anchorElapsedMs));
+            }
+
+            @Override
+            public void onFinish(WorkoutTimer timer, long latenessMs) {
+                events.add(new Event("finish", timer.id, clock.elapsedRealtime(), latenessMs));
+            }
+        });
+    }
+
+    private static WorkoutTimer countdown(String id, long ms) {
+        return new WorkoutTimer(id, WorkoutTimer.MODE_COUNTDOWN, "RIPOSO", ms, 0, 1);
+    }
+
+    /**
+     * Jumps the clock to each scheduled wakeup (plus {@code lateMs}) and runs the
+     * due timers, like the Handler does, until {@code until} or nothing is left.
+     */
+    private void runUntil(long until, long lateMs) {
+        while (true) {
+            long due = scheduler.nextDueElapsedMs();
+            if (due == Long.MAX_VALUE || due + lateMs > until) {
+                clock.set(Math.max(clock.elapsedRealtime(), until));
+                return;
+            }
+            clock.set(Math.max(clock.elapsedRealtime(), due + lateMs));
+            scheduler.runDue();
+        }
+    }
+
+    private List<Event> eventsOf(String kind) {
+        List<Event> out = new ArrayList<>();
+        for (Event e : events) {
+            if (e.kind.equals(kind)) {
+                out.add(e);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void countdownTicksEverySecondAndFinishesOnDeadline() {
+        scheduler.start(countdown("rest", 10_000));
+        runUntil(60_000, 0);
+
+        List<Event> ticks = eventsOf("tick");
+        assertEquals(10, ticks.size());
+        for (int i = 0; i < ticks.size(); i++) {
+            assertEquals(10 - i, ticks.get(i).value);
+            assertEquals(1_000 + i * 1_000L, ticks.get(i).at);
+        }
+        List<Event> finish = eventsOf("finish");
+        assertEquals(1, finish.size());
+        assertEquals(11_000, finish.get(0).at);
+        assertEquals(0, finish.get(0).value);
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    @Test
+    public void latePassesDoNotAccumulateDrift() {
+        scheduler.start(countdown("rest", 90_000));
+        // Every wakeup 40 ms late: the deadline is still the original one
+        runUntil(200_000, 40);
+
+        Event finish = eventsOf("finish").get(0);
+        assertEquals(91_040, finish.at);
+        assertEquals(40, finish.value);
+        assertEquals(90, eventsOf("tick").size());
+        assertEquals(40, scheduler.lastFinishLatenessMs());
+    }
+
+    @Test
+    public void stopwatchStaysOnWholeSecondsOverAnHour() {
+        WorkoutTimer watch = new WorkoutTimer("session", WorkoutTimer.MODE_STOPWATCH, "SESSIONE", 0, 0, 1);
+        scheduler.start(watch);
+        Random random = new Random(42);
+        long end = 1_000 + 3_600_000;
+        while (clock.elapsedRealtime() < end) {
+            // Jittery wakeups between 0 and 300 ms late
+            clock.set(scheduler.nextDueElapsedMs() + random.nextInt(300));
+            scheduler.runDue();
+            assertEquals(0, (watch.nextDueElapsedMs - watch.anchorElapsedMs) % 1_000);
+        }
+        List<Event> ticks = eventsOf("tick");
+        assertEquals(3_601, ticks.size());
+        assertEquals(3_600, ticks.get(ticks.size() - 1).value);
+    }
+
+    @Test
+    public void pauseFreezesRemainingAndResumeKeepsIt() {
+        scheduler.start(countdown("rest", 30_000));
+        runUntil(11_400, 0);
+        assertTrue(scheduler.pause("rest"));
+        assertEquals(0, scheduler.queuedCount());
+
+        clock.advance(100_000);
+        scheduler.runDue();
+        WorkoutTimer timer = scheduler.get("rest");
+        assertEquals(19_600, timer.remainingMs(clock.elapsedRealtime()));
+        assertFalse(scheduler.pause("rest"));
+
+        long resumedAt = clock.elapsedRealtime();
+        assertTrue(scheduler.resume("rest"));
+        runUntil(resumedAt + 60_000, 0);
+        assertEquals(resumedAt + 19_600, eventsOf("finish").get(0).at);
+    }
+
+    @Test
+    public void pauseAndResumeWithoutIdAffectEveryTimer() {
+        scheduler.start(countdown("rest", 60_000));
+        scheduler.start(new WorkoutTimer("session", WorkoutTimer.MODE_STOPWATCH, "SESSIONE", 0, 0, 1));
+        assertEquals(2, scheduler.queuedCount());
+
+        assertTrue(scheduler.pause(null));
+        assertEquals(0, scheduler.queuedCount());
+        assertEquals(Long.MAX_VALUE, scheduler.nextDueElapsedMs());
+
+        assertTrue(scheduler.resume(null));
+        assertEquals(2, scheduler.queuedCount());
+    }
+
+    @Test
+    public void adjustMovesTheDeadline() {
+        scheduler.start(countdown("rest", 60_000));
+        runUntil(31_000, 0);
+        assertTrue(scheduler.adjust("rest", 15_000));
+        assertEquals(45_000, scheduler.get("rest").remainingMs(clock.elapsedRealtime()));
+
+        assertTrue(scheduler.adjust("rest", -120_000));
+        scheduler.runDue();
+        assertEquals(1, eventsOf("finish").size());
+        assertFalse(scheduler.adjust("rest", 10_000));
+        assertFalse(scheduler.adjust("missing", 10_000));
+    }
+
+    @Test
+    public void adjustWhilePausedChangesTheFrozenValue() {
+        scheduler.start(countdown("rest", 60_000));
+        scheduler.pause("rest");
+        scheduler.adjust("rest", -20_000);
+        assertEquals(40_000, scheduler.get("rest").remainingMs(clock.elapsedRealtime()));
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    @Test
+    public void intervalPhasesStayAlignedToTheFirstDeadline() {
+        scheduler.start(new WorkoutTimer("tabata", WorkoutTimer.MODE_INTERVAL, "LAVORO", 20_000, 10_000, 3));
+        runUntil(500_000, 500);
+
+        List<Event> phases = eventsOf("phase");
+        assertEquals(4, phases.size());
+        // work 20 s, rest 10 s, work, rest, work: phase ends never move with late wakeups
+        long[] expectedEnds = {31_000, 51_000, 61_000, 81_000};
+        for (int i = 0; i < phases.size(); i++) {
+            assertEquals(expectedEnds[i], phases.get(i).value);
+        }
+        assertEquals(81_500, eventsOf("finish").get(0).at);
+    }
+
+    @Test
+    public void oneLatePassCatchesUpEveryMissedPhase() {
+        WorkoutTimer emom = new WorkoutTimer("emom", WorkoutTimer.MODE_INTERVAL, "EMOM", 60_000, 0, 10);
+        scheduler.start(emom);
+        clock.advance(30 * 60_000);
+        int result = scheduler.runDue();
+
+        assertTrue((result & TimerScheduler.RESULT_STATE_CHANGED) != 0);
+        assertEquals(9, eventsOf("phase").size());
+        assertEquals(1, eventsOf("finish").size());
+        assertEquals(10, emom.round);
+        assertTrue(scheduler.removeFinished());
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void restartingAnIdReplacesTheTimer() {
+        scheduler.start(countdown("rest", 60_000));
+        clock.advance(5_000);
+        scheduler.start(countdown("rest", 90_000));
+        assertEquals(1, scheduler.size());
+        assertEquals(1, scheduler.queuedCount());
+        assertEquals(90_000, scheduler.get("rest").remainingMs(clock.elapsedRealtime()));
+    }
+
+    @Test
+    public void startStopStormKeepsTheQueueConsistent() {
+        Random random = new Random(7);
+        String[] ids = {"rest", "set", "session", "emom", "tabata"};
+        for (int i = 0; i < 100_000; i++) {
+            String id = ids[random.nextInt(ids.length)];
+            switch (random.nextInt(7)) {
+                case 0:
+                    scheduler.start(countdown(id, 1_000 + random.nextInt(120_000)));
+                    break;
+                case 1:
+                    scheduler.start(new WorkoutTimer(id, WorkoutTimer.MODE_INTERVAL, "INT",
+                        1_000 + random.nextInt(5_000), random.nextInt(3_000), 1 + random.nextInt(5)));
+                    break;
+                case 2:
+                    scheduler.remove(id);
+                    break;
+                case 3:
+                    scheduler.pause(random.nextBoolean() ? id : null);
+                    break;
+                case 4:
+                    scheduler.resume(random.nextBoolean() ? id : null);
+                    break;
+                case 5:
+                    scheduler.adjust(id, random.nextInt(20_000) - 10_000);
+                    break;
+                default:
+                    clock.advance(random.nextInt(3_000));
+                    scheduler.runDue();
+                    scheduler.removeFinished();
+                    break;
+            }
+
+            int running = 0;
+            for (WorkoutTimer timer : scheduler.timers()) {
+                if (timer.isRunning()) {
+                    running++;
+                    // Never more than one tick ahead: no timer can be skipped by the scheduler
+                    assertTrue(timer.nextDueElapsedMs <= clock.elapsedRealtime() + 1_000);
+                }
+            }
+            assertEquals(running, scheduler.queuedCount());
+        }
+
+        scheduler.clear();
+        assertTrue(scheduler.isEmpty());
+        assertEquals(Long.MAX_VALUE, scheduler.nextDueElapsedMs());
+    }
+
+    @Test
+    public void earliestDeadlineIgnoresPausedTimersAndStopwatches() {
+        scheduler.start(countdown("rest", 90_000));
+        scheduler.start(countdown("plank", 30_000));
+        scheduler.start(new WorkoutTimer("session", WorkoutTimer.MODE_STOPWATCH, "SESSIONE", 0, 0, 1));
+        assertEquals(31_000, scheduler.earliestDeadline());
+
+        scheduler.pause("plank");
+        assertEquals(91_000, scheduler.earliestDeadline());
+        scheduler.pause("rest");
+        assertEquals(Long.MAX_VALUE, scheduler.earliestDeadline());
+    }
+
+    @Test
+    public void formatTime() {
+        assertEquals("0:00", TimerScheduler.formatTime(0));
+        assertEquals("0:09", TimerScheduler.formatTime(9));
+        assertEquals("1:30", TimerScheduler.formatTime(90));
+        assertEquals("10:05", TimerScheduler.formatTime(605));
+        assertEquals("120:00", TimerScheduler.formatTime(7_200));
+    }
+}
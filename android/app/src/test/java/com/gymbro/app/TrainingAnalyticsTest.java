@@ -0,0 +1,192 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrainingAnalyticsTest {
+
+    private static final long DAY = TrainingAnalytics.DAY_MS;
+    private static final long NOW = 1_750_000_000_000L;
+    private static final float NONE = Float.NaN;
+
+    private TrainingAnalytics analytics;
+
+    @Before
+    public void setUp() {
+        analytics = new TrainingAnalytics();
+        // A slice of js/exercise-db.js, in its order
+        Map<String, List<String>> db = new LinkedHashMap<>();
+        db.put("panca piana", Arrays.asList("chest", "triceps", "front-delts"));
+        db.put("trazioni", Arrays.asList("lats", "biceps", "traps"));
+        db.put("squat", Arrays.asList("quads", "glutes", "core"));
+        db.put("curl", Arrays.asList("biceps"));
+        analytics.setExerciseDb(db);
+    }
+
+    @Test
+    public void trainingLoadMatchesTheJsFormula() {
+        TrainingColumns columns = new TrainingColumns.Builder()
+            .addLog(NOW - 1 * DAY, 10_000, 8, NONE, NONE, NONE)
+            .addLog(NOW - 3 * DAY, 12_000, 0, NONE, NONE, NONE)
+            .addLog(NOW - 5 * DAY, 8_000, 6, NONE, NONE, NONE)
+            // Previous week
+            .addLog(NOW - 9 * DAY, 20_000, 7, NONE, NONE, NONE)
+            .build();
+
+        TrainingAnalytics.TrainingLoad load = analytics.trainingLoad(columns, 7, NOW);
+        assertEquals(3, load.sessions);
+        assertEquals(30_000, load.totalVolume, 1e-6);
+        // RPE 0 is skipped: (8 + 6) / 2
+        assertEquals(7.0, load.avgRpe, 1e-9);
+        // volume 60 * 0.4 + frequency 50 * 0.35 + intensity 70 * 0.25
+        assertEquals(59, load.score);
+        assertArrayEquals(new int[]{60, 50, 70}, load.breakdown);
+        assertEquals("increasing", load.trend);
+    }
+
+    @Test
+    public void trainingLoadWithoutSessionsIsNeutral() {
+        TrainingColumns columns = new TrainingColumns.Builder()
+            .addLog(NOW - 30 * DAY, 10_000, 8, NONE, NONE, NONE)
+            .build();
+        TrainingAnalytics.TrainingLoad load = analytics.trainingLoad(columns, 7, NOW);
+        assertEquals(0, load.score);
+        assertNull(load.breakdown);
+        assertEquals("neutral", load.trend);
+    }
+
+    @Test
+    public void recoveryAveragesOnlyPresentWellnessValues() {
+        TrainingColumns columns = new TrainingColumns.Builder()
+            .addLog(NOW - 2 * DAY - 1_000, 0, 0, 8, 4, NONE)
+            .addLog(NOW - 4 * DAY, 0, 0, 6, NONE, NONE)
+            .build();
+
+        TrainingAnalytics.Recovery recovery = analytics.recovery(columns, NOW);
+        // sleep 7 -> 70, stress 4 -> 60, soreness default 3 -> 70, rest 2 days -> 40
+        assertArrayEquals(new int[]{70, 60, 70, 40}, recovery.factors);
+        assertEquals(2, recovery.daysSinceWorkout);
+        assertEquals(63, recovery.score);
+        assertEquals("OK per allenamento moderato", recovery.recommendation);
+    }
+
+    @Test
+    public void recoveryWithoutLogsIsTheJsDefault() {
+        TrainingAnalytics.Recovery recovery = analytics.recovery(new TrainingColumns.Builder().build(), NOW);
+        assertEquals(75, recovery.score);
+        assertNull(recovery.factors);
+    }
+
+    @Test
+    public void recoveryOnlyLooksAtTheLast14Logs() {
+        TrainingColumns.Builder builder = new TrainingColumns.Builder();
+        for (int i = 0; i < 14; i++) {
+            builder.addLog(NOW - (i + 1) * DAY, 0, 0, 10, 0, 0);
+        }
+        builder.addLog(NOW - 20 * DAY, 0, 0, 0, 10, 10);
+        TrainingAnalytics.Recovery recovery = analytics.recovery(builder.build(), NOW);
+        assertArrayEquals(new int[]{100, 100, 100, 20}, recovery.factors);
+    }
+
+    @Test
+    public void muscleBalanceUsesExerciseDbThenKeywords() {
+        TrainingColumns columns = new TrainingColumns.Builder()
+            .addLog(NOW - DAY, 0, 0, NONE, NONE, NONE)
+            // EXERCISE_DB: chest + triceps + shoulders
+            .addExercise("Panca Piana", 1_000)
+            // Keyword fallback, first matching category only: "lat" (back) wins over "lateral"
+            .addExercise("Alzate laterali", 300)
+            // No match at all
+            .addExercise("Burpees", 5_000)
+            .addLog(NOW - 40 * DAY, 0, 0, NONE, NONE, NONE)
+            .addExercise("Squat", 9_000)
+            .build();
+
+        TrainingAnalytics.MuscleBalance balance = analytics.muscleBalance(columns, 30, NOW);
+        assertEquals(1_000, balance.rawVolume[0], 1e-6);
+        assertEquals(300, balance.rawVolume[1], 1e-6);
+        assertEquals(1_000, balance.rawVolume[2], 1e-6);
+        assertEquals(1_000, balance.rawVolume[4], 1e-6);
+        // Out of the window
+        assertEquals(0, balance.rawVolume[5], 1e-6);
+        assertEquals(3_300, balance.totalVolume, 1e-6);
+
+        // avg 14.14: 30 is overtrained, 9 is neither (not below half the average), 0 is undertrained
+        assertArrayEquals(new long[]{30, 9, 30, 0, 30, 0, 0}, balance.distribution);
+        assertEquals(6, balance.imbalances.size());
+        assertEquals("chest", balance.imbalances.get(0).muscle);
+        assertEquals("overtrained", balance.imbalances.get(0).type);
+        assertEquals("shoulders", balance.imbalances.get(1).muscle);
+        assertEquals("biceps", balance.imbalances.get(2).muscle);
+        assertEquals("undertrained", balance.imbalances.get(2).type);
+        assertEquals(10, balance.balanceScore);
+    }
+
+    @Test
+    public void emptyMuscleBalanceDividesByOne() {
+        TrainingAnalytics.MuscleBalance balance =
+            analytics.muscleBalance(new TrainingColumns.Builder().build(), 30, NOW);
+        assertEquals(1, balance.totalVolume, 0);
+        assertEquals(0, balance.imbalances.size());
+        assertEquals(100, balance.balanceScore);
+    }
+
+    @Test
+    public void builderSortsNewestFirstAndKeepsExercisesWithTheirLog() {
+        TrainingColumns columns = new TrainingColumns.Builder()
+            .addLog(NOW - 10 * DAY, 1, 0, NONE, NONE, NONE).addExercise("curl", 10)
+            .addLog(NOW - 1 * DAY, 2, 0, NONE, NONE, NONE).addExercise("squat", 20).addExercise("Curl", 30)
+            .build();
+
+        assertEquals(NOW - DAY, columns.dateMs[0]);
+        assertEquals(2, columns.volume[0], 0);
+        assertEquals(2, columns.exerciseStart[1]);
+        assertEquals(20, columns.exerciseVolume[0], 0);
+        assertEquals(10, columns.exerciseVolume[2], 0);
+        // Names are interned case-insensitively
+        assertEquals(2, columns.names.length);
+        assertEquals(columns.exerciseName[1], columns.exerciseName[2]);
+        assertEquals(1, columns.countSince(NOW - 5 * DAY));
+        assertEquals(2, columns.countSince(0));
+    }
+
+    @Test
+    public void fiveYearsOfDashboardMetricsStayUnder20Ms() {
+        String[] names = {"Panca piana", "Trazioni", "Squat", "Curl manubri", "Alzate laterali",
+            "French press", "Plank", "Rematore", "Leg press", "Stacco"};
+        Random random = new Random(3);
+        TrainingColumns.Builder builder = new TrainingColumns.Builder();
+        // 5 sessions a week for 5 years, 6 exercises each
+        for (int day = 0; day < 5 * 365; day++) {
+            if (day % 7 >= 5) {
+                continue;
+            }
+            builder.addLog(NOW - day * DAY, 8_000 + random.nextInt(8_000), 6 + random.nextInt(4),
+                5 + random.nextInt(5), random.nextInt(10), random.nextInt(10));
+            for (int e = 0; e < 6; e++) {
+                builder.addExercise(names[random.nextInt(names.length)], 500 + random.nextInt(3_000));
+            }
+        }
+        TrainingColumns columns = builder.build();
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            analytics.trainingLoad(columns, 7, NOW);
+            analytics.recovery(columns, NOW);
+            // Whole history: the worst case for the muscle scan
+            analytics.muscleBalance(columns, 5 * 365, NOW);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format("TrainingAnalytics dashboard, %d logs: %.3f ms",
+            columns.logCount, best / 1e6));
+        assertTrue("dashboard took " + best / 1e6 + " ms", best < 20_000_000L);
+    }
+}
@@ -0,0 +1,228 @@
+package com.gymbro.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class TrendWindowsTest {
+
+    private static final long DAY = TrendWindows.DAY_MS;
+    private static final long WINDOW = TrendWindows.WINDOW_MS;
+    private static final long START = 1_700_000_000_000L;
+
+    private static TrendWindows.Log log(long dateMs, double volume) {
+        return new TrendWindows.Log(dateMs, "d" + Math.floorDiv(dateMs, DAY), volume);
+    }
+
+    private static TrendWindows.Log log(long dateMs, String exercise, double estimate) {
+        TrendWindows.Log log = log(dateMs, 0);
+        log.estimates.put(exercise, estimate);
+        return log;
+    }
+
+    @Test
+    public void matchesARescanAsTheWindowsSlide() {
+        Random random = new Random(7);
+        List<TrendWindows.Log> logs = new ArrayList<>();
+        List<long[]> stats = new ArrayList<>();
+        TrendWindows windows = new TrendWindows(WINDOW, START);
+        long now = START;
+        long date = START - 40 * DAY;
+        for (int step = 0; step < 400; step++) {
+            date += random.nextInt((int) (DAY / 2));
+            TrendWindows.Log log = log(date, random.nextInt(5000));
+            if (random.nextBoolean()) {
+                log.wellness[random.nextInt(4)] = random.nextInt(10) + 1;
+            }
+            for (int e = 0; e < 3; e++) {
+                if (random.nextBoolean()) {
+                    log.estimates.put("ex" + random.nextInt(6), 20.0 + random.nextInt(100));
+                }
+            }
+            logs.add(log);
+            assertTrue(windows.addLog(log));
+            if (step % 3 == 0) {
+                stats.add(new long[]{date, 70 + random.nextInt(10)});
+                assertTrue(windows.addBodyStat(date, stats.get(stats.size() - 1)[1]));
+            }
+            if (step % 7 == 0) {
+                now = Math.max(now, date) + random.nextInt((int) DAY);
+                assertTrue(windows.advance(now));
+                assertSnapshot(rescan(logs, stats, now), windows.snapshot());
+            }
+        }
+        // Long after the last log: everything slides out
+        assertTrue(windows.advance(now + 60 * DAY));
+        TrendWindows.Snapshot empty = windows.snapshot();
+        assertEquals(0, empty.recentLogs + empty.previousLogs);
+        assertEquals(0, empty.recent[3] + empty.previous[3] + empty.previous[1], 0);
+        assertEquals(400, empty.totalLogs);
+    }
+
+    @Test
+    public void bestEstimateSurvivesTheEvictionOfLowerOnes() {
+        TrendWindows windows = new TrendWindows(WINDOW, START);
+        windows.addLog(log(START - 13 * DAY, "squat", 100));
+        windows.addLog(log(START - 12 * DAY, "squat", 120));
+        windows.addLog(log(START - 11 * DAY, "squat", 110));
+        windows.addLog(log(START - 10 * DAY, "bench", 80));
+        windows.advance(START);
+        assertEquals(100, windows.snapshot().recent[3], 1e-9);
+
+        // The 120 moves to the previous window; 110 is the recent best
+        windows.advance(START + 2 * DAY + 1);
+        TrendWindows.Snapshot snapshot = windows.snapshot();
+        assertEquals((110 + 80) / 2.0, snapshot.recent[3], 1e-9);
+        assertEquals(120, snapshot.previous[3], 1e-9);
+    }
+
+    @Test
+    public void outOfOrderEntriesAskForARebuild() {
+        TrendWindows windows = new TrendWindows(WINDOW, START);
+        assertTrue(windows.addLog(log(START - DAY, 100)));
+        assertFalse(windows.addLog(log(START - 2 * DAY, 100)));
+        // Too old for either window: only counted
+        assertTrue(windows.addLog(log(START - 40 * DAY, 100)));
+        assertTrue(windows.addLog(new TrendWindows.Log(0, null, 100)));
+        assertTrue(windows.addBodyStat(START - DAY, 80));
+        assertFalse(windows.addBodyStat(START - 3 * DAY, 80));
+        assertFalse(windows.advance(START - 1));
+
+        assertTrue(windows.advance(START));
+        TrendWindows.Snapshot snapshot = windows.snapshot();
+        assertEquals(3, snapshot.totalLogs);
+        assertEquals(1, snapshot.recentLogs);
+        assertEquals(1, snapshot.totalBodyStats);
+    }
+
+    @Test
+    public void consistencySpansBothWindows() {
+        TrendWindows windows = new TrendWindows(WINDOW, START);
+        // Two sessions on one day three weeks ago, one a day ago
+        windows.addLog(log(START - 21 * DAY, 0));
+        windows.addLog(log(START - 21 * DAY + 60_000, 0));
+        windows.addLog(log(START - DAY, 0));
+        windows.advance(START);
+        TrendWindows.Snapshot snapshot = windows.snapshot();
+        assertEquals(0.5, snapshot.recent[0], 0);
+        assertEquals(0.5, snapshot.previous[0], 0);
+        // 2 days over 20 / 7 weeks of 4
+        assertEquals(2 / (20 / 7.0 * 4), snapshot.recent[4], 1e-9);
+        // One day within a single week
+        assertEquals(0.25, snapshot.previous[4], 1e-9);
+    }
+
+    private static void assertSnapshot(TrendWindows.Snapshot expected, TrendWindows.Snapshot actual) {
+        assertEquals(expected.recentLogs, actual.recentLogs);
+        assertEquals(expected.previousLogs, actual.previousLogs);
+        for (int i = 0; i < TrendWindows.METRICS.length; i++) {
+            assertEquals(TrendWindows.METRICS[i], expected.recent[i], actual.recent[i], 1e-6);
+            assertEquals(TrendWindows.METRICS[i], expected.previous[i], actual.previous[i], 1e-6);
+        }
+    }
+
+    /**
+     * trendEngine.evaluate's bucketing and aggregates, recomputed from scratch.
+     */
+    private static TrendWindows.Snapshot rescan(List<TrendWindows.Log> logs, List<long[]> stats, long now) {
+        List<TrendWindows.Log> recent = new ArrayList<>();
+        List<TrendWindows.Log> previous = new ArrayList<>();
+        for (TrendWindows.Log log : logs) {
+            if (log.dateMs >= now - WINDOW) {
+                recent.add(log);
+            } else if (log.dateMs >= now - 2 * WINDOW) {
+                previous.add(log);
+            }
+        }
+        double[] weight = new double[4];
+        for (long[] stat : stats) {
+            int window = stat[0] >= now - WINDOW ? 0 : stat[0] >= now - 2 * WINDOW ? 2 : -1;
+            if (window >= 0) {
+                weight[window] += stat[1];
+                weight[window + 1]++;
+            }
+        }
+        List<TrendWindows.Log> both = new ArrayList<>(previous);
+        both.addAll(recent);
+
+        TrendWindows.Snapshot s = new TrendWindows.Snapshot();
+        s.recentLogs = recent.size();
+        s.previousLogs = previous.size();
+        s.recent[0] = days(recent) / 2.0;
+        s.previous[0] = days(previous) / 2.0;
+        s.recent[1] = volume(recent);
+        s.previous[1] = volume(previous);
+        s.recent[2] = weight[1] == 0 ? 0 : weight[0] / weight[1];
+        s.previous[2] = weight[3] == 0 ? 0 : weight[2] / weight[3];
+        s.recent[3] = prs(recent);
+        s.previous[3] = prs(previous);
+        s.recent[4] = consistency(both);
+        s.previous[4] = consistency(previous);
+        for (int f = 0; f < 4; f++) {
+            s.recent[5 + f] = wellness(recent, f);
+            s.previous[5 + f] = wellness(previous, f);
+        }
+        return s;
+    }
+
+    private static int days(List<TrendWindows.Log> logs) {
+        Set<String> days = new HashSet<>();
+        for (TrendWindows.Log log : logs) {
+            days.add(log.day);
+        }
+        return days.size();
+    }
+
+    private static double volume(List<TrendWindows.Log> logs) {
+        double sum = 0;
+        for (TrendWindows.Log log : logs) {
+            sum += log.volume;
+        }
+        return logs.isEmpty() ? 0 : sum / logs.size();
+    }
+
+    private static double prs(List<TrendWindows.Log> logs) {
+        Map<String, Double> best = new HashMap<>();
+        for (TrendWindows.Log log : logs) {
+            for (Map.Entry<String, Double> entry : log.estimates.entrySet()) {
+                Double current = best.get(entry.getKey());
+                if (current == null || entry.getValue() > current) {
+                    best.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        double sum = 0;
+        for (double value : best.values()) {
+            sum += value;
+        }
+        return best.isEmpty() ? 0 : sum / best.size();
+    }
+
+    private static double consistency(List<TrendWindows.Log> oldestFirst) {
+        if (oldestFirst.isEmpty()) {
+            return 0;
+        }
+        long span = oldestFirst.get(oldestFirst.size() - 1).dateMs - oldestFirst.get(0).dateMs;
+        double weeks = Math.max(1, span / (double) (DAY * 7));
+        return Math.min(1, days(oldestFirst) / (weeks * 4));
+    }
+
+    private static double wellness(List<TrendWindows.Log> logs, int field) {
+        double sum = 0;
+        int count = 0;
+        for (TrendWindows.Log log : logs) {
+            if (!Double.isNaN(log.wellness[field])) {
+                sum += log.wellness[field];
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+}
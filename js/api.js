@@ -87,6 +87,9 @@ if (typeof StorageService === 'undefined') {
                         localStorage.setItem('ironflow_workouts', JSON.stringify(data.workouts));
                     }
                     if (data.logs) localStorage.setItem('ironflow_logs', JSON.stringify(data.logs));
+                    if (data.logs) window.WorkoutStore?.markLocalWrite();
+                    // Replaced wholesale: so is the native store's copy (module exposed on the app only)
+                    if (data.logs && window.WorkoutStore) await window.WorkoutStore.migrate(true);
                     if (data.profile) localStorage.setItem('ironflow_profile', JSON.stringify(data.profile));
 
                     console.log('Data loaded from cloud');
@@ -0,0 +1,91 @@
+// App Startup - Tells the native shell when the page has painted its first frame
+// The splash stays up until this signal (capped natively), and the cold-start trace ends here.
+// Startup work that can wait (the one-time WorkoutStore import) runs after it
+
+import { workoutStore } from './workout-store.js';
+import { registerNativePlugin } from './native-plugins.js';
+
+class AppStartup {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+        if (this.isNative) this.signalFirstFrame();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('Startup');
+        } catch (e) {
+            console.log('App Startup not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // Two animation frames after DOMContentLoaded: the first frame has been committed
+    afterFirstPaint() {
+        const painted = () => new Promise(resolve =>
+            requestAnimationFrame(() => requestAnimationFrame(resolve)));
+        if (document.readyState === 'loading') {
+            return new Promise(resolve =>
+                document.addEventListener('DOMContentLoaded', resolve, { once: true })).then(painted);
+        }
+        return painted();
+    }
+
+    async signalFirstFrame() {
+        await this.afterFirstPaint();
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            const page = location.pathname.split('/').pop() || 'index.html';
+            await this.plugin.firstFrame({ page, sinceNavigationMs: Math.round(performance.now()) });
+        } catch (e) {
+            console.error('Failed to signal first frame:', e);
+        }
+        await this.runDeferredWork();
+    }
+
+    // Off the first paint: import the localStorage diary into the native store (no-op once done);
+    // a store left behind by a write that never reached it is imported again
+    async runDeferredWork() {
+        const status = await workoutStore.getMigrationStatus();
+        const result = await workoutStore.migrate(status.migrated && !workoutStore.isCurrent());
+        if (result.migrated) {
+            console.log(`Workout store migrated: ${result.logs} logs, ${result.bodyStats} body stats`);
+        }
+    }
+
+    // [{ name, ms }] since the process started, or null on the web
+    async getStartupTrace() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { marks } = await this.plugin.getStartupTrace();
+            return marks;
+        } catch (e) {
+            console.error('Failed to get startup trace:', e);
+            return null;
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const appStartup = new AppStartup();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.AppStartup = appStartup;
+}
@@ -337,7 +337,8 @@ export class ChartRenderer {
         const container = document.getElementById(containerId);
         if (!container) return;
 
-        const { calendar, currentStreak, maxStreak, consistencyRate } = calendarData;
+        const { calendar, currentStreak, maxStreak, consistencyRate, totalDays } = calendarData;
+        const weeks = Math.max(1, Math.ceil((totalDays || calendar?.length || 84) / 7));
         
         if (!calendar || calendar.length === 0) {
             container.innerHTML = '<p style="text-align: center; color: var(--color-text-muted);">Nessun dato disponibile</p>';
@@ -350,20 +351,20 @@ export class ChartRenderer {
             dataByDate[day.date] = day;
         });
 
-        // Calcola le 12 settimane da mostrare (ultime 12 settimane fino ad oggi)
+        // Calcola le settimane da mostrare (ultime N settimane fino ad oggi)
         const today = new Date();
         today.setHours(0, 0, 0, 0);
         
-        // Trova il lunedì di 12 settimane fa
+        // Trova il lunedì di N settimane fa
         const startDate = new Date(today);
-        startDate.setDate(today.getDate() - (12 * 7) + 1);
+        startDate.setDate(today.getDate() - (weeks * 7) + 1);
         // Vai al lunedì di quella settimana
         const startDayOfWeek = startDate.getDay();
         const daysFromMonday = startDayOfWeek === 0 ? 6 : startDayOfWeek - 1;
         startDate.setDate(startDate.getDate() - daysFromMonday);
 
         // Costruisci struttura: 7 righe (Lun-Dom) x N colonne (settimane)
-        const numWeeks = 13; // ~3 mesi
+        const numWeeks = weeks + 1; // 13 per le 12 settimane di default (~3 mesi)
         const rows = [[], [], [], [], [], [], []]; // 0=Lun, 1=Mar, ..., 6=Dom
         const weekDates = []; // Prima data di ogni settimana per label mesi
 
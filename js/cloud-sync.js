@@ -0,0 +1,118 @@
+// Cloud Sync - Bridge to the native outbox behind FirestoreService.syncToCloud
+// Only entities changed since the server last confirmed them are uploaded, in batches
+
+import { registerNativePlugin } from './native-plugins.js';
+
+class CloudSync {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('CloudSync');
+            console.log('✅ Cloud Sync initialized');
+        } catch (e) {
+            console.log('Cloud Sync not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // collections: { name: [{ id, json }] } -> { queued, pending }, or null
+    async track(uid, collections, complete = true) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.track({ uid, collections, complete });
+        } catch (e) {
+            console.error('Failed to track sync changes:', e);
+            return null;
+        }
+    }
+
+    // Items just loaded from Firestore: not uploaded again by the next track
+    async markSynced(uid, collection, items) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.markSynced({ uid, collection, items });
+        } catch (e) {
+            console.error('Failed to mark synced items:', e);
+        }
+    }
+
+    // -> { batchId, bytes, ops: [{ collection, id, op, json }] }, or null when nothing is due
+    async nextBatch(maxOps, maxBytes) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const batch = await this.plugin.nextBatch({ maxOps, maxBytes });
+            return batch.batchId === null ? null : batch;
+        } catch (e) {
+            console.error('Failed to get sync batch:', e);
+            return null;
+        }
+    }
+
+    // The batch is committed -> bytes counted for it
+    async ack(batchId) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return 0;
+
+        try {
+            const { bytes } = await this.plugin.ack({ batchId });
+            return Math.max(0, bytes);
+        } catch (e) {
+            console.error('Failed to ack sync batch:', e);
+            return 0;
+        }
+    }
+
+    // The batch failed: retried with backoff on a later sync
+    async fail(batchId) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.fail({ batchId });
+        } catch (e) {
+            console.error('Failed to requeue sync batch:', e);
+        }
+    }
+
+    // { pending, inFlight, lastSyncBytes, lastSyncOps, totalBytes, totalOps }, or null
+    async getStats() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.getStats();
+        } catch (e) {
+            console.error('Failed to get sync stats:', e);
+            return null;
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const cloudSync = new CloudSync();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.CloudSync = cloudSync;
+}
@@ -308,8 +308,19 @@ function setupMediaSessionIntegration() {
             // Get workout name if possible
             const workoutName = btn.closest('.workout-list-item')?.querySelector('strong')?.textContent.replace('AI', '').trim() || 'Allenamento';
 
+            // Same lookup as the Focus Mode button: by id, else by list position
+            let workout = null;
+            try {
+                const stored = JSON.parse(localStorage.getItem('ironflow_workouts') || '[]');
+                workout = btn.dataset.id
+                    ? stored.find(w => String(w.id) === String(btn.dataset.id))
+                    : stored[Number(btn.dataset.index)];
+            } catch (err) {
+                console.warn('Workout not readable for the native timer program:', err);
+            }
+
             // Start Media Session (Audio Loop) - This activates lockscreen controls
-            mediaSessionManager.startWorkout(workoutName);
+            mediaSessionManager.startWorkout(workoutName, workout || null);
             console.log('🎵 Media Session started via user interaction - lockscreen should be active');
         }
     });
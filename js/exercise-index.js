@@ -0,0 +1,87 @@
+// Exercise Index - Bridge to the native fuzzy exercise-name index (ExerciseIndex plugin)
+// Same matching as ExerciseNormalizer.normalizeLocally, without comparing every name on the UI thread
+
+import { EXERCISE_DB } from './exercise-db.js';
+import { registerNativePlugin } from './native-plugins.js';
+
+class ExerciseIndex {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.catalogKey = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('ExerciseIndex');
+            console.log('✅ Exercise Index initialized');
+        } catch (e) {
+            console.log('Exercise Index not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // Catalog = EXERCISE_DB plus the user's exercises; only re-sent when the list changed
+    async syncCatalog(exercises) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return false;
+
+        const key = exercises.join('\n');
+        if (key === this.catalogKey) return true;
+        try {
+            await this.plugin.setCatalog({ names: [...Object.keys(EXERCISE_DB), ...exercises] });
+            this.catalogKey = key;
+            return true;
+        } catch (e) {
+            console.error('Failed to index exercise names:', e);
+            return false;
+        }
+    }
+
+    // Whole list in one call, input order kept; null when the native index is not available
+    async normalize(names) {
+        await this.ready;
+        if (!this.isNative || !this.plugin || this.catalogKey === null) return null;
+
+        try {
+            const result = await this.plugin.normalize({ names });
+            return result.names;
+        } catch (e) {
+            console.error('Failed to normalize exercise names:', e);
+            return null;
+        }
+    }
+
+    // -> [{ name, score }], best first
+    async search(query, limit = 5, minScore = 0) {
+        await this.ready;
+        if (!this.isNative || !this.plugin || this.catalogKey === null) return [];
+
+        try {
+            const { matches } = await this.plugin.search({ query, limit, minScore });
+            return matches;
+        } catch (e) {
+            console.error('Failed to search exercise names:', e);
+            return [];
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const exerciseIndex = new ExerciseIndex();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.ExerciseIndex = exerciseIndex;
+}
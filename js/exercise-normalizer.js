@@ -4,6 +4,8 @@
  * Now uses Firebase Cloud Functions for secure API key management.
  */
 
+import { exerciseIndex } from './exercise-index.js';
+
 export class ExerciseNormalizer {
     constructor() {
         this.exerciseCache = new Map(); // Cache per evitare chiamate API ripetute
@@ -106,6 +108,18 @@ export class ExerciseNormalizer {
         }
 
         // Use local normalization only
+        return this.normalizeBatch(exerciseNames);
+    }
+
+    /**
+     * Normalizza una lista di esercizi con matching locale, in una sola chiamata
+     * all'indice nativo quando disponibile (niente confronto n×m sul thread UI)
+     */
+    async normalizeBatch(exerciseNames) {
+        if (await exerciseIndex.syncCatalog(this.existingExercises)) {
+            const normalized = await exerciseIndex.normalize(exerciseNames);
+            if (normalized) return normalized;
+        }
         return exerciseNames.map(name => this.normalizeLocally(name));
     }
 
@@ -175,7 +189,7 @@ Rispondi SOLO con il JSON array, nient'altro.`;
             console.warn('Exercise normalization Cloud Function failed:', error);
         }
 
-        return exerciseNames.map(name => this.normalizeLocally(name));
+        return this.normalizeBatch(exerciseNames);
     }
 
     /**
@@ -2,6 +2,8 @@
  * Export Service - Gestisce l'esportazione e condivisione dei report AI
  */
 
+import { registerNativePlugin } from './native-plugins.js';
+
 class ExportService {
     constructor() {
         this.supportedFormats = ['markdown', 'text', 'html', 'rtf'];
@@ -72,10 +74,20 @@ class ExportService {
     }
 
     /**
-     * Download come file Word (.doc) in formato RTF
+     * Download come file Word: .docx nativo nell'app, altrimenti .doc in formato RTF
      */
     async downloadAsWord(content, filename, title = 'Report GymBro') {
         try {
+            // App nativa: il plugin ReportExport scrive il .docx in streaming su file
+            if (typeof window.Capacitor !== 'undefined' && window.Capacitor.isNativePlatform()) {
+                try {
+                    await this.exportReportNative(content, filename, 'docx', true);
+                    return { success: true, message: 'File pronto per il salvataggio!' };
+                } catch (nativeError) {
+                    console.warn('Native report export not available, falling back to web download:', nativeError);
+                }
+            }
+
             console.log('downloadAsWord chiamato - inizio generazione RTF');
             // Genera RTF dal contenuto HTML
             const rtfContent = this.htmlToRTF(content, title);
@@ -84,49 +96,6 @@ class ExportService {
             // Crea blob RTF
             const blob = new Blob([rtfContent], { type: 'application/rtf' });
             
-            // Check if running in Capacitor (native app)
-            const isCapacitor = typeof window.Capacitor !== 'undefined';
-            
-            if (isCapacitor && window.Capacitor.isNativePlatform()) {
-                // Use Capacitor Filesystem plugin for native download
-                try {
-                    const { Filesystem, Directory } = await import('@capacitor/filesystem');
-                    const { Share } = await import('@capacitor/share');
-                    
-                    // Convert blob to base64
-                    const reader = new FileReader();
-                    const base64Promise = new Promise((resolve, reject) => {
-                        reader.onloadend = () => {
-                            const base64 = reader.result.split(',')[1];
-                            resolve(base64);
-                        };
-                        reader.onerror = reject;
-                        reader.readAsDataURL(blob);
-                    });
-                    const base64Data = await base64Promise;
-                    
-                    // Save to cache directory
-                    const savedFile = await Filesystem.writeFile({
-                        path: `${filename}.doc`,
-                        data: base64Data,
-                        directory: Directory.Cache
-                    });
-                    
-                    // Share the file (this opens the native share dialog)
-                    await Share.share({
-                        title: title,
-                        text: 'Report GymBro',
-                        url: savedFile.uri,
-                        dialogTitle: 'Salva o condividi il report'
-                    });
-                    
-                    return { success: true, message: 'File pronto per il salvataggio!' };
-                } catch (capacitorError) {
-                    console.warn('Capacitor plugins not available, falling back to web download:', capacitorError);
-                    // Fall through to web download
-                }
-            }
-            
             // Web download fallback
             const url = URL.createObjectURL(blob);
             const a = document.createElement('a');
@@ -153,6 +122,128 @@ class ExportService {
         }
     }
 
+    /**
+     * Esporta il report con il plugin nativo ReportExport: il documento non
+     * viene costruito qui, il plugin riceve solo il modello a blocchi
+     * (reportModel) e lo scrive su file fuori dal thread principale.
+     * Ritorna { uri, path, bytes, mimeType }; con share apre la condivisione.
+     */
+    async exportReportNative(htmlContent, filename, format = 'docx', share = false) {
+        if (!this.reportPlugin) {
+            this.reportPlugin = registerNativePlugin('ReportExport');
+        }
+        return this.reportPlugin.exportReport({
+            format,
+            filename,
+            header: 'GYMBRO',
+            subtitle: 'Report generato il ' + this.reportDate(),
+            footer: 'Generato da GymBro - Il tuo assistente di allenamento intelligente',
+            blocks: this.reportModel(htmlContent),
+            share
+        });
+    }
+
+    /**
+     * Data del report come nell'intestazione RTF
+     */
+    reportDate() {
+        return new Date().toLocaleDateString('it-IT', {
+            day: 'numeric',
+            month: 'long',
+            year: 'numeric',
+            hour: '2-digit',
+            minute: '2-digit'
+        });
+    }
+
+    /**
+     * Modello a blocchi del report, con la stessa lettura dell'HTML di
+     * parseHtmlToRTF: { type: 'h1'..'h4' | 'p' | 'list' | 'quote' | 'table' | 'text' | 'br' }.
+     * Gli stili dei run sono bit: 1 grassetto, 2 corsivo, 4 codice.
+     */
+    reportModel(htmlContent) {
+        const temp = document.createElement('div');
+        temp.innerHTML = htmlContent;
+        const blocks = [];
+        this.collectReportBlocks(temp, blocks);
+        return blocks;
+    }
+
+    collectReportBlocks(node, blocks) {
+        for (const child of node.childNodes) {
+            if (child.nodeType === Node.TEXT_NODE) {
+                const text = child.textContent.trim();
+                if (text) {
+                    blocks.push({ type: 'text', text });
+                }
+            } else if (child.nodeType === Node.ELEMENT_NODE) {
+                const tagName = child.tagName.toLowerCase();
+                
+                switch (tagName) {
+                    case 'h1':
+                    case 'h2':
+                    case 'h3':
+                    case 'h4':
+                        blocks.push({ type: tagName, text: child.textContent });
+                        break;
+                    
+                    case 'p':
+                        blocks.push({ type: 'p', runs: this.inlineRuns(child) });
+                        break;
+                    
+                    case 'ul':
+                    case 'ol':
+                        blocks.push({
+                            type: 'list',
+                            items: Array.from(child.querySelectorAll('li'), li => li.textContent)
+                        });
+                        break;
+                    
+                    case 'blockquote':
+                        blocks.push({ type: 'quote', text: child.textContent });
+                        break;
+                    
+                    case 'table':
+                        blocks.push({
+                            type: 'table',
+                            rows: Array.from(child.querySelectorAll('tr'), row => ({
+                                header: row.querySelector('th') !== null,
+                                cells: Array.from(row.querySelectorAll('td, th'), cell => cell.textContent)
+                            }))
+                        });
+                        break;
+                    
+                    case 'br':
+                        blocks.push({ type: 'br' });
+                        break;
+                    
+                    default:
+                        this.collectReportBlocks(child, blocks);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run inline di un paragrafo come [testo, stile], come parseInlineToRTF
+     */
+    inlineRuns(element) {
+        const runs = [];
+        for (const child of element.childNodes) {
+            if (child.nodeType === Node.TEXT_NODE) {
+                runs.push([child.textContent, 0]);
+            } else if (child.nodeType === Node.ELEMENT_NODE) {
+                const tagName = child.tagName.toLowerCase();
+                const style = tagName === 'strong' || tagName === 'b' ? 1
+                    : tagName === 'em' || tagName === 'i' ? 2
+                    : tagName === 'code' ? 4 : 0;
+                runs.push([child.textContent, style]);
+            }
+        }
+        return runs;
+    }
+
     /**
      * Converte HTML in formato RTF
      */
@@ -171,13 +262,7 @@ class ExportService {
         
         // Title header
         rtf += '\\qc\\b\\fs48 GYMBRO\\b0\\fs22\\par\n';
-        rtf += '\\qc\\cf2\\fs20 Report generato il ' + new Date().toLocaleDateString('it-IT', {
-            day: 'numeric',
-            month: 'long',
-            year: 'numeric',
-            hour: '2-digit',
-            minute: '2-digit'
-        }) + '\\cf0\\fs22\\par\n';
+        rtf += '\\qc\\cf2\\fs20 Report generato il ' + this.reportDate() + '\\cf0\\fs22\\par\n';
         rtf += '\\pard\\sa200\\sl276\\slmult1\\par\n';
         
         // Parse HTML content
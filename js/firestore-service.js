@@ -1,6 +1,25 @@
-import { db, doc, setDoc, getDoc, updateDoc, deleteDoc, arrayUnion, serverTimestamp, collection, query, where, orderBy, limit, getDocs } from './firebase-config.js';
+import { db, doc, setDoc, getDoc, updateDoc, deleteDoc, arrayUnion, serverTimestamp, collection, query, where, orderBy, limit, getDocs, writeBatch, deleteField } from './firebase-config.js';
 import { auth } from './firebase-config.js';
 import { computeDomsInsights } from './doms-insights.js';
+import { cloudSync } from './cloud-sync.js';
+import { imagePipeline } from './image-pipeline.js';
+import { workoutStore } from './workout-store.js';
+
+// Synced collections: localStorage key -> field of the legacy user document.
+// From syncVersion 2 each entity is its own document in users/{uid}/sync_<field>.
+const SYNC_COLLECTIONS = {
+    workouts: 'ironflow_workouts',
+    logs: 'ironflow_logs',
+    bodyStats: 'ironflow_body_stats',
+    photos: 'ironflow_photos',
+    aiPlanHistory: 'ironflow_ai_plan_history'
+};
+// Fields of the user document itself (profile, array order), tracked like entities
+const ROOT_COLLECTION = 'root';
+const SYNC_VERSION = 2;
+// A Firestore batch takes 500 writes and 10 MB
+const BATCH_MAX_OPS = 400;
+const BATCH_MAX_BYTES = 4 * 1024 * 1024;
 
 export class FirestoreService {
     constructor() {
@@ -114,36 +133,175 @@ export class FirestoreService {
         });
     }
 
-    // Save all local data to Firestore
+    // Save all local data to Firestore.
+    // On the app only what changed since the last sync is written (native outbox);
+    // bytesUploaded is the JSON payload of the writes this sync committed.
     async syncToCloud() {
         try {
             const uid = this.getUid();
-            const localWorkouts = JSON.parse(localStorage.getItem('ironflow_workouts') || '[]');
-            const localLogs = JSON.parse(localStorage.getItem('ironflow_logs') || '[]');
-            const localProfile = JSON.parse(localStorage.getItem('ironflow_profile') || '{}');
-            const localBodyStats = JSON.parse(localStorage.getItem('ironflow_body_stats') || '[]');
-            // Sync Photos too (only metadata/Base64 if small enough, typically stored in separate collection or array)
-            const localPhotos = JSON.parse(localStorage.getItem('ironflow_photos') || '[]');
-            // Sync AI Plan History for persistence across devices
-            const localAiPlanHistory = JSON.parse(localStorage.getItem('ironflow_ai_plan_history') || '[]');
+            const userRef = doc(db, this.collectionName, uid);
+            const local = this.readLocalSyncData();
+            const entities = this.toSyncEntities(local);
+
+            const tracked = await cloudSync.track(uid, entities);
+            if (!tracked) {
+                return await this.syncAllToCloud(uid, userRef, local, entities);
+            }
+
+            let bytesUploaded = 0;
+            let ops = 0;
+            let batch;
+            while ((batch = await cloudSync.nextBatch(BATCH_MAX_OPS, BATCH_MAX_BYTES))) {
+                try {
+                    await this.commitSyncOps(uid, userRef, batch.ops);
+                } catch (error) {
+                    // Offline or rejected: the outbox keeps the changes for a later sync
+                    await cloudSync.fail(batch.batchId);
+                    throw error;
+                }
+                bytesUploaded += await cloudSync.ack(batch.batchId);
+                ops += batch.ops.length;
+            }
+
+            // nextBatch also stops on entries still backing off from a failed batch, or on a
+            // bridge error: until the outbox is empty the per-entity documents (and syncOrder)
+            // are incomplete, so the legacy arrays stay and the account stays on the old layout
+            const stats = await cloudSync.getStats();
+            if (!stats || stats.pending > 0 || stats.inFlight > 0) {
+                const pending = stats ? stats.pending + stats.inFlight : null;
+                console.warn(`Sync incomplete: ${ops} changes uploaded, ${pending ?? 'unknown'} still pending`);
+                return { success: false, pending, ops, bytesUploaded, message: "Sincronizzazione incompleta, riprova più tardi" };
+            }
+
+            // Everything is in the per-entity documents: drop the legacy arrays
+            await setDoc(userRef, this.syncVersionFields(), { merge: true });
+            console.log(`Data synced to Firestore successfully: ${ops} changes, ${bytesUploaded} bytes`);
+            return { success: true, ops, bytesUploaded };
+        } catch (error) {
+            console.error("Error syncing to Firestore:", error);
+            return { success: false, message: error.message };
+        }
+    }
 
+    // Web: no outbox, so every entity is written; a legacy document keeps the old layout
+    async syncAllToCloud(uid, userRef, local, entities) {
+        const snap = await getDoc(userRef);
+        if (!snap.exists() || (snap.data().syncVersion || 1) < SYNC_VERSION) {
             const data = {
-                workouts: localWorkouts,
-                logs: localLogs,
-                profile: localProfile,
-                bodyStats: localBodyStats,
-                photos: localPhotos, // Added photos sync
-                aiPlanHistory: localAiPlanHistory, // AI workout generation history
+                ...local,
                 lastUpdated: new Date().toISOString()
             };
-
-            await setDoc(doc(db, this.collectionName, uid), data, { merge: true });
+            await setDoc(userRef, data, { merge: true });
             console.log("Data synced to Firestore successfully");
             return { success: true };
-        } catch (error) {
-            console.error("Error syncing to Firestore:", error);
-            return { success: false, message: error.message };
         }
+
+        const ops = [];
+        for (const [name, items] of Object.entries(entities)) {
+            const ids = new Set(items.map(item => item.id));
+            items.forEach(item => ops.push({ collection: name, id: item.id, op: 'upsert', json: item.json }));
+            if (name === ROOT_COLLECTION) continue;
+            const existing = await getDocs(collection(db, this.collectionName, uid, 'sync_' + name));
+            existing.forEach(d => {
+                if (!ids.has(d.id)) ops.push({ collection: name, id: d.id, op: 'delete', json: null });
+            });
+        }
+        let bytesUploaded = 0;
+        for (let i = 0; i < ops.length; i += BATCH_MAX_OPS) {
+            const chunk = ops.slice(i, i + BATCH_MAX_OPS);
+            await this.commitSyncOps(uid, userRef, chunk);
+            chunk.forEach(op => { bytesUploaded += op.collection.length + 1 + op.id.length + (op.json ? op.json.length : 0); });
+        }
+        await setDoc(userRef, this.syncVersionFields(), { merge: true });
+        console.log(`Data synced to Firestore successfully: ${ops.length} writes`);
+        return { success: true, ops: ops.length, bytesUploaded };
+    }
+
+    // One Firestore batch: entities to their documents, root fields to the user document
+    async commitSyncOps(uid, userRef, ops) {
+        const batch = writeBatch(db);
+        ops.forEach(op => {
+            if (op.collection === ROOT_COLLECTION) {
+                const value = op.op === 'delete' ? deleteField() : JSON.parse(op.json);
+                batch.set(userRef, { [op.id]: value }, { mergeFields: [op.id] });
+            } else {
+                const ref = doc(db, this.collectionName, uid, 'sync_' + op.collection, op.id);
+                if (op.op === 'delete') {
+                    batch.delete(ref);
+                } else {
+                    batch.set(ref, JSON.parse(op.json));
+                }
+            }
+        });
+        await batch.commit();
+    }
+
+    syncVersionFields() {
+        const fields = { syncVersion: SYNC_VERSION, lastUpdated: new Date().toISOString() };
+        Object.keys(SYNC_COLLECTIONS).forEach(name => { fields[name] = deleteField(); });
+        return fields;
+    }
+
+    readLocalSyncData() {
+        const data = {
+            profile: JSON.parse(localStorage.getItem('ironflow_profile') || '{}')
+        };
+        for (const [name, key] of Object.entries(SYNC_COLLECTIONS)) {
+            data[name] = JSON.parse(localStorage.getItem(key) || '[]');
+        }
+        return data;
+    }
+
+    // Document id of an entity: its id (AI plans: createdAt), unique within the collection
+    syncEntityId(name, item, index, seen) {
+        const raw = name === 'aiPlanHistory' ? item.createdAt : item.id;
+        let id = String(raw ?? index).replace(/\//g, '_');
+        if (!id || id === '.' || id === '..') id = '_' + index;
+        while (seen.has(id)) id += '_';
+        seen.add(id);
+        return id;
+    }
+
+    // { collection: [{ id, json }] } of the local data, with the profile and the array order as root fields
+    toSyncEntities(local) {
+        const entities = {};
+        const order = {};
+        for (const name of Object.keys(SYNC_COLLECTIONS)) {
+            const seen = new Set();
+            entities[name] = (Array.isArray(local[name]) ? local[name] : []).map((item, index) => ({
+                id: this.syncEntityId(name, item || {}, index, seen),
+                json: JSON.stringify(item)
+            }));
+            order[name] = entities[name].map(item => item.id);
+        }
+        entities[ROOT_COLLECTION] = [
+            { id: 'profile', json: JSON.stringify(local.profile || {}) },
+            { id: 'syncOrder', json: JSON.stringify(order) }
+        ];
+        return entities;
+    }
+
+    // syncVersion 2 layout -> the legacy arrays on data, in their local order; returns the document ids per collection
+    async loadSyncCollections(uid, data) {
+        const order = data.syncOrder || {};
+        const cloudIds = {};
+        for (const name of Object.keys(SYNC_COLLECTIONS)) {
+            const snap = await getDocs(collection(db, this.collectionName, uid, 'sync_' + name));
+            const byId = new Map();
+            snap.forEach(d => byId.set(d.id, d.data()));
+            cloudIds[name] = new Set(byId.keys());
+            const items = [];
+            (order[name] || []).forEach(id => {
+                if (byId.has(id)) {
+                    items.push(byId.get(id));
+                    byId.delete(id);
+                }
+            });
+            // Written by a sync whose order update did not land: appended
+            byId.forEach(item => items.push(item));
+            data[name] = items;
+        }
+        return cloudIds;
     }
 
     async loadFromCloud() {
@@ -154,19 +312,38 @@ export class FirestoreService {
 
             if (docSnap.exists()) {
                 const data = docSnap.data();
+                const cloudIds = (data.syncVersion || 1) >= SYNC_VERSION ? await this.loadSyncCollections(uid, data) : null;
+                // Before the AI history merge: exactly what the server holds
+                const cloudEntities = cloudIds ? this.toSyncEntities(data) : null;
                 if (data.workouts) localStorage.setItem('ironflow_workouts', JSON.stringify(data.workouts));
                 if (data.logs) localStorage.setItem('ironflow_logs', JSON.stringify(data.logs));
                 if (data.profile) localStorage.setItem('ironflow_profile', JSON.stringify(data.profile));
                 if (data.bodyStats) localStorage.setItem('ironflow_body_stats', JSON.stringify(data.bodyStats));
                 if (data.photos) localStorage.setItem('ironflow_photos', JSON.stringify(data.photos)); // Load photos
+                if (data.logs || data.bodyStats) workoutStore.markLocalWrite();
 
                 // Merge AI Plan History: combine local and cloud, remove duplicates, sort by date
                 const cloudAiHistory = data.aiPlanHistory || [];
                 const localAiHistory = JSON.parse(localStorage.getItem('ironflow_ai_plan_history') || '[]');
                 const mergedAiHistory = this.mergeAiPlanHistory(localAiHistory, cloudAiHistory);
                 localStorage.setItem('ironflow_ai_plan_history', JSON.stringify(mergedAiHistory));
+
+                if (cloudEntities) {
+                    // What was just loaded is on the server already: the next sync skips it
+                    for (const name of Object.keys(SYNC_COLLECTIONS)) {
+                        await cloudSync.markSynced(uid, name, cloudEntities[name].filter(item => cloudIds[name].has(item.id)));
+                    }
+                    if (data.profile) {
+                        await cloudSync.markSynced(uid, ROOT_COLLECTION, cloudEntities[ROOT_COLLECTION].filter(item => item.id === 'profile'));
+                    }
+                }
                 data.aiPlanHistory = mergedAiHistory; // Update data object for return
 
+                // The diary was replaced wholesale: so is the native store's copy
+                if (data.logs || data.bodyStats || data.workouts) {
+                    await workoutStore.migrate(true);
+                }
+
                 return { success: true, data };
             } else {
                 return { success: true, data: null, isNew: true };
@@ -177,6 +354,11 @@ export class FirestoreService {
         }
     }
 
+    // Outbox counters of the app: { pending, inFlight, lastSyncBytes, lastSyncOps, totalBytes, totalOps }, or null on web
+    async getSyncStats() {
+        return cloudSync.getStats();
+    }
+
     // Merge AI Plan History from local and cloud
     // Combines both arrays, removes duplicates based on createdAt timestamp, sorts by date (newest first)
     mergeAiPlanHistory(localHistory, cloudHistory) {
@@ -238,12 +420,15 @@ export class FirestoreService {
             const apiKey = await this.getImgBBKey();
             if (!apiKey) throw new Error("ImgBB API Key not found");
 
-            // Remove header if present (data:image/jpeg;base64,)
-            const base64Data = base64Image.split(',')[1] || base64Image;
-
             const formData = new FormData();
             formData.append('key', apiKey);
-            formData.append('image', base64Data);
+            if (base64Image instanceof Blob) {
+                // Binary upload, a third smaller than base64
+                formData.append('image', base64Image, 'photo.jpg');
+            } else {
+                // Remove header if present (data:image/jpeg;base64,)
+                formData.append('image', base64Image.split(',')[1] || base64Image);
+            }
 
             const response = await fetch('https://api.imgbb.com/1/upload', {
                 method: 'POST',
@@ -266,6 +451,18 @@ export class FirestoreService {
     // Upload Photo (Generic) - Returns URL (ImgBB) or Base64 (Fallback)
     async processPhotoForUpload(file, maxWidth = 600) {
         try {
+            // App: decoded subsampled and encoded natively, never held as base64 unless ImgBB fails
+            const nativeImage = await imagePipeline.downsample(file, maxWidth, 0.6);
+            if (nativeImage) {
+                const blob = await imagePipeline.readBlob(nativeImage);
+                const imgbbResult = await this.uploadToImgBB(blob);
+                if (imgbbResult.success) {
+                    return { success: true, base64: imgbbResult.url, isUrl: true };
+                }
+                console.warn("ImgBB upload failed or not configured, using Base64 fallback.");
+                return { success: true, base64: await this.fileToBase64(blob) };
+            }
+
             let base64 = await this.fileToBase64(file);
             base64 = await this.resizeImage(base64, maxWidth, 0.6);
 
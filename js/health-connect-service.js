@@ -5,6 +5,7 @@
 
 import { healthTOONEncoder } from './health-toon-encoder.js';
 import { firestoreService } from './firestore-service.js';
+import { healthSeriesStore } from './health-series-store.js';
 
 class HealthConnectService {
     constructor() {
@@ -30,6 +31,9 @@ class HealthConnectService {
         // Base URL Google Fit API
         this.apiBase = 'https://www.googleapis.com/fitness/v1/users/me';
 
+        // Le sync incrementali riscaricano l'ultima ora, per gli intervalli ancora aperti
+        this.syncOverlapMs = 60 * 60 * 1000;
+
         // Avvia auto-refresh proattivo del token
         this.startAutoRefresh();
     }
@@ -176,6 +180,7 @@ class HealthConnectService {
 
                 // Prima sincronizzazione
                 await this.syncAllData();
+                await this.scheduleNativeSync();
 
                 return true;
             } else {
@@ -205,6 +210,8 @@ class HealthConnectService {
             if (result.data.success) {
                 this.accessToken = result.data.accessToken;
                 this.tokenExpiry = result.data.expiryDate;
+                // Anche la sync in background usa il nuovo token
+                healthSeriesStore.updateSyncToken(this.accessToken, this.tokenExpiry);
 
                 const minutesUntilExpiry = Math.round((this.tokenExpiry - Date.now()) / (60 * 1000));
                 console.log(`✅ Token refreshed successfully! New expiry in ${minutesUntilExpiry} minutes (${new Date(this.tokenExpiry).toLocaleString()})`);
@@ -338,13 +345,20 @@ class HealthConnectService {
     }
 
     /**
-     * Avvia la sincronizzazione periodica (Background Sync simulato)
+     * Avvia la sincronizzazione periodica. Su app nativa la esegue WorkManager
+     * (HealthSyncWorker) anche a WebView chiusa, con rete e batteria disponibili;
+     * sul web resta il setInterval, attivo solo a pagina aperta.
      */
-    startPeriodicSync(intervalMinutes = 240) { // Default 4 ore
+    async startPeriodicSync(intervalMinutes = 240) { // Default 4 ore
         console.log(`Starting periodic health sync every ${intervalMinutes} minutes`);
 
         if (this.syncInterval) {
             clearInterval(this.syncInterval);
+            this.syncInterval = null;
+        }
+
+        if (await this.scheduleNativeSync(intervalMinutes)) {
+            return;
         }
 
         this.syncInterval = setInterval(async () => {
@@ -363,6 +377,42 @@ class HealthConnectService {
             clearInterval(this.syncInterval);
             this.syncInterval = null;
         }
+        healthSeriesStore.cancelPeriodicSync();
+    }
+
+    /**
+     * Pianifica la sync nativa delle serie salvate nello store (le stesse di
+     * fetchDailySums): scarica per ogni tipo solo i dati successivi all'ultima
+     * sync. False se lo store nativo non c'è o manca il token.
+     */
+    async scheduleNativeSync(intervalMinutes = 240) {
+        await healthSeriesStore.ready;
+        if (!healthSeriesStore.isAvailable() || !this.accessToken) {
+            return false;
+        }
+
+        if (!this.nativeSyncListening) {
+            this.nativeSyncListening = true;
+            healthSeriesStore.onSynced(result => {
+                console.log(`Background health sync: ${result.added} new points`, result.types);
+                window.dispatchEvent(new CustomEvent('healthDataSynced', { detail: result }));
+            });
+        }
+
+        const types = [
+            { type: 'steps', field: 'intVal' },
+            { type: 'calories', field: 'fpVal' },
+            { type: 'distance', field: 'fpVal' }
+        ].map(entry => ({ ...entry, dataSourceId: this.getDataSourceId(entry.type) }));
+
+        return healthSeriesStore.schedulePeriodicSync({
+            intervalMinutes,
+            accessToken: this.accessToken,
+            tokenExpiry: this.tokenExpiry,
+            types,
+            windowDays: 7,
+            apiBase: this.apiBase
+        });
     }
 
     /**
@@ -544,50 +594,97 @@ class HealthConnectService {
     }
 
     /**
-     * Fetch passi con MEDIA GIORNALIERA - CORRETTO
-     * Raggruppa i passi per giorno e calcola la media sui giorni con dati
+     * Totali giornalieri { 'yyyy-MM-dd': somma } di un dato cumulativo (passi, calorie...),
+     * o null se non ci sono dati nel periodo.
+     * Su app nativa i punti vanno nella serie locale (HealthStore): si scarica solo
+     * la parte non ancora sincronizzata e i totali arrivano dai rollup giornalieri.
      */
-    async fetchStepsWithDailyAverage(startTime, endTime) {
-        const data = await this.fetchGoogleFitData('steps', startTime, endTime);
+    async fetchDailySums(dataType, startTime, endTime, readValue) {
+        const startMs = Math.floor(parseInt(startTime) / 1000000);
+        const endMs = Math.floor(parseInt(endTime) / 1000000);
+
+        await healthSeriesStore.ready;
+        if (healthSeriesStore.isAvailable()) {
+            const info = await healthSeriesStore.getSeriesInfo(dataType);
+            let fetchFrom = startMs;
+            if (info?.coveredFrom != null && info.coveredFrom <= startMs && info.coveredTo >= startMs) {
+                fetchFrom = Math.max(startMs, Math.min(endMs, info.coveredTo - this.syncOverlapMs));
+            }
 
-        if (!data.point || data.point.length === 0) {
-            console.log('No steps data available');
-            return { dailyAverage: 0, total: 0, daysWithData: 0, byDay: {} };
+            const data = await this.fetchGoogleFitData(dataType, fetchFrom * 1000000, endTime);
+            const stored = await healthSeriesStore.appendGoogleFitPoints(dataType, data.point, readValue, fetchFrom, endMs);
+            const buckets = stored && await healthSeriesStore.queryRollups(dataType, 'day', startMs, endMs);
+            if (buckets) {
+                console.log(`${dataType}: ${stored.added} new points since ${new Date(fetchFrom).toLocaleString()}`);
+                if (buckets.length === 0) return null;
+                const sums = {};
+                buckets.forEach(bucket => { sums[bucket.key] = bucket.sum; });
+                return sums;
+            }
+            // Store non disponibile: i punti scaricati bastano solo se coprono tutto il periodo
+            if (fetchFrom === startMs) {
+                return this.groupDailySums(data.point, readValue);
+            }
         }
 
-        // Raggruppa i passi per giorno
-        const stepsByDay = {};
+        const data = await this.fetchGoogleFitData(dataType, startTime, endTime);
+        return this.groupDailySums(data.point, readValue);
+    }
 
-        data.point.forEach(point => {
-            const steps = point.value?.[0]?.intVal || 0;
+    /**
+     * Raggruppa i punti Google Fit per giorno (data di fine intervallo).
+     * Un intervallo riportato più volte conta una sola volta, con il valore più alto.
+     */
+    groupDailySums(points, readValue) {
+        if (!points || points.length === 0) {
+            return null;
+        }
+
+        const byDay = {};
+
+        points.forEach(point => {
+            const value = readValue(point);
             const startNanos = point.startTimeNanos;
             const endNanos = point.endTimeNanos;
 
-            // Usa la data di fine dell'intervallo per attribuire i passi al giorno corretto
+            // Usa la data di fine dell'intervallo per attribuire il valore al giorno corretto
             const dayKey = new Date(parseInt(endNanos) / 1000000).toISOString().split('T')[0];
 
-            if (!stepsByDay[dayKey]) {
-                stepsByDay[dayKey] = new Map(); // Map per evitare duplicati per intervallo
+            if (!byDay[dayKey]) {
+                byDay[dayKey] = new Map(); // Map per evitare duplicati per intervallo
             }
 
             // Chiave unica per questo intervallo
             const intervalKey = `${startNanos}-${endNanos}`;
+            const existing = byDay[dayKey].get(intervalKey);
+            byDay[dayKey].set(intervalKey, existing !== undefined ? Math.max(existing, value) : value);
+        });
 
-            // Se abbiamo già dati per questo intervallo, prendi il valore più alto
-            if (stepsByDay[dayKey].has(intervalKey)) {
-                const existing = stepsByDay[dayKey].get(intervalKey);
-                stepsByDay[dayKey].set(intervalKey, Math.max(existing, steps));
-            } else {
-                stepsByDay[dayKey].set(intervalKey, steps);
-            }
+        const sums = {};
+        Object.entries(byDay).forEach(([day, intervalsMap]) => {
+            sums[day] = Array.from(intervalsMap.values()).reduce((sum, v) => sum + v, 0);
         });
+        return sums;
+    }
+
+    /**
+     * Fetch passi con MEDIA GIORNALIERA - CORRETTO
+     * Raggruppa i passi per giorno e calcola la media sui giorni con dati
+     */
+    async fetchStepsWithDailyAverage(startTime, endTime) {
+        const stepsByDay = await this.fetchDailySums('steps', startTime, endTime,
+            point => point.value?.[0]?.intVal || 0);
+
+        if (!stepsByDay) {
+            console.log('No steps data available');
+            return { dailyAverage: 0, total: 0, daysWithData: 0, byDay: {} };
+        }
 
         // Calcola totale per ogni giorno
         const dailyTotals = {};
         let totalSteps = 0;
 
-        Object.entries(stepsByDay).forEach(([day, intervalsMap]) => {
-            const dayTotal = Array.from(intervalsMap.values()).reduce((sum, s) => sum + s, 0);
+        Object.entries(stepsByDay).forEach(([day, dayTotal]) => {
             dailyTotals[day] = dayTotal;
             totalSteps += dayTotal;
         });
@@ -691,43 +788,19 @@ class HealthConnectService {
      * Raggruppa le calorie per giorno e calcola la media sui giorni con dati
      */
     async fetchCaloriesWithDailyAverage(startTime, endTime) {
-        const data = await this.fetchGoogleFitData('calories', startTime, endTime);
+        const caloriesByDay = await this.fetchDailySums('calories', startTime, endTime,
+            point => point.value?.[0]?.fpVal || 0);
 
-        if (!data.point || data.point.length === 0) {
+        if (!caloriesByDay) {
             console.log('No calories data available');
             return { dailyAverage: 0, total: 0, daysWithData: 0, byDay: {} };
         }
 
-        // Raggruppa le calorie per giorno
-        const caloriesByDay = {};
-
-        data.point.forEach(point => {
-            const calories = point.value?.[0]?.fpVal || 0;
-            const startNanos = point.startTimeNanos;
-            const endNanos = point.endTimeNanos;
-
-            const dayKey = new Date(parseInt(endNanos) / 1000000).toISOString().split('T')[0];
-
-            if (!caloriesByDay[dayKey]) {
-                caloriesByDay[dayKey] = new Map();
-            }
-
-            const intervalKey = `${startNanos}-${endNanos}`;
-
-            if (caloriesByDay[dayKey].has(intervalKey)) {
-                const existing = caloriesByDay[dayKey].get(intervalKey);
-                caloriesByDay[dayKey].set(intervalKey, Math.max(existing, calories));
-            } else {
-                caloriesByDay[dayKey].set(intervalKey, calories);
-            }
-        });
-
         // Calcola totale per ogni giorno
         const dailyTotals = {};
         let totalCalories = 0;
 
-        Object.entries(caloriesByDay).forEach(([day, intervalsMap]) => {
-            const dayTotal = Array.from(intervalsMap.values()).reduce((sum, c) => sum + c, 0);
+        Object.entries(caloriesByDay).forEach(([day, dayTotal]) => {
             dailyTotals[day] = Math.round(dayTotal);
             totalCalories += dayTotal;
         });
@@ -763,43 +836,19 @@ class HealthConnectService {
      * Raggruppa la distanza per giorno e calcola la media sui giorni con dati
      */
     async fetchDistanceWithDailyAverage(startTime, endTime) {
-        const data = await this.fetchGoogleFitData('distance', startTime, endTime);
+        const distanceByDay = await this.fetchDailySums('distance', startTime, endTime,
+            point => point.value?.[0]?.fpVal || 0);
 
-        if (!data.point || data.point.length === 0) {
+        if (!distanceByDay) {
             console.log('No distance data available');
             return { dailyAverage: 0, total: 0, daysWithData: 0, byDay: {} };
         }
 
-        // Raggruppa la distanza per giorno
-        const distanceByDay = {};
-
-        data.point.forEach(point => {
-            const distance = point.value?.[0]?.fpVal || 0;
-            const startNanos = point.startTimeNanos;
-            const endNanos = point.endTimeNanos;
-
-            const dayKey = new Date(parseInt(endNanos) / 1000000).toISOString().split('T')[0];
-
-            if (!distanceByDay[dayKey]) {
-                distanceByDay[dayKey] = new Map();
-            }
-
-            const intervalKey = `${startNanos}-${endNanos}`;
-
-            if (distanceByDay[dayKey].has(intervalKey)) {
-                const existing = distanceByDay[dayKey].get(intervalKey);
-                distanceByDay[dayKey].set(intervalKey, Math.max(existing, distance));
-            } else {
-                distanceByDay[dayKey].set(intervalKey, distance);
-            }
-        });
-
         // Calcola totale per ogni giorno
         const dailyTotals = {};
         let totalDistance = 0;
 
-        Object.entries(distanceByDay).forEach(([day, intervalsMap]) => {
-            const dayTotal = Array.from(intervalsMap.values()).reduce((sum, d) => sum + d, 0);
+        Object.entries(distanceByDay).forEach(([day, dayTotal]) => {
             dailyTotals[day] = Math.round(dayTotal * 100) / 100; // metri con 2 decimali
             totalDistance += dayTotal;
         });
@@ -946,7 +995,8 @@ class HealthConnectService {
             return { dailyAverage: 0, total: 0, daysWithData: 0, byDay: {} };
         }
 
-        // Raggruppa per giorno
+        // Raggruppa per giorno sommando ogni punto: a differenza di passi e calorie gli
+        // intervalli ripetuti non vengono deduplicati (né nella serie nativa, che li unirebbe)
         const minutesByDay = {};
 
         data.point.forEach(point => {
@@ -1088,6 +1138,7 @@ class HealthConnectService {
         this.refreshToken = null;
         this.tokenExpiry = null;
         this.isConnected = false;
+        this.stopPeriodicSync();
 
         // Rimuovi da Firestore
         await firestoreService.removeHealthToken();
@@ -1157,6 +1208,11 @@ class HealthConnectService {
                 console.log('No saved token found');
                 this.isConnected = false;
             }
+
+            // App nativa: la sync periodica riparte con il token appena caricato
+            if (this.isConnected) {
+                await this.scheduleNativeSync();
+            }
         } catch (error) {
             console.error('Error loading saved token:', error);
             this.isConnected = false;
@@ -1186,18 +1242,49 @@ class HealthConnectService {
         };
     }
 
+    /**
+     * Serie cumulative salvate nello store nativo, in TOON compatto (una riga per metrica).
+     * La codifica avviene nel plugin, senza passare i punti al JS. Null se non disponibili.
+     */
+    async getStoredSeriesTOON(days) {
+        await healthSeriesStore.ready;
+        if (!healthSeriesStore.isAvailable()) return null;
+
+        const to = Date.now();
+        const from = to - days * 24 * 60 * 60 * 1000;
+        const granularity = days > 90 ? 'week' : 'day';
+        const metrics = [
+            { type: 'steps', typeCode: healthTOONEncoder.types.STEPS, unit: 'steps' },
+            { type: 'calories', typeCode: healthTOONEncoder.types.CALORIES, unit: 'kcal' },
+            { type: 'distance', typeCode: healthTOONEncoder.types.DISTANCE, unit: 'm' }
+        ];
+
+        const lines = await Promise.all(metrics.map(metric => healthSeriesStore.encodeSeries({
+            ...metric, granularity, aggregate: 'sum', from, to, compact: true
+        })));
+        const text = lines.filter(Boolean).join('\n');
+        return text || null;
+    }
+
     /**
      * Get dati health per AI context
      */
     async getHealthDataForAI(days = 7) {
         try {
-            const healthData = await firestoreService.getHealthData(days);
-            if (!healthData || healthData.length === 0) {
+            const [healthData, series] = await Promise.all([
+                firestoreService.getHealthData(days),
+                this.getStoredSeriesTOON(days)
+            ]);
+            if ((!healthData || healthData.length === 0) && !series) {
                 return null;
             }
 
             // Crea summary TOON per AI
-            const summary = healthTOONEncoder.createAISummary(healthData, days);
+            const summary = healthData?.length ? healthTOONEncoder.createAISummary(healthData, days) : {};
+            if (series) {
+                // Storico completo giorno per giorno (settimana per settimana oltre i 90 giorni)
+                summary.series = series;
+            }
 
             return summary;
         } catch (error) {
@@ -0,0 +1,195 @@
+// Health Series Store - Bridge to the native per-metric time series
+// Syncs append only the points not stored yet; averages come from day/week/month rollups
+
+import { registerNativePlugin } from './native-plugins.js';
+
+class HealthSeriesStore {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('HealthStore');
+            console.log('✅ Health Series Store initialized');
+        } catch (e) {
+            console.log('Health Series Store not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // Google Fit dataset points -> stored series; readValue(point) gives the number to keep.
+    // from/to (ms) is the fetched window. Resolves { added, count }, or null off native
+    async appendGoogleFitPoints(type, points, readValue, from, to) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        const timestamps = [];
+        const values = [];
+        for (const point of points || []) {
+            const nanos = point.endTimeNanos || point.startTimeNanos;
+            const value = readValue(point);
+            if (!nanos || typeof value !== 'number' || Number.isNaN(value)) continue;
+            timestamps.push(Math.floor(parseInt(nanos) / 1000000));
+            values.push(value);
+        }
+
+        try {
+            return await this.plugin.appendPoints({ type, timestamps, values, from, to });
+        } catch (e) {
+            console.error(`Failed to store ${type} points:`, e);
+            return null;
+        }
+    }
+
+    // granularity: 'day' | 'week' | 'month' -> [{ key, count, sum, mean, min, max, last, lastTs }], or null
+    async queryRollups(type, granularity, from, to) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { buckets } = await this.plugin.queryRollups({ type, granularity, from, to });
+            return buckets;
+        } catch (e) {
+            console.error(`Failed to query ${type} rollups:`, e);
+            return null;
+        }
+    }
+
+    // -> { timestamps, values } oldest first, or null
+    async queryPoints(type, from, to, limit) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.queryPoints({ type, from, to, limit });
+        } catch (e) {
+            console.error(`Failed to query ${type} points:`, e);
+            return null;
+        }
+    }
+
+    // -> { count, firstTs, lastTs, coveredFrom, coveredTo, bytesPerPoint }, or null
+    async getSeriesInfo(type) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.getSeriesInfo({ type });
+        } catch (e) {
+            console.error(`Failed to read ${type} series info:`, e);
+            return null;
+        }
+    }
+
+    // TOON text of a series: { typeCode, unit, timestamps, values, compact } or, to encode
+    // the stored rollups, { typeCode, unit, type, granularity, aggregate, from, to, compact }
+    async encodeSeries(params) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { text } = await this.plugin.encodeSeries(params);
+            return text;
+        } catch (e) {
+            console.error('Failed to encode TOON series:', e);
+            return null;
+        }
+    }
+
+    // -> { typeCodes, values, timestamps, units, records } columns, or null
+    async decodeSeries(text) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.decodeSeries({ text });
+        } catch (e) {
+            console.error('Failed to decode TOON series:', e);
+            return null;
+        }
+    }
+
+    // Background sync (HealthSyncWorker): { intervalMinutes, accessToken, tokenExpiry,
+    // types: [{ type, dataSourceId, field }], windowDays, apiBase? }. Resolves true once scheduled
+    async schedulePeriodicSync(options) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return false;
+
+        try {
+            await this.plugin.schedulePeriodicSync(options);
+            return true;
+        } catch (e) {
+            console.error('Failed to schedule health sync:', e);
+            return false;
+        }
+    }
+
+    // The token the next background sync uses
+    async updateSyncToken(accessToken, tokenExpiry) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.updateSyncToken({ accessToken, tokenExpiry });
+        } catch (e) {
+            console.error('Failed to update health sync token:', e);
+        }
+    }
+
+    async cancelPeriodicSync() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.cancelPeriodicSync();
+        } catch (e) {
+            console.error('Failed to cancel health sync:', e);
+        }
+    }
+
+    // -> { lastRunAt, lastSyncAt, lastAdded, lastError }, or null
+    async getSyncStatus() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.getSyncStatus();
+        } catch (e) {
+            console.error('Failed to read health sync status:', e);
+            return null;
+        }
+    }
+
+    // callback({ added, types, syncedAt }) after a background sync that stored new points
+    async onSynced(callback) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.addListener('healthDataSynced', callback);
+        } catch (e) {
+            console.error('Failed to listen for health syncs:', e);
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const healthSeriesStore = new HealthSeriesStore();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.HealthSeriesStore = healthSeriesStore;
+}
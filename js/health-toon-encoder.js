@@ -3,6 +3,8 @@
  * Gestisce la codifica/decodifica dei dati health in formato TOON compatto
  */
 
+import { healthSeriesStore } from './health-series-store.js';
+
 class HealthTOONEncoder {
     constructor() {
         // Mapping tipi dati health
@@ -108,6 +110,106 @@ class HealthTOONEncoder {
         return decoded;
     }
 
+    /**
+     * Encode di una serie completa: un record per punto, separati da newline
+     * (ogni riga è identica a encode()). Con compact una sola riga
+     * "@tipo|unità|yyyyMMdd|v0;d1:v1;..." dove dN sono i giorni dal record precedente.
+     * @param {string} type - Tipo dato (es. 'STEPS')
+     * @param {Array} points - Array di { timestamp, value }
+     * @param {string} unit - Unità di misura
+     * @param {object} options - { compact }
+     * @returns {string} Testo TOON
+     */
+    encodeSeries(type, points, unit, { compact = false } = {}) {
+        if (!compact) {
+            return points.map(p => this.encode(type, p.value, p.timestamp ?? Date.now(), unit)).join('\n');
+        }
+        if (points.length === 0) return '';
+
+        const typeCode = this.types[type] || type;
+        const days = points
+            .map(p => ({ day: this.dayNumber(this.formatTimestamp(p.timestamp ?? Date.now())), value: p.value }))
+            .sort((a, b) => a.day - b.day);
+        let text = `@${typeCode}|${unit}|${this.formatTimestamp(days[0].day * 86400000)}|${days[0].value}`;
+        for (let i = 1; i < days.length; i++) {
+            text += `;${days[i].day - days[i - 1].day}:${days[i].value}`;
+        }
+        return text;
+    }
+
+    /**
+     * Decode di un payload TOON multi-record: righe semplici e serie compatte
+     * @param {string} text - Testo TOON
+     * @returns {Array} Array di oggetti decodificati (come decode())
+     */
+    decodeSeries(text) {
+        const decoded = [];
+        for (const rawLine of text.split('\n')) {
+            const line = rawLine.endsWith('\r') ? rawLine.slice(0, -1) : rawLine;
+            if (!line) continue;
+
+            if (!line.startsWith('@')) {
+                if (line.split('|').length >= 4) decoded.push(this.decode(line));
+                continue;
+            }
+
+            const [typeCode, unit, first, entries] = line.substring(1).split('|');
+            if (entries === undefined || !/^\d{8}$/.test(first)) continue;
+            let day = this.dayNumber(first);
+            entries.split(';').forEach((entry, i) => {
+                let value = entry;
+                if (i > 0) {
+                    const [delta, rest] = entry.split(':');
+                    day += parseInt(delta);
+                    value = rest;
+                }
+                decoded.push(this.decode(`${typeCode}|${value}|${this.formatTimestamp(day * 86400000)}|${unit}`));
+            });
+        }
+        return decoded;
+    }
+
+    /**
+     * Come encodeSeries, ma su app nativa la codifica avviene nel plugin HealthStore
+     * (stesso output byte per byte)
+     */
+    async encodeSeriesAsync(type, points, unit, options = {}) {
+        const text = await healthSeriesStore.encodeSeries({
+            typeCode: this.types[type] || type,
+            unit,
+            timestamps: points.map(p => new Date(p.timestamp ?? Date.now()).getTime()),
+            values: points.map(p => p.value),
+            compact: !!options.compact
+        });
+        return text ?? this.encodeSeries(type, points, unit, options);
+    }
+
+    /**
+     * Come decodeSeries, ma su app nativa il parsing avviene nel plugin HealthStore
+     */
+    async decodeSeriesAsync(text) {
+        const columns = await healthSeriesStore.decodeSeries(text);
+        if (!columns) return this.decodeSeries(text);
+
+        return columns.typeCodes.map((typeCode, i) => ({
+            type: this.reverseTypes[typeCode] || typeCode,
+            typeCode,
+            value: columns.values[i] ?? NaN,
+            timestamp: this.parseTimestamp(columns.timestamps[i]),
+            unit: columns.units[i]
+        }));
+    }
+
+    /**
+     * Giorni dal 1970-01-01 di un timestamp TOON yyyyMMdd
+     */
+    dayNumber(toonTimestamp) {
+        const year = parseInt(toonTimestamp.substring(0, 4));
+        const month = parseInt(toonTimestamp.substring(4, 6));
+        const day = parseInt(toonTimestamp.substring(6, 8));
+        return Math.floor(Date.UTC(year, month - 1, day) / 86400000);
+    }
+
     /**
      * Encode dati aggregati (medie, totali)
      * @param {string} type - Tipo dato
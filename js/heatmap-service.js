@@ -1,4 +1,5 @@
 import { EXERCISE_DB, MUSCLE_GROUPS } from './exercise-db.js';
+import { nativeAnalytics } from './native-analytics.js';
 import { MUSCLE_PATHS, BODY_SILHOUETTE, DETAIL_LINES, BODY_VIEWBOX } from './muscle-model.js';
 
 const DEFAULT_VIEWBOX = BODY_VIEWBOX || "0 0 360 720";
@@ -58,6 +59,22 @@ export class HeatmapService {
         return this.muscleFatigue;
     }
 
+    /**
+     * Same as calculateFatigue, read from the native per-day muscle index when
+     * available (no scan of the logs); falls back to calculateFatigue.
+     * @param {Array} logs - The user's workout logs: the native index must cover as many, else the fallback uses them
+     * @param {number} days - Lookback period (default 7)
+     */
+    async calculateFatigueAsync(logs, days = 7) {
+        const fatigue = await nativeAnalytics.getMuscleFatigue(days, (logs || []).length);
+        if (!fatigue) return this.calculateFatigue(logs, days);
+
+        this.muscleFatigue = {};
+        Object.keys(MUSCLE_GROUPS).forEach(key => this.muscleFatigue[key] = 0);
+        Object.assign(this.muscleFatigue, fatigue);
+        return this.muscleFatigue;
+    }
+
     /**
      * Generates the SVG HTML for the heatmap
      */
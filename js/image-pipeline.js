@@ -0,0 +1,93 @@
+// Image Pipeline - Bridge to the native photo downsampler and thumbnail cache
+// Photos are decoded subsampled and encoded off the UI thread; results are files, not base64
+
+import { registerNativePlugin } from './native-plugins.js';
+
+class ImagePipeline {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('ImagePipeline');
+            console.log('✅ Image Pipeline initialized');
+        } catch (e) {
+            console.log('Image Pipeline not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // File path -> URL the WebView can load
+    toWebPath(path) {
+        return window.Capacitor.convertFileSrc(path);
+    }
+
+    // A File picked in the WebView -> { path, webPath, width, height, bytes, cached }, or null (use the canvas)
+    async downsample(file, maxWidth = 600, quality = 0.6) {
+        await this.ready;
+        if (!this.isNative || !this.plugin || !file || !file.name) return null;
+
+        try {
+            const result = await this.plugin.downsample({ name: file.name, size: file.size, maxWidth, quality });
+            return { ...result, webPath: this.toWebPath(result.path) };
+        } catch (e) {
+            console.warn('Native downsampling not available for this file:', e.message || e);
+            return null;
+        }
+    }
+
+    // The encoded JPEG as a Blob, for a binary upload
+    async readBlob(image) {
+        const response = await fetch(image.webPath);
+        if (!response.ok) throw new Error(`Cannot read ${image.path}`);
+        return response.blob();
+    }
+
+    // Cached thumbnail of a gallery photo URL -> loadable URL, or null (use the original)
+    async thumbnail(url, maxWidth = 480) {
+        await this.ready;
+        if (!this.isNative || !this.plugin || !/^https?:\/\//.test(url || '')) return null;
+
+        try {
+            const { path } = await this.plugin.thumbnail({ url, maxWidth, quality: 0.7 });
+            return this.toWebPath(path);
+        } catch (e) {
+            console.error('Failed to get thumbnail:', e);
+            return null;
+        }
+    }
+
+    async clearCache() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return 0;
+
+        try {
+            const { bytes } = await this.plugin.clearCache();
+            return bytes;
+        } catch (e) {
+            console.error('Failed to clear image cache:', e);
+            return 0;
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const imagePipeline = new ImagePipeline();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.ImagePipeline = imagePipeline;
+}
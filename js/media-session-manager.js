@@ -2,6 +2,12 @@
 // Provides lockscreen timer display and controls for Focus Mode
 // UPDATED: Enhanced for better lockscreen support on Android and iOS
 // UPDATED: Added native Android foreground service support
+// UPDATED: On the app the workout is loaded as a native timer program; rests follow its steps
+
+import { NativeTimerPlugin, nativeTimerPlugin } from './native-timer-plugin.js';
+
+// Id of the rest countdown in TimerService (single timers and program rests alike)
+const REST_TIMER_ID = 'rest';
 
 export class MediaSessionManager {
     constructor() {
@@ -18,6 +24,12 @@ export class MediaSessionManager {
         this.gainNode = null;
         this.isPlaying = false;
         this.nativePlugin = null;
+        // Native program loaded by startWorkout, and its phase ('set' | 'rest' | 'done')
+        this.programActive = false;
+        this.programPhase = null;
+        // Native rest on screen: its tick callback, fed by the coalesced tick stream
+        this.nativeRestActive = false;
+        this.onTimerTick = null;
         this.isNative = this.checkIfNative();
     }
     
@@ -28,39 +40,63 @@ export class MediaSessionManager {
                window.Capacitor.isNativePlatform();
     }
     
-    // Initialize native plugin
+    // Initialize native plugin (shared NativeTimerPlugin bridge)
     async initNativePlugin() {
         if (!this.isNative) return;
         
-        try {
-            // Use global Capacitor object instead of dynamic import
-            if (window.Capacitor && window.Capacitor.Plugins && window.Capacitor.Plugins.TimerNotification) {
-                this.nativePlugin = window.Capacitor.Plugins.TimerNotification;
-                console.log('✅ Native Timer Plugin found via Capacitor.Plugins');
-            } else if (window.Capacitor && window.Capacitor.registerPlugin) {
-                this.nativePlugin = window.Capacitor.registerPlugin('TimerNotification');
-                console.log('✅ Native Timer Plugin registered via Capacitor.registerPlugin');
-            } else {
-                throw new Error('Capacitor not available');
-            }
-            
-            // Set up event listeners
-            if (this.nativePlugin.addListener) {
-                this.nativePlugin.addListener('timerTick', (data) => {
-                    this.timerValue = data.remaining;
-                });
-                
-                this.nativePlugin.addListener('timerComplete', () => {
-                    this.onTimerComplete?.();
-                });
-            }
-            
-            console.log('✅ Native Timer Plugin initialized for lockscreen');
-        } catch (e) {
-            console.log('Native Timer Plugin not available:', e.message);
+        await nativeTimerPlugin.ready;
+        if (!nativeTimerPlugin.isAvailable()) {
+            console.log('Native Timer Plugin not available');
             this.isNative = false;
-            this.nativePlugin = null;
+            return;
         }
+        this.nativePlugin = nativeTimerPlugin;
+        
+        // Set up event listeners. One coalesced event per second for all timers (only while
+        // the page is visible) instead of a timerTick bridge call per timer per second
+        await nativeTimerPlugin.subscribeTicks(1000, (timers) => this.handleNativeTicks(timers));
+        
+        nativeTimerPlugin.onComplete((id) => {
+            if (!id || id === REST_TIMER_ID) this.finishNativeRest();
+        });
+        
+        // Resume snapshot: completions held back while hidden only show up here
+        nativeTimerPlugin.onState(({ timers }) => {
+            const rest = (timers || []).find(t => t.id === REST_TIMER_ID);
+            if (!rest || rest.state === 'done') this.finishNativeRest();
+        });
+        
+        // The service advances the program by itself when a rest runs out
+        nativeTimerPlugin.onProgramProgress(({ phase }) => {
+            this.programPhase = phase;
+            if (phase === 'done') this.programActive = false;
+        });
+        
+        console.log('✅ Native Timer Plugin initialized for lockscreen');
+    }
+    
+    // Rest countdown from a timerTicks event, interpolated from its wall-clock deadline
+    handleNativeTicks(timers) {
+        if (!this.nativeRestActive) return;
+        const rest = (timers || []).find(t => t.id === REST_TIMER_ID);
+        if (!rest) return;
+        const remaining = NativeTimerPlugin.remainingSeconds(rest);
+        if (remaining === this.timerValue) return;
+        this.timerValue = remaining;
+        this.onTimerTick?.(remaining);
+    }
+    
+    // The native rest ran out: the service already stopped it (and moved the program on)
+    finishNativeRest() {
+        if (!this.nativeRestActive) return;
+        this.nativeRestActive = false;
+        const onTick = this.onTimerTick;
+        const onComplete = this.onTimerComplete;
+        this.onTimerTick = null;
+        this.initialTimerDuration = null;
+        this.timerValue = 0;
+        onTick?.(0);
+        onComplete?.();
     }
 
     // Initialize Media Session
@@ -251,7 +287,8 @@ export class MediaSessionManager {
     }
 
     // Start workout session (MUST be called from user interaction like button click)
-    async startWorkout(workoutName) {
+    // workout: the stored workout, uploaded once to the native timer service as a program
+    async startWorkout(workoutName, workout = null) {
         this.isActive = true;
         this.currentWorkoutName = workoutName;
         
@@ -271,6 +308,12 @@ export class MediaSessionManager {
             console.warn('⚠️ Lockscreen support may not work - audio session failed');
         }
 
+        // After the audio start, which needs the click: the service then walks sets and rests itself
+        if (this.isNative && this.nativePlugin && workout) {
+            this.programActive = await this.nativePlugin.loadProgram(workout);
+            this.programPhase = this.programActive ? 'set' : null;
+        }
+
         return success;
     }
 
@@ -351,30 +394,19 @@ export class MediaSessionManager {
         
         // Use native plugin if available (Android foreground service)
         if (this.isNative && this.nativePlugin) {
-            try {
-                await this.nativePlugin.startTimer({
-                    seconds: initialSeconds,
-                    exercise: this.currentExercise || 'Prossimo esercizio',
-                    workout: this.currentWorkoutName
-                });
+            const started = this.programActive
+                ? await this.startProgramRest(initialSeconds)
+                : await this.startSingleRest(initialSeconds);
+            if (started) {
                 console.log(`⏱️ Native timer started: ${initialSeconds}s - lockscreen notification active`);
                 
-                // Still run local interval for UI updates
-                this.timerInterval = setInterval(() => {
-                    remainingSeconds--;
-                    if (remainingSeconds >= 0) {
-                        onTick?.(remainingSeconds);
-                    }
-                    if (remainingSeconds <= 0) {
-                        this.stopTimerDisplay();
-                        onComplete?.();
-                    }
-                }, 1000);
-                
+                // UI updates come from the native tick stream, completion from timerComplete
+                this.timerValue = initialSeconds;
+                this.onTimerTick = onTick;
+                this.nativeRestActive = true;
                 return;
-            } catch (e) {
-                console.log('Native timer failed, falling back to web:', e);
             }
+            console.log('Native timer failed, falling back to web');
         }
         
         // Fallback: Web-based timer with Media Session API
@@ -417,6 +449,32 @@ export class MediaSessionManager {
         console.log(`⏱️ Timer started: ${initialSeconds}s - lockscreen should update`);
     }
 
+    // One native countdown for this rest only
+    startSingleRest(seconds) {
+        return this.nativePlugin.startTimer(seconds, this.currentExercise || 'Prossimo esercizio', this.currentWorkoutName, { id: REST_TIMER_ID });
+    }
+
+    // The program's set is done: the service starts that step's rest. Focus Mode decides the
+    // actual rest (edited rest, superset rules), so the native countdown is shifted to match it
+    async startProgramRest(seconds) {
+        const state = await this.nativePlugin.completeSet();
+        if (!state || !state.active) {
+            // Program finished (or lost): single rests from here on
+            this.programActive = false;
+            return this.startSingleRest(seconds);
+        }
+        if (state.phase !== 'rest') {
+            // That step has no rest in the program: this one is timed on its own
+            return this.startSingleRest(seconds);
+        }
+        this.programPhase = 'rest';
+        const { remaining } = await this.nativePlugin.isRunning(REST_TIMER_ID);
+        if (Math.abs(seconds - remaining) > 1) {
+            await this.nativePlugin.adjustTimer(seconds - remaining, REST_TIMER_ID);
+        }
+        return true;
+    }
+
     // Stop timer display
     stopTimerDisplay() {
         if (this.timerInterval) {
@@ -424,10 +482,20 @@ export class MediaSessionManager {
             this.timerInterval = null;
         }
         this.initialTimerDuration = null;
+        this.nativeRestActive = false;
+        this.onTimerTick = null;
 
-        // Stop native timer if running
+        // Stop native timer if running. In a program a rest cut short moves it on to the next
+        // set; the set stopwatch keeps running, so only the rest countdown is ever stopped
         if (this.isNative && this.nativePlugin) {
-            this.nativePlugin.stopTimer().catch(e => console.log('Stop native timer error:', e));
+            if (!this.programActive) {
+                this.nativePlugin.stopTimer();
+            } else if (this.programPhase === 'rest') {
+                this.programPhase = 'set';
+                this.nativePlugin.skipRest();
+            } else {
+                this.nativePlugin.stopTimer(REST_TIMER_ID);
+            }
         }
 
         // Keep playing state to maintain lockscreen session
@@ -440,6 +508,11 @@ export class MediaSessionManager {
     endWorkout() {
         this.isActive = false;
         this.stopTimerDisplay();
+        if (this.programActive) {
+            this.programActive = false;
+            this.programPhase = null;
+            this.nativePlugin.stopProgram();
+        }
 
         this.updateMetadata({
             title: '🎉 Allenamento Completato!',
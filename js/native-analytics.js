@@ -0,0 +1,149 @@
+// Native Analytics - Bridge to the Java dashboard metrics (Analytics plugin)
+// Same result shapes as AdvancedMetricsEngine; falls back to it on the web
+
+import { EXERCISE_DB } from './exercise-db.js';
+import { AdvancedMetricsEngine } from './advanced-metrics.js';
+import { workoutStore } from './workout-store.js';
+import { registerNativePlugin } from './native-plugins.js';
+
+class NativeAnalytics {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('Analytics');
+            // The native muscle lookup uses the same EXERCISE_DB table
+            await this.plugin.configure({ exerciseDb: EXERCISE_DB });
+            console.log('✅ Native Analytics initialized');
+        } catch (e) {
+            console.log('Native Analytics not available:', e.message);
+            this.isNative = false;
+            this.plugin = null;
+        }
+    }
+
+    // The native side reads the WorkoutStore logs: only usable once they are migrated, and only
+    // while the store holds every localStorage write (its revision stamp, no parse of the arrays):
+    // a write that did not reach it would otherwise leave every metric stale.
+    // Returns the store status ({ logs, bodyStats } counts), or null
+    async nativeStatus() {
+        await this.ready;
+        if (!this.isNative || !this.plugin || !workoutStore.isCurrent()) return null;
+        const status = await workoutStore.getMigrationStatus();
+        return status.migrated ? status : null;
+    }
+
+    async useNative() {
+        return (await this.nativeStatus()) !== null;
+    }
+
+    fallback() {
+        return new AdvancedMetricsEngine().loadData();
+    }
+
+    async calculateTrainingLoad(days = 7) {
+        if (await this.useNative()) {
+            try {
+                return await this.plugin.getTrainingLoad({ days });
+            } catch (e) {
+                console.error('Failed to compute native training load:', e);
+            }
+        }
+        return this.fallback().calculateTrainingLoad(days);
+    }
+
+    async calculateRecoveryScore() {
+        if (await this.useNative()) {
+            try {
+                return await this.plugin.getRecoveryScore();
+            } catch (e) {
+                console.error('Failed to compute native recovery score:', e);
+            }
+        }
+        return this.fallback().calculateRecoveryScore();
+    }
+
+    async calculateMuscleBalance(days = 30) {
+        if (await this.useNative()) {
+            try {
+                return await this.plugin.getMuscleBalance({ days });
+            } catch (e) {
+                console.error('Failed to compute native muscle balance:', e);
+            }
+        }
+        return this.fallback().calculateMuscleBalance(days);
+    }
+
+    // All three in one call: { trainingLoad, recovery, muscleBalance, computeMs? }.
+    // engine: an AdvancedMetricsEngine the caller already loaded, for the fallback
+    async getDashboard(loadDays = 7, balanceDays = 30, engine = null) {
+        if (await this.useNative()) {
+            try {
+                return await this.plugin.getDashboard({ loadDays, balanceDays });
+            } catch (e) {
+                console.error('Failed to compute native dashboard:', e);
+            }
+        }
+        engine = engine || this.fallback();
+        return {
+            trainingLoad: engine.calculateTrainingLoad(loadDays),
+            recovery: engine.calculateRecoveryScore(),
+            muscleBalance: engine.calculateMuscleBalance(balanceDays)
+        };
+    }
+
+    // Calendar cells are read from the native day index: 52 weeks cost the same as 12.
+    // Used only when the index was built from as many logs as the store holds
+    async generateConsistencyCalendar(weeks = 12) {
+        const status = await this.nativeStatus();
+        if (status) {
+            try {
+                const result = await this.plugin.getConsistencyCalendar({ weeks });
+                if (result.logs === status.logs) return result;
+                console.warn('Native day index out of date, computing the calendar in JS');
+            } catch (e) {
+                console.error('Failed to compute native consistency calendar:', e);
+            }
+        }
+        return this.fallback().generateConsistencyCalendar(weeks);
+    }
+
+    // { muscle: 0-100 } for the muscles trained in the window, like HeatmapService.calculateFatigue;
+    // null off native, or when the day index was not built from logCount logs (default: the store's)
+    // -- the caller has the logs to compute it itself
+    async getMuscleFatigue(days = 7, logCount) {
+        const status = await this.nativeStatus();
+        if (status) {
+            try {
+                const { fatigue, logs } = await this.plugin.getMuscleFatigue({ days });
+                if (logs === (logCount ?? status.logs)) return fatigue;
+                console.warn('Native day index out of date, computing fatigue in JS');
+            } catch (e) {
+                console.error('Failed to compute native muscle fatigue:', e);
+            }
+        }
+        return null;
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const nativeAnalytics = new NativeAnalytics();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.NativeAnalytics = nativeAnalytics;
+}
@@ -0,0 +1,10 @@
+// Native Plugins - Looks up a Capacitor plugin from the bridge the WebView injects
+// The pages ship unbundled (build.js only copies files, no import map), so a bare
+// import('@capacitor/core') cannot resolve here: window.Capacitor is the only way in
+
+export function registerNativePlugin(name) {
+    const capacitor = typeof window !== 'undefined' ? window.Capacitor : null;
+    if (capacitor?.Plugins?.[name]) return capacitor.Plugins[name];
+    if (capacitor?.registerPlugin) return capacitor.registerPlugin(name);
+    throw new Error('Capacitor not available');
+}
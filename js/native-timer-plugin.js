@@ -1,18 +1,25 @@
 // Native Timer Plugin - Bridge to Android Foreground Service
 // Provides lockscreen timer notifications on Android native app
 
-class NativeTimerPlugin {
+import { registerNativePlugin } from './native-plugins.js';
+
+export class NativeTimerPlugin {
     constructor() {
         this.isNative = this.checkIfNative();
         this.plugin = null;
+        this.program = null;
+        this.state = null;
         this.listeners = {
             tick: [],
-            complete: []
+            phase: [],
+            complete: [],
+            program: [],
+            ticks: [],
+            state: []
         };
         
-        if (this.isNative) {
-            this.initPlugin();
-        }
+        // Resolves once the plugin and its listeners are registered
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
     }
     
     checkIfNative() {
@@ -24,17 +31,37 @@ class NativeTimerPlugin {
     
     async initPlugin() {
         try {
-            // Import Capacitor core
-            const { registerPlugin } = await import('@capacitor/core');
-            this.plugin = registerPlugin('TimerNotification');
+            // Global Capacitor bridge: a bare '@capacitor/core' import does not resolve unbundled
+            this.plugin = registerNativePlugin('TimerNotification');
             
             // Set up event listeners
+            // Every event carries the id of the timer it belongs to
             this.plugin.addListener('timerTick', (data) => {
-                this.listeners.tick.forEach(cb => cb(data.remaining));
+                this.listeners.tick.forEach(cb => cb(data.remaining, data.id));
+            });
+            
+            this.plugin.addListener('timerPhase', (data) => {
+                this.listeners.phase.forEach(cb => cb(data.round, data.rest, data.id));
             });
             
-            this.plugin.addListener('timerComplete', () => {
-                this.listeners.complete.forEach(cb => cb());
+            this.plugin.addListener('timerComplete', (data) => {
+                this.listeners.complete.forEach(cb => cb(data?.id));
+            });
+            
+            // Coalesced stream (after subscribeTicks): one event for all timers, only while visible
+            this.plugin.addListener('timerTicks', (data) => {
+                this.listeners.ticks.forEach(cb => cb(data.timers, data.ts));
+            });
+            
+            // Pushed once on resume: replaces all events held back while hidden
+            this.plugin.addListener('timerState', (snapshot) => {
+                this.applyState(snapshot);
+            });
+            
+            // Program events only carry index + phase; the step comes from the local copy
+            this.plugin.addListener('programProgress', (data) => {
+                const step = this.program?.steps[data.index] || null;
+                this.listeners.program.forEach(cb => cb({ ...data, step }));
             });
             
             console.log('✅ Native Timer Plugin initialized');
@@ -45,7 +72,9 @@ class NativeTimerPlugin {
     }
     
     // Start timer with lockscreen notification
-    async startTimer(seconds, exerciseName = 'Prossimo esercizio', workoutName = 'Allenamento') {
+    // options: { id, mode: 'countdown' | 'stopwatch' | 'interval', rounds, restSeconds, label }
+    // Timers with different ids run side by side; reusing an id replaces that timer
+    async startTimer(seconds, exerciseName = 'Prossimo esercizio', workoutName = 'Allenamento', options = {}) {
         if (!this.isNative || !this.plugin) {
             console.log('Native timer not available, using web fallback');
             return false;
@@ -53,6 +82,7 @@ class NativeTimerPlugin {
         
         try {
             await this.plugin.startTimer({
+                ...options,
                 seconds: seconds,
                 exercise: exerciseName,
                 workout: workoutName
@@ -65,56 +95,258 @@ class NativeTimerPlugin {
         }
     }
     
-    // Stop timer
-    async stopTimer() {
+    // Stop one timer by id, or all timers when no id is given
+    async stopTimer(id) {
         if (!this.isNative || !this.plugin) return;
         
         try {
-            await this.plugin.stopTimer();
+            await this.plugin.stopTimer(id ? { id } : {});
             console.log('⏹️ Native timer stopped');
         } catch (e) {
             console.error('Failed to stop native timer:', e);
         }
     }
     
-    // Pause timer
-    async pauseTimer() {
+    // Pause one timer by id, or all timers when no id is given
+    async pauseTimer(id) {
         if (!this.isNative || !this.plugin) return;
         
         try {
-            await this.plugin.pauseTimer();
+            await this.plugin.pauseTimer(id ? { id } : {});
         } catch (e) {
             console.error('Failed to pause native timer:', e);
         }
     }
     
-    // Resume timer
-    async resumeTimer() {
+    // Resume one timer by id, or all timers when no id is given
+    async resumeTimer(id) {
         if (!this.isNative || !this.plugin) return;
         
         try {
-            await this.plugin.resumeTimer();
+            await this.plugin.resumeTimer(id ? { id } : {});
         } catch (e) {
             console.error('Failed to resume native timer:', e);
         }
     }
     
-    // Check if timer is running
-    async isRunning() {
+    // Subscribe to the coalesced tick stream at the given rate. Events arrive only while
+    // the app is in the foreground and carry wall-clock deadlines to interpolate between them
+    async subscribeTicks(intervalMs, callback) {
+        if (callback) this.listeners.ticks.push(callback);
+        if (!this.isNative || !this.plugin) return false;
+        
+        try {
+            await this.plugin.subscribeTicks({ intervalMs });
+            return true;
+        } catch (e) {
+            console.error('Failed to subscribe to native ticks:', e);
+            return false;
+        }
+    }
+    
+    async unsubscribeTicks() {
+        this.listeners.ticks = [];
+        if (!this.isNative || !this.plugin) return;
+        
+        try {
+            await this.plugin.unsubscribeTicks();
+        } catch (e) {
+            console.error('Failed to unsubscribe from native ticks:', e);
+        }
+    }
+    
+    // Remaining whole seconds of a timer from a timerTicks event, interpolated locally
+    static remainingSeconds(timer, now = Date.now()) {
+        if (!timer.running || !timer.deadline) return timer.remaining;
+        return Math.max(0, Math.ceil((timer.deadline - now) / 1000));
+    }
+    
+    // Fetch the full timer snapshot (deadlines, paused state, program position) in one call
+    async getState() {
+        if (!this.isNative || !this.plugin) return null;
+        
+        try {
+            this.applyState(await this.plugin.getState());
+            return this.state;
+        } catch (e) {
+            console.error('Failed to read native timer state:', e);
+            return null;
+        }
+    }
+    
+    // Keep only snapshots newer than the one we have (seq grows on every native state change)
+    applyState(snapshot) {
+        if (!snapshot || (this.state && snapshot.seq < this.state.seq)) return;
+        this.state = snapshot;
+        this.listeners.state.forEach(cb => cb(snapshot));
+    }
+    
+    // Add state snapshot listener
+    onState(callback) {
+        this.listeners.state.push(callback);
+    }
+    
+    // Add or remove seconds from a running timer (default: rest), like the worker 'adjust' action
+    async adjustTimer(seconds, id) {
+        if (!this.isNative || !this.plugin) return;
+        
+        try {
+            await this.plugin.adjustTimer(id ? { id, seconds } : { seconds });
+        } catch (e) {
+            console.error('Failed to adjust native timer:', e);
+        }
+    }
+    
+    // Flatten a workout into the step list TimerService walks natively: one step per set,
+    // in execution order, with the rest that follows it (same rules as Focus Mode startRest)
+    compileProgram(workout) {
+        const exercises = workout?.exercises || [];
+        const steps = [];
+        
+        // Set arrays, or a planned count (AI plans: "4"), like Focus Mode's buildSetsFromPlan
+        const countSets = (ex) => {
+            if (Array.isArray(ex.sets) && ex.sets.length) return ex.sets.length;
+            const parsed = parseInt(ex.sets ?? ex.series ?? ex.setCount ?? ex.seriesCount, 10);
+            return Number.isFinite(parsed) && parsed > 0 ? parsed : 1;
+        };
+        
+        const restFor = (ex) => {
+            if (ex.rest) return ex.rest;
+            const name = (ex.name || '').toLowerCase();
+            if (['squat', 'stacco', 'deadlift', 'panca', 'bench'].some(k => name.includes(k))) return 180;
+            if (['curl', 'alzate', 'polpacci', 'abs'].some(k => name.includes(k))) return 60;
+            return 90;
+        };
+        
+        for (let i = 0; i < exercises.length; i++) {
+            const ex = exercises[i];
+            const partner = exercises[i + 1];
+            const setCount = countSets(ex);
+            
+            if (ex.supersetId && ex.supersetRole === 'A' && partner?.supersetId === ex.supersetId) {
+                // Sequential superset: A1 -> B1 -> A2 -> B2 ...
+                const partnerSets = countSets(partner);
+                const interRest = ex.interRest || 90;
+                for (let r = 0; r < Math.max(setCount, partnerSets); r++) {
+                    if (r < setCount) {
+                        const rest = r < partnerSets ? (ex.intraRest || 0) : interRest;
+                        steps.push({ exercise: ex.name, set: r + 1, totalSets: setCount, rest });
+                    }
+                    if (r < partnerSets) {
+                        steps.push({ exercise: partner.name, set: r + 1, totalSets: partnerSets, rest: interRest });
+                    }
+                }
+                i++;
+                continue;
+            }
+            
+            const rest = restFor(ex);
+            for (let s = 0; s < setCount; s++) {
+                steps.push({ exercise: ex.name, set: s + 1, totalSets: setCount, rest });
+            }
+        }
+        
+        return { workout: workout?.name || 'Allenamento', steps };
+    }
+    
+    // Upload the whole workout once; the service then advances sets and rests by itself
+    async loadProgram(workout, startIndex = 0) {
+        if (!this.isNative || !this.plugin) return false;
+        
+        try {
+            this.program = this.compileProgram(workout);
+            await this.plugin.loadProgram({ ...this.program, startIndex });
+            console.log(`🏋️ Native program loaded: ${this.program.steps.length} steps`);
+            return true;
+        } catch (e) {
+            console.error('Failed to load native program:', e);
+            this.program = null;
+            return false;
+        }
+    }
+    
+    async completeSet() {
+        if (!this.isNative || !this.plugin) return null;
+        
+        try {
+            return await this.plugin.completeSet();
+        } catch (e) {
+            console.error('Failed to complete set:', e);
+            return null;
+        }
+    }
+    
+    async skipRest() {
+        if (!this.isNative || !this.plugin) return null;
+        
+        try {
+            return await this.plugin.skipRest();
+        } catch (e) {
+            console.error('Failed to skip rest:', e);
+            return null;
+        }
+    }
+    
+    async stopProgram() {
+        if (!this.isNative || !this.plugin) return;
+        
+        try {
+            await this.plugin.stopProgram();
+        } catch (e) {
+            console.error('Failed to stop native program:', e);
+        }
+        this.program = null;
+    }
+    
+    // Update the exercise shown in the notification (single repost, no per-second rebuild)
+    async updateExercise(exerciseName) {
+        if (!this.isNative || !this.plugin) return;
+        
+        try {
+            await this.plugin.updateExercise({ exercise: exerciseName });
+        } catch (e) {
+            console.error('Failed to update native timer exercise:', e);
+        }
+    }
+    
+    // Check if a timer is running (default: the rest timer); also lists all timers and notifyCount
+    async isRunning(id) {
         if (!this.isNative || !this.plugin) return { running: false, remaining: 0 };
         
         try {
-            return await this.plugin.isRunning();
+            return await this.plugin.isRunning(id ? { id } : {});
         } catch (e) {
             return { running: false, remaining: 0 };
         }
     }
     
+    // Timer pipeline metrics (tick jitter, notify cost, bind and dispatch latency)
+    async getTimerMetrics(reset = false) {
+        if (!this.isNative || !this.plugin) return null;
+        
+        try {
+            return await this.plugin.getTimerMetrics({ reset });
+        } catch (e) {
+            console.error('Failed to get timer metrics:', e);
+            return null;
+        }
+    }
+    
     // Add tick listener
     onTick(callback) {
         this.listeners.tick.push(callback);
     }
     
+    // Add interval phase listener (EMOM/tabata rounds)
+    onPhase(callback) {
+        this.listeners.phase.push(callback);
+    }
+    
+    // Add program progress listener: ({ index, phase: 'set' | 'rest' | 'done', step })
+    onProgramProgress(callback) {
+        this.listeners.program.push(callback);
+    }
+    
     // Add complete listener
     onComplete(callback) {
         this.listeners.complete.push(callback);
@@ -123,7 +355,11 @@ class NativeTimerPlugin {
     // Remove listeners
     removeAllListeners() {
         this.listeners.tick = [];
+        this.listeners.phase = [];
         this.listeners.complete = [];
+        this.listeners.program = [];
+        this.listeners.ticks = [];
+        this.listeners.state = [];
     }
     
     // Check if native timer is available
@@ -4,6 +4,8 @@
  * Cross-platform: APK Android, WebApp Android, WebApp iOS
  */
 
+import { workoutStore } from './workout-store.js';
+
 const PR_STORAGE_KEY = 'ironflow_personal_records';
 const PR_HISTORY_KEY = 'ironflow_pr_history';
 
@@ -197,21 +199,56 @@ export class PRTracker {
             }
         });
 
-        // Salva i PR aggiornati
-        if (newPRs.length > 0) {
-            this.savePRs();
-            
-            // Aggiungi allo storico
-            newPRs.forEach(pr => {
-                this.prHistory.unshift({
-                    ...pr,
-                    timestamp: new Date().toISOString()
-                });
-            });
-            this.savePRHistory();
+        this.recordPRs(newPRs);
+        return newPRs;
+    }
+
+    /**
+     * Salva un log nuovo nello store nativo e rileva i PR dal suo indice: putLogs
+     * restituisce i record battuti (lookup per esercizio, nessun confronto con tutta
+     * la storia). Sul web, per le modifiche o prima della migrazione dello store
+     * (indice incompleto) i PR vengono da detectPRsFromLog
+     * @returns {Promise<Array>} Lista di nuovi PR rilevati
+     */
+    async recordLog(logData, isNew = true) {
+        const status = await workoutStore.getMigrationStatus();
+        const indexed = await workoutStore.putLogs([logData]);
+        if (indexed === null || !isNew || !status.migrated) {
+            return this.detectPRsFromLog(logData);
         }
 
-        return newPRs;
+        const fields = { weight: 'maxWeight', '1rm': 'max1RM', reps: 'maxReps', volume: 'maxVolume' };
+        indexed.forEach(pr => {
+            const normalizedName = this.normalizeExerciseName(pr.exercise);
+            const currentPR = this.personalRecords[normalizedName] || {
+                maxWeight: 0,
+                max1RM: 0,
+                maxVolume: 0,
+                maxReps: 0
+            };
+            pr.records.forEach(record => { currentPR[fields[record.type]] = record.newValue; });
+            currentPR.displayName = pr.exercise;
+            currentPR.lastUpdated = new Date().toISOString();
+            this.personalRecords[normalizedName] = currentPR;
+        });
+        this.recordPRs(indexed);
+        return indexed;
+    }
+
+    /**
+     * Salva i PR aggiornati e li aggiunge allo storico
+     */
+    recordPRs(newPRs) {
+        if (newPRs.length === 0) return;
+        this.savePRs();
+
+        newPRs.forEach(pr => {
+            this.prHistory.unshift({
+                ...pr,
+                timestamp: new Date().toISOString()
+            });
+        });
+        this.savePRHistory();
     }
 
     // --- Notification System ---
@@ -0,0 +1,95 @@
+// Session Journal - Bridge to the native write-ahead journal of the focus session
+// One full snapshot per session, then one small delta record per save
+
+import { registerNativePlugin } from './native-plugins.js';
+
+class SessionJournal {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('SessionJournal');
+            console.log('✅ Session Journal initialized');
+        } catch (e) {
+            console.log('Session Journal not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // Starts a session from its full state; resolves once it is on disk
+    async begin(state) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return false;
+
+        try {
+            await this.plugin.begin({ state });
+            return true;
+        } catch (e) {
+            console.error('Failed to start session journal:', e);
+            return false;
+        }
+    }
+
+    // delta: { set, append, remove } -> { seq, bytes, journalBytes } once durable, or null
+    async append(delta) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.append({ delta });
+        } catch (e) {
+            console.error('Failed to append to session journal:', e);
+            return null;
+        }
+    }
+
+    // The journaled session state after a restart, or null
+    async recover() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { state, records, replayMs } = await this.plugin.recover();
+            if (state) {
+                console.log(`📒 Session journal replayed: ${records} records in ${replayMs.toFixed(1)}ms`);
+            }
+            return state || null;
+        } catch (e) {
+            console.error('Failed to recover session journal:', e);
+            return null;
+        }
+    }
+
+    async clear() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return;
+
+        try {
+            await this.plugin.clear();
+        } catch (e) {
+            console.error('Failed to clear session journal:', e);
+        }
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const sessionJournal = new SessionJournal();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.SessionJournal = sessionJournal;
+}
@@ -2,6 +2,9 @@
 // ROBUST system for saving and restoring interrupted workout sessions
 // Handles: crashes, accidental exits, tab switches, PWA issues, browser kills
 // ENHANCED: Native APK support via Capacitor, aggressive crash recovery
+// NATIVE: saves go to an append-only journal (one delta record per save, not four full copies)
+
+import { sessionJournal } from './session-journal.js';
 
 const STORAGE_KEY = 'ironflow_focus_session_state';
 const BACKUP_KEY = 'ironflow_focus_session_backup';
@@ -10,6 +13,7 @@ const STALE_THRESHOLD = 4 * 60 * 60 * 1000; // 4 hours (increased from 2)
 const AUTO_SAVE_INTERVAL = 5000; // 5 seconds (reduced for better crash recovery)
 const CRITICAL_SAVE_DEBOUNCE = 300; // 300ms debounce for critical saves
 const HEARTBEAT_INTERVAL = 2000; // 2 seconds heartbeat for crash detection
+const JOURNAL_APPEND_FIELDS = ['completedSets', 'setHistory']; // Grow by appending during a session
 
 export class SessionRecoveryManager {
     constructor() {
@@ -23,6 +27,7 @@ export class SessionRecoveryManager {
         this.isNativeApp = false; // Capacitor native app detection
         this.lastHeartbeat = Date.now();
         this.crashDetected = false;
+        this.journaled = null; // Last state written to the native journal
     }
 
     // Initialize and check for existing session
@@ -295,6 +300,14 @@ export class SessionRecoveryManager {
                 sessions.push({ source: 'IndexedDB', data: idbSession });
             }
             
+            // Try the native session journal
+            if (this.isNativeApp) {
+                const journalSession = await sessionJournal.recover();
+                if (journalSession && !this.isStale(journalSession)) {
+                    sessions.push({ source: 'NativeJournal', data: journalSession });
+                }
+            }
+            
             // Try native storage (Capacitor)
             if (this.isNativeApp) {
                 const nativeSession = await this.getFromNativeStorage();
@@ -445,7 +458,11 @@ export class SessionRecoveryManager {
         try {
             const sessionState = this.buildSessionState(state);
             
-            await this.saveToAllStorages(sessionState);
+            // Native: the journal alone is durable, no need for the four full copies
+            const journaled = this.isNativeApp && await this.saveToJournal(sessionState);
+            if (!journaled) {
+                await this.saveToAllStorages(sessionState);
+            }
             this.sessionState = sessionState;
 
             // Log only every 30 seconds to reduce noise
@@ -457,6 +474,66 @@ export class SessionRecoveryManager {
         }
     }
 
+    // Native journal: the first save of a session is written whole, later saves only what changed
+    async saveToJournal(sessionState) {
+        if (!sessionJournal.isAvailable()) return false;
+
+        const previous = this.journaled;
+        // Updated before awaiting, so overlapping saves never append the same sets twice
+        this.journaled = this.journalSnapshot(sessionState);
+        let ok;
+        if (!previous || previous.workoutId !== sessionState.workoutId) {
+            ok = await sessionJournal.begin(sessionState);
+        } else {
+            const delta = this.diffSessionState(previous, this.journaled, sessionState);
+            ok = !delta || await sessionJournal.append(delta) !== null;
+        }
+        if (!ok) {
+            this.journaled = null; // Start over with a full snapshot next time
+        }
+        return ok;
+    }
+
+    journalSnapshot(sessionState) {
+        const previous = this.journaled;
+        const json = {};
+        Object.keys(sessionState).forEach(key => {
+            // The workout is rebuilt only when it changes: reuse its serialization
+            json[key] = key === 'workout' && previous && previous.workout === sessionState.workout
+                ? previous.json.workout
+                : JSON.stringify(sessionState[key]);
+        });
+        const lengths = {};
+        JOURNAL_APPEND_FIELDS.forEach(key => {
+            if (Array.isArray(sessionState[key])) lengths[key] = sessionState[key].length;
+        });
+        return { workoutId: sessionState.workoutId, workout: sessionState.workout, json, lengths };
+    }
+
+    // -> { set, append, remove } with only the changed fields, or null if nothing changed
+    diffSessionState(previous, next, sessionState) {
+        const set = {};
+        const append = {};
+        const remove = Object.keys(previous.json).filter(key => !(key in next.json));
+        Object.keys(next.json).forEach(key => {
+            if (next.json[key] === previous.json[key]) return;
+            const from = previous.lengths[key];
+            const items = sessionState[key];
+            // New sets at the end of an unchanged list: journal only the new ones
+            if (from !== undefined && Array.isArray(items) && items.length > from &&
+                JSON.stringify(items.slice(0, from)) === previous.json[key]) {
+                append[key] = items.slice(from);
+            } else {
+                set[key] = sessionState[key];
+            }
+        });
+        const delta = {};
+        if (Object.keys(set).length > 0) delta.set = set;
+        if (Object.keys(append).length > 0) delta.append = append;
+        if (remove.length > 0) delta.remove = remove;
+        return Object.keys(delta).length > 0 ? delta : null;
+    }
+
     // Critical save - called on important state changes (debounced)
     criticalSave() {
         if (this.criticalSaveTimeout) {
@@ -575,7 +652,13 @@ export class SessionRecoveryManager {
             }
         }
         
+        // Native session journal
+        if (this.isNativeApp) {
+            await sessionJournal.clear();
+        }
+        
         this.sessionState = null;
+        this.journaled = null;
         this.getStateCallback = null;
         this.crashDetected = false;
         this.stopAutoSave();
@@ -1,4 +1,5 @@
 import { computeDomsInsights } from './doms-insights.js';
+import { workoutStore } from './workout-store.js';
 
 const DAY_MS = 24 * 60 * 60 * 1000;
 
@@ -289,155 +290,143 @@ const getTrendHistory = () => {
     }
 };
 
-export const trendEngine = {
-    evaluate({ logs = [], bodyStats = [], profile = {}, unit = 'metric' }) {
-        const { recent: recentLogs, previous: prevLogs } = bucketizeLogs(logs);
-        const { recent: recentStats, previous: prevStats } = bucketizeBodyStats(bodyStats);
-
-        const recentFrequency = getTrainingDays(recentLogs) / 2; // approx per week
-        const prevFrequency = getTrainingDays(prevLogs) / 2;
-
-        const recentVolume = getVolumePerSession(recentLogs);
-        const prevVolume = getVolumePerSession(prevLogs);
-
-        const recentWeight = recentStats.length ? average(recentStats.map(s => s.weight)) : 0;
-        const prevWeight = prevStats.length ? average(prevStats.map(s => s.weight)) : 0;
-
-        const recentPR = getPRSnapshot(recentLogs);
-        const prevPR = getPRSnapshot(prevLogs);
-
-        const recentConsistency = getConsistency(recentLogs.concat(prevLogs));
-        const prevConsistency = getConsistency(prevLogs);
+const WELLNESS_METRICS = ['sleepQuality', 'energyLevel', 'stressLevel', 'sorenessLevel'];
+
+// Valore recente (ultimi 14 giorni) e precedente (i 14 prima) di ogni metrica,
+// nella stessa forma che restituisce WorkoutStore.getTrendWindows sul nativo
+const computeWindows = (logs = [], bodyStats = []) => {
+    const { recent: recentLogs, previous: prevLogs } = bucketizeLogs(logs);
+    const { recent: recentStats, previous: prevStats } = bucketizeBodyStats(bodyStats);
+
+    const metrics = {
+        frequency: {
+            recent: getTrainingDays(recentLogs) / 2, // approx per week
+            previous: getTrainingDays(prevLogs) / 2
+        },
+        volume: {
+            recent: getVolumePerSession(recentLogs),
+            previous: getVolumePerSession(prevLogs)
+        },
+        bodyWeight: {
+            recent: recentStats.length ? average(recentStats.map(s => s.weight)) : 0,
+            previous: prevStats.length ? average(prevStats.map(s => s.weight)) : 0
+        },
+        prs: {
+            recent: getPRSnapshot(recentLogs),
+            previous: getPRSnapshot(prevLogs)
+        },
+        consistency: {
+            recent: getConsistency(recentLogs.concat(prevLogs)),
+            previous: getConsistency(prevLogs)
+        }
+    };
+    WELLNESS_METRICS.forEach(field => {
+        metrics[field] = {
+            recent: getAverageWellness(recentLogs, field),
+            previous: getAverageWellness(prevLogs, field)
+        };
+    });
 
-        const ctx = { unit: unit === 'imperial' ? 'imperial' : 'metric', profile };
-        const wellnessMetrics = [];
+    return {
+        metrics,
+        recentLogsCount: recentLogs.length,
+        previousLogsCount: prevLogs.length
+    };
+};
 
-        const recentSleep = getAverageWellness(recentLogs, 'sleepQuality');
-        const prevSleep = getAverageWellness(prevLogs, 'sleepQuality');
-        if (recentSleep || prevSleep) {
-            wellnessMetrics.push({
-                ...METRIC_CONFIG.sleepQuality,
-                current: recentSleep || prevSleep,
-                previous: prevSleep || recentSleep,
-                ...evalTrendDirection('sleepQuality', recentSleep || prevSleep, prevSleep || recentSleep, ctx)
-            });
-        }
+const buildResult = (windows, { logs = [], bodyStats = [], profile = {}, unit = 'metric' }) => {
+    const values = windows.metrics;
+    const ctx = { unit: unit === 'imperial' ? 'imperial' : 'metric', profile };
 
-        const recentEnergy = getAverageWellness(recentLogs, 'energyLevel');
-        const prevEnergy = getAverageWellness(prevLogs, 'energyLevel');
-        if (recentEnergy || prevEnergy) {
-            wellnessMetrics.push({
-                ...METRIC_CONFIG.energyLevel,
-                current: recentEnergy || prevEnergy,
-                previous: prevEnergy || recentEnergy,
-                ...evalTrendDirection('energyLevel', recentEnergy || prevEnergy, prevEnergy || recentEnergy, ctx)
-            });
-        }
+    // Peso e benessere: se manca un periodo si confronta l'altro con sé stesso
+    const metricEntry = (id, current, previous) => ({
+        ...METRIC_CONFIG[id],
+        current,
+        previous,
+        ...evalTrendDirection(id, current, previous, ctx)
+    });
+    const selfFilled = (id) => {
+        const { recent, previous } = values[id];
+        return metricEntry(id, recent || previous, previous || recent);
+    };
 
-        const recentStress = getAverageWellness(recentLogs, 'stressLevel');
-        const prevStress = getAverageWellness(prevLogs, 'stressLevel');
-        if (recentStress || prevStress) {
-            wellnessMetrics.push({
-                ...METRIC_CONFIG.stressLevel,
-                current: recentStress || prevStress,
-                previous: prevStress || recentStress,
-                ...evalTrendDirection('stressLevel', recentStress || prevStress, prevStress || recentStress, ctx)
-            });
+    const wellnessMetrics = WELLNESS_METRICS
+        .filter(id => values[id].recent || values[id].previous)
+        .map(selfFilled);
+
+    const metrics = [
+        metricEntry('frequency', values.frequency.recent, values.frequency.previous),
+        metricEntry('volume', values.volume.recent, values.volume.previous),
+        selfFilled('bodyWeight'),
+        metricEntry('prs', values.prs.recent, values.prs.previous),
+        metricEntry('consistency', values.consistency.recent, values.consistency.previous)
+    ]
+    .concat(wellnessMetrics)
+    .map(metric => ({
+        ...metric,
+        summary: formatDeltaText(metric.id, metric)
+    }));
+
+    const digest = buildHeuristicSummary(metrics);
+
+    const domsInsights = computeDomsInsights(logs);
+
+    const result = {
+        metrics,
+        digest,
+        generatedAt: new Date().toISOString(),
+        domsHotspots: domsInsights.hotspots,
+        domsReportCount: domsInsights.totalReports,
+        hasSorenessData: domsInsights.hasSorenessData,
+        fatigueData: domsInsights.fatigueData,
+        dataSnapshot: {
+            totalLogs: logs.length,
+            recentLogsCount: windows.recentLogsCount,
+            previousLogsCount: windows.previousLogsCount,
+            bodyStatsCount: bodyStats.length
         }
+    };
 
-        const recentSoreness = getAverageWellness(recentLogs, 'sorenessLevel');
-        const prevSoreness = getAverageWellness(prevLogs, 'sorenessLevel');
-        if (recentSoreness || prevSoreness) {
-            wellnessMetrics.push({
-                ...METRIC_CONFIG.sorenessLevel,
-                current: recentSoreness || prevSoreness,
-                previous: prevSoreness || recentSoreness,
-                ...evalTrendDirection('sorenessLevel', recentSoreness || prevSoreness, prevSoreness || recentSoreness, ctx)
-            });
-        }
+    // Save snapshot to history for long-term tracking
+    const snapshot = {
+        timestamp: new Date().toISOString(),
+        metrics: metrics.map(m => ({
+            id: m.id,
+            label: m.label,
+            current: m.current,
+            previous: m.previous,
+            status: m.status,
+            sentiment: m.sentiment,
+            delta: m.delta,
+            pct: m.pct
+        })),
+        domsHotspots: domsInsights.hotspots.slice(0, 5).map(h => ({
+            muscle: h.muscle,
+            label: h.label,
+            occurrences: h.occurrences,
+            avgIntensity: h.avgIntensity,
+            avgRecoveryDays: h.avgRecoveryDays
+        }))
+    };
+    saveTrendSnapshot(snapshot);
 
-        const metrics = [
-            {
-                ...METRIC_CONFIG.frequency,
-                current: recentFrequency,
-                previous: prevFrequency,
-                ...evalTrendDirection('frequency', recentFrequency, prevFrequency, ctx)
-            },
-            {
-                ...METRIC_CONFIG.volume,
-                current: recentVolume,
-                previous: prevVolume,
-                ...evalTrendDirection('volume', recentVolume, prevVolume, ctx)
-            },
-            {
-                ...METRIC_CONFIG.bodyWeight,
-                current: recentWeight || prevWeight,
-                previous: prevWeight || recentWeight,
-                ...evalTrendDirection('bodyWeight', recentWeight || prevWeight, prevWeight || recentWeight, ctx)
-            },
-            {
-                ...METRIC_CONFIG.prs,
-                current: recentPR,
-                previous: prevPR,
-                ...evalTrendDirection('prs', recentPR, prevPR, ctx)
-            },
-            {
-                ...METRIC_CONFIG.consistency,
-                current: recentConsistency,
-                previous: prevConsistency,
-                ...evalTrendDirection('consistency', recentConsistency, prevConsistency, ctx)
-            }
-        ]
-        .concat(wellnessMetrics)
-        .map(metric => ({
-            ...metric,
-            summary: formatDeltaText(metric.id, metric)
-        }));
-
-        const digest = buildHeuristicSummary(metrics);
-
-        const domsInsights = computeDomsInsights(logs);
-
-        const result = {
-            metrics,
-            digest,
-            generatedAt: new Date().toISOString(),
-            domsHotspots: domsInsights.hotspots,
-            domsReportCount: domsInsights.totalReports,
-            hasSorenessData: domsInsights.hasSorenessData,
-            fatigueData: domsInsights.fatigueData,
-            dataSnapshot: {
-                totalLogs: logs.length,
-                recentLogsCount: recentLogs.length,
-                previousLogsCount: prevLogs.length,
-                bodyStatsCount: bodyStats.length
-            }
-        };
+    return result;
+};
 
-        // Save snapshot to history for long-term tracking
-        const snapshot = {
-            timestamp: new Date().toISOString(),
-            metrics: metrics.map(m => ({
-                id: m.id,
-                label: m.label,
-                current: m.current,
-                previous: m.previous,
-                status: m.status,
-                sentiment: m.sentiment,
-                delta: m.delta,
-                pct: m.pct
-            })),
-            domsHotspots: domsInsights.hotspots.slice(0, 5).map(h => ({
-                muscle: h.muscle,
-                label: h.label,
-                occurrences: h.occurrences,
-                avgIntensity: h.avgIntensity,
-                avgRecoveryDays: h.avgRecoveryDays
-            }))
-        };
-        saveTrendSnapshot(snapshot);
+export const trendEngine = {
+    evaluate({ logs = [], bodyStats = [], profile = {}, unit = 'metric' }) {
+        return buildResult(computeWindows(logs, bodyStats), { logs, bodyStats, profile, unit });
+    },
 
-        return result;
+    // Come evaluate, ma le finestre arrivano già aggregate dal WorkoutStore nativo
+    // (aggiornate a ogni log salvato, senza riscansione). Se lo store non contiene
+    // esattamente questi log e body stats si ricade sul calcolo JS
+    async evaluateAsync({ logs = [], bodyStats = [], profile = {}, unit = 'metric' }) {
+        const windows = await workoutStore.getTrendWindows(Date.now());
+        if (!windows || windows.totalLogs !== logs.length || windows.bodyStatsCount !== bodyStats.length) {
+            return this.evaluate({ logs, bodyStats, profile, unit });
+        }
+        return buildResult(windows, { logs, bodyStats, profile, unit });
     },
 
     getHistory() {
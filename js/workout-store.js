@@ -0,0 +1,310 @@
+// Workout Store - Bridge to the native indexed workout-log store (SQLite)
+// Replaces full JSON.parse of the ironflow_* localStorage blobs with paged queries
+
+import { registerNativePlugin } from './native-plugins.js';
+
+// Labels of PRTracker.detectPRsFromLog, for the records putLogs reports
+const PR_LABELS = {
+    weight: '💪 Peso Massimo',
+    '1rm': '🎯 1RM Stimato',
+    reps: '🔥 Max Ripetizioni',
+    volume: '📊 Volume Massimo'
+};
+
+const LOCAL_KEYS = {
+    logs: 'ironflow_logs',
+    workouts: 'ironflow_workouts',
+    bodyStats: 'ironflow_body_stats',
+    healthData: 'ironflow_health_data'
+};
+
+// Revision stamps of the logs and body stats: the pages bump the local one on every rewrite,
+// the store's follows it write by write (see isCurrent)
+const REV_KEYS = {
+    local: 'ironflow_local_rev',
+    store: 'ironflow_store_rev'
+};
+
+class WorkoutStore {
+    constructor() {
+        this.isNative = this.checkIfNative();
+        this.plugin = null;
+        this.ready = this.isNative ? this.initPlugin() : Promise.resolve();
+    }
+
+    checkIfNative() {
+        return typeof window !== 'undefined' &&
+               window.Capacitor &&
+               window.Capacitor.isNativePlatform();
+    }
+
+    async initPlugin() {
+        try {
+            this.plugin = registerNativePlugin('WorkoutStore');
+            console.log('✅ Workout Store initialized');
+        } catch (e) {
+            console.log('Workout Store not available:', e.message);
+            this.isNative = false;
+        }
+    }
+
+    // Import the localStorage collections once (app-startup runs it after the first paint);
+    // later calls are no-ops unless force is set. force replaces the store's content with
+    // localStorage, for when that was replaced wholesale (cloud load).
+    // localStorage is left untouched so the web fallback keeps working
+    async migrate(force = false) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return { migrated: false };
+
+        try {
+            const rev = this.readRev(REV_KEYS.local);
+            const result = await this.plugin.migrateFromLocalStorage({
+                logs: localStorage.getItem(LOCAL_KEYS.logs),
+                workouts: localStorage.getItem(LOCAL_KEYS.workouts),
+                bodyStats: localStorage.getItem(LOCAL_KEYS.bodyStats),
+                healthData: localStorage.getItem(LOCAL_KEYS.healthData),
+                force
+            });
+            if (result.migrated) localStorage.setItem(REV_KEYS.store, String(rev));
+            return result;
+        } catch (e) {
+            console.error('Failed to migrate workout logs:', e);
+            return { migrated: false };
+        }
+    }
+
+    // Call right after rewriting ironflow_logs or ironflow_body_stats in localStorage
+    markLocalWrite() {
+        localStorage.setItem(REV_KEYS.local, String(this.readRev(REV_KEYS.local) + 1));
+    }
+
+    // Whether the store holds every localStorage write of the logs and body stats: two short
+    // reads instead of parsing both arrays to compare counts. A write that never reached the
+    // store leaves it behind until the next forced migrate (app-startup runs one)
+    isCurrent() {
+        return localStorage.getItem(REV_KEYS.store) !== null &&
+               this.readRev(REV_KEYS.store) === this.readRev(REV_KEYS.local);
+    }
+
+    // A write through succeeded: it covers the latest local write if the store had all earlier ones
+    advanceStoreRev() {
+        const local = this.readRev(REV_KEYS.local);
+        if (localStorage.getItem(REV_KEYS.store) !== null && this.readRev(REV_KEYS.store) === local - 1) {
+            localStorage.setItem(REV_KEYS.store, String(local));
+        }
+    }
+
+    // { migrated, migratedAt?, logs, bodyStats }: the counts are what the store holds now
+    async getMigrationStatus() {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return { migrated: false };
+
+        try {
+            return await this.plugin.getMigrationStatus();
+        } catch (e) {
+            console.error('Failed to get workout store status:', e);
+            return { migrated: false };
+        }
+    }
+
+    // Returns the personal records the new logs broke, shaped like PRTracker.detectPRsFromLog
+    // (empty when nothing was broken), or null when the store is not available
+    async putLogs(logs) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { personalRecords = [] } = await this.plugin.putLogs({ logs });
+            this.advanceStoreRev();
+            return personalRecords.map(pr => ({
+                ...pr,
+                records: pr.records.map(record => ({
+                    ...record,
+                    label: PR_LABELS[record.type],
+                    ...(record.atWeight ? { context: `@ ${record.atWeight}kg` } : {})
+                }))
+            }));
+        } catch (e) {
+            console.error('Failed to store workout logs:', e);
+            return null;
+        }
+    }
+
+    // Personal records of one exercise, matched by canonical name; null if never logged
+    async getPersonalRecord(exercise) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            const { record } = await this.plugin.getPersonalRecord({ exercise });
+            return record || null;
+        } catch (e) {
+            console.error('Failed to get personal record:', e);
+            return null;
+        }
+    }
+
+    // sortBy: 'updated' | 'maxWeight'
+    async getPersonalRecords(sortBy = 'updated', limit) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return [];
+
+        try {
+            const { records } = await this.plugin.getPersonalRecords(limit ? { sortBy, limit } : { sortBy });
+            return records;
+        } catch (e) {
+            console.error('Failed to get personal records:', e);
+            return [];
+        }
+    }
+
+    async deleteLog(id) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return false;
+
+        try {
+            const { deleted } = await this.plugin.deleteLog({ id: String(id) });
+            this.advanceStoreRev();
+            return deleted;
+        } catch (e) {
+            console.error('Failed to delete workout log:', e);
+            return false;
+        }
+    }
+
+    // options: { from, to, limit, cursor } -> { items, nextCursor }, newest first
+    // from/to accept epoch ms or date strings
+    async queryLogs(options = {}) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) {
+            return this.pageLocal(this.readLocal(LOCAL_KEYS.logs), options);
+        }
+
+        try {
+            return await this.plugin.queryLogs(options);
+        } catch (e) {
+            console.error('Failed to query workout logs:', e);
+            return { items: [] };
+        }
+    }
+
+    // History of one exercise (name matching ignores case, accents, spacing and load notes)
+    // -> { items: [{ logId, date, exercise }], nextCursor }
+    async queryExerciseHistory(exercise, options = {}) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) {
+            const key = this.exerciseKey(exercise);
+            const rows = [];
+            this.readLocal(LOCAL_KEYS.logs).forEach(log => {
+                (log.exercises || []).forEach(ex => {
+                    if (this.exerciseKey(ex.name) === key) {
+                        rows.push({ logId: String(log.id), date: new Date(log.date).getTime(), exercise: ex });
+                    }
+                });
+            });
+            return this.pageLocal(rows, options);
+        }
+
+        try {
+            return await this.plugin.queryExerciseHistory({ exercise, ...options });
+        } catch (e) {
+            console.error('Failed to query exercise history:', e);
+            return { items: [] };
+        }
+    }
+
+    // collection: 'workouts' | 'body_stats' | 'health_data'
+    async queryDocuments(collection, options = {}) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return { items: [] };
+
+        try {
+            return await this.plugin.queryDocuments({ collection, ...options });
+        } catch (e) {
+            console.error('Failed to query documents:', e);
+            return { items: [] };
+        }
+    }
+
+    async putDocuments(collection, items) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return false;
+
+        try {
+            await this.plugin.putDocuments({ collection, items });
+            if (collection === 'body_stats') this.advanceStoreRev();
+            return true;
+        } catch (e) {
+            console.error('Failed to store documents:', e);
+            return false;
+        }
+    }
+
+    // Recent/previous window of every trendEngine metric, kept by the native store as logs
+    // and body stats are written -> { metrics: { frequency: { recent, previous }, ... },
+    // recentLogsCount, previousLogsCount, totalLogs, bodyStatsCount }, or null
+    async getTrendWindows(now = Date.now()) {
+        await this.ready;
+        if (!this.isNative || !this.plugin) return null;
+
+        try {
+            return await this.plugin.getTrendWindows({ now });
+        } catch (e) {
+            console.error('Failed to get trend windows:', e);
+            return null;
+        }
+    }
+
+    // Web fallback: same page shape over the localStorage array (cursor = offset)
+    pageLocal(rows, { from, to, limit = 50, cursor } = {}) {
+        const fromMs = from != null ? new Date(from).getTime() : -Infinity;
+        const toMs = to != null ? new Date(to).getTime() : Infinity;
+        const sorted = rows
+            .filter(row => {
+                const time = new Date(row.date).getTime();
+                return time >= fromMs && time <= toMs;
+            })
+            .sort((a, b) => new Date(b.date) - new Date(a.date));
+        const offset = cursor ? parseInt(cursor, 10) : 0;
+        const items = sorted.slice(offset, offset + limit);
+        const next = offset + limit;
+        return next < sorted.length ? { items, nextCursor: String(next) } : { items };
+    }
+
+    readRev(key) {
+        return parseInt(localStorage.getItem(key) || '0', 10) || 0;
+    }
+
+    readLocal(key) {
+        try {
+            return JSON.parse(localStorage.getItem(key) || '[]');
+        } catch (e) {
+            return [];
+        }
+    }
+
+    // Same canonical id as the native ExerciseNames.canonicalId
+    exerciseKey(name) {
+        return (name || '')
+            .toLowerCase()
+            .normalize('NFD')
+            .replace(/[\u0300-\u036f]/g, '')
+            .replace(/[()[\]{}]/g, '')
+            .replace(/[.,:;\-–_/]/g, ' ')
+            .replace(/\d+\s*(kg|lbs|lb)?/g, ' ')
+            .replace(/\s+/g, ' ')
+            .trim();
+    }
+
+    isAvailable() {
+        return this.isNative && this.plugin !== null;
+    }
+}
+
+// Export singleton
+export const workoutStore = new WorkoutStore();
+
+// Also expose globally for non-module scripts
+if (typeof window !== 'undefined') {
+    window.WorkoutStore = workoutStore;
+}